@@ -0,0 +1,92 @@
+package com.abe.gg_stats.batch.match;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.parser.OpenDotaMatchDetailParser;
+import com.abe.gg_stats.repository.archive.MatchArchive;
+import com.abe.gg_stats.repository.archive.MatchArchiveCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads archived {@code /matches/{id}} bodies of one match ID range, as assigned by
+ * {@link MatchIdRangePartitioner}, and parses them with the same
+ * {@link OpenDotaMatchDetailParser} the API client uses. Nothing is fetched from
+ * OpenDota.
+ * <p>
+ * The range is rescanned from the start on restart; the writer upserts, so replaying
+ * already written matches is harmless.
+ */
+@Component
+@StepScope
+@Slf4j
+public class ArchivedMatchReader implements ItemStreamReader<OpenDotaMatchDetailDto> {
+
+	private final MatchArchive matchArchive;
+
+	private final OpenDotaMatchDetailParser parser;
+
+	private final long minMatchId;
+
+	private final long maxMatchId;
+
+	private MatchArchiveCursor cursor;
+
+	@Autowired
+	public ArchivedMatchReader(MatchArchive matchArchive, ObjectMapper objectMapper,
+			@Value("#{stepExecutionContext['minMatchId'] ?: 0L}") long minMatchId,
+			@Value("#{stepExecutionContext['maxMatchId'] ?: T(Long).MAX_VALUE}") long maxMatchId) {
+		this.matchArchive = matchArchive;
+		this.parser = new OpenDotaMatchDetailParser(objectMapper.getFactory());
+		this.minMatchId = minMatchId;
+		this.maxMatchId = maxMatchId;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		try {
+			cursor = matchArchive.cursor(minMatchId, maxMatchId);
+		}
+		catch (IOException e) {
+			throw new ItemStreamException("Could not open the match archive", e);
+		}
+	}
+
+	@Override
+	public OpenDotaMatchDetailDto read() throws IOException {
+		MatchArchiveCursor.Document document;
+		while ((document = cursor.next()) != null) {
+			OpenDotaMatchDetailDto detail = parser.parse(new ByteArrayInputStream(document.body()));
+			if (detail != null) {
+				return detail;
+			}
+			log.warn("Skipping empty archived match document, matchId={}", document.matchId());
+		}
+		return null;
+	}
+
+	@Override
+	public void close() {
+		if (cursor == null) {
+			return;
+		}
+		try {
+			cursor.close();
+		}
+		catch (IOException e) {
+			throw new ItemStreamException("Could not close the match archive cursor", e);
+		}
+		finally {
+			cursor = null;
+		}
+	}
+
+}
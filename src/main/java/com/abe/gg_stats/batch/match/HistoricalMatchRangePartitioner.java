@@ -0,0 +1,64 @@
+package com.abe.gg_stats.batch.match;
+
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits the requested historical match ID range {@code [fromMatchId, toMatchId)} into
+ * {@code gridSize} windows of equal width, each walked backwards by its own
+ * {@link HistoricalProMatchesReader}. The range comes from the job parameters of the same
+ * names, falling back to {@code app.batch.promatches.historical.from-match-id} and
+ * {@code to-match-id}.
+ * <p>
+ * The windows have to stay the same from run to run, since every run resumes a window
+ * below the lowest match already stored in it. Without a configured upper bound the range
+ * therefore ends at the lowest stored match and is walked as a single window, as that
+ * bound moves with every run.
+ */
+@Component
+@StepScope
+public class HistoricalMatchRangePartitioner implements Partitioner {
+
+	private final MatchIngestionDao dao;
+
+	private final long fromMatchId;
+
+	private final long toMatchId;
+
+	@Autowired
+	public HistoricalMatchRangePartitioner(MatchIngestionDao dao,
+			@Value("#{jobParameters['fromMatchId'] ?: ${app.batch.promatches.historical.from-match-id:0}}") long fromMatchId,
+			@Value("#{jobParameters['toMatchId'] ?: ${app.batch.promatches.historical.to-match-id:0}}") long toMatchId) {
+		this.dao = dao;
+		this.fromMatchId = fromMatchId;
+		this.toMatchId = toMatchId;
+	}
+
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		long to = toMatchId;
+		int windows = Math.max(1, gridSize);
+		if (to <= 0) {
+			Long lowestStored = dao.getMinMatchId();
+			to = lowestStored == null ? fromMatchId : lowestStored;
+			windows = 1;
+		}
+		long width = Math.max(1, Math.ceilDiv(Math.max(0, to - fromMatchId), windows));
+		Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+		for (int i = 0; i < windows; i++) {
+			ExecutionContext context = new ExecutionContext();
+			context.putLong("minMatchId", Math.min(to, fromMatchId + i * width));
+			context.putLong("maxMatchId", Math.min(to, fromMatchId + (i + 1) * width));
+			partitions.put("partition" + i, context);
+		}
+		return partitions;
+	}
+
+}
@@ -2,39 +2,73 @@ package com.abe.gg_stats.batch.match;
 
 import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
 import com.abe.gg_stats.service.OpenDotaApiService;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.databind.JsonNode;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.StreamSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Walks one window {@code [minMatchId, maxMatchId)} of pro match history backwards, one
+ * {@code /proMatches?less_than_match_id} page at a time, as assigned by
+ * {@link HistoricalMatchRangePartitioner}. The cursor is saved in the partition's
+ * execution context, so a restarted run picks every window up where it stopped; a new run
+ * starts below the lowest match already stored in the window.
+ * <p>
+ * All windows share the global rate limiter and the job's budget allowance.
+ */
 @Component
+@StepScope
+@Slf4j
 public class HistoricalProMatchesReader implements ItemStreamReader<JsonNode> {
 
-	private static final String CURSOR_KEY = "historical-matches.cursor";
+	static final String CURSOR_KEY = "historical-matches.cursor";
+
+	static final String EXHAUSTED_KEY = "historical-matches.exhausted";
+
+	static final int MAX_PAGES = 20;
 
 	private final OpenDotaApiService openDotaApiService;
 
 	private final MatchIngestionDao dao;
 
+	private final ApiBudgetPlanner apiBudgetPlanner;
+
+	private final IngestedMatchIds ingestedMatchIds;
+
+	private final long minMatchId;
+
+	private final long maxMatchId;
+
 	private Iterator<JsonNode> matchIterator;
 
 	private Long currentCursor;
 
-	private int pagesFetched;
+	private boolean exhausted;
 
-	private final int MAX_PAGES = 20;
+	private int pagesFetched;
 
 	@Autowired
-	public HistoricalProMatchesReader(OpenDotaApiService openDotaApiService, MatchIngestionDao dao) {
+	public HistoricalProMatchesReader(OpenDotaApiService openDotaApiService, MatchIngestionDao dao,
+			ApiBudgetPlanner apiBudgetPlanner, IngestedMatchIds ingestedMatchIds,
+			@Value("#{stepExecutionContext['minMatchId'] ?: 0L}") long minMatchId,
+			@Value("#{stepExecutionContext['maxMatchId'] ?: 0L}") long maxMatchId) {
 		this.openDotaApiService = openDotaApiService;
 		this.dao = dao;
+		this.apiBudgetPlanner = apiBudgetPlanner;
+		this.ingestedMatchIds = ingestedMatchIds;
+		this.minMatchId = minMatchId;
+		this.maxMatchId = maxMatchId;
 	}
 
 	@Override
@@ -42,6 +76,7 @@ public class HistoricalProMatchesReader implements ItemStreamReader<JsonNode> {
 		if (executionContext.containsKey(CURSOR_KEY)) {
 			this.currentCursor = executionContext.getLong(CURSOR_KEY);
 		}
+		this.exhausted = executionContext.containsKey(EXHAUSTED_KEY) || maxMatchId <= minMatchId;
 	}
 
 	@Override
@@ -49,34 +84,42 @@ public class HistoricalProMatchesReader implements ItemStreamReader<JsonNode> {
 		if (this.currentCursor != null) {
 			executionContext.putLong(CURSOR_KEY, this.currentCursor);
 		}
+		if (exhausted) {
+			executionContext.putString(EXHAUSTED_KEY, "true");
+		}
 	}
 
 	@Override
 	public JsonNode read() {
-		if (pagesFetched >= MAX_PAGES) {
-			return null;
-		}
-		if (matchIterator == null || !matchIterator.hasNext()) {
+		// Pages whose matches are all stored already are skipped until one has work left
+		while (matchIterator == null || !matchIterator.hasNext()) {
+			// Each page costs a call plus one per match detail;
+			// stop once the allowance is spent
+			if (exhausted || pagesFetched >= MAX_PAGES || !apiBudgetPlanner.withinAllowance()) {
+				return null;
+			}
 			fetchNextPage();
 			pagesFetched++;
 		}
-		return matchIterator != null && matchIterator.hasNext() ? matchIterator.next() : null;
+		return matchIterator.next();
 	}
 
+	/**
+	 * Loads the next page of the window into the iterator, minus the matches already
+	 * stored, and marks the window exhausted once paging has passed its lower bound.
+	 */
 	private void fetchNextPage() {
-		// Start from the lowest ID we have, then page backwards in history using
-		// less_than_match_id
+		// Start below the lowest ID stored in the window, then page backwards in history
+		// using less_than_match_id
 		if (currentCursor == null) {
-			currentCursor = dao.getMinMatchId();
-		}
-		if (currentCursor == null) {
-			matchIterator = Collections.emptyIterator();
-			return;
+			Long lowestStored = dao.getMinMatchIdBetween(minMatchId, maxMatchId);
+			currentCursor = lowestStored == null ? maxMatchId : lowestStored;
 		}
 
 		Optional<JsonNode> page = openDotaApiService.getProMatchesPage(currentCursor);
 		if (page.isEmpty() || !page.get().isArray() || page.get().isEmpty()) {
 			matchIterator = Collections.emptyIterator();
+			exhausted = true;
 			return;
 		}
 
@@ -88,8 +131,16 @@ public class HistoricalProMatchesReader implements ItemStreamReader<JsonNode> {
 		if (last != null && last.hasNonNull("match_id")) {
 			this.currentCursor = last.get("match_id").asLong();
 		}
+		if (currentCursor <= minMatchId) {
+			exhausted = true;
+		}
+		log.info("Fetched historical pro matches page, window=[{}, {}), cursor={}, pages={}, exhausted={}", minMatchId,
+				maxMatchId, currentCursor, pagesFetched + 1, exhausted);
 
-		matchIterator = pageList.iterator();
+		matchIterator = pageList.stream()
+			.filter(n -> !n.hasNonNull("match_id") || n.get("match_id").asLong() >= minMatchId)
+			.filter(n -> !n.hasNonNull("match_id") || !ingestedMatchIds.skip(n.get("match_id").asLong()))
+			.iterator();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package com.abe.gg_stats.batch.match;
+
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory set of the IDs in {@code matches}, so the match readers can drop summaries
+ * whose details are already stored before a {@code /matches/{id}} call spends a daily
+ * budget token on them.
+ * <p>
+ * The bulk of the IDs lives in a compact {@link MatchIdSet} streamed from the database
+ * once the application is ready; IDs written since then are kept in a small concurrent
+ * set and folded into the compact one every {@value #COMPACT_THRESHOLD} additions. Until
+ * the load completes nothing is filtered, which only costs the duplicate fetches this
+ * class exists to avoid.
+ */
+@Component
+@Slf4j
+public class IngestedMatchIds {
+
+	static final int COMPACT_THRESHOLD = 4096;
+
+	private final MatchIngestionDao dao;
+
+	private final Set<Long> recent = ConcurrentHashMap.newKeySet();
+
+	private final Counter tokensSaved;
+
+	private volatile MatchIdSet compacted = MatchIdSet.EMPTY;
+
+	@Autowired
+	public IngestedMatchIds(MatchIngestionDao dao, MeterRegistry meterRegistry) {
+		this.dao = dao;
+		this.tokensSaved = Counter.builder("opendota.api.budget.saved")
+			.description("Daily budget tokens saved by not fetching already ingested match details")
+			.tag("reason", "match_already_ingested")
+			.register(meterRegistry);
+		Gauge.builder("match.ingestion.known_ids", this, IngestedMatchIds::size)
+			.description("Match IDs known to be ingested")
+			.register(meterRegistry);
+		Gauge.builder("match.ingestion.known_ids.memory", this, ids -> ids.compacted.sizeInBytes())
+			.description("Heap used by the compact match ID set")
+			.baseUnit("bytes")
+			.register(meterRegistry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		long start = System.nanoTime();
+		MatchIdSet.Builder builder = new MatchIdSet.Builder();
+		long rows;
+		try {
+			rows = dao.forEachMatchId(builder::add);
+		}
+		catch (RuntimeException e) {
+			log.warn("Could not load ingested match IDs, already stored matches will be fetched again, reason={}",
+					e.toString());
+			return;
+		}
+		synchronized (this) {
+			// Keep what was written while the query ran, compacted or not
+			MatchIdSet loaded = builder.build().merge(compacted.toArray());
+			fold(loaded);
+		}
+		log.info("Loaded ingested match IDs, count={}, bytes={}, durationMs={}", rows, compacted.sizeInBytes(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	public boolean contains(long matchId) {
+		return compacted.contains(matchId) || recent.contains(matchId);
+	}
+
+	/**
+	 * Whether the details of {@code matchId} can be skipped, counting a saved budget
+	 * token if so.
+	 */
+	public boolean skip(long matchId) {
+		if (contains(matchId)) {
+			tokensSaved.increment();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Marks IDs as ingested once the current transaction commits, or right away outside
+	 * of one, so a rolled back chunk does not hide its matches from the next run.
+	 */
+	public void addAfterCommit(Collection<Long> matchIds) {
+		if (matchIds.isEmpty()) {
+			return;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			addAll(matchIds);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				addAll(matchIds);
+			}
+		});
+	}
+
+	public int size() {
+		return compacted.size() + recent.size();
+	}
+
+	void addAll(Collection<Long> matchIds) {
+		for (Long matchId : matchIds) {
+			if (!compacted.contains(matchId)) {
+				recent.add(matchId);
+			}
+		}
+		if (recent.size() >= COMPACT_THRESHOLD) {
+			compact();
+		}
+	}
+
+	private synchronized void compact() {
+		if (recent.size() < COMPACT_THRESHOLD) {
+			return;
+		}
+		fold(compacted);
+	}
+
+	private void fold(MatchIdSet into) {
+		long[] ids = sortedRecent();
+		compacted = into.merge(ids);
+		for (long id : ids) {
+			recent.remove(id);
+		}
+	}
+
+	private long[] sortedRecent() {
+		long[] ids = recent.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(ids);
+		return ids;
+	}
+
+}
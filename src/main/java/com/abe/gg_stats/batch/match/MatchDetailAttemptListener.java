@@ -0,0 +1,38 @@
+package com.abe.gg_stats.batch.match;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import java.util.List;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts a detail attempt for each queued match whose fetch failed and was skipped, so a
+ * match that keeps failing leaves the queue after
+ * {@code app.batch.promatches.detail-queue.max-attempts} failures.
+ * <p>
+ * Only failed fetches are counted. Matches the run did not get to, and fetches turned
+ * away by the rate limiter or an open circuit breaker, come back as no result rather than
+ * as a failure and stay queued with their attempts unchanged.
+ */
+@Component
+@Slf4j
+public class MatchDetailAttemptListener implements SkipListener<Long, OpenDotaMatchDetailDto> {
+
+	private final MatchIngestionDao dao;
+
+	@Autowired
+	public MatchDetailAttemptListener(MatchIngestionDao dao) {
+		this.dao = dao;
+	}
+
+	@Override
+	public void onSkipInProcess(@NonNull Long matchId, @NonNull Throwable t) {
+		dao.recordDetailAttempts(List.of(matchId));
+		log.debug("Counted failed match detail attempt, matchId={}, reason={}", matchId, t.toString());
+	}
+
+}
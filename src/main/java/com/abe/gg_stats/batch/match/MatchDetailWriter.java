@@ -1,105 +1,150 @@
 package com.abe.gg_stats.batch.match;
 
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.DraftTiming;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.PickBan;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.Player;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.PurchaseEvent;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.RawDocument;
+import com.abe.gg_stats.repository.archive.MatchArchive;
 import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.abe.gg_stats.repository.jdbc.MatchRowBatch;
+import com.abe.gg_stats.service.AggregationService;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Component
-public class MatchDetailWriter implements ItemWriter<JsonNode> {
+@Slf4j
+public class MatchDetailWriter implements ItemWriter<OpenDotaMatchDetailDto> {
 
 	private final MatchIngestionDao dao;
 
+	private final IngestedMatchIds ingestedMatchIds;
+
+	private final MatchArchive matchArchive;
+
+	private final AggregationService aggregationService;
+
 	@Autowired
-	public MatchDetailWriter(MatchIngestionDao dao) {
+	public MatchDetailWriter(MatchIngestionDao dao, IngestedMatchIds ingestedMatchIds, MatchArchive matchArchive,
+			AggregationService aggregationService) {
 		this.dao = dao;
+		this.ingestedMatchIds = ingestedMatchIds;
+		this.matchArchive = matchArchive;
+		this.aggregationService = aggregationService;
 	}
 
 	@Override
-	public void write(org.springframework.batch.item.Chunk<? extends JsonNode> chunk) throws Exception {
-		for (JsonNode m : chunk.getItems()) {
-			writeItem(m);
+	public void write(Chunk<? extends OpenDotaMatchDetailDto> chunk) throws Exception {
+		// Collect the rows of the whole chunk first, then flush each table in one batch
+		MatchRowBatch batch = new MatchRowBatch();
+		List<Long> matchIds = new ArrayList<>(chunk.size());
+		for (OpenDotaMatchDetailDto m : chunk.getItems()) {
+			collectItem(m, batch);
+			matchIds.add(m.matchId());
+		}
+		dao.writeBatch(batch);
+		archive(chunk);
+		ingestedMatchIds.addAfterCommit(matchIds);
+		if (!matchIds.isEmpty()) {
+			aggregateAfterCommit();
+		}
+	}
+
+	/**
+	 * Brings the hero trends of the written matches up to date once the chunk is
+	 * committed, so the aggregation sees its rows.
+	 */
+	private void aggregateAfterCommit() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			aggregationService.requestTrendAggregation();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				aggregationService.requestTrendAggregation();
+			}
+		});
+	}
+
+	/**
+	 * Appends the raw bodies of the chunk and forces them to disk just before the chunk
+	 * commits. The archive is a backfill aid, so a failing disk is logged rather than
+	 * failing ingestion.
+	 */
+	private void archive(Chunk<? extends OpenDotaMatchDetailDto> chunk) {
+		try {
+			boolean appended = false;
+			for (OpenDotaMatchDetailDto m : chunk.getItems()) {
+				RawDocument raw = m.rawDocument();
+				if (raw != null) {
+					matchArchive.append(m.matchId(), raw.deflated(), raw.length());
+					appended = true;
+				}
+			}
+			if (appended) {
+				matchArchive.sync();
+			}
+		}
+		catch (UncheckedIOException e) {
+			log.warn("Could not archive raw match documents, chunkSize={}, reason={}", chunk.size(), e.toString());
 		}
 	}
 
-	protected void writeItem(JsonNode m) {
-		long matchId = m.path("match_id").asLong();
+	protected void collectItem(OpenDotaMatchDetailDto m, MatchRowBatch batch) {
+		long matchId = m.matchId();
 		// Upsert match core
-		dao.upsertMatch(m);
+		batch.addMatch(m);
 
 		// team_match rows (if team ids present)
-		long radTeam = m.path("radiant_team_id").asLong(0);
-		long direTeam = m.path("dire_team_id").asLong(0);
-		if (radTeam > 0) {
-			dao.upsertTeamMatch(matchId, radTeam, true);
+		if (m.radiantTeamId() > 0) {
+			batch.addTeamMatch(matchId, m.radiantTeamId(), true);
 		}
-		if (direTeam > 0) {
-			dao.upsertTeamMatch(matchId, direTeam, false);
+		if (m.direTeamId() > 0) {
+			batch.addTeamMatch(matchId, m.direTeamId(), false);
 		}
 
 		// picks_bans
-		JsonNode pbArr = m.path("picks_bans");
-		if (pbArr.isArray()) {
-			int idx = 0;
-			for (JsonNode pb : pbArr) {
-				dao.upsertPickBan(matchId, pb.path("order").asInt(idx++), pb.path("is_pick").asBoolean(),
-						pb.hasNonNull("hero_id") ? pb.get("hero_id").asInt() : null, pb.path("team").asInt(0),
-						pb.hasNonNull("player_slot") ? pb.get("player_slot").asInt() : null);
-			}
+		int idx = 0;
+		for (PickBan pb : m.picksBans()) {
+			int ord = pb.order() != null ? pb.order() : idx;
+			idx++;
+			batch.addPickBan(matchId, ord, pb.isPick(), pb.heroId(), pb.team(), pb.playerSlot());
 		}
 
 		// draft_timings (optional)
-		JsonNode timings = m.path("draft_timings");
-		if (timings.isArray()) {
-			int idx = 0;
-			for (JsonNode dt : timings) {
-				dao.upsertDraftTiming(matchId, dt.path("order").asInt(idx++), dt.path("pick").asBoolean(),
-						dt.hasNonNull("active_team") ? dt.get("active_team").asInt() : null,
-						dt.hasNonNull("hero_id") ? dt.get("hero_id").asInt() : null,
-						dt.hasNonNull("player_slot") ? dt.get("player_slot").asInt() : null,
-						dt.hasNonNull("extra_time") ? dt.get("extra_time").asInt() : null,
-						dt.hasNonNull("total_time_taken") ? dt.get("total_time_taken").asInt() : null);
-			}
+		idx = 0;
+		for (DraftTiming dt : m.draftTimings()) {
+			int ord = dt.order() != null ? dt.order() : idx;
+			idx++;
+			batch.addDraftTiming(matchId, ord, dt.pick(), dt.activeTeam(), dt.heroId(), dt.playerSlot(), dt.extraTime(),
+					dt.totalTimeTaken());
 		}
 
 		// player_matches + item_purchase_event
-		int patch = m.path("patch").asInt(0);
-		JsonNode players = m.path("players");
-		if (players.isArray()) {
-			for (JsonNode p : players) {
-				long accountId = p.path("account_id").asLong(0);
-				int playerSlot = p.path("player_slot").asInt();
-				int heroId = p.path("hero_id").asInt();
-				Boolean win = p.hasNonNull("win") ? p.get("win").asInt() == 1 : null;
-				Integer kills = p.hasNonNull("kills") ? p.get("kills").asInt() : null;
-				Integer deaths = p.hasNonNull("deaths") ? p.get("deaths").asInt() : null;
-				Integer assists = p.hasNonNull("assists") ? p.get("assists").asInt() : null;
-				Integer level = p.hasNonNull("level") ? p.get("level").asInt() : null;
-				Integer netWorth = p.hasNonNull("net_worth") ? p.get("net_worth").asInt() : null;
-				Integer gpm = p.hasNonNull("gold_per_min") ? p.get("gold_per_min").asInt() : null;
-				Integer xpm = p.hasNonNull("xp_per_min") ? p.get("xp_per_min").asInt() : null;
-				Integer lane = p.hasNonNull("lane") ? p.get("lane").asInt() : null;
-				Integer laneRole = p.hasNonNull("lane_role") ? p.get("lane_role").asInt() : null;
-				Boolean roaming = p.hasNonNull("is_roaming") ? p.get("is_roaming").asBoolean() : null;
-
-				dao.upsertPlayerMatch(matchId, accountId, playerSlot, heroId, win, kills, deaths, assists, level,
-						netWorth, gpm, xpm, lane, laneRole, roaming);
-
-				// purchases
-				JsonNode purchases = p.path("purchase_log");
-				boolean isRadiant = playerSlot < 128;
-				if (purchases.isArray()) {
-					for (JsonNode ev : purchases) {
-						int timeS = ev.path("time").asInt();
-						String itemKey = ev.path("key").asText(null);
-						if (itemKey != null) {
-							dao.insertItemPurchaseEvent(matchId, accountId, heroId, timeS, itemKey, isRadiant, patch);
-						}
-					}
+		for (Player p : m.players()) {
+			batch.addPlayerMatch(matchId, p.accountId(), p.playerSlot(), p.heroId(), p.win(), p.kills(), p.deaths(),
+					p.assists(), p.level(), p.netWorth(), p.goldPerMin(), p.xpPerMin(), p.lane(), p.laneRole(),
+					p.isRoaming());
+
+			// purchases
+			boolean isRadiant = p.playerSlot() < 128;
+			for (PurchaseEvent ev : p.purchaseLog()) {
+				if (ev.key() != null) {
+					batch.addItemPurchaseEvent(matchId, p.accountId(), p.heroId(), ev.time(), ev.key(), isRadiant,
+							m.patch());
 				}
 			}
 		}
 	}
 
-}
\ No newline at end of file
+}
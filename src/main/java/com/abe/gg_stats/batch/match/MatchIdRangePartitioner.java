@@ -0,0 +1,39 @@
+package com.abe.gg_stats.batch.match;
+
+import com.abe.gg_stats.repository.archive.MatchArchive;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits the raw match archive into {@code gridSize} disjoint match ID ranges with about
+ * as many documents each. Every partition gets {@code minMatchId} (inclusive) and
+ * {@code maxMatchId} (exclusive) in its step execution context.
+ */
+@Component
+public class MatchIdRangePartitioner implements Partitioner {
+
+	private final MatchArchive matchArchive;
+
+	@Autowired
+	public MatchIdRangePartitioner(MatchArchive matchArchive) {
+		this.matchArchive = matchArchive;
+	}
+
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		long[] bounds = matchArchive.partitionBounds(Math.max(1, gridSize));
+		Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+		for (int i = 0; i < bounds.length - 1; i++) {
+			ExecutionContext context = new ExecutionContext();
+			context.putLong("minMatchId", bounds[i]);
+			context.putLong("maxMatchId", bounds[i + 1]);
+			partitions.put("partition" + i, context);
+		}
+		return partitions;
+	}
+
+}
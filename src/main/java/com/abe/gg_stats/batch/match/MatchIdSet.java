@@ -0,0 +1,154 @@
+package com.abe.gg_stats.batch.match;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of match IDs laid out like the array containers of a Roaring bitmap: IDs
+ * are grouped by their high 48 bits, each group keeps its low 16 bits as a sorted
+ * {@code char} run, and all runs share one flat array. Pro match IDs are sparse (a few
+ * per 65536 IDs), so a member costs about 2 bytes plus its share of a 12 byte group
+ * header, roughly 3 to 4 MB for a million IDs instead of the ~50 MB of a
+ * {@code HashSet<Long>}.
+ * <p>
+ * Lookups are two binary searches. Sets only grow by {@link #merge}, which rebuilds the
+ * arrays in one linear pass, so callers batch their additions.
+ */
+public final class MatchIdSet {
+
+	public static final MatchIdSet EMPTY = new MatchIdSet(new long[0], new int[] { 0 }, new char[0]);
+
+	private final long[] keys;
+
+	// Run i holds lows[offsets[i]] to lows[offsets[i + 1] - 1]
+	private final int[] offsets;
+
+	private final char[] lows;
+
+	private MatchIdSet(long[] keys, int[] offsets, char[] lows) {
+		this.keys = keys;
+		this.offsets = offsets;
+		this.lows = lows;
+	}
+
+	public boolean contains(long matchId) {
+		int group = Arrays.binarySearch(keys, matchId >>> 16);
+		return group >= 0 && Arrays.binarySearch(lows, offsets[group], offsets[group + 1], (char) matchId) >= 0;
+	}
+
+	public int size() {
+		return lows.length;
+	}
+
+	/**
+	 * The members in ascending order.
+	 */
+	public long[] toArray() {
+		long[] ids = new long[lows.length];
+		for (int group = 0; group < keys.length; group++) {
+			long high = keys[group] << 16;
+			for (int j = offsets[group]; j < offsets[group + 1]; j++) {
+				ids[j] = high | lows[j];
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Approximate heap footprint of the arrays.
+	 */
+	public long sizeInBytes() {
+		return 8L * keys.length + 4L * offsets.length + 2L * lows.length;
+	}
+
+	/**
+	 * Returns a set with the members of this one and of {@code sortedIds}, which must be
+	 * in ascending unsigned order; duplicates on either side are dropped.
+	 */
+	public MatchIdSet merge(long[] sortedIds) {
+		if (sortedIds.length == 0) {
+			return this;
+		}
+		Builder builder = new Builder(size() + sortedIds.length);
+		int i = 0;
+		for (int group = 0; group < keys.length; group++) {
+			long high = keys[group] << 16;
+			for (int j = offsets[group]; j < offsets[group + 1]; j++) {
+				long member = high | lows[j];
+				while (i < sortedIds.length && Long.compareUnsigned(sortedIds[i], member) < 0) {
+					builder.add(sortedIds[i++]);
+				}
+				builder.add(member);
+			}
+		}
+		while (i < sortedIds.length) {
+			builder.add(sortedIds[i++]);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Accumulates IDs given in ascending unsigned order, as streamed by
+	 * {@code ORDER BY match_id}.
+	 */
+	public static final class Builder {
+
+		private long[] keys;
+
+		private int[] offsets;
+
+		private char[] lows;
+
+		private int groups;
+
+		private int size;
+
+		private long last;
+
+		public Builder() {
+			this(1024);
+		}
+
+		public Builder(int expectedSize) {
+			int capacity = Math.max(16, expectedSize);
+			this.keys = new long[Math.max(16, capacity / 4)];
+			this.offsets = new int[keys.length + 1];
+			this.lows = new char[capacity];
+		}
+
+		public void add(long matchId) {
+			if (size > 0) {
+				int order = Long.compareUnsigned(matchId, last);
+				if (order == 0) {
+					return;
+				}
+				if (order < 0) {
+					throw new IllegalArgumentException(
+							"Match IDs must be added in ascending order: " + matchId + " after " + last);
+				}
+			}
+			long key = matchId >>> 16;
+			if (groups == 0 || keys[groups - 1] != key) {
+				if (groups == keys.length) {
+					keys = Arrays.copyOf(keys, groups * 2);
+					offsets = Arrays.copyOf(offsets, groups * 2 + 1);
+				}
+				keys[groups] = key;
+				offsets[groups] = size;
+				groups++;
+			}
+			if (size == lows.length) {
+				lows = Arrays.copyOf(lows, size * 2);
+			}
+			lows[size++] = (char) matchId;
+			last = matchId;
+		}
+
+		public MatchIdSet build() {
+			int[] finalOffsets = Arrays.copyOf(offsets, groups + 1);
+			finalOffsets[groups] = size;
+			return new MatchIdSet(Arrays.copyOf(keys, groups), finalOffsets, Arrays.copyOf(lows, size));
+		}
+
+	}
+
+}
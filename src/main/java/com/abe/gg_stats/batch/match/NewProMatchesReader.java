@@ -22,6 +22,8 @@ public class NewProMatchesReader implements ItemStreamReader<JsonNode> {
 
 	private final MatchIngestionDao dao;
 
+	private final IngestedMatchIds ingestedMatchIds;
+
 	private Long maxMatchIdInDb;
 
 	private Long cursor;
@@ -31,9 +33,11 @@ public class NewProMatchesReader implements ItemStreamReader<JsonNode> {
 	private boolean exhausted;
 
 	@Autowired
-	public NewProMatchesReader(OpenDotaApiService openDotaApiService, MatchIngestionDao dao) {
+	public NewProMatchesReader(OpenDotaApiService openDotaApiService, MatchIngestionDao dao,
+			IngestedMatchIds ingestedMatchIds) {
 		this.openDotaApiService = openDotaApiService;
 		this.dao = dao;
+		this.ingestedMatchIds = ingestedMatchIds;
 	}
 
 	@Override
@@ -65,12 +69,32 @@ public class NewProMatchesReader implements ItemStreamReader<JsonNode> {
 	}
 
 	private boolean fetchNextPage() {
-		Optional<JsonNode> pageOpt = openDotaApiService.getProMatchesPage(cursor);
-		if (pageOpt.isEmpty() || !pageOpt.get().isArray() || pageOpt.get().isEmpty()) {
-			return false;
+		// A page whose newer matches are all stored already
+		// is skipped, not taken as the end
+		while (true) {
+			Optional<JsonNode> pageOpt = openDotaApiService.getProMatchesPage(cursor);
+			if (pageOpt.isEmpty() || !pageOpt.get().isArray() || pageOpt.get().isEmpty()) {
+				return false;
+			}
+			List<JsonNode> newer = newerMatches(pageOpt.get());
+			if (newer.isEmpty()) {
+				return false;
+			}
+			List<JsonNode> missing = newer.stream()
+				.filter(n -> !ingestedMatchIds.skip(n.get("match_id").asLong()))
+				.toList();
+			if (!missing.isEmpty()) {
+				this.it = missing.iterator();
+				return true;
+			}
 		}
+	}
 
-		List<JsonNode> page = StreamSupport.stream(pageOpt.get().spliterator(), false).toList();
+	/**
+	 * Advances the cursor past the page and returns its matches newer than the DB max.
+	 */
+	private List<JsonNode> newerMatches(JsonNode pageNode) {
+		List<JsonNode> page = StreamSupport.stream(pageNode.spliterator(), false).toList();
 
 		// advance cursor to the smallest id on the page (last element) to walk backwards
 		// next call
@@ -80,17 +104,10 @@ public class NewProMatchesReader implements ItemStreamReader<JsonNode> {
 		}
 
 		// filter strictly newer than DB max
-		List<JsonNode> newer = page.stream()
+		return page.stream()
 			.filter(n -> n.hasNonNull("match_id")
 					&& (maxMatchIdInDb == null || n.get("match_id").asLong() > maxMatchIdInDb))
 			.toList();
-
-		if (newer.isEmpty()) {
-			return false;
-		}
-
-		this.it = newer.iterator();
-		return true;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.abe.gg_stats.batch.match;
+
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
+import java.util.Iterator;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Second tier of match ingestion: reads the IDs of {@code PENDING} matches whose details
+ * are still to be fetched. Matches of the
+ * {@code app.batch.promatches.detail-queue.priority-league-ids} come first, then newest
+ * first.
+ * <p>
+ * A run takes at most as many matches as its budget allowance covers, capped by
+ * {@code max-per-run}, and stops early once the allowance is spent. Matches whose fetch
+ * failed {@code max-attempts} times, as counted by {@link MatchDetailAttemptListener},
+ * are no longer taken.
+ */
+@Component
+@StepScope
+@Slf4j
+public class PendingMatchDetailReader implements ItemStreamReader<Long> {
+
+	private final MatchIngestionDao dao;
+
+	private final ApiBudgetPlanner apiBudgetPlanner;
+
+	private final List<Long> priorityLeagueIds;
+
+	private final int maxPerRun;
+
+	private final int maxAttempts;
+
+	private Iterator<Long> it;
+
+	@Autowired
+	public PendingMatchDetailReader(MatchIngestionDao dao, ApiBudgetPlanner apiBudgetPlanner,
+			@Value("${app.batch.promatches.detail-queue.priority-league-ids:}") List<Long> priorityLeagueIds,
+			@Value("${app.batch.promatches.detail-queue.max-per-run:500}") int maxPerRun,
+			@Value("${app.batch.promatches.detail-queue.max-attempts:3}") int maxAttempts) {
+		this.dao = dao;
+		this.apiBudgetPlanner = apiBudgetPlanner;
+		this.priorityLeagueIds = priorityLeagueIds;
+		this.maxPerRun = maxPerRun;
+		this.maxAttempts = maxAttempts;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		int limit = (int) Math.min(maxPerRun, apiBudgetPlanner.remainingAllowance());
+		List<Long> queued = limit > 0 ? dao.findPendingMatchDetails(priorityLeagueIds, maxAttempts, limit) : List.of();
+		log.info("Taken match details from the queue, count={}, limit={}", queued.size(), limit);
+		this.it = queued.iterator();
+	}
+
+	@Override
+	public Long read() {
+		if (!it.hasNext() || !apiBudgetPlanner.withinAllowance()) {
+			return null;
+		}
+		return it.next();
+	}
+
+}
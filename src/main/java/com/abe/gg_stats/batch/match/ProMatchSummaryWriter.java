@@ -0,0 +1,72 @@
+package com.abe.gg_stats.batch.match;
+
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.repository.jdbc.MatchRowBatch;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * First tier of match ingestion: stores the {@code /proMatches} summaries of a chunk as
+ * {@code PENDING} matches in one batch, so results, teams and leagues are queryable right
+ * away. {@code MatchDetailWriter} completes them once the match details job has fetched
+ * their details.
+ */
+@Component
+public class ProMatchSummaryWriter implements ItemWriter<JsonNode> {
+
+	private final MatchIngestionDao dao;
+
+	private final IngestedMatchIds ingestedMatchIds;
+
+	@Autowired
+	public ProMatchSummaryWriter(MatchIngestionDao dao, IngestedMatchIds ingestedMatchIds) {
+		this.dao = dao;
+		this.ingestedMatchIds = ingestedMatchIds;
+	}
+
+	@Override
+	public void write(Chunk<? extends JsonNode> chunk) {
+		MatchRowBatch batch = new MatchRowBatch();
+		List<Long> matchIds = new ArrayList<>(chunk.size());
+		for (JsonNode n : chunk.getItems()) {
+			if (!n.hasNonNull("match_id")) {
+				continue;
+			}
+			long matchId = n.get("match_id").asLong();
+			Long radiantTeamId = longOrNull(n, "radiant_team_id");
+			Long direTeamId = longOrNull(n, "dire_team_id");
+			batch.addMatchSummary(matchId, intOrNull(n, "start_time"), intOrNull(n, "duration"),
+					n.hasNonNull("radiant_win") ? n.get("radiant_win").asBoolean() : null, longOrNull(n, "leagueid"),
+					longOrNull(n, "series_id"), intOrNull(n, "series_type"), intOrNull(n, "radiant_score"),
+					intOrNull(n, "dire_score"), radiantTeamId, textOrNull(n, "radiant_name"), direTeamId,
+					textOrNull(n, "dire_name"));
+			if (radiantTeamId != null && radiantTeamId > 0) {
+				batch.addTeamMatch(matchId, radiantTeamId, true);
+			}
+			if (direTeamId != null && direTeamId > 0) {
+				batch.addTeamMatch(matchId, direTeamId, false);
+			}
+			matchIds.add(matchId);
+		}
+		dao.writeSummaries(batch);
+		ingestedMatchIds.addAfterCommit(matchIds);
+	}
+
+	private static Integer intOrNull(JsonNode n, String field) {
+		return n.hasNonNull(field) ? n.get(field).asInt() : null;
+	}
+
+	private static Long longOrNull(JsonNode n, String field) {
+		return n.hasNonNull(field) ? n.get(field).asLong() : null;
+	}
+
+	private static String textOrNull(JsonNode n, String field) {
+		return n.hasNonNull(field) ? n.get(field).asText() : null;
+	}
+
+}
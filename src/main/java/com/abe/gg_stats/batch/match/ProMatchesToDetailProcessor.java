@@ -1,31 +1,166 @@
 package com.abe.gg_stats.batch.match;
 
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
 import com.abe.gg_stats.service.OpenDotaApiService;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService;
+import com.abe.gg_stats.service.rate_limit.RequestPriority;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Fetches {@code /matches/{id}} for each match ID of the detail queue, parsed into the
+ * compact {@link OpenDotaMatchDetailDto}.
+ * <p>
+ * Fetches are queued with {@link OpenDotaApiService#getMatchDetailAsync} as IDs are read,
+ * so they wait for rate limit permits in FIFO order without holding a thread per item,
+ * and each call starts as soon as its permit is granted. At most
+ * {@code app.batch.promatches.detail-fetch.concurrency} fetches are in flight, and never
+ * more than the limiter's per-minute budget; IDs read beyond that start as earlier
+ * fetches finish. {@link #process} then joins the future for its item, which keeps the
+ * chunk order and rethrows the original exception so skip and retry policies behave as
+ * with a synchronous call. Retried items, and items whose fetch has not started yet,
+ * fetch synchronously. A concurrency of 1 disables prefetching. Fetches left over when
+ * the step ends are cancelled, which gives back their queued permits.
+ */
 @Component
-public class ProMatchesToDetailProcessor implements ItemProcessor<JsonNode, JsonNode> {
+@StepScope
+@Slf4j
+public class ProMatchesToDetailProcessor
+		implements ItemProcessor<Long, OpenDotaMatchDetailDto>, ItemReadListener<Long>, StepExecutionListener {
 
 	private final OpenDotaApiService openDotaApiService;
 
+	private final int maxInFlight;
+
+	// Guarded by this
+	private final Map<Long, CompletableFuture<Optional<OpenDotaMatchDetailDto>>> pending = new HashMap<>();
+
+	// Guarded by this: read IDs waiting for an in-flight slot
+	private final Deque<Long> deferred = new ArrayDeque<>();
+
+	// Guarded by this
+	private int inFlight;
+
 	@Autowired
-	public ProMatchesToDetailProcessor(OpenDotaApiService openDotaApiService) {
+	public ProMatchesToDetailProcessor(OpenDotaApiService openDotaApiService,
+			OpenDotaRateLimitingService rateLimitingService,
+			@Value("${app.batch.promatches.detail-fetch.concurrency:8}") int concurrency) {
 		this.openDotaApiService = openDotaApiService;
+		this.maxInFlight = Math.min(concurrency, rateLimitingService.getRequestsPerMinute());
+	}
+
+	@Override
+	public void afterRead(@NonNull Long matchId) {
+		if (maxInFlight <= 1) {
+			return;
+		}
+		synchronized (this) {
+			if (!pending.containsKey(matchId) && !deferred.contains(matchId)) {
+				deferred.add(matchId);
+			}
+		}
+		startDeferred();
+	}
+
+	@Override
+	public OpenDotaMatchDetailDto process(@NonNull Long matchId) {
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> future;
+		synchronized (this) {
+			future = pending.remove(matchId);
+			if (future == null) {
+				deferred.remove(matchId);
+			}
+		}
+		if (future == null) {
+			return fetch(matchId);
+		}
+		return join(future).orElse(null);
 	}
 
 	@Override
-	public JsonNode process(@NonNull JsonNode item) {
-		if (!item.hasNonNull("match_id")) {
-			return null;
+	public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+		List<CompletableFuture<Optional<OpenDotaMatchDetailDto>>> unconsumed;
+		synchronized (this) {
+			deferred.clear();
+			unconsumed = new ArrayList<>(pending.values());
+			pending.clear();
+		}
+		if (!unconsumed.isEmpty()) {
+			log.debug("Cancelling unconsumed match detail fetches, count={}", unconsumed.size());
+			unconsumed.forEach(f -> f.cancel(false));
+		}
+		return stepExecution.getExitStatus();
+	}
+
+	/**
+	 * Starts deferred fetches while in-flight slots are free. Each slot is freed when its
+	 * fetch completes, whether or not the result has been consumed yet.
+	 */
+	private void startDeferred() {
+		List<CompletableFuture<Optional<OpenDotaMatchDetailDto>>> started = new ArrayList<>();
+		synchronized (this) {
+			while (inFlight < maxInFlight && !deferred.isEmpty()) {
+				long matchId = deferred.poll();
+				CompletableFuture<Optional<OpenDotaMatchDetailDto>> future = openDotaApiService
+					.getMatchDetailAsync(matchId, RequestPriority.NORMAL);
+				pending.put(matchId, future);
+				inFlight++;
+				started.add(future);
+			}
+		}
+		// Outside the lock: an already completed future runs the callback right away
+		for (CompletableFuture<Optional<OpenDotaMatchDetailDto>> future : started) {
+			future.whenComplete((detail, error) -> {
+				synchronized (this) {
+					inFlight--;
+				}
+				startDeferred();
+			});
+		}
+	}
+
+	private OpenDotaMatchDetailDto fetch(long matchId) {
+		return openDotaApiService.getMatchDetail(matchId).orElse(null);
+	}
+
+	private Optional<OpenDotaMatchDetailDto> join(CompletableFuture<Optional<OpenDotaMatchDetailDto>> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for match detail", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause() instanceof CompletionException ce && ce.getCause() != null ? ce.getCause()
+					: e.getCause();
+			if (cause instanceof RuntimeException re) {
+				throw re;
+			}
+			if (cause instanceof Error err) {
+				throw err;
+			}
+			throw new IllegalStateException("Match detail fetch failed", cause);
 		}
-		long matchId = item.get("match_id").asLong();
-		Optional<JsonNode> detail = openDotaApiService.getMatchDetail(matchId);
-		return detail.orElse(null);
 	}
 
 }
@@ -7,6 +7,7 @@ import com.abe.gg_stats.dto.response.PlayerResponseDto;
 import com.abe.gg_stats.entity.Player;
 import com.abe.gg_stats.repository.PlayerRepository;
 import com.abe.gg_stats.service.OpenDotaApiService;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -31,15 +32,18 @@ public class PlayerProcessor implements ItemProcessor<Long, OpenDotaPlayerDto> {
 
 	private final BatchExpirationConfig batchExpirationConfig;
 
+	private final ApiBudgetPlanner apiBudgetPlanner;
+
 	@Autowired
 	public PlayerProcessor(OpenDotaApiService openDotaApiService, ObjectMapper objectMapper,
 			OpenDotaPlayerResponseMapper openDotaPlayerResponseMapper, PlayerRepository playerRepository,
-			BatchExpirationConfig batchExpirationConfig) {
+			BatchExpirationConfig batchExpirationConfig, ApiBudgetPlanner apiBudgetPlanner) {
 		this.objectMapper = objectMapper;
 		this.openDotaPlayerResponseMapper = openDotaPlayerResponseMapper;
 		this.openDotaApiService = openDotaApiService;
 		this.playerRepository = playerRepository;
 		this.batchExpirationConfig = batchExpirationConfig;
+		this.apiBudgetPlanner = apiBudgetPlanner;
 	}
 
 	@Override
@@ -51,6 +55,11 @@ public class PlayerProcessor implements ItemProcessor<Long, OpenDotaPlayerDto> {
 			return null;
 		}
 
+		// Out of today's allowance: leave the rest for the next run
+		if (!apiBudgetPlanner.withinAllowance()) {
+			return null;
+		}
+
 		Optional<JsonNode> apiResponse = openDotaApiService.getPlayer(accountId);
 		if (apiResponse.isEmpty()) {
 			return null;
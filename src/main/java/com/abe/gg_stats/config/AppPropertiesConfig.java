@@ -0,0 +1,15 @@
+package com.abe.gg_stats.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the {@code @ConfigurationProperties} records of the OpenDota client and the
+ * match archive.
+ */
+@Configuration
+@EnableConfigurationProperties({ OpenDotaCacheProperties.class, OpenDotaHealthProperties.class,
+		MatchArchiveProperties.class })
+public class AppPropertiesConfig {
+
+}
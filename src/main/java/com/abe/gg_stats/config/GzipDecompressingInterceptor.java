@@ -0,0 +1,92 @@
+package com.abe.gg_stats.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Asks for gzip-compressed responses and inflates them while they are read, so callers
+ * that stream the body never hold the compressed and decompressed payload at once.
+ * Responses that come back uncompressed are passed through untouched.
+ */
+public class GzipDecompressingInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final String GZIP = "gzip";
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+		ClientHttpResponse response = execution.execute(request, body);
+		String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+		if (encoding != null && GZIP.equalsIgnoreCase(encoding.trim())) {
+			return new GzipClientHttpResponse(response);
+		}
+		return response;
+	}
+
+	private static final class GzipClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse delegate;
+
+		private final HttpHeaders headers;
+
+		private InputStream body;
+
+		GzipClientHttpResponse(ClientHttpResponse delegate) {
+			this.delegate = delegate;
+			// Content-Length and Content-Encoding describe the compressed entity
+			HttpHeaders copy = new HttpHeaders();
+			copy.putAll(delegate.getHeaders());
+			copy.remove(HttpHeaders.CONTENT_ENCODING);
+			copy.remove(HttpHeaders.CONTENT_LENGTH);
+			this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return delegate.getStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return delegate.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				// An empty body (e.g. 204/304) is not a valid gzip stream
+				PushbackInputStream raw = new PushbackInputStream(delegate.getBody());
+				int first = raw.read();
+				if (first == -1) {
+					body = InputStream.nullInputStream();
+				}
+				else {
+					raw.unread(first);
+					body = new GZIPInputStream(raw, 8192);
+				}
+			}
+			return body;
+		}
+
+		@Override
+		public void close() {
+			delegate.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.abe.gg_stats.config;
+
+import java.nio.file.Path;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Raw match archive settings.
+ * <p>
+ * When {@code enabled}, every {@code /matches/{id}} body is kept deflate-compressed in
+ * segment files under {@code directory}; a segment is sealed and indexed once it reaches
+ * {@code segmentSize}.
+ */
+@ConfigurationProperties(prefix = "app.match-archive")
+public record MatchArchiveProperties(boolean enabled, Path directory, DataSize segmentSize) {
+
+	public MatchArchiveProperties {
+		directory = directory == null ? Path.of("data", "match-archive") : directory;
+		segmentSize = segmentSize == null ? DataSize.ofMegabytes(64) : segmentSize;
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.abe.gg_stats.config;
+
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Response cache settings for slow-changing OpenDota endpoints.
+ * <p>
+ * {@code ttl} is keyed by endpoint template (see
+ * {@link com.abe.gg_stats.service.OpenDotaEndpoints#template(String)}); only templates
+ * listed here are cached. Keys contain slashes and must use bracket notation, e.g.
+ * {@code opendota.api.cache.ttl[/heroes]=1d}.
+ */
+@ConfigurationProperties(prefix = "opendota.api.cache")
+public record OpenDotaCacheProperties(boolean enabled, Map<String, Duration> ttl) {
+
+	public OpenDotaCacheProperties {
+		ttl = ttl == null ? Map.of() : Map.copyOf(ttl);
+	}
+
+	public Duration ttlFor(String template) {
+		return enabled ? ttl.get(template) : null;
+	}
+
+}
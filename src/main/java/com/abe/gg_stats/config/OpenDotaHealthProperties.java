@@ -0,0 +1,26 @@
+package com.abe.gg_stats.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Passive health settings for the OpenDota API.
+ * <p>
+ * Status is derived from the real calls made in the last {@code window}: below
+ * {@code minSuccessRatio} the API is reported down, above {@code maxP95Latency} degraded.
+ * Windows with fewer than {@code minCalls} calls fall back to the last active probe,
+ * which is only sent once no call has been made for {@code idleProbeAfter}.
+ */
+@ConfigurationProperties(prefix = "opendota.api.health")
+public record OpenDotaHealthProperties(Duration window, int minCalls, double minSuccessRatio, Duration maxP95Latency,
+		Duration idleProbeAfter) {
+
+	public OpenDotaHealthProperties {
+		window = window == null ? Duration.ofMinutes(5) : window;
+		minCalls = minCalls <= 0 ? 5 : minCalls;
+		minSuccessRatio = minSuccessRatio <= 0 ? 0.5 : minSuccessRatio;
+		maxP95Latency = maxP95Latency == null ? Duration.ofSeconds(5) : maxP95Latency;
+		idleProbeAfter = idleProbeAfter == null ? Duration.ofMinutes(30) : idleProbeAfter;
+	}
+
+}
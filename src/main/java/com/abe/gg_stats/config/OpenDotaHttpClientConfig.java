@@ -0,0 +1,50 @@
+package com.abe.gg_stats.config;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Dedicated HTTP client for the OpenDota API, separate from the general purpose
+ * {@code restTemplate} used by the image proxy.
+ * <p>
+ * Built on the JDK {@link HttpClient}, which keeps connections alive and reuses them
+ * across calls, negotiates HTTP/2 over TLS and falls back to HTTP/1.1 otherwise.
+ * Responses are requested gzip-compressed and decompressed while streaming by
+ * {@link GzipDecompressingInterceptor}.
+ */
+@Configuration
+public class OpenDotaHttpClientConfig {
+
+	@Value("${opendota.api.timeout.connect:10000}")
+	private long connectTimeoutMs;
+
+	@Value("${opendota.api.timeout.read:30000}")
+	private long readTimeoutMs;
+
+	@Bean("openDotaHttpClient")
+	public HttpClient openDotaHttpClient() {
+		return HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.connectTimeout(Duration.ofMillis(connectTimeoutMs))
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.executor(Executors.newVirtualThreadPerTaskExecutor())
+			.build();
+	}
+
+	@Bean("openDotaRestTemplate")
+	public RestTemplate openDotaRestTemplate(@Qualifier("openDotaHttpClient") HttpClient httpClient) {
+		JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+		factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+		RestTemplate restTemplate = new RestTemplate(factory);
+		restTemplate.getInterceptors().add(new GzipDecompressingInterceptor());
+		return restTemplate;
+	}
+
+}
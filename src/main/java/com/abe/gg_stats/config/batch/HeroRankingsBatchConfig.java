@@ -7,6 +7,7 @@ import com.abe.gg_stats.batch.listener.BaseItemExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseJobExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseStepExecutionListener;
 import com.abe.gg_stats.dto.request.opendota.OpenDotaHeroRankingDto;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.springframework.batch.core.Job;
@@ -38,11 +39,12 @@ public class HeroRankingsBatchConfig {
 	private int skipLimit;
 
 	@Bean("heroRankingUpdateJob")
-	public Job heroRankingUpdateJob(Step heroRankingStep) {
+	public Job heroRankingUpdateJob(Step heroRankingStep, ApiBudgetPlanner apiBudgetPlanner) {
 		return new JobBuilder("heroRankingUpdateJob", jobRepository)//
 			.incrementer(new RunIdIncrementer())
 			.start(heroRankingStep)
 			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
 			.build();
 	}
 
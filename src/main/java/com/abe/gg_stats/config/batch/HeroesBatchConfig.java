@@ -7,6 +7,7 @@ import com.abe.gg_stats.batch.listener.BaseItemExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseJobExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseStepExecutionListener;
 import com.abe.gg_stats.dto.request.opendota.OpenDotaHeroDto;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import org.springframework.batch.core.Job;
@@ -38,12 +39,13 @@ public class HeroesBatchConfig {
 	private int skipLimit;
 
 	@Bean("heroesUpdateJob")
-	public Job heroesUpdateJob(Step heroesStep) {
+	public Job heroesUpdateJob(Step heroesStep, ApiBudgetPlanner apiBudgetPlanner) {
 		return new JobBuilder("heroesUpdateJob", jobRepository) //
 			.incrementer(new RunIdIncrementer())
 			.start(heroesStep)
 			.preventRestart()
 			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
 			.build();
 	}
 
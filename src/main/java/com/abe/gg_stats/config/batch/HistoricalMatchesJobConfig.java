@@ -3,9 +3,10 @@ package com.abe.gg_stats.config.batch;
 import com.abe.gg_stats.batch.listener.BaseItemExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseJobExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseStepExecutionListener;
+import com.abe.gg_stats.batch.match.HistoricalMatchRangePartitioner;
 import com.abe.gg_stats.batch.match.HistoricalProMatchesReader;
-import com.abe.gg_stats.batch.match.MatchDetailWriter;
-import com.abe.gg_stats.batch.match.ProMatchesToDetailProcessor;
+import com.abe.gg_stats.batch.match.ProMatchSummaryWriter;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
@@ -17,6 +18,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.client.ResourceAccessException;
@@ -30,21 +32,44 @@ public class HistoricalMatchesJobConfig {
 	@Autowired
 	private PlatformTransactionManager transactionManager;
 
-	@Value("${app.batch.promatches.historical.chunk-size:20}")
+	@Value("${app.batch.promatches.historical.chunk-size:100}")
 	private int historicalChunkSize;
 
+	@Value("${app.batch.promatches.historical.partitions:4}")
+	private int partitions;
+
 	@Bean("historicalMatchesIngestionJob")
-	public Job historicalMatchesIngestionJob(Step fetchHistoricalMatchesStep) {
+	public Job historicalMatchesIngestionJob(Step partitionedHistoricalMatchesStep, ApiBudgetPlanner apiBudgetPlanner) {
 		return new JobBuilder("historicalMatchesIngestionJob", jobRepository) //
 			.incrementer(new RunIdIncrementer())
-			.start(fetchHistoricalMatchesStep)
+			.start(partitionedHistoricalMatchesStep)
 			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
+			.build();
+	}
+
+	/**
+	 * Runs one {@code fetchHistoricalMatchesStep} per match ID window, at most
+	 * {@code app.batch.promatches.historical.partitions} at a time. Each window is a step
+	 * execution of its own, so its progress shows in the job repository and a restart
+	 * resumes only the windows that did not complete.
+	 */
+	@Bean("partitionedHistoricalMatchesStep")
+	public Step partitionedHistoricalMatchesStep(HistoricalMatchRangePartitioner partitioner,
+			Step fetchHistoricalMatchesStep) {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("historical-matches-");
+		executor.setConcurrencyLimit(Math.max(1, partitions));
+		return new StepBuilder("partitionedHistoricalMatchesStep", jobRepository)
+			.partitioner("fetchHistoricalMatchesStep", partitioner)
+			.step(fetchHistoricalMatchesStep)
+			.gridSize(Math.max(1, partitions))
+			.taskExecutor(executor)
+			.listener(new BaseStepExecutionListener())
 			.build();
 	}
 
 	@Bean("fetchHistoricalMatchesStep")
-	public Step fetchHistoricalMatchesStep(HistoricalProMatchesReader reader, ProMatchesToDetailProcessor processor,
-			MatchDetailWriter writer) {
+	public Step fetchHistoricalMatchesStep(HistoricalProMatchesReader reader, ProMatchSummaryWriter writer) {
 		ExponentialBackOffPolicy backoff = new ExponentialBackOffPolicy();
 		backoff.setInitialInterval(1000);
 		backoff.setMaxInterval(10000);
@@ -53,14 +78,11 @@ public class HistoricalMatchesJobConfig {
 		return new StepBuilder("fetchHistoricalMatchesStep", jobRepository)
 			.<JsonNode, JsonNode>chunk(historicalChunkSize, transactionManager)
 			.reader(reader)
-			.processor(processor)
 			.writer(writer)
 			.faultTolerant()
 			.retry(ResourceAccessException.class)
 			.retryLimit(3)
 			.backOffPolicy(backoff)
-			.skip(Exception.class)
-			.skipLimit(15)
 			.listener(new BaseStepExecutionListener())
 			.listener(itemListener)
 			.build();
@@ -0,0 +1,76 @@
+package com.abe.gg_stats.config.batch;
+
+import com.abe.gg_stats.batch.listener.BaseItemExecutionListener;
+import com.abe.gg_stats.batch.listener.BaseJobExecutionListener;
+import com.abe.gg_stats.batch.listener.BaseStepExecutionListener;
+import com.abe.gg_stats.batch.match.MatchDetailAttemptListener;
+import com.abe.gg_stats.batch.match.MatchDetailWriter;
+import com.abe.gg_stats.batch.match.PendingMatchDetailReader;
+import com.abe.gg_stats.batch.match.ProMatchesToDetailProcessor;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.exception.CircuitBreakerException;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+@Configuration
+public class MatchDetailsJobConfig {
+
+	@Autowired
+	private JobRepository jobRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${app.batch.promatches.detail-queue.chunk-size:10}")
+	private int chunkSize;
+
+	@Bean("matchDetailsJob")
+	public Job matchDetailsJob(Step fetchMatchDetailsStep, ApiBudgetPlanner apiBudgetPlanner) {
+		return new JobBuilder("matchDetailsJob", jobRepository) //
+			.incrementer(new RunIdIncrementer())
+			.start(fetchMatchDetailsStep)
+			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
+			.build();
+	}
+
+	@Bean("fetchMatchDetailsStep")
+	public Step fetchMatchDetailsStep(PendingMatchDetailReader reader, ProMatchesToDetailProcessor processor,
+			MatchDetailWriter writer, MatchDetailAttemptListener attemptListener) {
+		ExponentialBackOffPolicy backoff = new ExponentialBackOffPolicy();
+		backoff.setInitialInterval(1000);
+		backoff.setMaxInterval(10000);
+		backoff.setMultiplier(2.0);
+		var itemListener = new BaseItemExecutionListener<Long, OpenDotaMatchDetailDto>();
+		return new StepBuilder("fetchMatchDetailsStep", jobRepository)
+			.<Long, OpenDotaMatchDetailDto>chunk(chunkSize, transactionManager)
+			.reader(reader)
+			.processor(processor)
+			.writer(writer)
+			.faultTolerant()
+			.retry(ResourceAccessException.class)
+			.retryLimit(3)
+			.backOffPolicy(backoff)
+			.skip(HttpClientErrorException.class)
+			.skip(CircuitBreakerException.class)
+			.skipLimit(50)
+			.listener(attemptListener)
+			.listener(new BaseStepExecutionListener())
+			.listener(itemListener)
+			.build();
+	}
+
+}
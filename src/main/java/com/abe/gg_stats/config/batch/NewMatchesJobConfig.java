@@ -3,10 +3,9 @@ package com.abe.gg_stats.config.batch;
 import com.abe.gg_stats.batch.listener.BaseItemExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseJobExecutionListener;
 import com.abe.gg_stats.batch.listener.BaseStepExecutionListener;
-import com.abe.gg_stats.batch.match.MatchDetailWriter;
 import com.abe.gg_stats.batch.match.NewProMatchesReader;
-import com.abe.gg_stats.batch.match.ProMatchesToDetailProcessor;
-import com.abe.gg_stats.exception.CircuitBreakerException;
+import com.abe.gg_stats.batch.match.ProMatchSummaryWriter;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
@@ -20,7 +19,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
 
 @Configuration
@@ -32,21 +30,21 @@ public class NewMatchesJobConfig {
 	@Autowired
 	private PlatformTransactionManager transactionManager;
 
-	@Value("${app.batch.promatches.new.chunk-size:10}")
+	@Value("${app.batch.promatches.new.chunk-size:100}")
 	private int newChunkSize;
 
 	@Bean("newMatchesIngestionJob")
-	public Job newMatchesIngestionJob(Step newMatchesStep) {
+	public Job newMatchesIngestionJob(Step newMatchesStep, ApiBudgetPlanner apiBudgetPlanner) {
 		return new JobBuilder("newMatchesIngestionJob", jobRepository) //
 			.incrementer(new RunIdIncrementer())
 			.start(newMatchesStep)
 			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
 			.build();
 	}
 
 	@Bean("newMatchesStep")
-	public Step newMatchesStep(NewProMatchesReader reader, ProMatchesToDetailProcessor processor,
-			MatchDetailWriter writer) {
+	public Step newMatchesStep(NewProMatchesReader reader, ProMatchSummaryWriter writer) {
 		ExponentialBackOffPolicy backoff = new ExponentialBackOffPolicy();
 		backoff.setInitialInterval(1000);
 		backoff.setMaxInterval(10000);
@@ -55,15 +53,11 @@ public class NewMatchesJobConfig {
 		return new StepBuilder("newMatchesStep", jobRepository)
 			.<JsonNode, JsonNode>chunk(newChunkSize, transactionManager)
 			.reader(reader)
-			.processor(processor)
 			.writer(writer)
 			.faultTolerant()
 			.retry(ResourceAccessException.class)
 			.retryLimit(3)
 			.backOffPolicy(backoff)
-			.skip(HttpClientErrorException.class)
-			.skip(CircuitBreakerException.class)
-			.skipLimit(50)
 			.listener(new BaseStepExecutionListener())
 			.listener(itemListener)
 			.build();
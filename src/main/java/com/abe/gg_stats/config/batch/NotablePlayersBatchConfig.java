@@ -7,6 +7,7 @@ import com.abe.gg_stats.batch.notable_player.NotablePlayerProcessor;
 import com.abe.gg_stats.batch.notable_player.NotablePlayerWriter;
 import com.abe.gg_stats.batch.notable_player.NotablePlayersReader;
 import com.abe.gg_stats.dto.request.opendota.OpenDotaNotablePlayerDto;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import org.springframework.batch.core.Job;
@@ -38,11 +39,12 @@ public class NotablePlayersBatchConfig {
 	private int skipLimit;
 
 	@Bean("proPlayersUpdateJob")
-	public Job proPlayersUpdateJob(Step proPlayersStep) {
+	public Job proPlayersUpdateJob(Step proPlayersStep, ApiBudgetPlanner apiBudgetPlanner) {
 		return new JobBuilder("proPlayersUpdateJob", jobRepository)//
 			.incrementer(new RunIdIncrementer())
 			.start(proPlayersStep)
 			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
 			.build();
 	}
 
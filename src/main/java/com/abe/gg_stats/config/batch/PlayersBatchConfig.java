@@ -7,6 +7,7 @@ import com.abe.gg_stats.batch.player.PlayerReader;
 import com.abe.gg_stats.batch.player.PlayerProcessor;
 import com.abe.gg_stats.batch.player.PlayerWriter;
 import com.abe.gg_stats.dto.request.opendota.OpenDotaPlayerDto;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import lombok.RequiredArgsConstructor;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
@@ -37,11 +38,12 @@ public class PlayersBatchConfig {
 	private int skipLimit;
 
 	@Bean("playerUpdateJob")
-	public Job playerUpdateJob(Step playerStep) {
+	public Job playerUpdateJob(Step playerStep, ApiBudgetPlanner apiBudgetPlanner) {
 		return new JobBuilder("playerUpdateJob", jobRepository) //
 			.incrementer(new RunIdIncrementer())
 			.start(playerStep)
 			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
 			.build();
 	}
 
@@ -0,0 +1,83 @@
+package com.abe.gg_stats.config.batch;
+
+import com.abe.gg_stats.batch.listener.BaseItemExecutionListener;
+import com.abe.gg_stats.batch.listener.BaseJobExecutionListener;
+import com.abe.gg_stats.batch.listener.BaseStepExecutionListener;
+import com.abe.gg_stats.batch.match.ArchivedMatchReader;
+import com.abe.gg_stats.batch.match.MatchDetailWriter;
+import com.abe.gg_stats.batch.match.MatchIdRangePartitioner;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Rebuilds the match tables from the raw match archive without calling OpenDota, for
+ * schema changes and parser fixes. The archive is split into
+ * {@code app.batch.rebuild.partitions} match ID ranges, each read, parsed and written by
+ * its own worker thread; 1 runs a single sequential scan. The step listeners log the
+ * matches per second of every partition and of the whole rebuild.
+ */
+@Configuration
+public class RebuildMatchesJobConfig {
+
+	@Autowired
+	private JobRepository jobRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${app.batch.rebuild.chunk-size:500}")
+	private int chunkSize;
+
+	@Value("${app.batch.rebuild.partitions:4}")
+	private int partitions;
+
+	@Bean("rebuildMatchesFromArchiveJob")
+	public Job rebuildMatchesFromArchiveJob(Step rebuildMatchesStep) {
+		return new JobBuilder("rebuildMatchesFromArchiveJob", jobRepository) //
+			.incrementer(new RunIdIncrementer())
+			.start(rebuildMatchesStep)
+			.listener(new BaseJobExecutionListener())
+			.build();
+	}
+
+	@Bean("rebuildMatchesStep")
+	public Step rebuildMatchesStep(MatchIdRangePartitioner partitioner, Step rebuildMatchesPartitionStep) {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("match-rebuild-");
+		executor.setConcurrencyLimit(Math.max(1, partitions));
+		return new StepBuilder("rebuildMatchesStep", jobRepository)
+			.partitioner("rebuildMatchesPartitionStep", partitioner)
+			.step(rebuildMatchesPartitionStep)
+			.gridSize(Math.max(1, partitions))
+			.taskExecutor(executor)
+			.listener(new BaseStepExecutionListener())
+			.build();
+	}
+
+	@Bean("rebuildMatchesPartitionStep")
+	public Step rebuildMatchesPartitionStep(ArchivedMatchReader reader, MatchDetailWriter writer) {
+		var itemListener = new BaseItemExecutionListener<OpenDotaMatchDetailDto, OpenDotaMatchDetailDto>();
+		return new StepBuilder("rebuildMatchesPartitionStep", jobRepository)
+			.<OpenDotaMatchDetailDto, OpenDotaMatchDetailDto>chunk(chunkSize, transactionManager)
+			.reader(reader)
+			.writer(writer)
+			.faultTolerant()
+			.skip(JsonProcessingException.class)
+			.skipLimit(100)
+			.listener(new BaseStepExecutionListener())
+			.listener(itemListener)
+			.build();
+	}
+
+}
@@ -7,6 +7,7 @@ import com.abe.gg_stats.batch.team.TeamProcessor;
 import com.abe.gg_stats.batch.team.TeamWriter;
 import com.abe.gg_stats.batch.team.TeamsReader;
 import com.abe.gg_stats.dto.request.opendota.OpenDotaTeamDto;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import org.springframework.batch.core.Job;
@@ -38,11 +39,12 @@ public class TeamsBatchConfig {
 	private int skipLimit;
 
 	@Bean("teamsUpdateJob")
-	public Job teamsUpdateJob(Step teamsStep) {
+	public Job teamsUpdateJob(Step teamsStep, ApiBudgetPlanner apiBudgetPlanner) {
 		return new JobBuilder("teamsUpdateJob", jobRepository) //
 			.incrementer(new RunIdIncrementer())
 			.start(teamsStep)
 			.listener(new BaseJobExecutionListener())
+			.listener(apiBudgetPlanner)
 			.build();
 	}
 
@@ -0,0 +1,54 @@
+package com.abe.gg_stats.dto.request.opendota;
+
+import java.util.List;
+
+/**
+ * The subset of an OpenDota {@code /matches/{id}} payload that is persisted by the match
+ * ingestion jobs. Time series, objectives, teamfights and chat are not bound, but the
+ * whole body can travel along as {@link #rawDocument()} for the raw match archive.
+ */
+public record OpenDotaMatchDetailDto(long matchId, int startTime, int duration, int preGameDuration, boolean radiantWin,
+		long leagueId, long seriesId, int seriesType, int cluster, int lobbyType, int gameMode, int engine,
+		int radiantScore, int direScore, int towerStatusRadiant, int towerStatusDire, int barracksStatusRadiant,
+		int barracksStatusDire, int firstBloodTime, long radiantTeamId, String radiantName, long direTeamId,
+		String direName, long radiantCaptain, long direCaptain, int patch, int region, String replayUrl,
+		List<PickBan> picksBans, List<DraftTiming> draftTimings, List<Player> players, RawDocument rawDocument) {
+
+	/**
+	 * Returns a copy carrying the body this match was parsed from.
+	 */
+	public OpenDotaMatchDetailDto withRawDocument(RawDocument rawDocument) {
+		return new OpenDotaMatchDetailDto(matchId, startTime, duration, preGameDuration, radiantWin, leagueId, seriesId,
+				seriesType, cluster, lobbyType, gameMode, engine, radiantScore, direScore, towerStatusRadiant,
+				towerStatusDire, barracksStatusRadiant, barracksStatusDire, firstBloodTime, radiantTeamId, radiantName,
+				direTeamId, direName, radiantCaptain, direCaptain, patch, region, replayUrl, picksBans, draftTimings,
+				players, rawDocument);
+	}
+
+	/**
+	 * A response body as received, zlib deflate-compressed, with its uncompressed length.
+	 */
+	public record RawDocument(byte[] deflated, int length) {
+
+	}
+
+	public record PickBan(Integer order, boolean isPick, Integer heroId, int team, Integer playerSlot) {
+
+	}
+
+	public record DraftTiming(Integer order, boolean pick, Integer activeTeam, Integer heroId, Integer playerSlot,
+			Integer extraTime, Integer totalTimeTaken) {
+
+	}
+
+	public record Player(long accountId, int playerSlot, int heroId, Boolean win, Integer kills, Integer deaths,
+			Integer assists, Integer level, Integer netWorth, Integer goldPerMin, Integer xpPerMin, Integer lane,
+			Integer laneRole, Boolean isRoaming, List<PurchaseEvent> purchaseLog) {
+
+	}
+
+	public record PurchaseEvent(int time, String key) {
+
+	}
+
+}
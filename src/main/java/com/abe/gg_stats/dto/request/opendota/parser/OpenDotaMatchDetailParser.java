@@ -0,0 +1,313 @@
+package com.abe.gg_stats.dto.request.opendota.parser;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.DraftTiming;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.PickBan;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.Player;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.PurchaseEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for OpenDota {@code /matches/{id}} responses.
+ * <p>
+ * Reads the payload token by token and binds only the fields persisted by the match
+ * ingestion jobs into an {@link OpenDotaMatchDetailDto}. Everything else, including the
+ * large per-minute series, objectives, teamfights and chat, is skipped with
+ * {@link JsonParser#skipChildren()} and never materialized. Missing and {@code null}
+ * values get the same defaults as the {@code JsonNode.path(..).asX(..)} lookups this
+ * replaces.
+ */
+public class OpenDotaMatchDetailParser {
+
+	private final JsonFactory jsonFactory;
+
+	public OpenDotaMatchDetailParser(JsonFactory jsonFactory) {
+		this.jsonFactory = jsonFactory;
+	}
+
+	/**
+	 * Parses a match detail from the given stream, closing it when done.
+	 * @return the parsed match, or {@code null} if the stream is empty
+	 */
+	public OpenDotaMatchDetailDto parse(InputStream in) throws IOException {
+		try (JsonParser p = jsonFactory.createParser(in)) {
+			JsonToken first = p.nextToken();
+			if (first == null) {
+				return null;
+			}
+			if (first != JsonToken.START_OBJECT) {
+				throw new JsonParseException(p, "Expected match detail object, got " + first);
+			}
+			return readMatch(p);
+		}
+	}
+
+	private OpenDotaMatchDetailDto readMatch(JsonParser p) throws IOException {
+		long matchId = 0;
+		int startTime = 0;
+		int duration = 0;
+		int preGameDuration = 0;
+		boolean radiantWin = false;
+		long leagueId = 0;
+		long seriesId = 0;
+		int seriesType = 0;
+		int cluster = 0;
+		int lobbyType = 0;
+		int gameMode = 0;
+		int engine = 0;
+		int radiantScore = 0;
+		int direScore = 0;
+		int towerStatusRadiant = 0;
+		int towerStatusDire = 0;
+		int barracksStatusRadiant = 0;
+		int barracksStatusDire = 0;
+		int firstBloodTime = 0;
+		long radiantTeamId = 0;
+		String radiantName = null;
+		long direTeamId = 0;
+		String direName = null;
+		long radiantCaptain = 0;
+		long direCaptain = 0;
+		int patch = 0;
+		int region = 0;
+		String replayUrl = null;
+		List<PickBan> picksBans = List.of();
+		List<DraftTiming> draftTimings = List.of();
+		List<Player> players = List.of();
+
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.currentName();
+			p.nextToken();
+			switch (field) {
+				case "match_id" -> matchId = longValue(p);
+				case "start_time" -> startTime = intValue(p);
+				case "duration" -> duration = intValue(p);
+				case "pre_game_duration" -> preGameDuration = intValue(p);
+				case "radiant_win" -> radiantWin = booleanValue(p);
+				case "leagueid" -> leagueId = longValue(p);
+				case "series_id" -> seriesId = longValue(p);
+				case "series_type" -> seriesType = intValue(p);
+				case "cluster" -> cluster = intValue(p);
+				case "lobby_type" -> lobbyType = intValue(p);
+				case "game_mode" -> gameMode = intValue(p);
+				case "engine" -> engine = intValue(p);
+				case "radiant_score" -> radiantScore = intValue(p);
+				case "dire_score" -> direScore = intValue(p);
+				case "tower_status_radiant" -> towerStatusRadiant = intValue(p);
+				case "tower_status_dire" -> towerStatusDire = intValue(p);
+				case "barracks_status_radiant" -> barracksStatusRadiant = intValue(p);
+				case "barracks_status_dire" -> barracksStatusDire = intValue(p);
+				case "first_blood_time" -> firstBloodTime = intValue(p);
+				case "radiant_team_id" -> radiantTeamId = longValue(p);
+				case "radiant_name" -> radiantName = stringValue(p);
+				case "dire_team_id" -> direTeamId = longValue(p);
+				case "dire_name" -> direName = stringValue(p);
+				case "radiant_captain" -> radiantCaptain = longValue(p);
+				case "dire_captain" -> direCaptain = longValue(p);
+				case "patch" -> patch = intValue(p);
+				case "region" -> region = intValue(p);
+				case "replay_url" -> replayUrl = stringValue(p);
+				case "picks_bans" -> picksBans = readArray(p, this::readPickBan);
+				case "draft_timings" -> draftTimings = readArray(p, this::readDraftTiming);
+				case "players" -> players = readArray(p, this::readPlayer);
+				default -> p.skipChildren();
+			}
+		}
+
+		return new OpenDotaMatchDetailDto(matchId, startTime, duration, preGameDuration, radiantWin, leagueId, seriesId,
+				seriesType, cluster, lobbyType, gameMode, engine, radiantScore, direScore, towerStatusRadiant,
+				towerStatusDire, barracksStatusRadiant, barracksStatusDire, firstBloodTime, radiantTeamId, radiantName,
+				direTeamId, direName, radiantCaptain, direCaptain, patch, region, replayUrl, picksBans, draftTimings,
+				players, null);
+	}
+
+	private PickBan readPickBan(JsonParser p) throws IOException {
+		Integer order = null;
+		boolean isPick = false;
+		Integer heroId = null;
+		int team = 0;
+		Integer playerSlot = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.currentName();
+			p.nextToken();
+			switch (field) {
+				case "order" -> order = nullableInt(p);
+				case "is_pick" -> isPick = booleanValue(p);
+				case "hero_id" -> heroId = nullableInt(p);
+				case "team" -> team = intValue(p);
+				case "player_slot" -> playerSlot = nullableInt(p);
+				default -> p.skipChildren();
+			}
+		}
+		return new PickBan(order, isPick, heroId, team, playerSlot);
+	}
+
+	private DraftTiming readDraftTiming(JsonParser p) throws IOException {
+		Integer order = null;
+		boolean pick = false;
+		Integer activeTeam = null;
+		Integer heroId = null;
+		Integer playerSlot = null;
+		Integer extraTime = null;
+		Integer totalTimeTaken = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.currentName();
+			p.nextToken();
+			switch (field) {
+				case "order" -> order = nullableInt(p);
+				case "pick" -> pick = booleanValue(p);
+				case "active_team" -> activeTeam = nullableInt(p);
+				case "hero_id" -> heroId = nullableInt(p);
+				case "player_slot" -> playerSlot = nullableInt(p);
+				case "extra_time" -> extraTime = nullableInt(p);
+				case "total_time_taken" -> totalTimeTaken = nullableInt(p);
+				default -> p.skipChildren();
+			}
+		}
+		return new DraftTiming(order, pick, activeTeam, heroId, playerSlot, extraTime, totalTimeTaken);
+	}
+
+	private Player readPlayer(JsonParser p) throws IOException {
+		long accountId = 0;
+		int playerSlot = 0;
+		int heroId = 0;
+		Boolean win = null;
+		Integer kills = null;
+		Integer deaths = null;
+		Integer assists = null;
+		Integer level = null;
+		Integer netWorth = null;
+		Integer goldPerMin = null;
+		Integer xpPerMin = null;
+		Integer lane = null;
+		Integer laneRole = null;
+		Boolean isRoaming = null;
+		List<PurchaseEvent> purchaseLog = List.of();
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.currentName();
+			p.nextToken();
+			switch (field) {
+				case "account_id" -> accountId = longValue(p);
+				case "player_slot" -> playerSlot = intValue(p);
+				case "hero_id" -> heroId = intValue(p);
+				case "win" -> {
+					Integer w = nullableInt(p);
+					win = w != null ? w == 1 : null;
+				}
+				case "kills" -> kills = nullableInt(p);
+				case "deaths" -> deaths = nullableInt(p);
+				case "assists" -> assists = nullableInt(p);
+				case "level" -> level = nullableInt(p);
+				case "net_worth" -> netWorth = nullableInt(p);
+				case "gold_per_min" -> goldPerMin = nullableInt(p);
+				case "xp_per_min" -> xpPerMin = nullableInt(p);
+				case "lane" -> lane = nullableInt(p);
+				case "lane_role" -> laneRole = nullableInt(p);
+				case "is_roaming" -> isRoaming = nullableBoolean(p);
+				case "purchase_log" -> purchaseLog = readArray(p, this::readPurchaseEvent);
+				default -> p.skipChildren();
+			}
+		}
+		return new Player(accountId, playerSlot, heroId, win, kills, deaths, assists, level, netWorth, goldPerMin,
+				xpPerMin, lane, laneRole, isRoaming, purchaseLog);
+	}
+
+	private PurchaseEvent readPurchaseEvent(JsonParser p) throws IOException {
+		int time = 0;
+		String key = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.currentName();
+			p.nextToken();
+			switch (field) {
+				case "time" -> time = intValue(p);
+				case "key" -> key = stringValue(p);
+				default -> p.skipChildren();
+			}
+		}
+		return new PurchaseEvent(time, key);
+	}
+
+	/**
+	 * Reads an array of objects with {@code reader}, which is positioned on each
+	 * {@code START_OBJECT} and must consume it up to its {@code END_OBJECT}. Non-object
+	 * elements and non-array values are skipped.
+	 */
+	private <T> List<T> readArray(JsonParser p, ElementReader<T> reader) throws IOException {
+		if (p.currentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return List.of();
+		}
+		List<T> out = new ArrayList<>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				out.add(reader.read(p));
+			}
+			else {
+				p.skipChildren();
+			}
+		}
+		return out;
+	}
+
+	private static int intValue(JsonParser p) throws IOException {
+		if (p.currentToken().isStructStart()) {
+			p.skipChildren();
+			return 0;
+		}
+		return p.getValueAsInt(0);
+	}
+
+	private static long longValue(JsonParser p) throws IOException {
+		if (p.currentToken().isStructStart()) {
+			p.skipChildren();
+			return 0L;
+		}
+		return p.getValueAsLong(0L);
+	}
+
+	private static Integer nullableInt(JsonParser p) throws IOException {
+		if (p.currentToken() == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		return intValue(p);
+	}
+
+	private static boolean booleanValue(JsonParser p) throws IOException {
+		if (p.currentToken().isStructStart()) {
+			p.skipChildren();
+			return false;
+		}
+		return p.getValueAsBoolean(false);
+	}
+
+	private static Boolean nullableBoolean(JsonParser p) throws IOException {
+		if (p.currentToken() == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		return booleanValue(p);
+	}
+
+	private static String stringValue(JsonParser p) throws IOException {
+		if (p.currentToken().isStructStart()) {
+			p.skipChildren();
+			return null;
+		}
+		return p.getValueAsString(null);
+	}
+
+	@FunctionalInterface
+	private interface ElementReader<T> {
+
+		T read(JsonParser p) throws IOException;
+
+	}
+
+}
@@ -1,4 +1,5 @@
 package com.abe.gg_stats.dto.response;
 
-public record HighlightsHeroDto(int heroId, long matches, long picks, double pickRate, Double deltaVsPrev) {
+public record HighlightsHeroDto(int heroId, long matches, long picks, double pickRate, Double deltaVsPrev,
+		Double winRate) {
 }
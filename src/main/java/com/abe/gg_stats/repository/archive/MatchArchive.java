@@ -0,0 +1,400 @@
+package com.abe.gg_stats.repository.archive;
+
+import com.abe.gg_stats.config.MatchArchiveProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Append-only archive of raw {@code /matches/{id}} bodies, so fields added later can be
+ * backfilled from disk instead of being downloaded again.
+ * <p>
+ * Documents are appended, already deflated, to the active segment file as records of a
+ * {@value #RECORD_HEADER_BYTES} byte header ({@code magic, match_id, raw length,
+ * deflated length}) and the payload. {@link #sync()} is called when a chunk commits: it
+ * forces the segment to disk and, once it holds {@code segment-size} bytes, seals it by
+ * merging its entries into the memory-mapped {@link MatchArchiveIndex} and starts the
+ * next one. Entries of the active segment are kept in memory until then and rebuilt on
+ * startup by scanning the segment, which also cuts off a record torn by a crash.
+ * <p>
+ * All access is serialized on the archive; it runs at match ingestion rates, a few
+ * documents per second.
+ */
+@Repository
+@Slf4j
+public class MatchArchive {
+
+	static final int RECORD_HEADER_BYTES = 20;
+
+	static final int RECORD_MAGIC = 0x4D41_5243; // "MARC"
+
+	private static final String INDEX_FILE = "index.idx";
+
+	private final MatchArchiveProperties properties;
+
+	private final Counter rawBytes;
+
+	private final Counter storedBytes;
+
+	private final Counter documents;
+
+	private final Timer appendTimer;
+
+	private final Timer syncTimer;
+
+	private final Map<Long, MatchArchiveIndex.Entry> activeEntries = new HashMap<>();
+
+	private MatchArchiveIndex index = MatchArchiveIndex.EMPTY;
+
+	private FileChannel active;
+
+	private int activeSegment;
+
+	private long activeSize;
+
+	@Autowired
+	public MatchArchive(MatchArchiveProperties properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.rawBytes = Counter.builder("match.archive.bytes")
+			.description("Match document bytes archived, before and after compression")
+			.baseUnit("bytes")
+			.tag("kind", "raw")
+			.register(meterRegistry);
+		this.storedBytes = Counter.builder("match.archive.bytes")
+			.description("Match document bytes archived, before and after compression")
+			.baseUnit("bytes")
+			.tag("kind", "stored")
+			.register(meterRegistry);
+		this.documents = Counter.builder("match.archive.documents")
+			.description("Match documents appended to the raw archive")
+			.register(meterRegistry);
+		this.appendTimer = Timer.builder("match.archive.append")
+			.description("Time to append one document to the active segment")
+			.register(meterRegistry);
+		this.syncTimer = Timer.builder("match.archive.sync")
+			.description("Time to force the active segment to disk, sealing included")
+			.register(meterRegistry);
+		Gauge.builder("match.archive.compression_ratio", this, MatchArchive::compressionRatio)
+			.description("Raw to stored bytes of the documents archived since startup")
+			.register(meterRegistry);
+	}
+
+	@PostConstruct
+	public synchronized void open() throws IOException {
+		if (!properties.enabled()) {
+			return;
+		}
+		Files.createDirectories(properties.directory());
+		index = MatchArchiveIndex.open(indexPath());
+		List<Integer> unsealed;
+		try (Stream<Path> files = Files.list(properties.directory())) {
+			unsealed = files.map(MatchArchive::segmentNumber).filter(n -> n > index.coveredSegment()).sorted().toList();
+		}
+		// Segments filled before a crash interrupted their sealing are sealed now; the
+		// last one stays active
+		for (int i = 0; i < unsealed.size(); i++) {
+			activeSegment = unsealed.get(i);
+			activeSize = recover(activeSegment);
+			if (i < unsealed.size() - 1) {
+				seal();
+			}
+		}
+		if (unsealed.isEmpty()) {
+			activeSegment = index.coveredSegment() + 1;
+			activeSize = 0;
+		}
+		active = FileChannel.open(segmentPath(activeSegment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		active.position(activeSize);
+		log.info("Opened match archive, directory={}, indexedDocuments={}, activeSegment={}, activeDocuments={}",
+				properties.directory(), index.size(), activeSegment, activeEntries.size());
+	}
+
+	@PreDestroy
+	public synchronized void close() throws IOException {
+		if (active != null) {
+			active.force(false);
+			active.close();
+			active = null;
+		}
+	}
+
+	public boolean isEnabled() {
+		return properties.enabled();
+	}
+
+	/**
+	 * Appends a deflated document. It is durable once {@link #sync()} returns.
+	 */
+	public synchronized void append(long matchId, byte[] deflated, int rawLength) {
+		if (active == null) {
+			return;
+		}
+		long start = System.nanoTime();
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + deflated.length);
+		record.putInt(RECORD_MAGIC).putLong(matchId).putInt(rawLength).putInt(deflated.length).put(deflated).flip();
+		try {
+			while (record.hasRemaining()) {
+				active.write(record);
+			}
+		}
+		catch (IOException e) {
+			discardPartialRecord();
+			throw new UncheckedIOException("Could not append match " + matchId + " to the archive", e);
+		}
+		activeEntries.put(matchId, new MatchArchiveIndex.Entry(matchId, activeSegment, activeSize, deflated.length));
+		activeSize += RECORD_HEADER_BYTES + deflated.length;
+		appendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		rawBytes.increment(rawLength);
+		storedBytes.increment(deflated.length);
+		documents.increment();
+	}
+
+	/**
+	 * Forces the appended documents to disk and seals the active segment if it is full.
+	 */
+	public synchronized void sync() {
+		if (active == null) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			active.force(false);
+			if (activeSize >= properties.segmentSize().toBytes()) {
+				active.close();
+				seal();
+				activeSegment++;
+				activeSize = 0;
+				active = FileChannel.open(segmentPath(activeSegment), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Could not sync the match archive", e);
+		}
+		finally {
+			syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * The archived body of {@code matchId}, inflated, if it was archived.
+	 */
+	public Optional<byte[]> read(long matchId) {
+		MatchArchiveIndex.Entry entry;
+		synchronized (this) {
+			entry = activeEntries.get(matchId);
+			if (entry == null) {
+				entry = index.find(matchId);
+			}
+		}
+		if (entry == null) {
+			return Optional.empty();
+		}
+		try (FileChannel segment = FileChannel.open(segmentPath(entry.segment()), StandardOpenOption.READ)) {
+			ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + entry.length());
+			readFully(segment, record, entry.offset());
+			Inflater inflater = new Inflater();
+			try {
+				return Optional.of(inflate(inflater, record.array(), RECORD_HEADER_BYTES, entry.length(),
+						record.getInt(12), matchId));
+			}
+			finally {
+				inflater.end();
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Could not read match " + matchId + " from the archive", e);
+		}
+	}
+
+	/**
+	 * Opens a sequential scan over the documents with
+	 * {@code minMatchId <= match_id < maxMatchId}, skipping copies superseded by a later
+	 * append of the same match. Documents appended after this call are not returned.
+	 */
+	public synchronized MatchArchiveCursor cursor(long minMatchId, long maxMatchId) throws IOException {
+		List<MatchArchiveCursor.Segment> segments = new ArrayList<>();
+		if (active != null) {
+			for (int segment = 1; segment < activeSegment; segment++) {
+				Path path = segmentPath(segment);
+				if (Files.exists(path)) {
+					segments.add(new MatchArchiveCursor.Segment(segment, path, Files.size(path)));
+				}
+			}
+			segments.add(new MatchArchiveCursor.Segment(activeSegment, segmentPath(activeSegment), activeSize));
+		}
+		return new MatchArchiveCursor(this, segments, minMatchId, maxMatchId);
+	}
+
+	/**
+	 * Splits the archived match IDs into {@code partitions} ranges holding about as many
+	 * documents each. Returns {@code partitions + 1} ascending bounds; range {@code i} is
+	 * {@code [bounds[i], bounds[i + 1])} and together they cover every match ID.
+	 */
+	public synchronized long[] partitionBounds(int partitions) {
+		long[] bounds = new long[partitions + 1];
+		bounds[partitions] = Long.MAX_VALUE;
+		if (index.size() >= partitions) {
+			for (int i = 1; i < partitions; i++) {
+				bounds[i] = index.matchIdAt((int) ((long) i * index.size() / partitions));
+			}
+		}
+		else if (activeEntries.size() >= partitions) {
+			long[] ids = activeEntries.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+			for (int i = 1; i < partitions; i++) {
+				bounds[i] = ids[(int) ((long) i * ids.length / partitions)];
+			}
+		}
+		else {
+			// Too few documents to split, the first range takes them all
+			Arrays.fill(bounds, 1, partitions, Long.MAX_VALUE);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Whether the record at {@code offset} in {@code segment} is the latest copy of
+	 * {@code matchId}.
+	 */
+	synchronized boolean isCurrent(long matchId, int segment, long offset) {
+		MatchArchiveIndex.Entry entry = activeEntries.get(matchId);
+		if (entry == null) {
+			entry = index.find(matchId);
+		}
+		return entry != null && entry.segment() == segment && entry.offset() == offset;
+	}
+
+	/**
+	 * Inflates a document of {@code rawLength} bytes deflated into {@code input}.
+	 */
+	static byte[] inflate(Inflater inflater, byte[] input, int offset, int length, int rawLength, long matchId)
+			throws IOException {
+		inflater.setInput(input, offset, length);
+		byte[] raw = new byte[rawLength];
+		try {
+			int inflated = 0;
+			while (inflated < rawLength && !inflater.finished()) {
+				int n = inflater.inflate(raw, inflated, rawLength - inflated);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				inflated += n;
+			}
+			if (inflated != rawLength) {
+				throw new IOException("Corrupt archived match " + matchId);
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Corrupt archived match " + matchId, e);
+		}
+		return raw;
+	}
+
+	private void discardPartialRecord() {
+		try {
+			active.truncate(activeSize);
+			active.position(activeSize);
+		}
+		catch (IOException e) {
+			log.warn("Could not discard partial match archive record, segment={}, reason={}", activeSegment,
+					e.toString());
+		}
+	}
+
+	private void seal() throws IOException {
+		index = index.merge(indexPath(), new ArrayList<>(activeEntries.values()), activeSegment);
+		activeEntries.clear();
+		log.info("Sealed match archive segment, segment={}, indexedDocuments={}, indexBytes={}", activeSegment,
+				index.size(), index.sizeInBytes());
+	}
+
+	/**
+	 * Rebuilds the entries of an unsealed segment and truncates a torn last record.
+	 * @return the end of the last complete record
+	 */
+	private long recover(int segment) throws IOException {
+		try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			long position = 0;
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+			while (position + RECORD_HEADER_BYTES <= size) {
+				header.clear();
+				readFully(channel, header, position);
+				int length = header.getInt(16);
+				if (header.getInt(0) != RECORD_MAGIC || length < 0 || position + RECORD_HEADER_BYTES + length > size) {
+					break;
+				}
+				long matchId = header.getLong(4);
+				activeEntries.put(matchId, new MatchArchiveIndex.Entry(matchId, segment, position, length));
+				position += RECORD_HEADER_BYTES + length;
+			}
+			if (position < size) {
+				log.warn("Truncating torn match archive record, segment={}, position={}, size={}", segment, position,
+						size);
+				channel.truncate(position);
+				channel.force(true);
+			}
+			return position;
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + buffer.position());
+			if (n < 0) {
+				throw new IOException("Unexpected end of match archive segment");
+			}
+		}
+	}
+
+	private double compressionRatio() {
+		double stored = storedBytes.count();
+		return stored == 0 ? 0.0 : rawBytes.count() / stored;
+	}
+
+	private Path indexPath() {
+		return properties.directory().resolve(INDEX_FILE);
+	}
+
+	private Path segmentPath(int segment) {
+		return properties.directory().resolve("segment-%08d.dat".formatted(segment));
+	}
+
+	private static int segmentNumber(Path file) {
+		String name = file.getFileName().toString();
+		if (!name.startsWith("segment-") || !name.endsWith(".dat")) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(name, "segment-".length(), name.length() - ".dat".length(), 10);
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
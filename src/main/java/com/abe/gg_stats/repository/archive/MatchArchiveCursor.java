@@ -0,0 +1,132 @@
+package com.abe.gg_stats.repository.archive;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.Inflater;
+
+/**
+ * Sequential scan over the archive segments as they were when the cursor was opened,
+ * returning the documents of one match ID range. Segments are read front to back through
+ * a large buffer and the payloads of other ranges and of superseded copies are skipped
+ * without being inflated, so several cursors over disjoint ranges can share the page
+ * cache.
+ * <p>
+ * A cursor is used by one thread at a time.
+ */
+public final class MatchArchiveCursor implements Closeable {
+
+	private static final int READ_BUFFER_BYTES = 256 * 1024;
+
+	private final MatchArchive archive;
+
+	private final List<Segment> segments;
+
+	private final long minMatchId;
+
+	private final long maxMatchId;
+
+	private final Inflater inflater = new Inflater();
+
+	private int segmentIndex = -1;
+
+	private FileChannel channel;
+
+	private DataInputStream in;
+
+	private long position;
+
+	private long end;
+
+	private byte[] deflated = new byte[64 * 1024];
+
+	MatchArchiveCursor(MatchArchive archive, List<Segment> segments, long minMatchId, long maxMatchId) {
+		this.archive = archive;
+		this.segments = segments;
+		this.minMatchId = minMatchId;
+		this.maxMatchId = maxMatchId;
+	}
+
+	/**
+	 * The next document with {@code minMatchId <= match_id < maxMatchId}, or {@code null}
+	 * once the scan is complete.
+	 */
+	public Document next() throws IOException {
+		while (true) {
+			if (in == null || position + MatchArchive.RECORD_HEADER_BYTES > end) {
+				if (!openNextSegment()) {
+					return null;
+				}
+				continue;
+			}
+			long recordOffset = position;
+			if (in.readInt() != MatchArchive.RECORD_MAGIC) {
+				throw new IOException("Corrupt match archive segment " + segments.get(segmentIndex).number()
+						+ " at offset " + recordOffset);
+			}
+			long matchId = in.readLong();
+			int rawLength = in.readInt();
+			int length = in.readInt();
+			position += MatchArchive.RECORD_HEADER_BYTES + length;
+			if (matchId < minMatchId || matchId >= maxMatchId
+					|| !archive.isCurrent(matchId, segments.get(segmentIndex).number(), recordOffset)) {
+				in.skipNBytes(length);
+				continue;
+			}
+			if (deflated.length < length) {
+				deflated = new byte[Math.max(length, deflated.length * 2)];
+			}
+			in.readFully(deflated, 0, length);
+			inflater.reset();
+			return new Document(matchId, MatchArchive.inflate(inflater, deflated, 0, length, rawLength, matchId));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		closeSegment();
+	}
+
+	private boolean openNextSegment() throws IOException {
+		closeSegment();
+		if (++segmentIndex >= segments.size()) {
+			return false;
+		}
+		Segment segment = segments.get(segmentIndex);
+		channel = FileChannel.open(segment.path(), StandardOpenOption.READ);
+		in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_BYTES));
+		position = 0;
+		end = segment.size();
+		return true;
+	}
+
+	private void closeSegment() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+			in = null;
+		}
+	}
+
+	/**
+	 * An archived match body, inflated.
+	 */
+	public record Document(long matchId, byte[] body) {
+
+	}
+
+	/**
+	 * A segment file and the length of its complete records when the cursor was opened.
+	 */
+	record Segment(int number, Path path, long size) {
+
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.abe.gg_stats.repository.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorted, fixed-width index of the sealed archive segments, memory-mapped read only.
+ * <p>
+ * The file starts with a {@value #HEADER_BYTES} byte header (magic, version, the last
+ * segment covered, entry count) followed by {@value #ENTRY_BYTES} byte entries ordered by
+ * match ID: {@code match_id, segment, length, offset}. Lookups are a binary search over
+ * the mapping. The file is never changed in place: sealing a segment writes a merged copy
+ * next to it and renames it over the old one, so a reader always maps a complete index.
+ */
+final class MatchArchiveIndex {
+
+	static final int HEADER_BYTES = 16;
+
+	static final int ENTRY_BYTES = 24;
+
+	private static final int MAGIC = 0x4D41_4958; // "MAIX"
+
+	private static final int VERSION = 1;
+
+	static final MatchArchiveIndex EMPTY = new MatchArchiveIndex(null, 0, 0);
+
+	private final MappedByteBuffer mapping;
+
+	private final int coveredSegment;
+
+	private final int size;
+
+	private MatchArchiveIndex(MappedByteBuffer mapping, int coveredSegment, int size) {
+		this.mapping = mapping;
+		this.coveredSegment = coveredSegment;
+		this.size = size;
+	}
+
+	/**
+	 * Maps the index at {@code path}, or returns an empty one if there is none yet.
+	 */
+	static MatchArchiveIndex open(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return EMPTY;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (channel.size() < HEADER_BYTES || mapping.getInt(0) != MAGIC || mapping.getInt(4) != VERSION) {
+				throw new IOException("Not a match archive index: " + path);
+			}
+			int size = mapping.getInt(12);
+			if (channel.size() != HEADER_BYTES + (long) size * ENTRY_BYTES) {
+				throw new IOException("Truncated match archive index: " + path);
+			}
+			return new MatchArchiveIndex(mapping, mapping.getInt(8), size);
+		}
+	}
+
+	/**
+	 * The last segment whose entries are all in this index; 0 if none.
+	 */
+	int coveredSegment() {
+		return coveredSegment;
+	}
+
+	int size() {
+		return size;
+	}
+
+	long sizeInBytes() {
+		return HEADER_BYTES + (long) size * ENTRY_BYTES;
+	}
+
+	Entry find(long matchId) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long midId = matchIdAt(mid);
+			if (midId < matchId) {
+				low = mid + 1;
+			}
+			else if (midId > matchId) {
+				high = mid - 1;
+			}
+			else {
+				return entryAt(mid);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes this index merged with {@code added} to {@code path}, atomically replacing
+	 * it, and maps the result. Where both have a match the added entry wins.
+	 */
+	MatchArchiveIndex merge(Path path, List<Entry> added, int coveredSegment) throws IOException {
+		List<Entry> sorted = added.stream().sorted(Comparator.comparingLong(Entry::matchId)).toList();
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(coveredSegment).putInt(0);
+			int written = 0;
+			int i = 0;
+			int j = 0;
+			while (i < size || j < sorted.size()) {
+				Entry next;
+				if (j == sorted.size() || (i < size && matchIdAt(i) < sorted.get(j).matchId())) {
+					next = entryAt(i++);
+				}
+				else {
+					next = sorted.get(j++);
+					// Later duplicates in the same batch replace earlier ones
+					while (j < sorted.size() && sorted.get(j).matchId() == next.matchId()) {
+						next = sorted.get(j++);
+					}
+					if (i < size && matchIdAt(i) == next.matchId()) {
+						i++;
+					}
+				}
+				if (buffer.remaining() < ENTRY_BYTES) {
+					writeFully(out, buffer);
+				}
+				buffer.putLong(next.matchId()).putInt(next.segment()).putInt(next.length()).putLong(next.offset());
+				written++;
+			}
+			writeFully(out, buffer);
+			out.write(ByteBuffer.allocate(4).putInt(0, written), 12);
+			out.force(true);
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return open(path);
+	}
+
+	long matchIdAt(int i) {
+		return mapping.getLong(HEADER_BYTES + i * ENTRY_BYTES);
+	}
+
+	private Entry entryAt(int i) {
+		int base = HEADER_BYTES + i * ENTRY_BYTES;
+		return new Entry(mapping.getLong(base), mapping.getInt(base + 8), mapping.getLong(base + 16),
+				mapping.getInt(base + 12));
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Where an archived document is: the record starting at {@code offset} in
+	 * {@code segment}, whose deflated payload is {@code length} bytes.
+	 */
+	record Entry(long matchId, int segment, long offset, int length) {
+
+	}
+
+}
@@ -1,15 +1,71 @@
 package com.abe.gg_stats.repository.jdbc;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import lombok.RequiredArgsConstructor;
 
 @Repository
 @RequiredArgsConstructor
 public class AggregationDao {
 
+	// Team lineups of the bucket weeks and the weeks before them, which their deltas need
+	private static final String WEEKLY_LINEUPS_CTE = """
+			weeks AS (
+			    SELECT patch, epoch_week FROM buckets UNION SELECT patch, epoch_week - 1 FROM buckets
+			), base AS (
+			    SELECT m.patch, w.epoch_week, ((pb.team = 0) = m.radiant_win) AS won, array_agg(pb.hero_id ORDER BY pb.ord) AS pick_heroes
+			    FROM weeks w
+			    JOIN matches m ON m.patch = w.patch AND m.start_time >= w.epoch_week * 604800 AND m.start_time < (w.epoch_week + 1) * 604800
+			    JOIN picks_bans pb ON pb.match_id = m.match_id AND pb.is_pick = true
+			    GROUP BY m.match_id, m.patch, w.epoch_week, pb.team, m.radiant_win
+			)""";
+
+	private static final String INSERT_HERO_TREND_SQL = """
+			INSERT INTO pro_hero_trends_next (bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate, delta_vs_prev)
+			VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+			""";
+
+	private static final String INSERT_HERO_PAIR_SQL = """
+			INSERT INTO pro_hero_pair_stats_next (bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift, delta_support, delta_lift)
+			VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+			""";
+
+	// Rows of a run are staged in <name>_next, then stored in <name>_generations under a
+	// new generation that aggregate_bucket_generation points the run's buckets at
+	private static final List<AggregateTable> AGGREGATE_TABLES = List.of(
+			new AggregateTable("pro_hero_trends",
+					"bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate, delta_vs_prev"),
+			new AggregateTable("pro_hero_pair_stats",
+					"bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift, delta_support, delta_lift"));
+
+	private static final String PUBLISH_BUCKET_GENERATION_SQL = """
+			INSERT INTO aggregate_bucket_generation (bucket_type, bucket_value, generation)
+			SELECT bucket_type, bucket_value, ? FROM aggregate_bucket_next
+			ON CONFLICT (bucket_type, bucket_value) DO UPDATE SET generation=EXCLUDED.generation, published_at=now()
+			""";
+
+	private static final String RETIRE_GENERATIONS_SQL = """
+			DELETE FROM %s t USING aggregate_bucket_next b
+			WHERE t.bucket_type = b.bucket_type AND t.bucket_value = b.bucket_value AND t.generation <> ?
+			""";
+
+	// Serializes aggregate builds across nodes, which share the staging tables
+	private static final long AGGREGATE_BUILD_LOCK_KEY = 0x6767_6167_6772_0001L;
+
+	private static final int PICK_FETCH_SIZE = 10_000;
+
 	private final JdbcTemplate jdbcTemplate;
 
+	private final TransactionTemplate transactionTemplate;
+
 	public void refreshTeamPicksView() {
 		jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY pro_team_picks_mv");
 	}
@@ -33,121 +89,360 @@ public class AggregationDao {
 		jdbcTemplate.update(sql, jsonArrayLiteral);
 	}
 
-	public void aggregateWeeklyHeroTrends() {
-		// Patch-level using total team lineups as denominator
-		String patchSql = """
-				WITH base AS (
-				    SELECT m.patch, p.pick_heroes
-				    FROM matches m JOIN pro_team_picks_mv p USING(match_id)
-				), totals AS (
-				    SELECT patch, COUNT(*) AS total_lineups FROM base GROUP BY patch
-				), hero_counts AS (
-				    SELECT patch, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups
-				    FROM base GROUP BY patch, unnest(pick_heroes)
-				)
-				INSERT INTO pro_hero_trends (bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate, delta_vs_prev)
-				SELECT 'patch', t.patch::text, h.hero_id, t.total_lineups, h.hero_lineups, h.hero_lineups::double precision / t.total_lineups::double precision, NULL, NULL
-				FROM totals t JOIN hero_counts h USING(patch)
-				ON CONFLICT (bucket_type, bucket_value, hero_id) DO UPDATE SET matches=EXCLUDED.matches, picks=EXCLUDED.picks, pick_rate=EXCLUDED.pick_rate, computed_at=now();
-				""";
+	/**
+	 * The (patch, week) buckets marked dirty by {@link MatchIngestionDao#writeBatch}, one
+	 * entry per mark.
+	 */
+	public List<DirtyBucket> findDirtyBuckets() {
+		return jdbcTemplate.query("SELECT id, patch, epoch_week FROM aggregation_dirty_bucket", (rs,
+				i) -> new DirtyBucket(rs.getLong("id"), new PatchWeek(rs.getInt("patch"), rs.getLong("epoch_week"))));
+	}
 
-		// Patch-week bucket: bucket_value = patch-epoch_week
-		String patchWeekSql = """
-				WITH base AS (
-				    SELECT m.patch, floor(m.start_time/604800.0)::bigint AS epoch_week, p.pick_heroes
-				    FROM matches m JOIN pro_team_picks_mv p USING(match_id)
-				), totals AS (
-				    SELECT patch, epoch_week, COUNT(*) AS total_lineups FROM base GROUP BY patch, epoch_week
-				), hero_counts AS (
-				    SELECT patch, epoch_week, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups
-				    FROM base GROUP BY patch, epoch_week, unnest(pick_heroes)
-				), cur AS (
-				    SELECT t.patch, t.epoch_week, h.hero_id, t.total_lineups, h.hero_lineups, (h.hero_lineups::double precision / NULLIF(t.total_lineups,0)::double precision) AS pick_rate
-				    FROM totals t JOIN hero_counts h USING(patch, epoch_week)
-				), prev AS (
-				    SELECT patch, (epoch_week - 1) AS epoch_week, hero_id, pick_rate AS prev_pick_rate
-				    FROM cur
-				)
-				INSERT INTO pro_hero_trends (bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate, delta_vs_prev)
-				SELECT 'patch_week', (c.patch::text || '-' || c.epoch_week::text), c.hero_id, c.total_lineups, c.hero_lineups, c.pick_rate, NULL, (c.pick_rate - p.prev_pick_rate)
-				FROM cur c LEFT JOIN prev p ON p.patch = c.patch AND p.epoch_week = c.epoch_week AND p.hero_id = c.hero_id
-				ON CONFLICT (bucket_type, bucket_value, hero_id) DO UPDATE SET matches=EXCLUDED.matches, picks=EXCLUDED.picks, pick_rate=EXCLUDED.pick_rate, delta_vs_prev=EXCLUDED.delta_vs_prev, computed_at=now();
-				""";
+	/**
+	 * Deletes the given marks once their buckets are published. Marks added since they
+	 * were read stay for the next run.
+	 */
+	public void deleteDirtyBuckets(List<Long> ids) {
+		jdbcTemplate.batchUpdate("DELETE FROM aggregation_dirty_bucket WHERE id = ?",
+				ids.stream().map(id -> new Object[] { id }).toList());
+	}
 
-		jdbcTemplate.execute(patchSql);
-		jdbcTemplate.execute(patchWeekSql);
-	}
-
-	public void aggregateWeeklyHeroPairs() {
-		// Patch-level pairs with support/confidence/lift
-		String patchSql = """
-				WITH base AS (
-				    SELECT m.patch, p.pick_heroes
-				    FROM matches m JOIN pro_team_picks_mv p USING(match_id)
-				), totals AS (
-				    SELECT patch, COUNT(*) AS total_lineups FROM base GROUP BY patch
-				), hero_counts AS (
-				    SELECT patch, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups
-				    FROM base GROUP BY patch, unnest(pick_heroes)
-				), pairs AS (
-				    SELECT patch, LEAST(a.hero_id, b.hero_id) AS hero_id_a, GREATEST(a.hero_id, b.hero_id) AS hero_id_b, COUNT(*) AS games_together
-				    FROM base
-				    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY a(hero_id, pos_a)
-				    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY b(hero_id, pos_b)
-				    WHERE b.pos_b > a.pos_a
-				    GROUP BY patch, LEAST(a.hero_id, b.hero_id), GREATEST(a.hero_id, b.hero_id)
-				)
-				INSERT INTO pro_hero_pair_stats (bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift)
-				SELECT 'patch', p.patch::text, p.hero_id_a, p.hero_id_b, p.games_together, NULL::bigint,
-				        p.games_together::double precision / t.total_lineups::double precision AS support,
-				        p.games_together::double precision / NULLIF(hA.hero_lineups,0)::double precision AS confidence,
-				        (p.games_together::double precision / t.total_lineups::double precision) / NULLIF( (hA.hero_lineups::double precision / t.total_lineups::double precision) * (hB.hero_lineups::double precision / t.total_lineups::double precision), 0 ) AS lift
-				FROM pairs p
-				JOIN totals t USING(patch)
-				JOIN hero_counts hA ON hA.patch = p.patch AND hA.hero_id = p.hero_id_a
-				JOIN hero_counts hB ON hB.patch = p.patch AND hB.hero_id = p.hero_id_b
-				ON CONFLICT (bucket_type, bucket_value, hero_id_a, hero_id_b) DO UPDATE SET games_together=EXCLUDED.games_together, support=EXCLUDED.support, confidence=EXCLUDED.confidence, lift=EXCLUDED.lift, computed_at=now();
-				""";
+	/**
+	 * Runs {@code build} holding a PostgreSQL advisory lock, so only one node at a time
+	 * begins, builds and publishes a generation. The lock is held by a pooled connection
+	 * kept for the whole build; the build itself runs on other connections, which is why
+	 * {@code app.aggregation.build-concurrency} bounds its concurrent statements.
+	 */
+	public void withAggregateBuildLock(Runnable build) {
+		jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+			try (PreparedStatement ps = con.prepareStatement("SELECT pg_advisory_lock(?)")) {
+				ps.setLong(1, AGGREGATE_BUILD_LOCK_KEY);
+				ps.execute();
+			}
+			try {
+				build.run();
+			}
+			finally {
+				try (PreparedStatement ps = con.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+					ps.setLong(1, AGGREGATE_BUILD_LOCK_KEY);
+					ps.execute();
+				}
+			}
+			return null;
+		});
+	}
 
-		// Patch-week pairs
-		String patchWeekSql = """
-				WITH base AS (
-				    SELECT m.patch, floor(m.start_time/604800.0)::bigint AS epoch_week, p.pick_heroes
-				    FROM matches m JOIN pro_team_picks_mv p USING(match_id)
-				), totals AS (
-				    SELECT patch, epoch_week, COUNT(*) AS total_lineups FROM base GROUP BY patch, epoch_week
-				), hero_counts AS (
-				    SELECT patch, epoch_week, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups
-				    FROM base GROUP BY patch, epoch_week, unnest(pick_heroes)
-				), pairs AS (
-				    SELECT patch, epoch_week, LEAST(a.hero_id, b.hero_id) AS hero_id_a, GREATEST(a.hero_id, b.hero_id) AS hero_id_b, COUNT(*) AS games_together
-				    FROM base
-				    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY a(hero_id, pos_a)
-				    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY b(hero_id, pos_b)
-				    WHERE b.pos_b > a.pos_a
-				    GROUP BY patch, epoch_week, LEAST(a.hero_id, b.hero_id), GREATEST(a.hero_id, b.hero_id)
-				), cur AS (
-				    SELECT p.patch, p.epoch_week, p.hero_id_a, p.hero_id_b, p.games_together,
-				           (p.games_together::double precision / NULLIF(t.total_lineups,0)::double precision) AS support,
-				           (p.games_together::double precision / NULLIF(hA.hero_lineups,0)::double precision) AS confidence,
-				           ((p.games_together::double precision / NULLIF(t.total_lineups,0)::double precision) / NULLIF( (hA.hero_lineups::double precision / NULLIF(t.total_lineups,0)::double precision) * (hB.hero_lineups::double precision / NULLIF(t.total_lineups,0)::double precision), 0 )) AS lift
-				    FROM pairs p
-				    JOIN totals t USING(patch, epoch_week)
-				    JOIN hero_counts hA ON hA.patch = p.patch AND hA.epoch_week = p.epoch_week AND hA.hero_id = p.hero_id_a
-				    JOIN hero_counts hB ON hB.patch = p.patch AND hB.epoch_week = p.epoch_week AND hB.hero_id = p.hero_id_b
-				), prev AS (
-				    SELECT patch, (epoch_week - 1) AS epoch_week, hero_id_a, hero_id_b, support AS prev_support, lift AS prev_lift
-				    FROM cur
-				)
-				INSERT INTO pro_hero_pair_stats (bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift, delta_support, delta_lift)
-				SELECT 'patch_week', (c.patch::text || '-' || c.epoch_week::text), c.hero_id_a, c.hero_id_b, c.games_together, NULL::bigint,
-				       c.support, c.confidence, c.lift, (c.support - p.prev_support), (c.lift - p.prev_lift)
-				FROM cur c LEFT JOIN prev p ON p.patch = c.patch AND p.epoch_week = c.epoch_week AND p.hero_id_a = c.hero_id_a AND p.hero_id_b = c.hero_id_b
-				ON CONFLICT (bucket_type, bucket_value, hero_id_a, hero_id_b) DO UPDATE SET games_together=EXCLUDED.games_together, support=EXCLUDED.support, confidence=EXCLUDED.confidence, lift=EXCLUDED.lift, delta_support=EXCLUDED.delta_support, delta_lift=EXCLUDED.delta_lift, computed_at=now();
-				""";
+	/**
+	 * Starts a new generation of the given patches and (patch, week) buckets, which are
+	 * about to be recomputed into the {@code *_next} staging tables. Other buckets are
+	 * left where they are, so the cost follows the touched buckets rather than the
+	 * history. Callers hold {@link #withAggregateBuildLock}.
+	 */
+	public void beginAggregateBuild(Collection<Integer> patches, Collection<PatchWeek> weeks) {
+		discardAggregateBuild();
+		List<Object[]> buckets = new ArrayList<>();
+		for (Integer patch : patches) {
+			buckets.add(new Object[] { "patch", String.valueOf(patch) });
+		}
+		for (PatchWeek week : weeks) {
+			buckets.add(new Object[] { "patch_week", week.patch() + "-" + week.epochWeek() });
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO aggregate_bucket_next (bucket_type, bucket_value) VALUES (?, ?)",
+				buckets);
+	}
+
+	/**
+	 * Publishes the generation started by {@link #beginAggregateBuild}: stores the staged
+	 * rows under a new generation number and points its buckets at it in one transaction,
+	 * so {@code /highlights} reads switch from the old rows to the new ones at once and
+	 * never wait for it. The replaced rows of those buckets are deleted afterwards. A
+	 * bucket left without lineups publishes no rows and disappears.
+	 */
+	public void publishAggregateBuild() {
+		Long generation = transactionTemplate.execute(status -> {
+			Long next = jdbcTemplate.queryForObject("SELECT nextval('aggregate_generation_seq')", Long.class);
+			for (AggregateTable table : AGGREGATE_TABLES) {
+				jdbcTemplate.update("INSERT INTO %s (generation, %s) SELECT ?, %s FROM %s"
+					.formatted(table.generations(), table.columns(), table.columns(), table.next()), next);
+			}
+			jdbcTemplate.update(PUBLISH_BUCKET_GENERATION_SQL, next);
+			return next;
+		});
+		for (AggregateTable table : AGGREGATE_TABLES) {
+			jdbcTemplate.update(RETIRE_GENERATIONS_SQL.formatted(table.generations()), generation);
+		}
+		discardAggregateBuild();
+	}
+
+	/**
+	 * Empties the staging tables of a generation that will not be published.
+	 */
+	public void discardAggregateBuild() {
+		jdbcTemplate.execute("TRUNCATE aggregate_bucket_next, "
+				+ String.join(", ", AGGREGATE_TABLES.stream().map(AggregateTable::next).toList()));
+	}
+
+	/**
+	 * Recomputes the hero trends of the given patches and (patch, week) buckets into the
+	 * generation started by {@link #beginAggregateBuild}. Lineups are read from
+	 * {@code matches} and {@code picks_bans} rather than {@code pro_team_picks_mv}, so
+	 * matches written since the last view refresh count. Picks and wins are counted in
+	 * the same grouping.
+	 */
+	public void aggregateHeroTrends(Collection<Integer> patches, Collection<PatchWeek> weeks) {
+		if (!patches.isEmpty()) {
+			// Patch-level using total team lineups as denominator
+			String patchSql = """
+					WITH base AS (
+					    SELECT m.patch, ((pb.team = 0) = m.radiant_win) AS won, array_agg(pb.hero_id ORDER BY pb.ord) AS pick_heroes
+					    FROM matches m JOIN picks_bans pb ON pb.match_id = m.match_id AND pb.is_pick = true
+					    WHERE m.patch IN (%s)
+					    GROUP BY m.match_id, m.patch, pb.team, m.radiant_win
+					), totals AS (
+					    SELECT patch, COUNT(*) AS total_lineups FROM base GROUP BY patch
+					), hero_counts AS (
+					    SELECT patch, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups, COUNT(*) FILTER (WHERE won) AS hero_wins
+					    FROM base GROUP BY patch, unnest(pick_heroes)
+					)
+					INSERT INTO pro_hero_trends_next (bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate, delta_vs_prev)
+					SELECT 'patch', t.patch::text, h.hero_id, t.total_lineups, h.hero_lineups, h.hero_lineups::double precision / t.total_lineups::double precision, h.hero_wins::double precision / h.hero_lineups::double precision, NULL
+					FROM totals t JOIN hero_counts h USING(patch)
+					"""
+				.formatted(placeholders(patches.size()));
+			jdbcTemplate.update(patchSql, patches.toArray());
+		}
+
+		if (!weeks.isEmpty()) {
+			// Patch-week bucket: bucket_value = patch-epoch_week,
+			// delta against the week before
+			List<Object> args = new ArrayList<>();
+			String patchWeekSql = """
+					WITH buckets(patch, epoch_week) AS (
+					    VALUES %s
+					), %s, totals AS (
+					    SELECT patch, epoch_week, COUNT(*) AS total_lineups FROM base GROUP BY patch, epoch_week
+					), hero_counts AS (
+					    SELECT patch, epoch_week, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups, COUNT(*) FILTER (WHERE won) AS hero_wins
+					    FROM base GROUP BY patch, epoch_week, unnest(pick_heroes)
+					), cur AS (
+					    SELECT t.patch, t.epoch_week, h.hero_id, t.total_lineups, h.hero_lineups, h.hero_wins, (h.hero_lineups::double precision / NULLIF(t.total_lineups,0)::double precision) AS pick_rate
+					    FROM totals t JOIN hero_counts h USING(patch, epoch_week)
+					), prev AS (
+					    SELECT patch, (epoch_week + 1) AS epoch_week, hero_id, pick_rate AS prev_pick_rate
+					    FROM cur
+					)
+					INSERT INTO pro_hero_trends_next (bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate, delta_vs_prev)
+					SELECT 'patch_week', (c.patch::text || '-' || c.epoch_week::text), c.hero_id, c.total_lineups, c.hero_lineups, c.pick_rate, c.hero_wins::double precision / c.hero_lineups::double precision, (c.pick_rate - p.prev_pick_rate)
+					FROM cur c JOIN buckets b ON b.patch = c.patch AND b.epoch_week = c.epoch_week
+					LEFT JOIN prev p ON p.patch = c.patch AND p.epoch_week = c.epoch_week AND p.hero_id = c.hero_id
+					"""
+				.formatted(bucketValues(weeks, args), WEEKLY_LINEUPS_CTE);
+			jdbcTemplate.update(patchWeekSql, args.toArray());
+		}
+	}
+
+	/**
+	 * Recomputes the hero pair stats of the given patches and (patch, week) buckets into
+	 * the generation started by {@link #beginAggregateBuild}, from the same lineups as
+	 * {@link #aggregateHeroTrends}.
+	 */
+	public void aggregateHeroPairs(Collection<Integer> patches, Collection<PatchWeek> weeks) {
+		if (!patches.isEmpty()) {
+			// Patch-level pairs with support/confidence/lift
+			String patchSql = """
+					WITH base AS (
+					    SELECT m.patch, ((pb.team = 0) = m.radiant_win) AS won, array_agg(pb.hero_id ORDER BY pb.ord) AS pick_heroes
+					    FROM matches m JOIN picks_bans pb ON pb.match_id = m.match_id AND pb.is_pick = true
+					    WHERE m.patch IN (%s)
+					    GROUP BY m.match_id, m.patch, pb.team, m.radiant_win
+					), totals AS (
+					    SELECT patch, COUNT(*) AS total_lineups FROM base GROUP BY patch
+					), hero_counts AS (
+					    SELECT patch, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups, COUNT(*) FILTER (WHERE won) AS hero_wins
+					    FROM base GROUP BY patch, unnest(pick_heroes)
+					), pairs AS (
+					    SELECT patch, LEAST(a.hero_id, b.hero_id) AS hero_id_a, GREATEST(a.hero_id, b.hero_id) AS hero_id_b, COUNT(*) AS games_together, COUNT(*) FILTER (WHERE won) AS wins_together
+					    FROM base
+					    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY a(hero_id, pos_a)
+					    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY b(hero_id, pos_b)
+					    WHERE b.pos_b > a.pos_a
+					    GROUP BY patch, LEAST(a.hero_id, b.hero_id), GREATEST(a.hero_id, b.hero_id)
+					)
+					INSERT INTO pro_hero_pair_stats_next (bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift)
+					SELECT 'patch', p.patch::text, p.hero_id_a, p.hero_id_b, p.games_together, p.wins_together,
+					        p.games_together::double precision / t.total_lineups::double precision AS support,
+					        p.games_together::double precision / NULLIF(hA.hero_lineups,0)::double precision AS confidence,
+					        (p.games_together::double precision / t.total_lineups::double precision) / NULLIF( (hA.hero_lineups::double precision / t.total_lineups::double precision) * (hB.hero_lineups::double precision / t.total_lineups::double precision), 0 ) AS lift
+					FROM pairs p
+					JOIN totals t USING(patch)
+					JOIN hero_counts hA ON hA.patch = p.patch AND hA.hero_id = p.hero_id_a
+					JOIN hero_counts hB ON hB.patch = p.patch AND hB.hero_id = p.hero_id_b
+					"""
+				.formatted(placeholders(patches.size()));
+			jdbcTemplate.update(patchSql, patches.toArray());
+		}
+
+		if (!weeks.isEmpty()) {
+			// Patch-week pairs, deltas against the week before
+			List<Object> args = new ArrayList<>();
+			String patchWeekSql = """
+					WITH buckets(patch, epoch_week) AS (
+					    VALUES %s
+					), %s, totals AS (
+					    SELECT patch, epoch_week, COUNT(*) AS total_lineups FROM base GROUP BY patch, epoch_week
+					), hero_counts AS (
+					    SELECT patch, epoch_week, unnest(pick_heroes) AS hero_id, COUNT(*) AS hero_lineups, COUNT(*) FILTER (WHERE won) AS hero_wins
+					    FROM base GROUP BY patch, epoch_week, unnest(pick_heroes)
+					), pairs AS (
+					    SELECT patch, epoch_week, LEAST(a.hero_id, b.hero_id) AS hero_id_a, GREATEST(a.hero_id, b.hero_id) AS hero_id_b, COUNT(*) AS games_together, COUNT(*) FILTER (WHERE won) AS wins_together
+					    FROM base
+					    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY a(hero_id, pos_a)
+					    CROSS JOIN LATERAL unnest(pick_heroes) WITH ORDINALITY b(hero_id, pos_b)
+					    WHERE b.pos_b > a.pos_a
+					    GROUP BY patch, epoch_week, LEAST(a.hero_id, b.hero_id), GREATEST(a.hero_id, b.hero_id)
+					), cur AS (
+					    SELECT p.patch, p.epoch_week, p.hero_id_a, p.hero_id_b, p.games_together, p.wins_together,
+					           (p.games_together::double precision / NULLIF(t.total_lineups,0)::double precision) AS support,
+					           (p.games_together::double precision / NULLIF(hA.hero_lineups,0)::double precision) AS confidence,
+					           ((p.games_together::double precision / NULLIF(t.total_lineups,0)::double precision) / NULLIF( (hA.hero_lineups::double precision / NULLIF(t.total_lineups,0)::double precision) * (hB.hero_lineups::double precision / NULLIF(t.total_lineups,0)::double precision), 0 )) AS lift
+					    FROM pairs p
+					    JOIN totals t USING(patch, epoch_week)
+					    JOIN hero_counts hA ON hA.patch = p.patch AND hA.epoch_week = p.epoch_week AND hA.hero_id = p.hero_id_a
+					    JOIN hero_counts hB ON hB.patch = p.patch AND hB.epoch_week = p.epoch_week AND hB.hero_id = p.hero_id_b
+					), prev AS (
+					    SELECT patch, (epoch_week + 1) AS epoch_week, hero_id_a, hero_id_b, support AS prev_support, lift AS prev_lift
+					    FROM cur
+					)
+					INSERT INTO pro_hero_pair_stats_next (bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift, delta_support, delta_lift)
+					SELECT 'patch_week', (c.patch::text || '-' || c.epoch_week::text), c.hero_id_a, c.hero_id_b, c.games_together, c.wins_together,
+					       c.support, c.confidence, c.lift, (c.support - p.prev_support), (c.lift - p.prev_lift)
+					FROM cur c JOIN buckets b ON b.patch = c.patch AND b.epoch_week = c.epoch_week
+					LEFT JOIN prev p ON p.patch = c.patch AND p.epoch_week = c.epoch_week AND p.hero_id_a = c.hero_id_a AND p.hero_id_b = c.hero_id_b
+					"""
+				.formatted(bucketValues(weeks, args), WEEKLY_LINEUPS_CTE);
+			jdbcTemplate.update(patchWeekSql, args.toArray());
+		}
+	}
+
+	/**
+	 * Streams the picks of the given patches ordered by patch, match, team and draft
+	 * order, so each team lineup arrives as a run of rows. Like
+	 * {@link MatchIngestionDao#forEachMatchId}, auto-commit is switched off so the
+	 * PostgreSQL driver honours the fetch size.
+	 * @return the number of picks passed to {@code consumer}
+	 */
+	public long forEachPick(Collection<Integer> patches, PickConsumer consumer) {
+		if (patches.isEmpty()) {
+			return 0;
+		}
+		String sql = """
+				SELECT m.patch, m.start_time, pb.match_id, pb.team, pb.hero_id, (pb.team = 0) = m.radiant_win AS won
+				FROM matches m JOIN picks_bans pb ON pb.match_id = m.match_id AND pb.is_pick = true
+				WHERE m.patch IN (%s) AND m.start_time IS NOT NULL AND pb.hero_id IS NOT NULL
+				ORDER BY m.patch, pb.match_id, pb.team, pb.ord
+				""".formatted(placeholders(patches.size()));
+		Long count = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+			boolean autoCommit = con.getAutoCommit();
+			if (autoCommit) {
+				con.setAutoCommit(false);
+			}
+			try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY)) {
+				ps.setFetchSize(PICK_FETCH_SIZE);
+				int i = 1;
+				for (Integer patch : patches) {
+					ps.setInt(i++, patch);
+				}
+				long n = 0;
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						consumer.accept(rs.getInt(1), rs.getInt(2), rs.getLong(3), rs.getInt(4), rs.getInt(5),
+								rs.getBoolean(6));
+						n++;
+					}
+				}
+				return n;
+			}
+			finally {
+				if (autoCommit) {
+					con.rollback();
+					con.setAutoCommit(true);
+				}
+			}
+		});
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Inserts {@code pro_hero_trends} rows of {@code bucket_type, bucket_value, hero_id,
+	 * matches, picks, pick_rate, win_rate, delta_vs_prev} into the generation being
+	 * built, in one batch.
+	 */
+	public void insertHeroTrends(List<Object[]> rows) {
+		if (!rows.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT_HERO_TREND_SQL, rows);
+		}
+	}
+
+	/**
+	 * Inserts {@code pro_hero_pair_stats} rows of {@code bucket_type, bucket_value,
+	 * hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift,
+	 * delta_support, delta_lift} into the generation being built, in one batch.
+	 */
+	public void insertHeroPairs(List<Object[]> rows) {
+		if (!rows.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT_HERO_PAIR_SQL, rows);
+		}
+	}
+
+	private static String placeholders(int count) {
+		return String.join(",", Collections.nCopies(count, "?"));
+	}
+
+	private static String bucketValues(Collection<PatchWeek> weeks, List<Object> args) {
+		for (PatchWeek week : weeks) {
+			args.add(week.patch());
+			args.add(week.epochWeek());
+		}
+		return String.join(",", Collections.nCopies(weeks.size(), "(?::int, ?::bigint)"));
+	}
+
+	/**
+	 * Receives the rows streamed by {@link #forEachPick}.
+	 */
+	@FunctionalInterface
+	public interface PickConsumer {
+
+		void accept(int patch, int startTime, long matchId, int team, int heroId, boolean won);
+
+	}
+
+	/**
+	 * An aggregate view, with the columns its staging table carries over to the
+	 * generations table behind it.
+	 */
+	private record AggregateTable(String name, String columns) {
+
+		String next() {
+			return name + "_next";
+		}
+
+		String generations() {
+			return name + "_generations";
+		}
+
+	}
+
+	/**
+	 * A week of a patch, {@code epochWeek} counting whole weeks since the Unix epoch.
+	 */
+	public record PatchWeek(int patch, long epochWeek) {
+	}
 
-		jdbcTemplate.execute(patchSql);
-		jdbcTemplate.execute(patchWeekSql);
+	/**
+	 * A row of {@code aggregation_dirty_bucket}.
+	 */
+	public record DirtyBucket(long id, PatchWeek week) {
 	}
 
-}
\ No newline at end of file
+}
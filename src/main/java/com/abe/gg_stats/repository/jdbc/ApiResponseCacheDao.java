@@ -0,0 +1,68 @@
+package com.abe.gg_stats.repository.jdbc;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class ApiResponseCacheDao {
+
+	private static final String SELECT_SQL = """
+			SELECT endpoint, body, etag, last_modified, fetched_at, expires_at
+			FROM api_response_cache WHERE endpoint = ?
+			""";
+
+	private static final String UPSERT_SQL = """
+			INSERT INTO api_response_cache (endpoint, body, etag, last_modified, fetched_at, expires_at)
+			VALUES (?, ?, ?, ?, ?, ?)
+			ON CONFLICT (endpoint) DO UPDATE SET
+			  body = EXCLUDED.body,
+			  etag = EXCLUDED.etag,
+			  last_modified = EXCLUDED.last_modified,
+			  fetched_at = EXCLUDED.fetched_at,
+			  expires_at = EXCLUDED.expires_at
+			""";
+
+	private static final String REVALIDATE_SQL = """
+			UPDATE api_response_cache
+			SET etag = COALESCE(?, etag), last_modified = COALESCE(?, last_modified), fetched_at = ?, expires_at = ?
+			WHERE endpoint = ?
+			""";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public Optional<CachedResponse> find(String endpoint) {
+		return jdbcTemplate
+			.query(SELECT_SQL,
+					(rs, i) -> new CachedResponse(rs.getString("endpoint"), rs.getString("body"), rs.getString("etag"),
+							rs.getString("last_modified"), rs.getTimestamp("fetched_at").toInstant(),
+							rs.getTimestamp("expires_at").toInstant()),
+					endpoint)
+			.stream()
+			.findFirst();
+	}
+
+	public void upsert(CachedResponse r) {
+		jdbcTemplate.update(UPSERT_SQL, r.endpoint(), r.body(), r.etag(), r.lastModified(),
+				Timestamp.from(r.fetchedAt()), Timestamp.from(r.expiresAt()));
+	}
+
+	/**
+	 * Extends an entry after a 304. Validators are only replaced when the server sent new
+	 * ones.
+	 */
+	public void revalidate(String endpoint, String etag, String lastModified, Instant fetchedAt, Instant expiresAt) {
+		jdbcTemplate.update(REVALIDATE_SQL, etag, lastModified, Timestamp.from(fetchedAt), Timestamp.from(expiresAt),
+				endpoint);
+	}
+
+	public record CachedResponse(String endpoint, String body, String etag, String lastModified, Instant fetchedAt,
+			Instant expiresAt) {
+
+	}
+
+}
@@ -5,17 +5,32 @@ import com.abe.gg_stats.dto.response.HighlightsHeroDto;
 import com.abe.gg_stats.dto.response.HighlightsHeroPairsDto;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class HighlightsDao {
 
+	// Win rate lift: the pair's win rate over the mean win rate of its two heroes in the
+	// same bucket, so pairs of heroes that win a lot anyway do not top the list
+	private static final String WIN_COLUMNS = """
+			CAST(p.wins_together AS DOUBLE PRECISION) / NULLIF(p.games_together, 0) AS win_rate,
+			(CAST(p.wins_together AS DOUBLE PRECISION) / NULLIF(p.games_together, 0)) / NULLIF((ta.win_rate + tb.win_rate) / 2, 0) AS win_lift""";
+
+	private static final String HERO_WIN_RATES_JOIN = """
+			LEFT JOIN pro_hero_trends ta ON ta.bucket_type = p.bucket_type AND ta.bucket_value = p.bucket_value AND ta.hero_id = p.hero_id_a
+			LEFT JOIN pro_hero_trends tb ON tb.bucket_type = p.bucket_type AND tb.bucket_value = p.bucket_value AND tb.hero_id = p.hero_id_b""";
+
 	private final JdbcTemplate jdbcTemplate;
 
+	private final int winRateMinGames;
+
 	@Autowired
-	public HighlightsDao(JdbcTemplate jdbcTemplate) {
+	public HighlightsDao(JdbcTemplate jdbcTemplate,
+			@Value("${app.highlights.win-rate.min-games:10}") int winRateMinGames) {
 		this.jdbcTemplate = jdbcTemplate;
+		this.winRateMinGames = winRateMinGames;
 	}
 
 	public String latestBucketValue(String bucketType) {
@@ -46,7 +61,7 @@ public class HighlightsDao {
 
 	public List<HighlightsHeroDto> topHeroes(String bucketType, String bucketValue, int limit) {
 		String sql = """
-				SELECT hero_id, matches, picks, pick_rate, delta_vs_prev
+				SELECT hero_id, matches, picks, pick_rate, delta_vs_prev, win_rate
 				FROM pro_hero_trends
 				WHERE bucket_type=? AND bucket_value=?
 				ORDER BY pick_rate DESC, picks DESC
@@ -55,7 +70,8 @@ public class HighlightsDao {
 		return jdbcTemplate.query(sql,
 				(rs, i) -> new HighlightsHeroDto(rs.getInt("hero_id"), rs.getLong("matches"), rs.getLong("picks"),
 						rs.getDouble("pick_rate"),
-						rs.getObject("delta_vs_prev") == null ? null : rs.getDouble("delta_vs_prev")),
+						rs.getObject("delta_vs_prev") == null ? null : rs.getDouble("delta_vs_prev"),
+						rs.getObject("win_rate") == null ? null : rs.getDouble("win_rate")),
 				bucketType, bucketValue, limit);
 	}
 
@@ -69,42 +85,55 @@ public class HighlightsDao {
 		return v == null ? 0L : v;
 	}
 
+	/**
+	 * The top pairs of a bucket. Sorting by {@code win_rate} ranks pairs by their win
+	 * rate lift and leaves out pairs with fewer than
+	 * {@code app.highlights.win-rate.min-games} games together, whose win rates are
+	 * mostly noise.
+	 */
 	public List<HeroPairsDto> topPairs(String bucketType, String bucketValue, int limit, String sort) {
-		String orderBy;
 		String normalized = (sort == null ? "lift" : sort.toLowerCase());
-		orderBy = switch (normalized) {
-			case "support" -> "support DESC, games_together DESC";
-			case "confidence" -> "confidence DESC, games_together DESC";
-			case "delta_lift" -> "delta_lift DESC NULLS LAST, lift DESC";
-			case "delta_support" -> "delta_support DESC NULLS LAST, support DESC";
-			case "games" -> "games_together DESC";
-			default -> "lift DESC, support DESC";
-		};
-		String sql = String.format("""
-				SELECT hero_id_a, hero_id_b, games_together, support, confidence, lift, delta_support, delta_lift
-				FROM pro_hero_pair_stats
-				WHERE bucket_type=? AND bucket_value=?
-				ORDER BY %s
-				LIMIT ?
-				""", orderBy); // Used String.format for dynamic ORDER BY clause inside
-								// the Text Block
+		String orderBy = getOrderCriteria(normalized);
+		boolean byWinRate = normalized.equals("win_rate");
+		// Used String.format for the dynamic filter and ORDER BY
+		// clause inside the Text Block
+		String sql = String.format(
+				"""
+						SELECT p.hero_id_a, p.hero_id_b, p.games_together, p.support, p.confidence, p.lift, p.delta_support, p.delta_lift,
+						    %s
+						FROM pro_hero_pair_stats p
+						%s
+						WHERE p.bucket_type=? AND p.bucket_value=?%s
+						ORDER BY %s
+						LIMIT ?
+						""",
+				WIN_COLUMNS, HERO_WIN_RATES_JOIN, byWinRate ? " AND p.games_together >= ?" : "", orderBy);
 
 		return jdbcTemplate.query(sql, (rs, i) -> new HeroPairsDto(rs.getInt("hero_id_a"), rs.getInt("hero_id_b"),
 				rs.getLong("games_together"), rs.getDouble("support"), rs.getDouble("confidence"), rs.getDouble("lift"),
 				rs.getObject("delta_support") == null ? null : rs.getDouble("delta_support"),
-				rs.getObject("delta_lift") == null ? null : rs.getDouble("delta_lift")), bucketType, bucketValue,
-				limit);
+				rs.getObject("delta_lift") == null ? null : rs.getDouble("delta_lift"),
+				rs.getObject("win_rate") == null ? null : rs.getDouble("win_rate"),
+				rs.getObject("win_lift") == null ? null : rs.getDouble("win_lift")),
+				queryArgs(bucketType, bucketValue, byWinRate, limit));
 	}
 
+	/**
+	 * Like {@link #topPairs}, with the names and images of both heroes.
+	 */
 	public List<HighlightsHeroPairsDto> topPairsWithHeroes(String bucketType, String bucketValue, int limit,
 			String sort) {
-		String orderBy = getOrderCriteria(sort);
+		String normalized = (sort == null ? "lift" : sort.toLowerCase());
+		String orderBy = getOrderCriteria(normalized);
+		boolean byWinRate = normalized.equals("win_rate");
 
-		// Used String.format for dynamic ORDER BY clause inside the Text Block
+		// Used String.format for the dynamic filter and ORDER BY
+		// clause inside the Text Block
 		String sql = String.format(
 				"""
 						 SELECT\s
 						     p.hero_id_a, p.hero_id_b, p.games_together, p.support, p.confidence, p.lift, p.delta_support, p.delta_lift,
+						     %s,
 						     ha.localized_name AS hero_a_localized_name, hb.localized_name AS hero_b_localized_name,
 						     ha.name AS hero_a_name, hb.name AS hero_b_name,
 						     LOWER(REPLACE(ha.name, 'npc_dota_hero_', '')) AS hero_a_cdn_name,
@@ -114,33 +143,42 @@ public class HighlightsDao {
 						 FROM pro_hero_pair_stats p
 						 JOIN hero ha ON ha.id = p.hero_id_a
 						 JOIN hero hb ON hb.id = p.hero_id_b
-						 WHERE p.bucket_type=? AND p.bucket_value=?
+						 %s
+						 WHERE p.bucket_type=? AND p.bucket_value=?%s
 						 ORDER BY %s
 						 LIMIT ?
 						\s""",
-				orderBy);
-
-		return jdbcTemplate
-			.query(sql, (rs, i) -> new HighlightsHeroPairsDto(rs.getInt("hero_id_a"), rs.getInt("hero_id_b"),
-					rs.getLong("games_together"), rs.getDouble("support"), rs.getDouble("confidence"),
-					rs.getDouble("lift"), rs.getObject("delta_support") == null ? null : rs.getDouble("delta_support"),
-					rs.getObject("delta_lift") == null ? null : rs.getDouble("delta_lift"),
-					rs.getString("hero_a_localized_name"), rs.getString("hero_b_localized_name"),
-					rs.getString("hero_a_name"), rs.getString("hero_b_name"), rs.getString("hero_a_cdn_name"),
-					rs.getString("hero_b_cdn_name"), rs.getString("hero_a_img_url"), rs.getString("hero_b_img_url")),
-					bucketType, bucketValue, limit);
+				WIN_COLUMNS, HERO_WIN_RATES_JOIN, byWinRate ? " AND p.games_together >= ?" : "", orderBy);
+
+		return jdbcTemplate.query(sql,
+				(rs, i) -> new HighlightsHeroPairsDto(rs.getInt("hero_id_a"), rs.getInt("hero_id_b"),
+						rs.getLong("games_together"), rs.getDouble("support"), rs.getDouble("confidence"),
+						rs.getDouble("lift"),
+						rs.getObject("delta_support") == null ? null : rs.getDouble("delta_support"),
+						rs.getObject("delta_lift") == null ? null : rs.getDouble("delta_lift"),
+						rs.getString("hero_a_localized_name"), rs.getString("hero_b_localized_name"),
+						rs.getString("hero_a_name"), rs.getString("hero_b_name"), rs.getString("hero_a_cdn_name"),
+						rs.getString("hero_b_cdn_name"), rs.getString("hero_a_img_url"), rs.getString("hero_b_img_url"),
+						rs.getObject("win_rate") == null ? null : rs.getDouble("win_rate"),
+						rs.getObject("win_lift") == null ? null : rs.getDouble("win_lift")),
+				queryArgs(bucketType, bucketValue, byWinRate, limit));
 	}
 
-	private String getOrderCriteria(String sort) {
-		String normalized = (sort == null ? "lift" : sort.toLowerCase());
+	private Object[] queryArgs(String bucketType, String bucketValue, boolean byWinRate, int limit) {
+		return byWinRate ? new Object[] { bucketType, bucketValue, winRateMinGames, limit }
+				: new Object[] { bucketType, bucketValue, limit };
+	}
+
+	private String getOrderCriteria(String normalized) {
 		return switch (normalized) {
 			case "support" -> "p.support DESC, p.games_together DESC";
 			case "confidence" -> "p.confidence DESC, p.games_together DESC";
 			case "delta_lift" -> "p.delta_lift DESC NULLS LAST, p.lift DESC";
 			case "delta_support" -> "p.delta_support DESC NULLS LAST, p.support DESC";
 			case "games" -> "p.games_together DESC";
+			case "win_rate" -> "win_lift DESC NULLS LAST, win_rate DESC NULLS LAST, p.games_together DESC";
 			default -> "p.lift DESC, p.support DESC";
 		};
 	}
 
-}
\ No newline at end of file
+}
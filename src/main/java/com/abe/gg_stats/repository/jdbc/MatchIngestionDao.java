@@ -1,139 +1,335 @@
 package com.abe.gg_stats.repository.jdbc;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 @Repository
 @RequiredArgsConstructor
+@Slf4j
 public class MatchIngestionDao {
 
+	private static final String UPSERT_MATCH_SQL = """
+			 INSERT INTO matches (match_id, start_time, duration, pre_game_duration, radiant_win,\s
+			     league_id, series_id, series_type, cluster, lobby_type, game_mode, engine, radiant_score, dire_score,\s
+			     tower_status_radiant, tower_status_dire, barracks_status_radiant, barracks_status_dire, first_blood_time,\s
+			     radiant_team_id, radiant_name, dire_team_id, dire_name, radiant_captain, dire_captain, patch, region, replay_url,\s
+			     detail_status)\s
+			 VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,'FETCHED')\s
+			 ON CONFLICT (match_id) DO UPDATE SET\s
+			     start_time=EXCLUDED.start_time,\s
+			     duration=EXCLUDED.duration,\s
+			     pre_game_duration=EXCLUDED.pre_game_duration,\s
+			     radiant_win=EXCLUDED.radiant_win,\s
+			     league_id=EXCLUDED.league_id,\s
+			     series_id=EXCLUDED.series_id,\s
+			     series_type=EXCLUDED.series_type,\s
+			     cluster=EXCLUDED.cluster,\s
+			     lobby_type=EXCLUDED.lobby_type,\s
+			     game_mode=EXCLUDED.game_mode,\s
+			     engine=EXCLUDED.engine,\s
+			     radiant_score=EXCLUDED.radiant_score,\s
+			     dire_score=EXCLUDED.dire_score,\s
+			     tower_status_radiant=EXCLUDED.tower_status_radiant,\s
+			     tower_status_dire=EXCLUDED.tower_status_dire,\s
+			     barracks_status_radiant=EXCLUDED.barracks_status_radiant,\s
+			     barracks_status_dire=EXCLUDED.barracks_status_dire,\s
+			     first_blood_time=EXCLUDED.first_blood_time,\s
+			     radiant_team_id=EXCLUDED.radiant_team_id,\s
+			     radiant_name=EXCLUDED.radiant_name,\s
+			     dire_team_id=EXCLUDED.dire_team_id,\s
+			     dire_name=EXCLUDED.dire_name,\s
+			     radiant_captain=EXCLUDED.radiant_captain,\s
+			     dire_captain=EXCLUDED.dire_captain,\s
+			     patch=EXCLUDED.patch,\s
+			     region=EXCLUDED.region,\s
+			     replay_url=EXCLUDED.replay_url,\s
+			     detail_status='FETCHED',\s
+			     updated_at=NOW()
+			\s""";
+
+	private static final String INSERT_MATCH_SUMMARY_SQL = """
+			 INSERT INTO matches (match_id, start_time, duration, radiant_win, league_id, series_id, series_type,\s
+			     radiant_score, dire_score, radiant_team_id, radiant_name, dire_team_id, dire_name, detail_status)\s
+			 VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,'PENDING')\s
+			 ON CONFLICT (match_id) DO NOTHING
+			\s""";
+
+	private static final String UPSERT_TEAM_MATCH_SQL = """
+			 INSERT INTO team_match (team_id, match_id, radiant)\s
+			 VALUES (?,?,?)\s
+			 ON CONFLICT (team_id, match_id)\s
+			 DO NOTHING
+			\s""";
+
+	private static final String UPSERT_PICK_BAN_SQL = """
+			 INSERT INTO picks_bans (match_id, ord, is_pick, hero_id, team, player_slot)\s
+			 VALUES (?,?,?,?,?,?)\s
+			 ON CONFLICT (match_id, ord) DO UPDATE SET\s
+			     is_pick=EXCLUDED.is_pick,\s
+			     hero_id=EXCLUDED.hero_id,\s
+			     team=EXCLUDED.team,\s
+			     player_slot=EXCLUDED.player_slot
+			\s""";
+
+	private static final String UPSERT_DRAFT_TIMING_SQL = """
+			 INSERT INTO draft_timings (match_id, ord, is_pick, active_team, hero_id, player_slot, extra_time, total_time_taken)\s
+			 VALUES (?,?,?,?,?,?,?,?)\s
+			 ON CONFLICT (match_id, ord) DO UPDATE SET\s
+			     is_pick=EXCLUDED.is_pick,\s
+			     active_team=EXCLUDED.active_team,\s
+			     hero_id=EXCLUDED.hero_id,\s
+			     player_slot=EXCLUDED.player_slot,\s
+			     extra_time=EXCLUDED.extra_time,\s
+			     total_time_taken=EXCLUDED.total_time_taken
+			\s""";
+
+	private static final String UPSERT_PLAYER_MATCH_SQL = """
+			 INSERT INTO player_matches (match_id, account_id, player_slot, hero_id, win, kills, deaths, assists, level, net_worth, gold_per_min, xp_per_min, lane, lane_role, is_roaming)\s
+			 VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)\s
+			 ON CONFLICT (match_id, account_id) DO UPDATE SET\s
+			     player_slot=EXCLUDED.player_slot,\s
+			     hero_id=EXCLUDED.hero_id,\s
+			     win=EXCLUDED.win,\s
+			     kills=EXCLUDED.kills,\s
+			     deaths=EXCLUDED.deaths,\s
+			     assists=EXCLUDED.assists,\s
+			     level=EXCLUDED.level,\s
+			     net_worth=EXCLUDED.net_worth,\s
+			     gold_per_min=EXCLUDED.gold_per_min,\s
+			     xp_per_min=EXCLUDED.xp_per_min,\s
+			     lane=EXCLUDED.lane,\s
+			     lane_role=EXCLUDED.lane_role,\s
+			     is_roaming=EXCLUDED.is_roaming
+			\s""";
+
+	private static final String INSERT_ITEM_PURCHASE_EVENT_SQL = """
+			 INSERT INTO item_purchase_event (match_id, account_id, hero_id, time_s, item_key, is_radiant, patch)\s
+			 VALUES (?,?,?,?,?,?,?)\s
+			 ON CONFLICT DO NOTHING
+			\s""";
+
+	private static final String COPY_ITEM_PURCHASE_EVENT_STAGE_SQL = """
+			COPY item_purchase_event_stage (match_id, account_id, hero_id, time_s, item_key, is_radiant, patch)
+			FROM STDIN (FORMAT csv)
+			""";
+
+	private static final String MERGE_ITEM_PURCHASE_EVENT_STAGE_SQL = """
+			INSERT INTO item_purchase_event (match_id, account_id, hero_id, time_s, item_key, is_radiant, patch)
+			SELECT match_id, account_id, hero_id, time_s, item_key, is_radiant, patch
+			FROM item_purchase_event_stage
+			ON CONFLICT DO NOTHING
+			""";
+
+	private static final String RECORD_DETAIL_ATTEMPT_SQL = """
+			UPDATE matches SET detail_attempts = detail_attempts + 1 WHERE match_id = ?
+			""";
+
+	private static final String MARK_DIRTY_BUCKET_SQL = """
+			INSERT INTO aggregation_dirty_bucket (patch, epoch_week) VALUES (?, ?)
+			""";
+
+	private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+	private static final int MATCH_ID_FETCH_SIZE = 10_000;
+
 	private final JdbcTemplate jdbcTemplate;
 
-	public void upsertMatch(JsonNode m) {
-		String sql = """
-				 INSERT INTO matches (match_id, start_time, duration, pre_game_duration, radiant_win,\s
-				     league_id, series_id, series_type, cluster, lobby_type, game_mode, engine, radiant_score, dire_score,\s
-				     tower_status_radiant, tower_status_dire, barracks_status_radiant, barracks_status_dire, first_blood_time,\s
-				     radiant_team_id, radiant_name, dire_team_id, dire_name, radiant_captain, dire_captain, patch, region, replay_url)\s
-				 VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)\s
-				 ON CONFLICT (match_id) DO UPDATE SET\s
-				     start_time=EXCLUDED.start_time,\s
-				     duration=EXCLUDED.duration,\s
-				     pre_game_duration=EXCLUDED.pre_game_duration,\s
-				     radiant_win=EXCLUDED.radiant_win,\s
-				     league_id=EXCLUDED.league_id,\s
-				     series_id=EXCLUDED.series_id,\s
-				     series_type=EXCLUDED.series_type,\s
-				     cluster=EXCLUDED.cluster,\s
-				     lobby_type=EXCLUDED.lobby_type,\s
-				     game_mode=EXCLUDED.game_mode,\s
-				     engine=EXCLUDED.engine,\s
-				     radiant_score=EXCLUDED.radiant_score,\s
-				     dire_score=EXCLUDED.dire_score,\s
-				     tower_status_radiant=EXCLUDED.tower_status_radiant,\s
-				     tower_status_dire=EXCLUDED.tower_status_dire,\s
-				     barracks_status_radiant=EXCLUDED.barracks_status_radiant,\s
-				     barracks_status_dire=EXCLUDED.barracks_status_dire,\s
-				     first_blood_time=EXCLUDED.first_blood_time,\s
-				     radiant_team_id=EXCLUDED.radiant_team_id,\s
-				     radiant_name=EXCLUDED.radiant_name,\s
-				     dire_team_id=EXCLUDED.dire_team_id,\s
-				     dire_name=EXCLUDED.dire_name,\s
-				     radiant_captain=EXCLUDED.radiant_captain,\s
-				     dire_captain=EXCLUDED.dire_captain,\s
-				     patch=EXCLUDED.patch,\s
-				     region=EXCLUDED.region,\s
-				     replay_url=EXCLUDED.replay_url,\s
-				     updated_at=NOW();
-				\s""";
-
-		jdbcTemplate.update(sql, m.path("match_id").asLong(), m.path("start_time").asInt(), m.path("duration").asInt(),
-				m.path("pre_game_duration").asInt(0), m.path("radiant_win").asBoolean(), m.path("leagueid").asLong(0),
-				m.path("series_id").asLong(0), m.path("series_type").asInt(0), m.path("cluster").asInt(0),
-				m.path("lobby_type").asInt(0), m.path("game_mode").asInt(0), m.path("engine").asInt(0),
-				m.path("radiant_score").asInt(0), m.path("dire_score").asInt(0),
-				m.path("tower_status_radiant").asInt(0), m.path("tower_status_dire").asInt(0),
-				m.path("barracks_status_radiant").asInt(0), m.path("barracks_status_dire").asInt(0),
-				m.path("first_blood_time").asInt(0), m.path("radiant_team_id").asLong(0),
-				m.path("radiant_name").asText(null), m.path("dire_team_id").asLong(0), m.path("dire_name").asText(null),
-				m.path("radiant_captain").asLong(0), m.path("dire_captain").asLong(0), m.path("patch").asInt(0),
-				m.path("region").asInt(0), m.path("replay_url").asText(null));
+	private final MeterRegistry meterRegistry;
+
+	@Value("${app.batch.promatches.purchase-events.copy-enabled:true}")
+	private boolean purchaseEventCopyEnabled;
+
+	/**
+	 * Flushes all rows buffered for a chunk, one batched statement per table. Tables are
+	 * written parents first so the foreign keys of {@code team_match},
+	 * {@code picks_bans}, {@code draft_timings}, {@code player_matches} and
+	 * {@code item_purchase_event} are always satisfied. The (patch, week) buckets of the
+	 * matches are marked dirty in the same transaction, so hero aggregation sees the mark
+	 * exactly when it can see the rows.
+	 */
+	public void writeBatch(MatchRowBatch batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		flush("matches", UPSERT_MATCH_SQL, batch.getMatches());
+		flush("team_match", UPSERT_TEAM_MATCH_SQL, batch.getTeamMatches());
+		flush("picks_bans", UPSERT_PICK_BAN_SQL, batch.getPickBans());
+		flush("draft_timings", UPSERT_DRAFT_TIMING_SQL, batch.getDraftTimings());
+		flush("player_matches", UPSERT_PLAYER_MATCH_SQL, batch.getPlayerMatches());
+		if (purchaseEventCopyEnabled) {
+			bulkLoadItemPurchaseEvents(batch.getItemPurchaseEvents());
+		}
+		else {
+			flush("item_purchase_event", INSERT_ITEM_PURCHASE_EVENT_SQL, batch.getItemPurchaseEvents());
+		}
+		flush("aggregation_dirty_bucket", MARK_DIRTY_BUCKET_SQL,
+				batch.getTouchedBuckets()
+					.stream()
+					.map(bucket -> new Object[] { bucket.patch(), bucket.epochWeek() })
+					.toList());
+	}
+
+	/**
+	 * Stores {@code /proMatches} summaries as {@code PENDING} matches with their team
+	 * sides, leaving matches that are already stored untouched.
+	 */
+	public void writeSummaries(MatchRowBatch batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		flush("matches", INSERT_MATCH_SUMMARY_SQL, batch.getMatches());
+		flush("team_match", UPSERT_TEAM_MATCH_SQL, batch.getTeamMatches());
+	}
+
+	/**
+	 * The next pending matches of the detail queue: matches of {@code priorityLeagueIds}
+	 * first, then the rest, newest first within each; matches that failed
+	 * {@code maxAttempts} times are left out.
+	 */
+	public List<Long> findPendingMatchDetails(List<Long> priorityLeagueIds, int maxAttempts, int limit) {
+		StringBuilder sql = new StringBuilder(
+				"SELECT match_id FROM matches WHERE detail_status = 'PENDING' AND detail_attempts < ? ORDER BY ");
+		List<Object> args = new ArrayList<>();
+		args.add(maxAttempts);
+		if (!priorityLeagueIds.isEmpty()) {
+			sql.append("CASE WHEN league_id IN (")
+				.append(String.join(",", Collections.nCopies(priorityLeagueIds.size(), "?")))
+				.append(") THEN 0 ELSE 1 END, ");
+			args.addAll(priorityLeagueIds);
+		}
+		sql.append("match_id DESC LIMIT ?");
+		args.add(limit);
+		return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+	}
+
+	/**
+	 * Counts a detail fetch attempt for each match, so one that keeps failing drops out
+	 * of the queue.
+	 */
+	public void recordDetailAttempts(List<Long> matchIds) {
+		jdbcTemplate.batchUpdate(RECORD_DETAIL_ATTEMPT_SQL, matchIds.stream().map(id -> new Object[] { id }).toList());
 	}
 
-	public void upsertTeamMatch(long matchId, long teamId, boolean radiant) {
-		String sql = """
-				 INSERT INTO team_match (team_id, match_id, radiant)\s
-				 VALUES (?,?,?)\s
-				 ON CONFLICT (team_id, match_id)\s
-				 DO NOTHING
-				\s""";
-		jdbcTemplate.update(sql, teamId, matchId, radiant);
+	/**
+	 * Streams purchase events into the unlogged {@code item_purchase_event_stage} table
+	 * with {@code COPY FROM STDIN} and merges them into {@code item_purchase_event} with
+	 * one set-based insert. Staged rows are only visible to the current transaction and
+	 * are deleted before it commits, so concurrent chunks never see each other's rows.
+	 * Falls back to the batched insert when the connection is not PostgreSQL (H2 in
+	 * tests).
+	 */
+	public void bulkLoadItemPurchaseEvents(List<Object[]> rows) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		Boolean copied = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+			if (!con.isWrapperFor(PGConnection.class)) {
+				return false;
+			}
+			copyIn(con.unwrap(PGConnection.class), rows);
+			return true;
+		});
+		if (!Boolean.TRUE.equals(copied)) {
+			log.debug("COPY unavailable, falling back to batched insert, table=item_purchase_event");
+			flush("item_purchase_event", INSERT_ITEM_PURCHASE_EVENT_SQL, rows);
+			return;
+		}
+		jdbcTemplate.update(MERGE_ITEM_PURCHASE_EVENT_STAGE_SQL);
+		jdbcTemplate.update("DELETE FROM item_purchase_event_stage");
+		recordFlush("item_purchase_event", rows.size(), System.nanoTime() - start);
 	}
 
-	public void upsertPickBan(long matchId, int ord, boolean isPick, Integer heroId, int team, Integer playerSlot) {
-		String sql = """
-				 INSERT INTO picks_bans (match_id, ord, is_pick, hero_id, team, player_slot)\s
-				 VALUES (?,?,?,?,?,?)\s
-				 ON CONFLICT (match_id, ord) DO UPDATE SET\s
-				     is_pick=EXCLUDED.is_pick,\s
-				     hero_id=EXCLUDED.hero_id,\s
-				     team=EXCLUDED.team,\s
-				     player_slot=EXCLUDED.player_slot
-				\s""";
-		jdbcTemplate.update(sql, matchId, ord, isPick, heroId, team, playerSlot);
+	private void copyIn(PGConnection connection, List<Object[]> rows) throws SQLException {
+		CopyIn copyIn = connection.getCopyAPI().copyIn(COPY_ITEM_PURCHASE_EVENT_STAGE_SQL);
+		try {
+			StringBuilder buffer = new StringBuilder(COPY_BUFFER_BYTES);
+			for (Object[] row : rows) {
+				appendCsvRow(buffer, row);
+				if (buffer.length() >= COPY_BUFFER_BYTES) {
+					writeToCopy(copyIn, buffer);
+				}
+			}
+			writeToCopy(copyIn, buffer);
+			copyIn.endCopy();
+		}
+		finally {
+			if (copyIn.isActive()) {
+				copyIn.cancelCopy();
+			}
+		}
 	}
 
-	public void upsertDraftTiming(long matchId, int ord, boolean isPick, Integer activeTeam, Integer heroId,
-			Integer playerSlot, Integer extraTime, Integer totalTime) {
-		String sql = """
-				 INSERT INTO draft_timings (match_id, ord, is_pick, active_team, hero_id, player_slot, extra_time, total_time_taken)\s
-				 VALUES (?,?,?,?,?,?,?,?)\s
-				 ON CONFLICT (match_id, ord) DO UPDATE SET\s
-				     is_pick=EXCLUDED.is_pick,\s
-				     active_team=EXCLUDED.active_team,\s
-				     hero_id=EXCLUDED.hero_id,\s
-				     player_slot=EXCLUDED.player_slot,\s
-				     extra_time=EXCLUDED.extra_time,\s
-				     total_time_taken=EXCLUDED.total_time_taken
-				\s""";
-		jdbcTemplate.update(sql, matchId, ord, isPick, activeTeam, heroId, playerSlot, extraTime, totalTime);
+	private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+		if (buffer.isEmpty()) {
+			return;
+		}
+		byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+		copyIn.writeToCopy(bytes, 0, bytes.length);
+		buffer.setLength(0);
 	}
 
-	public void upsertPlayerMatch(long matchId, long accountId, int playerSlot, int heroId, Boolean win, Integer kills,
-			Integer deaths, Integer assists, Integer level, Integer netWorth, Integer gpm, Integer xpm, Integer lane,
-			Integer laneRole, Boolean isRoaming) {
-		String sql = """
-				 INSERT INTO player_matches (match_id, account_id, player_slot, hero_id, win, kills, deaths, assists, level, net_worth, gold_per_min, xp_per_min, lane, lane_role, is_roaming)\s
-				 VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)\s
-				 ON CONFLICT (match_id, account_id) DO UPDATE SET\s
-				     player_slot=EXCLUDED.player_slot,\s
-				     hero_id=EXCLUDED.hero_id,\s
-				     win=EXCLUDED.win,\s
-				     kills=EXCLUDED.kills,\s
-				     deaths=EXCLUDED.deaths,\s
-				     assists=EXCLUDED.assists,\s
-				     level=EXCLUDED.level,\s
-				     net_worth=EXCLUDED.net_worth,\s
-				     gold_per_min=EXCLUDED.gold_per_min,\s
-				     xp_per_min=EXCLUDED.xp_per_min,\s
-				     lane=EXCLUDED.lane,\s
-				     lane_role=EXCLUDED.lane_role,\s
-				     is_roaming=EXCLUDED.is_roaming
-				\s""";
-		jdbcTemplate.update(sql, matchId, accountId, playerSlot, heroId, win, kills, deaths, assists, level, netWorth,
-				gpm, xpm, lane, laneRole, isRoaming);
+	/**
+	 * Appends one row in PostgreSQL CSV format. Text values are always quoted, so an
+	 * unquoted empty field unambiguously means NULL.
+	 */
+	static void appendCsvRow(StringBuilder out, Object[] row) {
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			Object value = row[i];
+			if (value instanceof String text) {
+				out.append('"').append(text.replace("\"", "\"\"")).append('"');
+			}
+			else if (value != null) {
+				out.append(value);
+			}
+		}
+		out.append('\n');
 	}
 
-	public void insertItemPurchaseEvent(long matchId, long accountId, int heroId, int timeS, String itemKey,
-			boolean isRadiant, Integer patch) {
-		String sql = """
-				 INSERT INTO item_purchase_event (match_id, account_id, hero_id, time_s, item_key, is_radiant, patch)\s
-				 VALUES (?,?,?,?,?,?,?)\s
-				 ON CONFLICT DO NOTHING
-				\s""";
-		jdbcTemplate.update(sql, matchId, accountId, heroId, timeS, itemKey, isRadiant, patch);
+	private void flush(String table, String sql, List<Object[]> rows) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		jdbcTemplate.batchUpdate(sql, rows);
+		recordFlush(table, rows.size(), System.nanoTime() - start);
+	}
+
+	private void recordFlush(String table, int rowCount, long durationNs) {
+		double rowsPerSecond = rowCount / Math.max(durationNs / 1_000_000_000.0, 1e-9);
+		Timer.builder("match.ingestion.flush")
+			.tag("table", table)
+			.register(meterRegistry)
+			.record(durationNs, TimeUnit.NANOSECONDS);
+		Counter.builder("match.ingestion.rows").tag("table", table).register(meterRegistry).increment(rowCount);
+		DistributionSummary.builder("match.ingestion.rows_per_second")
+			.tag("table", table)
+			.register(meterRegistry)
+			.record(rowsPerSecond);
+		log.debug("Flushed batch, table={}, rows={}, durationMs={}, rowsPerSec={}", table, rowCount,
+				durationNs / 1_000_000, String.format("%.0f", rowsPerSecond));
 	}
 
 	public Long getMinMatchId() {
@@ -141,11 +337,53 @@ public class MatchIngestionDao {
 		return jdbcTemplate.queryForObject(sql, Long.class);
 	}
 
+	/**
+	 * The lowest stored match ID in {@code [fromMatchId, toMatchId)}, or {@code null} if
+	 * there is none.
+	 */
+	public Long getMinMatchIdBetween(long fromMatchId, long toMatchId) {
+		String sql = "SELECT MIN(match_id) FROM matches WHERE match_id >= ? AND match_id < ?";
+		return jdbcTemplate.queryForObject(sql, Long.class, fromMatchId, toMatchId);
+	}
+
 	public Long getMaxMatchId() {
 		String sql = "SELECT MAX(match_id) FROM matches";
 		return jdbcTemplate.queryForObject(sql, Long.class);
 	}
 
+	/**
+	 * Streams every match ID in ascending order without materializing the result. The
+	 * PostgreSQL driver only honours the fetch size inside a transaction, so auto-commit
+	 * is switched off for the duration of the query.
+	 * @return the number of IDs passed to {@code consumer}
+	 */
+	public long forEachMatchId(LongConsumer consumer) {
+		Long count = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+			boolean autoCommit = con.getAutoCommit();
+			if (autoCommit) {
+				con.setAutoCommit(false);
+			}
+			try (PreparedStatement ps = con.prepareStatement("SELECT match_id FROM matches ORDER BY match_id")) {
+				ps.setFetchSize(MATCH_ID_FETCH_SIZE);
+				long n = 0;
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						consumer.accept(rs.getLong(1));
+						n++;
+					}
+				}
+				return n;
+			}
+			finally {
+				if (autoCommit) {
+					con.rollback();
+					con.setAutoCommit(true);
+				}
+			}
+		});
+		return count == null ? 0 : count;
+	}
+
 	public void refreshProTeamPicksMv() {
 		// Simple one-liner, no real benefit to using a text block
 		jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY pro_team_picks_mv");
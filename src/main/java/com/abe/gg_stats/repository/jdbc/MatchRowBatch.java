@@ -0,0 +1,113 @@
+package com.abe.gg_stats.repository.jdbc;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PatchWeek;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per-chunk buffer of match rows, one list of JDBC arguments per target table.
+ * <p>
+ * Rows are collected while a chunk is parsed and flushed by
+ * {@link MatchIngestionDao#writeBatch(MatchRowBatch)} with one batched statement per
+ * table, instead of one round-trip per row.
+ */
+public class MatchRowBatch {
+
+	private final List<Object[]> matches = new ArrayList<>();
+
+	private final List<Object[]> teamMatches = new ArrayList<>();
+
+	private final List<Object[]> pickBans = new ArrayList<>();
+
+	private final List<Object[]> draftTimings = new ArrayList<>();
+
+	private final List<Object[]> playerMatches = new ArrayList<>();
+
+	private final List<Object[]> itemPurchaseEvents = new ArrayList<>();
+
+	private final Set<PatchWeek> touchedBuckets = new LinkedHashSet<>();
+
+	public void addMatch(OpenDotaMatchDetailDto m) {
+		matches.add(new Object[] { m.matchId(), m.startTime(), m.duration(), m.preGameDuration(), m.radiantWin(),
+				m.leagueId(), m.seriesId(), m.seriesType(), m.cluster(), m.lobbyType(), m.gameMode(), m.engine(),
+				m.radiantScore(), m.direScore(), m.towerStatusRadiant(), m.towerStatusDire(), m.barracksStatusRadiant(),
+				m.barracksStatusDire(), m.firstBloodTime(), m.radiantTeamId(), m.radiantName(), m.direTeamId(),
+				m.direName(), m.radiantCaptain(), m.direCaptain(), m.patch(), m.region(), m.replayUrl() });
+		touchedBuckets.add(new PatchWeek(m.patch(), Math.floorDiv(m.startTime(), 604800)));
+	}
+
+	/**
+	 * A {@code /proMatches} summary row, stored until the details are fetched.
+	 */
+	public void addMatchSummary(long matchId, Integer startTime, Integer duration, Boolean radiantWin, Long leagueId,
+			Long seriesId, Integer seriesType, Integer radiantScore, Integer direScore, Long radiantTeamId,
+			String radiantName, Long direTeamId, String direName) {
+		matches.add(new Object[] { matchId, startTime, duration, radiantWin, leagueId, seriesId, seriesType,
+				radiantScore, direScore, radiantTeamId, radiantName, direTeamId, direName });
+	}
+
+	public void addTeamMatch(long matchId, long teamId, boolean radiant) {
+		teamMatches.add(new Object[] { teamId, matchId, radiant });
+	}
+
+	public void addPickBan(long matchId, int ord, boolean isPick, Integer heroId, int team, Integer playerSlot) {
+		pickBans.add(new Object[] { matchId, ord, isPick, heroId, team, playerSlot });
+	}
+
+	public void addDraftTiming(long matchId, int ord, boolean isPick, Integer activeTeam, Integer heroId,
+			Integer playerSlot, Integer extraTime, Integer totalTime) {
+		draftTimings.add(new Object[] { matchId, ord, isPick, activeTeam, heroId, playerSlot, extraTime, totalTime });
+	}
+
+	public void addPlayerMatch(long matchId, long accountId, int playerSlot, int heroId, Boolean win, Integer kills,
+			Integer deaths, Integer assists, Integer level, Integer netWorth, Integer gpm, Integer xpm, Integer lane,
+			Integer laneRole, Boolean isRoaming) {
+		playerMatches.add(new Object[] { matchId, accountId, playerSlot, heroId, win, kills, deaths, assists, level,
+				netWorth, gpm, xpm, lane, laneRole, isRoaming });
+	}
+
+	public void addItemPurchaseEvent(long matchId, long accountId, int heroId, int timeS, String itemKey,
+			boolean isRadiant, Integer patch) {
+		itemPurchaseEvents.add(new Object[] { matchId, accountId, heroId, timeS, itemKey, isRadiant, patch });
+	}
+
+	public boolean isEmpty() {
+		return matches.isEmpty();
+	}
+
+	public List<Object[]> getMatches() {
+		return matches;
+	}
+
+	public List<Object[]> getTeamMatches() {
+		return teamMatches;
+	}
+
+	public List<Object[]> getPickBans() {
+		return pickBans;
+	}
+
+	public List<Object[]> getDraftTimings() {
+		return draftTimings;
+	}
+
+	public List<Object[]> getPlayerMatches() {
+		return playerMatches;
+	}
+
+	public List<Object[]> getItemPurchaseEvents() {
+		return itemPurchaseEvents;
+	}
+
+	/**
+	 * The (patch, week) buckets of the detailed matches, whose hero aggregates have to be
+	 * recomputed.
+	 */
+	public Set<PatchWeek> getTouchedBuckets() {
+		return touchedBuckets;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.abe.gg_stats.repository.jdbc;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Claims and returns blocks of the shared daily request budget in {@code api_rate_limit}.
+ * Each call is a single atomic statement on the budget row, so nodes never overwrite each
+ * other's counts.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RateLimitLeaseDao {
+
+	// The CTE locks the row and resets yesterday's count; the grant is capped at what
+	// is left of the daily limit
+	private static final String LEASE_SQL = """
+			WITH cur AS (
+			  SELECT id, CASE WHEN daily_window_start = ? THEN daily_requests ELSE 0 END AS used
+			  FROM api_rate_limit WHERE endpoint = ? FOR UPDATE
+			)
+			UPDATE api_rate_limit a
+			SET daily_requests = cur.used + LEAST(?, GREATEST(? - cur.used, 0)),
+			    daily_window_start = ?,
+			    window_start = CURRENT_TIMESTAMP,
+			    updated_at = CURRENT_TIMESTAMP
+			FROM cur
+			WHERE a.id = cur.id
+			RETURNING a.daily_requests - cur.used AS granted, a.daily_requests AS daily_requests
+			""";
+
+	private static final String RELEASE_SQL = """
+			UPDATE api_rate_limit
+			SET daily_requests = GREATEST(daily_requests - ?, 0), updated_at = CURRENT_TIMESTAMP
+			WHERE endpoint = ? AND daily_window_start = ?
+			""";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Claims up to {@code requested} permits of {@code day}'s budget.
+	 * @return the grant, which may be smaller than requested (0 once the budget is
+	 * spent), or empty if there is no budget row for {@code endpoint}
+	 */
+	public Optional<LeaseGrant> lease(String endpoint, LocalDate day, int requested, int dailyLimit) {
+		return jdbcTemplate
+			.query(LEASE_SQL, (rs, i) -> new LeaseGrant(rs.getInt("granted"), rs.getInt("daily_requests")), day,
+					endpoint, requested, dailyLimit, day)
+			.stream()
+			.findFirst();
+	}
+
+	/**
+	 * Gives unused permits of {@code day}'s budget back. A no-op once the row has rolled
+	 * over to a later day.
+	 */
+	public void release(String endpoint, LocalDate day, int unused) {
+		jdbcTemplate.update(RELEASE_SQL, unused, endpoint, day);
+	}
+
+	/**
+	 * @param granted permits claimed by this lease
+	 * @param dailyRequests permits claimed by all nodes today, this lease included
+	 */
+	public record LeaseGrant(int granted, int dailyRequests) {
+
+	}
+
+}
@@ -1,30 +1,177 @@
 package com.abe.gg_stats.service;
 
 import com.abe.gg_stats.repository.jdbc.AggregationDao;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.DirtyBucket;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PatchWeek;
+import com.abe.gg_stats.service.aggregation.AggregationEngine;
+import com.abe.gg_stats.service.aggregation.InMemoryHeroAggregator;
+import com.abe.gg_stats.service.aggregation.RefreshGraph;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
+@Slf4j
 public class AggregationService {
 
 	private final OpenDotaApiService api;
 
 	private final AggregationDao dao;
 
+	private final InMemoryHeroAggregator inMemoryAggregator;
+
+	private final AggregationEngine engine;
+
+	private final boolean aggregateAfterIngest;
+
+	private final Executor aggregationExecutor;
+
+	private final AtomicBoolean aggregationQueued = new AtomicBoolean();
+
+	private final ReentrantLock aggregationLock = new ReentrantLock();
+
+	private final Executor refreshExecutor;
+
+	private final int buildConcurrency;
+
+	private final MeterRegistry meterRegistry;
+
 	@Autowired
-	public AggregationService(OpenDotaApiService api, AggregationDao dao) {
+	public AggregationService(OpenDotaApiService api, AggregationDao dao, InMemoryHeroAggregator inMemoryAggregator,
+			MeterRegistry meterRegistry, @Value("${app.aggregation.engine:SQL}") AggregationEngine engine,
+			@Value("${app.aggregation.after-ingest:true}") boolean aggregateAfterIngest,
+			@Value("${app.aggregation.build-concurrency:2}") int buildConcurrency) {
+		this(api, dao, inMemoryAggregator, meterRegistry, engine, aggregateAfterIngest, buildConcurrency,
+				Executors.newSingleThreadExecutor(r -> {
+					Thread t = new Thread(r, "hero-trend-aggregation");
+					t.setDaemon(true);
+					return t;
+				}),
+				// Tasks block on SQL and the hero aggregates task on its own graph, so a
+				// virtual thread each rather than a pool that nested waits could starve
+				Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("aggregation-refresh-", 0).factory()));
+	}
+
+	AggregationService(OpenDotaApiService api, AggregationDao dao, InMemoryHeroAggregator inMemoryAggregator,
+			MeterRegistry meterRegistry, AggregationEngine engine, boolean aggregateAfterIngest, int buildConcurrency,
+			Executor aggregationExecutor, Executor refreshExecutor) {
 		this.api = api;
 		this.dao = dao;
+		this.inMemoryAggregator = inMemoryAggregator;
+		this.meterRegistry = meterRegistry;
+		this.engine = engine;
+		this.aggregateAfterIngest = aggregateAfterIngest;
+		this.buildConcurrency = buildConcurrency;
+		this.aggregationExecutor = aggregationExecutor;
+		this.refreshExecutor = refreshExecutor;
 	}
 
+	/**
+	 * Upserts the patch constants, refreshes the materialized views and recomputes the
+	 * touched hero aggregates. None of these read what another writes (the aggregates
+	 * come from {@code matches} and {@code picks_bans}, not {@code pro_team_picks_mv}),
+	 * so all four run concurrently and a failure in one does not hold back the others.
+	 */
 	public void refreshPatchesAndAggregations() {
-		api.getPatches().ifPresent(json -> {
-			dao.upsertPatches(json.toString());
-		});
-		dao.refreshTeamPicksView();
-		dao.aggregateWeeklyHeroTrends();
-		dao.aggregateWeeklyHeroPairs();
-		dao.refreshHeroItemPopularityView();
+		new RefreshGraph("refresh", refreshExecutor, meterRegistry)
+			.task("patch_constants", () -> api.getPatches().ifPresent(json -> dao.upsertPatches(json.toString())))
+			.task("team_picks_mv", dao::refreshTeamPicksView)
+			.task("hero_aggregates", this::aggregateTouchedBuckets)
+			.task("hero_item_popularity_mv", dao::refreshHeroItemPopularityView)
+			.run();
+	}
+
+	/**
+	 * Queues {@link #aggregateTouchedBuckets()} on the aggregation thread. Requests made
+	 * while one is still queued are folded into it, so a burst of committed chunks costs
+	 * a single run. Does nothing unless {@code app.aggregation.after-ingest} is set.
+	 */
+	public void requestTrendAggregation() {
+		if (aggregateAfterIngest && aggregationQueued.compareAndSet(false, true)) {
+			aggregationExecutor.execute(() -> {
+				aggregationQueued.set(false);
+				try {
+					aggregateTouchedBuckets();
+				}
+				catch (RuntimeException e) {
+					log.warn("Hero trend aggregation failed, reason={}", e.toString());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Recomputes the hero trends and pairs of the (patch, week) buckets marked dirty by
+	 * match ingestion, the weeks after them whose deltas depend on them, and their
+	 * patches, then deletes the marks it read. Marks committed meanwhile, however long
+	 * their transaction ran, are left for the next run. The buckets are rebuilt into a
+	 * new generation that readers switch to at once, so they never see a partly
+	 * recomputed bucket. With the SQL engine the patch and patch-week statements of
+	 * trends and pairs run concurrently, at most
+	 * {@code app.aggregation.build-concurrency} at once: the build lock already holds a
+	 * pooled connection, and the other refresh tasks may be running alongside. Runs on
+	 * other nodes wait for this one.
+	 */
+	public void aggregateTouchedBuckets() {
+		// A lock rather than synchronized: the refresh graph calls this on a virtual
+		// thread, which would pin its carrier while waiting for the hero aggregates graph
+		aggregationLock.lock();
+		try {
+			dao.withAggregateBuildLock(this::aggregateTouchedBucketsLocked);
+		}
+		finally {
+			aggregationLock.unlock();
+		}
+	}
+
+	private void aggregateTouchedBucketsLocked() {
+		List<DirtyBucket> dirty = dao.findDirtyBuckets();
+		if (dirty.isEmpty()) {
+			return;
+		}
+		Set<Integer> patches = new TreeSet<>();
+		Set<PatchWeek> weeks = new LinkedHashSet<>();
+		for (DirtyBucket bucket : dirty) {
+			PatchWeek week = bucket.week();
+			patches.add(week.patch());
+			weeks.add(week);
+			weeks.add(new PatchWeek(week.patch(), week.epochWeek() + 1));
+		}
+		RefreshGraph graph = new RefreshGraph("hero_aggregates", refreshExecutor, meterRegistry)
+			.maxConcurrency(buildConcurrency)
+			.task("begin_build", () -> dao.beginAggregateBuild(patches, weeks));
+		if (engine == AggregationEngine.JVM) {
+			graph.task("jvm_engine", () -> inMemoryAggregator.aggregate(patches, weeks), "begin_build")
+				.task("publish", dao::publishAggregateBuild, "jvm_engine");
+		}
+		else {
+			graph.task("trends_patch", () -> dao.aggregateHeroTrends(patches, Set.of()), "begin_build")
+				.task("trends_patch_week", () -> dao.aggregateHeroTrends(Set.of(), weeks), "begin_build")
+				.task("pairs_patch", () -> dao.aggregateHeroPairs(patches, Set.of()), "begin_build")
+				.task("pairs_patch_week", () -> dao.aggregateHeroPairs(Set.of(), weeks), "begin_build")
+				.task("publish", dao::publishAggregateBuild, "trends_patch", "trends_patch_week", "pairs_patch",
+						"pairs_patch_week");
+		}
+		try {
+			graph.run();
+		}
+		catch (RuntimeException e) {
+			dao.discardAggregateBuild();
+			throw e;
+		}
+		dao.deleteDirtyBuckets(dirty.stream().map(DirtyBucket::id).toList());
+		log.info("Aggregated hero trends, engine={}, patches={}, weeks={}, dirtyMarks={}", engine, patches.size(),
+				weeks.size(), dirty.size());
 	}
 
 }
@@ -1,5 +1,7 @@
 package com.abe.gg_stats.service;
 
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
+import com.abe.gg_stats.service.rate_limit.JobBudgetClass;
 import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.Job;
@@ -13,6 +15,22 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class BatchSchedulerService {
 
+	private static final String NEW_MATCHES_CRON = "0 */15 * * * *";
+
+	private static final String MATCH_DETAILS_CRON = "0 5/15 * * * *";
+
+	private static final String HISTORICAL_MATCHES_CRON = "0 0 3 * * *";
+
+	private static final String HEROES_CRON = "0 0 2 * * *";
+
+	private static final String PRO_PLAYERS_CRON = "0 0 */6 * * *";
+
+	private static final String PLAYERS_CRON = "0 0 */6 * * *";
+
+	private static final String TEAMS_CRON = "0 0 */4 * * *";
+
+	private static final String HERO_RANKING_CRON = "0 0 */2 * * *";
+
 	private final JobLauncher jobLauncher;
 
 	private final Job heroesUpdateJob;
@@ -29,10 +47,16 @@ public class BatchSchedulerService {
 
 	private final AggregationService aggregationService;
 
+	private final ApiBudgetPlanner apiBudgetPlanner;
+
 	private final Job newMatchesIngestionJob;
 
 	private final Job historicalMatchesIngestionJob;
 
+	private final Job matchDetailsJob;
+
+	private final Job rebuildMatchesFromArchiveJob;
+
 	public BatchSchedulerService(JobLauncher jobLauncher, //
 			@Qualifier("heroesUpdateJob") Job heroesUpdateJob,
 			@Qualifier("proPlayersUpdateJob") Job notablePlayersUpdateJob,
@@ -41,7 +65,10 @@ public class BatchSchedulerService {
 			@Qualifier("playerUpdateJob") Job playerUpdateJob,
 			@Qualifier("newMatchesIngestionJob") Job newMatchesIngestionJob,
 			@Qualifier("historicalMatchesIngestionJob") Job historicalMatchesIngestionJob,
-			OpenDotaRateLimitingService openDotaRateLimitingService, AggregationService aggregationService) {
+			@Qualifier("matchDetailsJob") Job matchDetailsJob,
+			@Qualifier("rebuildMatchesFromArchiveJob") Job rebuildMatchesFromArchiveJob,
+			OpenDotaRateLimitingService openDotaRateLimitingService, AggregationService aggregationService,
+			ApiBudgetPlanner apiBudgetPlanner) {
 		this.jobLauncher = jobLauncher;
 		this.heroesUpdateJob = heroesUpdateJob;
 		this.notablePlayersUpdateJob = notablePlayersUpdateJob;
@@ -50,8 +77,21 @@ public class BatchSchedulerService {
 		this.playerUpdateJob = playerUpdateJob;
 		this.newMatchesIngestionJob = newMatchesIngestionJob;
 		this.historicalMatchesIngestionJob = historicalMatchesIngestionJob;
+		this.matchDetailsJob = matchDetailsJob;
+		this.rebuildMatchesFromArchiveJob = rebuildMatchesFromArchiveJob;
 		this.aggregationService = aggregationService;
 		this.openDotaRateLimitingService = openDotaRateLimitingService;
+		this.apiBudgetPlanner = apiBudgetPlanner;
+
+		apiBudgetPlanner.register(newMatchesIngestionJob.getName(), JobBudgetClass.FRESH_MATCHES, NEW_MATCHES_CRON);
+		apiBudgetPlanner.register(matchDetailsJob.getName(), JobBudgetClass.FRESH_MATCHES, MATCH_DETAILS_CRON);
+		apiBudgetPlanner.register(heroRankingUpdateJob.getName(), JobBudgetClass.RANKINGS, HERO_RANKING_CRON);
+		apiBudgetPlanner.register(heroesUpdateJob.getName(), JobBudgetClass.RANKINGS, HEROES_CRON);
+		apiBudgetPlanner.register(teamsUpdateJob.getName(), JobBudgetClass.RANKINGS, TEAMS_CRON);
+		apiBudgetPlanner.register(notablePlayersUpdateJob.getName(), JobBudgetClass.RANKINGS, PRO_PLAYERS_CRON);
+		apiBudgetPlanner.register(playerUpdateJob.getName(), JobBudgetClass.PLAYERS, PLAYERS_CRON);
+		apiBudgetPlanner.register(historicalMatchesIngestionJob.getName(), JobBudgetClass.HISTORICAL_BACKFILL,
+				HISTORICAL_MATCHES_CRON);
 	}
 
 	/**
@@ -59,33 +99,59 @@ public class BatchSchedulerService {
 	 * essential for keeping the data up-to-date with new game results. It's scheduled to
 	 * run at the 0, 15, 30, and 45 minute marks of every hour.
 	 */
-	@Scheduled(cron = "0 */15 * * * *") // Every 15 minutes
+	@Scheduled(cron = NEW_MATCHES_CRON) // Every 15 minutes
 	public void runNewMatchesIngestionJob() {
-		if (canRunJob()) {
+		if (canRunJob(newMatchesIngestionJob)) {
 			runJob(newMatchesIngestionJob, "New Matches Ingestion");
 		}
 	}
 
+	/**
+	 * Fetch the details of stored match summaries every 15 minutes, five minutes after
+	 * the new matches ingestion has queued the latest ones. Each run spends what the
+	 * budget planner allows on the highest priority pending matches.
+	 */
+	@Scheduled(cron = MATCH_DETAILS_CRON)
+	public void runMatchDetailsJob() {
+		if (canRunJob(matchDetailsJob)) {
+			runJob(matchDetailsJob, "Match Details");
+		}
+	}
+
 	/**
 	 * Run historical matches ingestion job daily at 3 AM. This job is resource-intensive
 	 * and is scheduled after the heroes update to ensure it uses the latest hero data. It
 	 * runs during off-peak hours to avoid performance degradation for other services.
 	 */
-	@Scheduled(cron = "0 0 3 * * *") // Daily at 3 AM
+	@Scheduled(cron = HISTORICAL_MATCHES_CRON) // Daily at 3 AM
 	public void runHistoricalMatchesIngestionJob() {
-		if (canRunJob()) {
+		if (canRunJob(historicalMatchesIngestionJob)) {
 			runJob(historicalMatchesIngestionJob, "Historical Matches Ingestion");
 		}
 	}
 
+	/**
+	 * Hand the budget the other jobs will not need to historical backfill late in the UTC
+	 * day. Checked hourly; the planner only releases leftovers from its
+	 * {@code backfill-release-hour} on.
+	 */
+	@Scheduled(cron = "0 30 * * * *", zone = "UTC")
+	public void runLeftoverBackfill() {
+		long leftover = apiBudgetPlanner.leftoverForBackfill();
+		if (leftover > 0 && canRunJob(historicalMatchesIngestionJob)) {
+			log.info("Running historical backfill with leftover daily budget, leftover={}", leftover);
+			runJob(historicalMatchesIngestionJob, "Leftover Historical Matches Ingestion");
+		}
+	}
+
 	/**
 	 * Run heroes update job daily at 2 AM. Hero data changes infrequently (e.g., with
 	 * major game patches), so a daily update is sufficient. This job is scheduled for a
 	 * low-traffic time to minimize impact on system performance.
 	 */
-	@Scheduled(cron = "0 0 2 * * *")
+	@Scheduled(cron = HEROES_CRON)
 	public void runHeroesUpdateJob() {
-		if (canRunJob()) {
+		if (canRunJob(heroesUpdateJob)) {
 			runJob(heroesUpdateJob, "Heroes Update");
 		}
 	}
@@ -94,9 +160,9 @@ public class BatchSchedulerService {
 	 * Run pro players update job every 6 hours Pro player data changes more frequently
 	 * (team changes, new pros, etc.)
 	 */
-	@Scheduled(cron = "0 0 */6 * * *")
+	@Scheduled(cron = PRO_PLAYERS_CRON)
 	public void runProPlayersUpdateJob() {
-		if (canRunJob()) {
+		if (canRunJob(notablePlayersUpdateJob)) {
 			runJob(notablePlayersUpdateJob, "Pro Players Update");
 		}
 	}
@@ -106,9 +172,9 @@ public class BatchSchedulerService {
 	 * and runs on the same schedule as the pro players update as their data is often
 	 * related and can be processed together. It runs at 0, 6, 12, and 18 o'clock.
 	 */
-	@Scheduled(cron = "0 0 */6 * * *")
+	@Scheduled(cron = PLAYERS_CRON)
 	public void runPlayerUpdateJob() {
-		if (canRunJob()) {
+		if (canRunJob(playerUpdateJob)) {
 			runJob(playerUpdateJob, "Player Update");
 		}
 	}
@@ -118,9 +184,9 @@ public class BatchSchedulerService {
 	 * frequently. This schedule ensures the data stays fresh. It runs at 0, 4, 8, 12, 16,
 	 * and 20 o'clock.
 	 */
-	@Scheduled(cron = "0 0 */4 * * *")
+	@Scheduled(cron = TEAMS_CRON)
 	public void runTeamsUpdateJob() {
-		if (canRunJob()) {
+		if (canRunJob(teamsUpdateJob)) {
 			runJob(teamsUpdateJob, "Teams Update");
 		}
 	}
@@ -131,9 +197,9 @@ public class BatchSchedulerService {
 	 * rankings current and system load. It runs every two hours on the hour (e.g., 0, 2,
 	 * 4, 6... o'clock).
 	 */
-	@Scheduled(cron = "0 0 */2 * * *") // every 2 hours
+	@Scheduled(cron = HERO_RANKING_CRON) // every 2 hours
 	public void runHeroRankingJob() {
-		if (canRunJob()) {
+		if (canRunJob(heroRankingUpdateJob)) {
 			runJob(heroRankingUpdateJob, "Hero Ranking Update");
 		}
 	}
@@ -160,54 +226,76 @@ public class BatchSchedulerService {
 	 * Manual trigger for heroes job
 	 */
 	public boolean triggerHeroesUpdate() {
-		if (canRunJob()) {
+		if (canRunJob(heroesUpdateJob)) {
 			return runJob(heroesUpdateJob, "Heroes Update Job");
 		}
 		return false;
 	}
 
 	public boolean triggerPlayerUpdate() {
-		if (canRunJob()) {
+		if (canRunJob(playerUpdateJob)) {
 			return runJob(playerUpdateJob, "Player Update Job");
 		}
 		return false;
 	}
 
 	public boolean triggerNotablePlayerUpdate() {
-		if (canRunJob()) {
+		if (canRunJob(notablePlayersUpdateJob)) {
 			return runJob(notablePlayersUpdateJob, "Manual Pro Players Update");
 		}
 		return false;
 	}
 
 	public boolean triggerTeamsUpdate() {
-		if (canRunJob()) {
+		if (canRunJob(teamsUpdateJob)) {
 			return runJob(teamsUpdateJob, "Manual Teams Update");
 		}
 		return false;
 	}
 
 	public boolean triggerHeroRankingUpdate() {
-		if (canRunJob()) {
+		if (canRunJob(heroRankingUpdateJob)) {
 			return runJob(heroRankingUpdateJob, "Manual Hero Ranking Update");
 		}
 		return false;
 	}
 
 	public boolean triggerNewMatchesIngestion() {
-		if (canRunJob()) {
+		if (canRunJob(newMatchesIngestionJob)) {
 			return runJob(newMatchesIngestionJob, "Manual New Matches Ingestion");
 		}
 		return false;
 	}
 
 	public boolean triggerHistoricalMatchesIngestion() {
-		if (canRunJob()) {
+		if (canRunJob(historicalMatchesIngestionJob)) {
 			return runJob(historicalMatchesIngestionJob, "Manual Historical Matches Ingestion");
 		}
 		return false;
 	}
 
+	public boolean triggerMatchDetails() {
+		if (canRunJob(matchDetailsJob)) {
+			return runJob(matchDetailsJob, "Manual Match Details");
+		}
+		return false;
+	}
+
+	/**
+	 * Manual trigger for rebuilding the match tables from the raw match archive. It makes
+	 * no OpenDota calls, so the budget planner is not consulted.
+	 */
+	public boolean triggerMatchRebuildFromArchive() {
+		return runJob(rebuildMatchesFromArchiveJob, "Manual Match Rebuild From Archive");
+	}
+
+	/**
+	 * Check if the budget planner leaves the job enough API requests for a run
+	 */
+	private boolean canRunJob(Job job) {
+		return apiBudgetPlanner.canStart(job.getName());
+	}
+
 	/**
 	 * Check if we have enough API requests remaining to run a job
 	 */
@@ -45,7 +45,7 @@ public class ConfigurationValidationService {
 	@Value("${opendota.api.rate-limit.per-day:1800}")
 	private int requestsPerDay;
 
-	@Value("${opendota.api.rate-limit.burst-capacity:10}")
+	@Value("${opendota.api.rate-limit.burst-capacity:1}")
 	private int burstCapacity;
 
 	@Value("${opendota.api.rate-limit.enable-waiting:true}")
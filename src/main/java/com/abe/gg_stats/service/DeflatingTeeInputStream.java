@@ -0,0 +1,101 @@
+package com.abe.gg_stats.service;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.RawDocument;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Passes a response body through to a streaming parser while deflating a copy of every
+ * byte read, so the raw body can be archived without ever being buffered uncompressed.
+ * Closing drains whatever the parser left unread, keeping the copy complete.
+ */
+final class DeflatingTeeInputStream extends FilterInputStream {
+
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+	private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(8 * 1024);
+
+	private final DeflaterOutputStream copy = new DeflaterOutputStream(compressed, deflater, 8 * 1024);
+
+	private long length;
+
+	private RawDocument document;
+
+	private boolean closed;
+
+	DeflatingTeeInputStream(InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			copy.write(b);
+			length++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0) {
+			copy.write(b, off, n);
+			length += n;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		// Skipped bytes still belong to the copy
+		byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+		long skipped = 0;
+		while (skipped < n) {
+			int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+			if (read < 0) {
+				break;
+			}
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			byte[] buffer = new byte[8 * 1024];
+			while (read(buffer, 0, buffer.length) >= 0) {
+				// drain
+			}
+			copy.finish();
+			document = new RawDocument(compressed.toByteArray(), Math.toIntExact(length));
+		}
+		finally {
+			deflater.end();
+			super.close();
+		}
+	}
+
+	/**
+	 * The deflated body, available once the stream was closed without error.
+	 */
+	RawDocument document() {
+		return document;
+	}
+
+}
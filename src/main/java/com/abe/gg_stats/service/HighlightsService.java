@@ -52,6 +52,7 @@ public class HighlightsService {
 		sort = switch (normalized) {
 			case "emerging-synergy", "emerging", "trending-synergy" -> "delta_lift";
 			case "trending-popularity", "emerging-popularity", "popular-trending" -> "delta_support";
+			case "winning", "win-rate" -> "win_rate";
 			default -> "lift";
 		};
 
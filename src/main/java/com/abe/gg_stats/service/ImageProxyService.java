@@ -9,6 +9,7 @@ import java.net.URI;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
 import java.util.Set;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -29,7 +30,7 @@ public class ImageProxyService {
 
 	private final RestTemplate restTemplate;
 
-	public ImageProxyService(RestTemplate restTemplate) {
+	public ImageProxyService(@Qualifier("restTemplate") RestTemplate restTemplate) {
 		this.restTemplate = restTemplate;
 	}
 
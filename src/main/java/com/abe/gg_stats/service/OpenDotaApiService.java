@@ -1,23 +1,39 @@
 package com.abe.gg_stats.service;
 
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.parser.OpenDotaMatchDetailParser;
 import com.abe.gg_stats.exception.ApiServiceException;
 import com.abe.gg_stats.exception.CircuitBreakerOpenException;
 import com.abe.gg_stats.service.circuit_breaker.CircuitBreakerService;
 import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService;
+import com.abe.gg_stats.service.rate_limit.RequestPriority;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
@@ -32,6 +48,8 @@ public class OpenDotaApiService implements HealthIndicator {
 
 	private static final String SERVICE_NAME = "opendota_api";
 
+	private static final String HEALTH_CHECK_ENDPOINT = "/constants/heroes";
+
 	private final RestTemplate restTemplate;
 
 	private final OpenDotaRateLimitingService openDotaRateLimitingService;
@@ -40,7 +58,20 @@ public class OpenDotaApiService implements HealthIndicator {
 
 	private final ObjectMapper objectMapper;
 
-	private final MeterRegistry meterRegistry;
+	private final OpenDotaResponseCache responseCache;
+
+	private final OpenDotaMatchDetailParser matchDetailParser;
+
+	private final OpenDotaCallHealth callHealth;
+
+	private final SingleFlight singleFlight = new SingleFlight();
+
+	private final Counter coalescedCalls;
+
+	private final OpenDotaCallMetrics callMetrics;
+
+	// Runs calls whose permit was granted asynchronously
+	private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
 	@Value("${opendota.api.base-url:https://api.opendota.com/api}")
 	private String baseUrl;
@@ -54,14 +85,25 @@ public class OpenDotaApiService implements HealthIndicator {
 	@Value("${opendota.api.health-check.enabled:true}")
 	private boolean healthCheckEnabled;
 
+	@Value("${app.match-archive.enabled:false}")
+	private boolean archiveRawMatches;
+
 	@Autowired
-	public OpenDotaApiService(RestTemplate restTemplate, OpenDotaRateLimitingService rateLimitingService,
-			CircuitBreakerService circuitBreakerService, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+	public OpenDotaApiService(@Qualifier("openDotaRestTemplate") RestTemplate restTemplate,
+			OpenDotaRateLimitingService rateLimitingService, CircuitBreakerService circuitBreakerService,
+			ObjectMapper objectMapper, MeterRegistry meterRegistry, OpenDotaResponseCache responseCache,
+			OpenDotaCallHealth callHealth) {
 		this.restTemplate = restTemplate;
 		this.openDotaRateLimitingService = rateLimitingService;
 		this.circuitBreakerService = circuitBreakerService;
 		this.objectMapper = objectMapper;
-		this.meterRegistry = meterRegistry;
+		this.responseCache = responseCache;
+		this.callHealth = callHealth;
+		this.matchDetailParser = new OpenDotaMatchDetailParser(objectMapper.getFactory());
+		this.coalescedCalls = Counter.builder("opendota.api.coalesced")
+			.description("OpenDota calls served by joining an identical in-flight request")
+			.register(meterRegistry);
+		this.callMetrics = new OpenDotaCallMetrics(meterRegistry);
 	}
 
 	@PostConstruct
@@ -70,6 +112,11 @@ public class OpenDotaApiService implements HealthIndicator {
 				readTimeoutMs, connectTimeoutMs);
 	}
 
+	@PreDestroy
+	public void shutdown() {
+		callExecutor.shutdownNow();
+	}
+
 	public Optional<JsonNode> getHeroes() {
 		return performApiCallWithCircuitBreaker("/heroes");
 	}
@@ -97,8 +144,18 @@ public class OpenDotaApiService implements HealthIndicator {
 		return performApiCallWithCircuitBreaker(endpoint);
 	}
 
-	public Optional<JsonNode> getMatchDetail(long matchId) {
-		return performApiCallWithCircuitBreaker("/matches/" + matchId);
+	public Optional<OpenDotaMatchDetailDto> getMatchDetail(long matchId) {
+		return performApiCallWithCircuitBreaker("/matches/" + matchId, this::streamMatchDetail);
+	}
+
+	/**
+	 * Like {@link #getMatchDetail} but waits for the rate limit permit without holding a
+	 * thread, so callers can queue many fetches at once. Failures complete the future
+	 * exceptionally, wrapped in a {@link java.util.concurrent.CompletionException}.
+	 */
+	public CompletableFuture<Optional<OpenDotaMatchDetailDto>> getMatchDetailAsync(long matchId,
+			RequestPriority priority) {
+		return performApiCallAsync("/matches/" + matchId, priority, this::streamMatchDetail);
 	}
 
 	public Optional<JsonNode> getPatches() {
@@ -121,10 +178,97 @@ public class OpenDotaApiService implements HealthIndicator {
 		return performApiCallWithCircuitBreaker("/rankings?hero_id=" + heroId);
 	}
 
+	/**
+	 * Endpoints with a TTL in {@code opendota.api.cache.ttl} are served from
+	 * {@link OpenDotaResponseCache} while fresh and revalidated with a conditional
+	 * request once stale.
+	 */
 	private Optional<JsonNode> performApiCallWithCircuitBreaker(String endpoint) {
+		if (!responseCache.isCacheable(endpoint)) {
+			return performApiCallWithCircuitBreaker(endpoint, this::fetchTree);
+		}
+		Optional<JsonNode> cached = responseCache.getFresh(endpoint);
+		if (cached.isPresent()) {
+			log.trace("API call served from cache, endpoint={}", endpoint);
+			return cached;
+		}
+		return performApiCallWithCircuitBreaker(endpoint, url -> fetchTreeConditionally(endpoint, url));
+	}
+
+	/**
+	 * Concurrent calls for the same endpoint are coalesced: one request goes upstream
+	 * (one rate-limit token) and every caller gets its parsed result.
+	 * <p>
+	 * Like {@link #performApiCallAsync}, the permit is taken before the breaker and
+	 * bulkhead are entered, so waiting for a token neither holds a bulkhead slot nor
+	 * counts towards the call duration the breaker sees.
+	 */
+	private <T> Optional<T> performApiCallWithCircuitBreaker(String endpoint, ApiExchange<T> exchange) {
+		return singleFlight.execute(endpoint, () -> {
+			if (circuitBreakerService.isOpen(circuitBreakerName(endpoint))) {
+				return handleFallback(endpoint);
+			}
+			return executeWithPermit(endpoint, exchange, openDotaRateLimitingService.tryAcquirePermit(endpoint));
+		}, () -> onCoalesced(endpoint));
+	}
+
+	/**
+	 * Queues for a permit with {@link OpenDotaRateLimitingService#acquireAsync} and only
+	 * then takes a virtual thread for the call itself. Coalesced with in-flight calls for
+	 * the same endpoint like
+	 * {@link #performApiCallWithCircuitBreaker(String, ApiExchange)}.
+	 * <p>
+	 * The permit is taken before the breaker and bulkhead are entered, so no permit is
+	 * queued for while the breaker is open, and a permit that ends in the fallback anyway
+	 * is given back. Cancelling the returned future before the call starts gives back the
+	 * queued or granted permit.
+	 */
+	private <T> CompletableFuture<Optional<T>> performApiCallAsync(String endpoint, RequestPriority priority,
+			ApiExchange<T> exchange) {
+		return singleFlight.executeAsync(endpoint, () -> {
+			if (circuitBreakerService.isOpen(circuitBreakerName(endpoint))) {
+				return CompletableFuture.completedFuture(handleFallback(endpoint));
+			}
+			CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> acquire = openDotaRateLimitingService
+				.acquireAsync(endpoint, priority);
+			// Claimed by the call, or by a cancellation that gives the permit back
+			AtomicBoolean claimed = new AtomicBoolean();
+			CompletableFuture<Optional<T>> call = acquire.thenApplyAsync(permit -> {
+				if (!claimed.compareAndSet(false, true)) {
+					return Optional.empty();
+				}
+				return executeWithPermit(endpoint, exchange, permit);
+			}, callExecutor);
+			call.whenComplete((result, error) -> {
+				if (call.isCancelled() && !acquire.cancel(false) && claimed.compareAndSet(false, true)) {
+					OpenDotaRateLimitingService.RateLimitResult permit = acquire.join();
+					if (permit.allowed()) {
+						openDotaRateLimitingService.returnUnusedPermit(endpoint);
+					}
+				}
+			});
+			return call;
+		}, () -> onCoalesced(endpoint));
+	}
+
+	/**
+	 * Makes the call with an already acquired permit through the breaker and bulkhead,
+	 * giving the permit back if the call ends in the fallback instead.
+	 */
+	private <T> Optional<T> executeWithPermit(String endpoint, ApiExchange<T> exchange,
+			OpenDotaRateLimitingService.RateLimitResult permit) {
+		return executeWithCircuitBreaker(endpoint, () -> performApiCall(endpoint, exchange, permit), () -> {
+			if (permit.allowed()) {
+				openDotaRateLimitingService.returnUnusedPermit(endpoint);
+			}
+			return handleFallback(endpoint);
+		});
+	}
+
+	private <T> Optional<T> executeWithCircuitBreaker(String endpoint, Supplier<Optional<T>> call,
+			Supplier<Optional<T>> fallback) {
 		try {
-			return circuitBreakerService.executeWithCircuitBreaker(SERVICE_NAME, () -> performApiCall(endpoint),
-					() -> handleFallback(endpoint));
+			return circuitBreakerService.executeWithCircuitBreaker(circuitBreakerName(endpoint), call, fallback);
 		}
 		catch (CircuitBreakerOpenException e) {
 			log.warn("Circuit breaker prevented API call, endpoint={}, reason={}", endpoint, e.getMessage());
@@ -132,16 +276,44 @@ public class OpenDotaApiService implements HealthIndicator {
 		}
 	}
 
-	private Optional<JsonNode> performApiCall(String endpoint) {
-		Timer.Sample sample = Timer.start(meterRegistry);
+	/**
+	 * Each endpoint template gets its own breaker and bulkhead, so failing or slow calls
+	 * of one kind, such as private player profiles, do not stop match ingestion. The name
+	 * avoids slashes to stay addressable by the circuit breaker monitoring endpoints:
+	 * {@code /players/123} maps to {@code opendota_api.players.{id}}.
+	 */
+	static String circuitBreakerName(String endpoint) {
+		return SERVICE_NAME + OpenDotaEndpoints.template(endpoint).replace('/', '.');
+	}
+
+	private Map<String, CircuitBreakerService.CircuitBreakerStatus> circuitBreakerStatuses() {
+		Map<String, CircuitBreakerService.CircuitBreakerStatus> statuses = new TreeMap<>();
+		circuitBreakerService.getAllStatuses().forEach((name, status) -> {
+			if (name.startsWith(SERVICE_NAME + '.')) {
+				statuses.put(name, status);
+			}
+		});
+		return statuses;
+	}
+
+	private void onCoalesced(String endpoint) {
+		coalescedCalls.increment();
+		log.debug("Joined in-flight API call, endpoint={}", endpoint);
+	}
+
+	private <T> Optional<T> performApiCall(String endpoint, ApiExchange<T> exchange,
+			OpenDotaRateLimitingService.RateLimitResult rateLimitResult) {
+		String template = OpenDotaEndpoints.metricTemplate(endpoint);
 		String statusTag = "unknown";
 		long responseSize = -1;
 		long durationMs;
+		long exchangeStartNanos = 0;
 
 		try {
-			// Rate limiting
-			OpenDotaRateLimitingService.RateLimitResult rateLimitResult = openDotaRateLimitingService
-				.tryAcquirePermit(endpoint);
+			// Rate limiting: the permit was acquired before the breaker and carries the
+			// time waited for it
+			callMetrics.recordRateLimitWait(template, rateLimitResult.allowed(),
+					TimeUnit.MILLISECONDS.toNanos(rateLimitResult.waitTimeMs()));
 
 			if (!rateLimitResult.allowed()) {
 				statusTag = "rate_limited";
@@ -152,25 +324,25 @@ public class OpenDotaApiService implements HealthIndicator {
 
 			String url = baseUrl + endpoint;
 			Instant startTime = Instant.now();
-			ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+			exchangeStartNanos = System.nanoTime();
+			ApiResponse<T> response = exchange.exchange(url);
 			durationMs = Duration.between(startTime, Instant.now()).toMillis();
+			statusTag = String.valueOf(response.status().value());
 
-			if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-				statusTag = String.valueOf(response.getStatusCode().value());
-				responseSize = response.getBody().length();
+			if ((response.status() == HttpStatus.OK || response.status() == HttpStatus.NOT_MODIFIED)
+					&& response.body() != null) {
+				responseSize = response.bytes();
 				log.trace("API call success, endpoint={}, status={}, durationMs={}, size={}", endpoint,
-						response.getStatusCode().value(), durationMs, responseSize);
-				return Optional.of(objectMapper.readTree(response.getBody()));
+						response.status().value(), durationMs, responseSize);
+				return Optional.of(response.body());
 			}
-			else if (response.getStatusCode() == HttpStatus.OK) {
-				statusTag = String.valueOf(response.getStatusCode().value());
+			else if (response.status() == HttpStatus.OK) {
 				log.warn("API call returned null body, endpoint={}", endpoint);
 				return Optional.empty();
 			}
 			else {
-				statusTag = String.valueOf(response.getStatusCode().value());
 				log.warn("API call returned non-200, endpoint={}, status={}, durationMs={}", endpoint,
-						response.getStatusCode().value(), durationMs);
+						response.status().value(), durationMs);
 				return Optional.empty();
 			}
 
@@ -197,14 +369,104 @@ public class OpenDotaApiService implements HealthIndicator {
 			throw new RuntimeException("API call failed", e);
 		}
 		finally {
-			long durationNs = sample.stop(Timer.builder("opendota.api.call")
-				.tag("method", "GET")
-				.tag("endpoint", endpoint)
-				.tag("status", statusTag)
-				.register(meterRegistry));
-			log.debug("API call timing, endpoint={}, status={}, durationMs={}, responseSize={}", endpoint, statusTag,
-					durationNs, responseSize);
+			if (exchangeStartNanos != 0) {
+				long durationNs = System.nanoTime() - exchangeStartNanos;
+				callHealth.record(statusTag, durationNs);
+				callMetrics.recordCall(template, statusTag, durationNs);
+				if (responseSize >= 0) {
+					callMetrics.recordResponseSize(template, responseSize);
+				}
+				log.debug("API call timing, endpoint={}, status={}, durationMs={}, responseSize={}", endpoint,
+						statusTag, TimeUnit.NANOSECONDS.toMillis(durationNs), responseSize);
+			}
+		}
+	}
+
+	/**
+	 * Buffers the body as a String and parses it into a full tree. Used for the small
+	 * endpoints whose payloads are consumed as {@link JsonNode}.
+	 */
+	private ApiResponse<JsonNode> fetchTree(String url) throws IOException {
+		ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+		String body = response.getBody();
+		if (response.getStatusCode() != HttpStatus.OK || body == null) {
+			return new ApiResponse<>(response.getStatusCode(), null, -1);
+		}
+		return new ApiResponse<>(response.getStatusCode(), objectMapper.readTree(body), utf8Length(body));
+	}
+
+	/**
+	 * Like {@link #fetchTree} but sends the cached validators, so an unchanged resource
+	 * comes back as an empty 304 and the cached tree is reused.
+	 */
+	private ApiResponse<JsonNode> fetchTreeConditionally(String endpoint, String url) throws IOException {
+		HttpEntity<Void> request = new HttpEntity<>(responseCache.conditionalHeaders(endpoint));
+		ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, request, String.class);
+		if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+			return new ApiResponse<>(response.getStatusCode(),
+					responseCache.revalidated(endpoint, response.getHeaders()), 0);
+		}
+		String body = response.getBody();
+		if (response.getStatusCode() != HttpStatus.OK || body == null) {
+			return new ApiResponse<>(response.getStatusCode(), null, -1);
 		}
+		JsonNode parsed = objectMapper.readTree(body);
+		responseCache.store(endpoint, body, parsed, response.getHeaders());
+		return new ApiResponse<>(response.getStatusCode(), parsed, utf8Length(body));
+	}
+
+	/**
+	 * Parses {@code /matches/{id}} straight from the response stream, binding only the
+	 * persisted fields. The body is never buffered as a String or tree; with the raw
+	 * match archive enabled a deflated copy is taken while parsing. The response is
+	 * decompressed on the fly and carries no {@code Content-Length}, so its size is the
+	 * count of bytes the parser consumed.
+	 */
+	private ApiResponse<OpenDotaMatchDetailDto> streamMatchDetail(String url) {
+		return restTemplate.execute(url, HttpMethod.GET, null, response -> {
+			HttpStatusCode status = response.getStatusCode();
+			if (status != HttpStatus.OK) {
+				return new ApiResponse<>(status, null, -1);
+			}
+			CountingInputStream counted = new CountingInputStream(response.getBody());
+			if (!archiveRawMatches) {
+				OpenDotaMatchDetailDto detail = matchDetailParser.parse(counted);
+				return new ApiResponse<>(status, detail, counted.count());
+			}
+			DeflatingTeeInputStream body = new DeflatingTeeInputStream(counted);
+			OpenDotaMatchDetailDto detail;
+			try (body) {
+				detail = matchDetailParser.parse(body);
+			}
+			return new ApiResponse<>(status, detail == null ? null : detail.withRawDocument(body.document()),
+					counted.count());
+		});
+	}
+
+	/**
+	 * UTF-8 size of a buffered body, counted without encoding it again;
+	 * {@link String#length()} counts chars, not bytes.
+	 */
+	static long utf8Length(String body) {
+		long bytes = 0;
+		for (int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+			}
+			else if (c < 0x800) {
+				bytes += 2;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < body.length()
+					&& Character.isLowSurrogate(body.charAt(i + 1))) {
+				bytes += 4;
+				i++;
+			}
+			else {
+				bytes += 3;
+			}
+		}
+		return bytes;
 	}
 
 	// ----------------
@@ -214,7 +476,7 @@ public class OpenDotaApiService implements HealthIndicator {
 	public ApiServiceStatistics getStatistics() {
 		return ApiServiceStatistics.builder()
 			.serviceName(SERVICE_NAME)
-			.circuitBreakerStatus(circuitBreakerService.getStatus(SERVICE_NAME))
+			.circuitBreakerStatuses(circuitBreakerStatuses())
 			.rateLimitStatus(openDotaRateLimitingService.getStatus())
 			.baseUrl(baseUrl)
 			.readTimeoutMs(readTimeoutMs)
@@ -223,21 +485,27 @@ public class OpenDotaApiService implements HealthIndicator {
 			.build();
 	}
 
+	/**
+	 * Passive health: derived from the outcomes and latencies of recent real calls, so a
+	 * health request never touches the network or spends a rate limit permit. Only when
+	 * the API has not been called for {@code idle-probe-after} is a single probe sent, in
+	 * the background; until it completes the previous result is reported.
+	 */
 	@Override
 	public Health health() {
 		if (!healthCheckEnabled) {
 			return Health.up().withDetail("healthCheck", "disabled").build();
 		}
 		try {
-			Health.Builder builder = Health.up();
-			builder.withDetail("circuitBreaker", circuitBreakerService.getStatus(SERVICE_NAME));
-			builder.withDetail("rateLimiting", openDotaRateLimitingService.getStatus());
-
-			if (circuitBreakerService.getStatus(SERVICE_NAME)
-				.state() != CircuitBreakerService.CircuitBreakerState.OPEN) {
-				performHealthCheck(builder);
+			if (circuitBreakerService
+				.getState(circuitBreakerName(HEALTH_CHECK_ENDPOINT)) != CircuitBreakerService.CircuitBreakerState.OPEN
+					&& callHealth.tryStartProbe()) {
+				callExecutor.execute(this::performHealthProbe);
 			}
-			return builder.build();
+			return callHealth.currentHealth()
+				.withDetail("circuitBreakers", circuitBreakerStatuses())
+				.withDetail("rateLimiting", openDotaRateLimitingService.getStatus())
+				.build();
 		}
 		catch (Exception e) {
 			log.error("Health check failed", e);
@@ -256,24 +524,40 @@ public class OpenDotaApiService implements HealthIndicator {
 		}
 	}
 
-	private Optional<JsonNode> handleFallback(String endpoint) {
+	private <T> Optional<T> handleFallback(String endpoint) {
 		log.warn("Fallback used, endpoint={}", endpoint);
 		return Optional.empty();
 	}
 
-	private void performHealthCheck(Health.Builder builder) {
+	private void performHealthProbe() {
 		try {
-			Optional<JsonNode> response = performApiCall("/constants/heroes");
-			builder.withDetail("apiCheck", response.isPresent() ? "successful" : "failed - no response");
+			singleFlight.execute(HEALTH_CHECK_ENDPOINT,
+					() -> performApiCall(HEALTH_CHECK_ENDPOINT, this::fetchTree,
+							openDotaRateLimitingService.tryAcquirePermit(HEALTH_CHECK_ENDPOINT)),
+					() -> onCoalesced(HEALTH_CHECK_ENDPOINT));
 		}
 		catch (Exception e) {
-			builder.withDetail("apiCheck", "failed - " + e.getMessage());
+			log.warn("Health probe failed, reason={}", e.toString());
+		}
+		finally {
+			callHealth.probeFinished();
 		}
 	}
 
+	@FunctionalInterface
+	private interface ApiExchange<T> {
+
+		ApiResponse<T> exchange(String url) throws IOException;
+
+	}
+
+	private record ApiResponse<T>(HttpStatusCode status, T body, long bytes) {
+
+	}
+
 	@Builder
 	public record ApiServiceStatistics(String serviceName,
-			CircuitBreakerService.CircuitBreakerStatus circuitBreakerStatus,
+			Map<String, CircuitBreakerService.CircuitBreakerStatus> circuitBreakerStatuses,
 			OpenDotaRateLimitingService.RateLimitStatus rateLimitStatus, String baseUrl, long readTimeoutMs,
 			long connectTimeoutMs, Instant timestamp) {
 
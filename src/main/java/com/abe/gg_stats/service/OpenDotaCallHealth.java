@@ -0,0 +1,248 @@
+package com.abe.gg_stats.service;
+
+import com.abe.gg_stats.config.OpenDotaHealthProperties;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rolling window of real OpenDota call outcomes backing the passive health check of
+ * {@link OpenDotaApiService}.
+ * <p>
+ * The window is split into a fixed number of slices, each holding call and failure counts
+ * and a coarse latency histogram, so recording a call and reading the status take
+ * constant time whatever the traffic. A call fails when the API could not be reached or
+ * answered with a 5xx; any other answer, 429 included, shows it is up.
+ * <p>
+ * When too few calls were made to judge, the result of the last active probe is used.
+ * {@link #tryStartProbe()} allows one probe once no call has been made for
+ * {@code idle-probe-after}.
+ */
+@Component
+public class OpenDotaCallHealth {
+
+	static final Status DEGRADED = new Status("DEGRADED", "Slow responses from the OpenDota API");
+
+	private static final int SLICES = 30;
+
+	// Upper bounds of the latency histogram bins; the last bin is open ended
+	private static final long[] LATENCY_BOUNDS_MS = { 50, 100, 250, 500, 1_000, 2_000, 5_000, 10_000, 30_000 };
+
+	private static final long NEVER = Long.MIN_VALUE;
+
+	private final OpenDotaHealthProperties properties;
+
+	private final LongSupplier nanoClock;
+
+	private final long sliceNanos;
+
+	private final Slice[] slices = new Slice[SLICES];
+
+	private final AtomicLong lastCallNanos = new AtomicLong(NEVER);
+
+	private final AtomicLong lastProbeAttemptNanos = new AtomicLong(NEVER);
+
+	private final AtomicBoolean probeInFlight = new AtomicBoolean();
+
+	private volatile boolean lastCallSucceeded;
+
+	private volatile ProbeResult lastProbe;
+
+	@Autowired
+	public OpenDotaCallHealth(OpenDotaHealthProperties properties) {
+		this(properties, System::nanoTime);
+	}
+
+	OpenDotaCallHealth(OpenDotaHealthProperties properties, LongSupplier nanoClock) {
+		this.properties = properties;
+		this.nanoClock = nanoClock;
+		this.sliceNanos = Math.max(1, properties.window().toNanos() / SLICES);
+		for (int i = 0; i < SLICES; i++) {
+			slices[i] = new Slice();
+		}
+	}
+
+	/**
+	 * Records a call that reached the network.
+	 * @param statusTag the {@code status} tag of the {@code opendota.api.call} timer
+	 */
+	public void record(String statusTag, long latencyNanos) {
+		boolean failed = isFailure(statusTag);
+		long now = nanoClock.getAsLong();
+		long epoch = Math.floorDiv(now, sliceNanos);
+		slices[(int) Math.floorMod(epoch, SLICES)].add(epoch, failed, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+		lastCallSucceeded = !failed;
+		lastCallNanos.set(now);
+	}
+
+	/**
+	 * Claims the single active probe if no call or probe attempt was made for
+	 * {@code idle-probe-after}. The caller must report back with
+	 * {@link #probeFinished()}.
+	 */
+	public boolean tryStartProbe() {
+		long now = nanoClock.getAsLong();
+		long idleNanos = properties.idleProbeAfter().toNanos();
+		if (!isOlderThan(lastCallNanos.get(), now, idleNanos)
+				|| !isOlderThan(lastProbeAttemptNanos.get(), now, idleNanos)
+				|| !probeInFlight.compareAndSet(false, true)) {
+			return false;
+		}
+		lastProbeAttemptNanos.set(now);
+		return true;
+	}
+
+	/**
+	 * Caches the outcome of the probe call, if it got as far as the network; a probe
+	 * stopped by the rate limiter says nothing about the API.
+	 */
+	public void probeFinished() {
+		long started = lastProbeAttemptNanos.get();
+		if (lastCallNanos.get() != NEVER && lastCallNanos.get() - started >= 0) {
+			lastProbe = new ProbeResult(lastCallSucceeded, nanoClock.getAsLong());
+		}
+		probeInFlight.set(false);
+	}
+
+	/**
+	 * Status and details from the calls in the window, or from the last probe if there
+	 * were too few of them. Never touches the network.
+	 */
+	public Health.Builder currentHealth() {
+		long now = nanoClock.getAsLong();
+		Totals totals = totals(now);
+		ProbeResult probe = lastProbe;
+		Health.Builder builder;
+		if (totals.calls >= properties.minCalls() || (totals.calls > 0 && probe == null)) {
+			double successRatio = (double) (totals.calls - totals.failures) / totals.calls;
+			long p95LatencyMs = totals.p95LatencyMs();
+			if (successRatio < properties.minSuccessRatio()) {
+				builder = Health.down();
+			}
+			else if (p95LatencyMs > properties.maxP95Latency().toMillis()) {
+				builder = Health.status(DEGRADED);
+			}
+			else {
+				builder = Health.up();
+			}
+			builder.withDetail("source", "traffic")
+				.withDetail("successRatio", successRatio)
+				.withDetail("p95LatencyMs", p95LatencyMs);
+		}
+		else if (probe != null) {
+			builder = probe.succeeded() ? Health.up() : Health.down();
+			builder.withDetail("source", "probe")
+				.withDetail("probeAgeMs", TimeUnit.NANOSECONDS.toMillis(now - probe.atNanos()));
+		}
+		else {
+			builder = Health.unknown().withDetail("source", "none");
+		}
+		long lastCall = lastCallNanos.get();
+		return builder.withDetail("calls", totals.calls)
+			.withDetail("window", properties.window().toString())
+			.withDetail("lastCallAgeMs", lastCall == NEVER ? -1 : TimeUnit.NANOSECONDS.toMillis(now - lastCall));
+	}
+
+	private Totals totals(long now) {
+		long oldestEpoch = Math.floorDiv(now, sliceNanos) - (SLICES - 1);
+		Totals totals = new Totals();
+		for (Slice slice : slices) {
+			slice.addTo(oldestEpoch, totals);
+		}
+		return totals;
+	}
+
+	private static boolean isFailure(String statusTag) {
+		return statusTag.startsWith("5") || statusTag.equals("network_error") || statusTag.equals("unexpected_error");
+	}
+
+	private static boolean isOlderThan(long nanos, long now, long ageNanos) {
+		return nanos == NEVER || now - nanos >= ageNanos;
+	}
+
+	private record ProbeResult(boolean succeeded, long atNanos) {
+
+	}
+
+	private static final class Totals {
+
+		private long calls;
+
+		private long failures;
+
+		private long maxLatencyMs;
+
+		private final long[] latencyBins = new long[LATENCY_BOUNDS_MS.length + 1];
+
+		long p95LatencyMs() {
+			long target = (long) Math.ceil(calls * 0.95);
+			long seen = 0;
+			for (int i = 0; i < LATENCY_BOUNDS_MS.length; i++) {
+				seen += latencyBins[i];
+				if (seen >= target) {
+					return LATENCY_BOUNDS_MS[i];
+				}
+			}
+			return maxLatencyMs;
+		}
+
+	}
+
+	private static final class Slice {
+
+		private long epoch = Long.MIN_VALUE;
+
+		private long calls;
+
+		private long failures;
+
+		private long maxLatencyMs;
+
+		private final long[] latencyBins = new long[LATENCY_BOUNDS_MS.length + 1];
+
+		synchronized void add(long epoch, boolean failed, long latencyMs) {
+			if (this.epoch != epoch) {
+				this.epoch = epoch;
+				calls = 0;
+				failures = 0;
+				maxLatencyMs = 0;
+				Arrays.fill(latencyBins, 0);
+			}
+			calls++;
+			if (failed) {
+				failures++;
+			}
+			maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+			latencyBins[bin(latencyMs)]++;
+		}
+
+		synchronized void addTo(long oldestEpoch, Totals totals) {
+			if (epoch < oldestEpoch) {
+				return;
+			}
+			totals.calls += calls;
+			totals.failures += failures;
+			totals.maxLatencyMs = Math.max(totals.maxLatencyMs, maxLatencyMs);
+			for (int i = 0; i < latencyBins.length; i++) {
+				totals.latencyBins[i] += latencyBins[i];
+			}
+		}
+
+		private static int bin(long latencyMs) {
+			for (int i = 0; i < LATENCY_BOUNDS_MS.length; i++) {
+				if (latencyMs <= LATENCY_BOUNDS_MS[i]) {
+					return i;
+				}
+			}
+			return LATENCY_BOUNDS_MS.length;
+		}
+
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.abe.gg_stats.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for upstream OpenDota calls, tagged by {@link OpenDotaEndpoints#metricTemplate}
+ * so their number stays bounded by the endpoints the client knows rather than by match
+ * and account IDs.
+ * <ul>
+ * <li>{@code opendota.api.call}: time on the wire, per template and HTTP status</li>
+ * <li>{@code opendota.api.rate_limit.wait}: time spent waiting for a rate limit permit,
+ * per template and outcome</li>
+ * <li>{@code opendota.api.response.size}: response body bytes per template</li>
+ * </ul>
+ * The timers publish percentile histograms plus fixed SLO buckets, so latency quantiles
+ * can be aggregated across nodes. Meters are cached per tag combination to keep the hot
+ * path free of builder allocations.
+ */
+final class OpenDotaCallMetrics {
+
+	private static final Duration[] CALL_SLOS = { Duration.ofMillis(100), Duration.ofMillis(250),
+			Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2_500), Duration.ofSeconds(5),
+			Duration.ofSeconds(10) };
+
+	private static final Duration[] WAIT_SLOS = { Duration.ofMillis(10), Duration.ofMillis(100), Duration.ofSeconds(1),
+			Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(60) };
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, Timer> callTimers = new ConcurrentHashMap<>();
+
+	private final Map<String, Timer> waitTimers = new ConcurrentHashMap<>();
+
+	private final Map<String, DistributionSummary> responseSizes = new ConcurrentHashMap<>();
+
+	OpenDotaCallMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	void recordCall(String template, String status, long durationNanos) {
+		callTimers
+			.computeIfAbsent(template + ' ' + status,
+					key -> Timer.builder("opendota.api.call")
+						.description("Time on the wire for OpenDota calls, rate limit wait excluded")
+						.tag("method", "GET")
+						.tag("endpoint", template)
+						.tag("status", status)
+						.publishPercentileHistogram()
+						.serviceLevelObjectives(CALL_SLOS)
+						.register(meterRegistry))
+			.record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+
+	void recordRateLimitWait(String template, boolean granted, long waitNanos) {
+		String outcome = granted ? "granted" : "rejected";
+		waitTimers
+			.computeIfAbsent(template + ' ' + outcome,
+					key -> Timer.builder("opendota.api.rate_limit.wait")
+						.description("Time OpenDota calls spent waiting for a rate limit permit")
+						.tag("endpoint", template)
+						.tag("outcome", outcome)
+						.publishPercentileHistogram()
+						.serviceLevelObjectives(WAIT_SLOS)
+						.register(meterRegistry))
+			.record(waitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	void recordResponseSize(String template, long bytes) {
+		responseSizes
+			.computeIfAbsent(template,
+					key -> DistributionSummary.builder("opendota.api.response.size")
+						.description("Response body size of OpenDota calls")
+						.baseUnit("bytes")
+						.tag("endpoint", template)
+						.publishPercentileHistogram()
+						.minimumExpectedValue(64.0)
+						.maximumExpectedValue(16.0 * 1024 * 1024)
+						.register(meterRegistry))
+			.record(bytes);
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.abe.gg_stats.service;
+
+/**
+ * Helpers for OpenDota endpoint strings as passed to {@link OpenDotaApiService}, e.g.
+ * {@code /matches/8000000001} or {@code /teams?page=3}.
+ */
+public final class OpenDotaEndpoints {
+
+	private OpenDotaEndpoints() {
+	}
+
+	/**
+	 * Reduces an endpoint to its template: the query string is dropped and numeric path
+	 * segments become {@code {id}}, so {@code /players/123?x=1} maps to
+	 * {@code /players/{id}}. Templates have bounded cardinality and are safe to use as
+	 * config keys and metric tags.
+	 */
+	public static String template(String endpoint) {
+		if (endpoint == null || endpoint.isEmpty()) {
+			return "/";
+		}
+		int q = endpoint.indexOf('?');
+		String path = q >= 0 ? endpoint.substring(0, q) : endpoint;
+		StringBuilder out = new StringBuilder(path.length());
+		for (String segment : path.split("/")) {
+			if (segment.isEmpty()) {
+				continue;
+			}
+			out.append('/').append(isNumeric(segment) ? "{id}" : segment);
+		}
+		return out.isEmpty() ? "/" : out.toString();
+	}
+
+	/**
+	 * Like {@link #template(String)} but keeps the query parameter names, with numeric
+	 * values as {@code {id}} and others as {@code {value}}: {@code /rankings?hero_id=5}
+	 * maps to {@code /rankings?hero_id={id}}. Used to tag upstream call metrics.
+	 */
+	public static String metricTemplate(String endpoint) {
+		String path = template(endpoint);
+		int q = endpoint == null ? -1 : endpoint.indexOf('?');
+		if (q < 0 || q == endpoint.length() - 1) {
+			return path;
+		}
+		StringBuilder out = new StringBuilder(path).append('?');
+		for (String param : endpoint.substring(q + 1).split("&")) {
+			if (param.isEmpty()) {
+				continue;
+			}
+			int eq = param.indexOf('=');
+			String name = eq >= 0 ? param.substring(0, eq) : param;
+			String value = eq >= 0 ? param.substring(eq + 1) : "";
+			if (out.charAt(out.length() - 1) != '?') {
+				out.append('&');
+			}
+			out.append(name).append('=').append(!value.isEmpty() && isNumeric(value) ? "{id}" : "{value}");
+		}
+		return out.toString();
+	}
+
+	private static boolean isNumeric(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isDigit(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.abe.gg_stats.service;
+
+import com.abe.gg_stats.config.OpenDotaCacheProperties;
+import com.abe.gg_stats.repository.jdbc.ApiResponseCacheDao;
+import com.abe.gg_stats.repository.jdbc.ApiResponseCacheDao.CachedResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Persistent response cache for slow-changing OpenDota endpoints.
+ * <p>
+ * Bodies are stored in {@code api_response_cache} with their {@code ETag} and
+ * {@code Last-Modified} validators and a TTL per endpoint template. Parsed trees are kept
+ * in memory, so a fresh hit touches neither the network nor the parser, and a 304 after
+ * revalidation reuses the tree instead of re-parsing. Cached trees are shared between
+ * callers and must be treated as read-only.
+ * <p>
+ * The cache is best effort: database errors are logged and the call falls through to the
+ * network.
+ */
+@Component
+@Slf4j
+public class OpenDotaResponseCache {
+
+	private final ApiResponseCacheDao dao;
+
+	private final OpenDotaCacheProperties properties;
+
+	private final ObjectMapper objectMapper;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final Counter bytesSaved;
+
+	private final AtomicLong served = new AtomicLong();
+
+	private final AtomicLong lookups = new AtomicLong();
+
+	@Autowired
+	public OpenDotaResponseCache(ApiResponseCacheDao dao, OpenDotaCacheProperties properties, ObjectMapper objectMapper,
+			MeterRegistry meterRegistry) {
+		this.dao = dao;
+		this.properties = properties;
+		this.objectMapper = objectMapper;
+		this.meterRegistry = meterRegistry;
+		this.bytesSaved = Counter.builder("opendota.api.cache.bytes_saved")
+			.description("Response bytes not transferred thanks to cache hits and 304 revalidations")
+			.baseUnit("bytes")
+			.register(meterRegistry);
+		Gauge.builder("opendota.api.cache.hit_ratio", this, OpenDotaResponseCache::hitRatio)
+			.description("Share of cacheable calls served from cache (fresh hit or 304)")
+			.register(meterRegistry);
+	}
+
+	public boolean isCacheable(String endpoint) {
+		return properties.ttlFor(OpenDotaEndpoints.template(endpoint)) != null;
+	}
+
+	/**
+	 * @return the cached body if the entry has not expired yet
+	 */
+	public Optional<JsonNode> getFresh(String endpoint) {
+		Entry entry = load(endpoint);
+		if (entry == null || !Instant.now().isBefore(entry.expiresAt())) {
+			return Optional.empty();
+		}
+		record(endpoint, "hit", entry.bytes());
+		return Optional.of(entry.body());
+	}
+
+	/**
+	 * @return {@code If-None-Match} / {@code If-Modified-Since} for a stale entry, empty
+	 * headers if there is nothing to revalidate
+	 */
+	public HttpHeaders conditionalHeaders(String endpoint) {
+		HttpHeaders headers = new HttpHeaders();
+		Entry entry = entries.get(endpoint);
+		if (entry != null) {
+			if (entry.etag() != null) {
+				headers.set(HttpHeaders.IF_NONE_MATCH, entry.etag());
+			}
+			if (entry.lastModified() != null) {
+				headers.set(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified());
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Extends a stale entry after the server answered 304 Not Modified.
+	 * @return the cached body, or {@code null} if the entry is gone
+	 */
+	public JsonNode revalidated(String endpoint, HttpHeaders responseHeaders) {
+		Entry entry = entries.get(endpoint);
+		if (entry == null) {
+			return null;
+		}
+		Instant now = Instant.now();
+		String etag = responseHeaders.getETag();
+		String lastModified = responseHeaders.getFirst(HttpHeaders.LAST_MODIFIED);
+		Entry updated = new Entry(entry.body(), entry.bytes(), etag != null ? etag : entry.etag(),
+				lastModified != null ? lastModified : entry.lastModified(), now.plus(ttl(endpoint)));
+		entries.put(endpoint, updated);
+		try {
+			dao.revalidate(endpoint, etag, lastModified, now, updated.expiresAt());
+		}
+		catch (DataAccessException e) {
+			log.warn("Could not persist cache revalidation, endpoint={}, reason={}", endpoint, e.getMessage());
+		}
+		record(endpoint, "revalidated", entry.bytes());
+		return entry.body();
+	}
+
+	/**
+	 * Stores a full 200 response.
+	 */
+	public void store(String endpoint, String body, JsonNode parsed, HttpHeaders responseHeaders) {
+		Instant now = Instant.now();
+		int bytes = body.getBytes(StandardCharsets.UTF_8).length;
+		Entry entry = new Entry(parsed, bytes, responseHeaders.getETag(),
+				responseHeaders.getFirst(HttpHeaders.LAST_MODIFIED), now.plus(ttl(endpoint)));
+		entries.put(endpoint, entry);
+		try {
+			dao.upsert(new CachedResponse(endpoint, body, entry.etag(), entry.lastModified(), now, entry.expiresAt()));
+		}
+		catch (DataAccessException e) {
+			log.warn("Could not persist cached response, endpoint={}, reason={}", endpoint, e.getMessage());
+		}
+		record(endpoint, "miss", 0);
+	}
+
+	private Entry load(String endpoint) {
+		Entry entry = entries.get(endpoint);
+		if (entry != null) {
+			return entry;
+		}
+		try {
+			Optional<CachedResponse> row = dao.find(endpoint);
+			if (row.isEmpty()) {
+				return null;
+			}
+			CachedResponse r = row.get();
+			entry = new Entry(objectMapper.readTree(r.body()), r.body().getBytes(StandardCharsets.UTF_8).length,
+					r.etag(), r.lastModified(), r.expiresAt());
+			entries.putIfAbsent(endpoint, entry);
+			return entries.get(endpoint);
+		}
+		catch (DataAccessException e) {
+			log.warn("Could not read cached response, endpoint={}, reason={}", endpoint, e.getMessage());
+			return null;
+		}
+		catch (Exception e) {
+			log.warn("Discarding unreadable cached response, endpoint={}, reason={}", endpoint, e.toString());
+			return null;
+		}
+	}
+
+	private Duration ttl(String endpoint) {
+		Duration ttl = properties.ttlFor(OpenDotaEndpoints.template(endpoint));
+		return ttl != null ? ttl : Duration.ZERO;
+	}
+
+	private void record(String endpoint, String result, long savedBytes) {
+		lookups.incrementAndGet();
+		if (!"miss".equals(result)) {
+			served.incrementAndGet();
+		}
+		bytesSaved.increment(savedBytes);
+		meterRegistry
+			.counter("opendota.api.cache.requests", "endpoint", OpenDotaEndpoints.template(endpoint), "result", result)
+			.increment();
+	}
+
+	private double hitRatio() {
+		long total = lookups.get();
+		return total == 0 ? 0.0 : (double) served.get() / total;
+	}
+
+	private record Entry(JsonNode body, int bytes, String etag, String lastModified, Instant expiresAt) {
+
+	}
+
+}
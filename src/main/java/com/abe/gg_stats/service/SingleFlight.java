@@ -0,0 +1,129 @@
+package com.abe.gg_stats.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with the same key into one execution.
+ * <p>
+ * The first caller for a key runs the supplier; callers arriving while it is in flight
+ * wait for and share its result, or its exception. Nothing is cached: once the call
+ * completes the key is released and the next caller executes again.
+ */
+final class SingleFlight {
+
+	private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * @param onCoalesced invoked when this call joins an in-flight one instead of
+	 * executing
+	 */
+	@SuppressWarnings("unchecked")
+	<V> V execute(String key, Supplier<V> call, Runnable onCoalesced) {
+		Flight own = new Flight();
+		Flight existing = inFlight.putIfAbsent(key, own);
+		if (existing != null) {
+			onCoalesced.run();
+			existing.callers.incrementAndGet();
+			return (V) await(existing);
+		}
+		try {
+			V result = call.get();
+			own.complete(result);
+			return result;
+		}
+		catch (RuntimeException | Error e) {
+			own.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			inFlight.remove(key, own);
+		}
+	}
+
+	/**
+	 * Asynchronous {@link #execute}: the key stays in flight until the future returned by
+	 * {@code call} completes, and callers arriving meanwhile share that future instead of
+	 * starting their own. Synchronous and asynchronous callers of a key coalesce with
+	 * each other. Each caller gets its own dependent future; cancelling it leaves the
+	 * other callers alone, and once every caller has cancelled, the future returned by
+	 * {@code call} is cancelled too.
+	 */
+	@SuppressWarnings("unchecked")
+	<V> CompletableFuture<V> executeAsync(String key, Supplier<CompletableFuture<V>> call, Runnable onCoalesced) {
+		Flight own = new Flight();
+		Flight existing = inFlight.putIfAbsent(key, own);
+		if (existing != null) {
+			onCoalesced.run();
+			existing.callers.incrementAndGet();
+			return existing.subscribe();
+		}
+		try {
+			CompletableFuture<V> future = call.get();
+			own.call = future;
+			future.whenComplete((result, error) -> {
+				inFlight.remove(key, own);
+				if (error != null) {
+					own.completeExceptionally(error);
+				}
+				else {
+					own.complete(result);
+				}
+			});
+		}
+		catch (RuntimeException | Error e) {
+			inFlight.remove(key, own);
+			own.completeExceptionally(e);
+			throw e;
+		}
+		return own.subscribe();
+	}
+
+	private static Object await(Flight future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for in-flight call", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException re) {
+				throw re;
+			}
+			if (e.getCause() instanceof Error err) {
+				throw err;
+			}
+			throw new IllegalStateException("In-flight call failed", e.getCause());
+		}
+	}
+
+	/**
+	 * One execution of a key, shared by its callers.
+	 */
+	private static final class Flight extends CompletableFuture<Object> {
+
+		private final AtomicInteger callers = new AtomicInteger(1);
+
+		// The future of an asynchronous call, cancelled once no caller wants it
+		private volatile CompletableFuture<?> call;
+
+		@SuppressWarnings("unchecked")
+		<V> CompletableFuture<V> subscribe() {
+			CompletableFuture<V> caller = thenApply(result -> (V) result);
+			caller.whenComplete((result, error) -> {
+				CompletableFuture<?> running = call;
+				if (caller.isCancelled() && callers.decrementAndGet() == 0 && running != null) {
+					running.cancel(false);
+				}
+			});
+			return caller;
+		}
+
+	}
+
+}
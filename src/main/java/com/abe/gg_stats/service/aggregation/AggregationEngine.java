@@ -0,0 +1,19 @@
+package com.abe.gg_stats.service.aggregation;
+
+/**
+ * Where hero trends and pair stats are computed, chosen with
+ * {@code app.aggregation.engine}.
+ */
+public enum AggregationEngine {
+
+	/**
+	 * {@code INSERT ... SELECT} statements grouping the lineups on PostgreSQL.
+	 */
+	SQL,
+
+	/**
+	 * Picks streamed into the application and counted by {@link InMemoryHeroAggregator}.
+	 */
+	JVM
+
+}
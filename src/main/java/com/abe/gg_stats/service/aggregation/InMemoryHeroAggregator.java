@@ -0,0 +1,250 @@
+package com.abe.gg_stats.service.aggregation;
+
+import com.abe.gg_stats.repository.jdbc.AggregationDao;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PatchWeek;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PickConsumer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link AggregationEngine#JVM} engine: computes the same hero trends and pair stats as
+ * {@link AggregationDao#aggregateHeroTrends} and
+ * {@link AggregationDao#aggregateHeroPairs} in the application.
+ * <p>
+ * The picks of the requested patches are streamed in a single forward-only pass, patch by
+ * patch. Hero IDs are small, so each bucket counts its lineups and won lineups in flat
+ * {@code long[HERO_SLOTS]} arrays and its pairs and won pairs in flat
+ * {@code long[HERO_SLOTS * HERO_SLOTS]} arrays indexed by {@code a * HERO_SLOTS + b} with
+ * {@code a < b}. Once a patch is complete its rows are derived from the counts and
+ * inserted in batches. Only one patch is held in memory at a time.
+ */
+@Component
+@Slf4j
+public class InMemoryHeroAggregator {
+
+	static final int HERO_SLOTS = 256;
+
+	private static final long SECONDS_PER_WEEK = 604_800;
+
+	private final AggregationDao dao;
+
+	@Autowired
+	public InMemoryHeroAggregator(AggregationDao dao) {
+		this.dao = dao;
+	}
+
+	/**
+	 * Recomputes the patch-level rows of {@code patches} and the patch-week rows of
+	 * {@code weeks}, each week's deltas taken against the week before, into the
+	 * generation started by {@link AggregationDao#beginAggregateBuild}.
+	 */
+	public void aggregate(Collection<Integer> patches, Collection<PatchWeek> weeks) {
+		Map<Integer, Set<Long>> weeksByPatch = new HashMap<>();
+		for (PatchWeek week : weeks) {
+			weeksByPatch.computeIfAbsent(week.patch(), p -> new HashSet<>()).add(week.epochWeek());
+		}
+		Pass pass = new Pass(weeksByPatch);
+		long picks = dao.forEachPick(patches, pass);
+		pass.finish();
+		if (pass.skippedHeroes > 0) {
+			log.warn("Skipped picks with hero IDs outside the counted range, count={}, heroSlots={}",
+					pass.skippedHeroes, HERO_SLOTS);
+		}
+		log.debug("Aggregated hero trends in memory, patches={}, weeks={}, picks={}", patches.size(), weeks.size(),
+				picks);
+	}
+
+	/**
+	 * One streaming pass: assembles the lineups from consecutive picks of the same match
+	 * and team and counts them into the buckets of the current patch.
+	 */
+	private final class Pass implements PickConsumer {
+
+		private final Map<Integer, Set<Long>> weeksByPatch;
+
+		private int patch;
+
+		private Set<Long> requestedWeeks = Set.of();
+
+		private Counts patchCounts;
+
+		private final Map<Long, Counts> weekCounts = new HashMap<>();
+
+		private long matchId = -1;
+
+		private int team = -1;
+
+		private int startTime;
+
+		private boolean won;
+
+		private int[] lineup = new int[8];
+
+		private int lineupSize;
+
+		private long skippedHeroes;
+
+		Pass(Map<Integer, Set<Long>> weeksByPatch) {
+			this.weeksByPatch = weeksByPatch;
+		}
+
+		@Override
+		public void accept(int patch, int startTime, long matchId, int team, int heroId, boolean won) {
+			if (patchCounts == null || patch != this.patch) {
+				endLineup();
+				flushPatch();
+				startPatch(patch);
+			}
+			else if (matchId != this.matchId || team != this.team) {
+				endLineup();
+			}
+			this.matchId = matchId;
+			this.team = team;
+			this.startTime = startTime;
+			this.won = won;
+			if (heroId < 0 || heroId >= HERO_SLOTS) {
+				skippedHeroes++;
+				return;
+			}
+			if (lineupSize == lineup.length) {
+				lineup = Arrays.copyOf(lineup, lineup.length * 2);
+			}
+			lineup[lineupSize++] = heroId;
+		}
+
+		void finish() {
+			endLineup();
+			flushPatch();
+		}
+
+		private void startPatch(int patch) {
+			this.patch = patch;
+			this.requestedWeeks = weeksByPatch.getOrDefault(patch, Set.of());
+			this.patchCounts = new Counts();
+			this.weekCounts.clear();
+		}
+
+		private void endLineup() {
+			if (lineupSize == 0) {
+				return;
+			}
+			patchCounts.add(lineup, lineupSize, won);
+			long week = Math.floorDiv(startTime, SECONDS_PER_WEEK);
+			// The week before a requested week is counted too, for the deltas
+			if (requestedWeeks.contains(week) || requestedWeeks.contains(week + 1)) {
+				weekCounts.computeIfAbsent(week, w -> new Counts()).add(lineup, lineupSize, won);
+			}
+			lineupSize = 0;
+		}
+
+		private void flushPatch() {
+			if (patchCounts == null) {
+				return;
+			}
+			List<Object[]> trends = new ArrayList<>();
+			List<Object[]> pairs = new ArrayList<>();
+			String patchValue = String.valueOf(patch);
+			collectRows("patch", patchValue, patchCounts, null, trends, pairs);
+			for (Long week : requestedWeeks) {
+				Counts counts = weekCounts.get(week);
+				if (counts != null) {
+					collectRows("patch_week", patchValue + "-" + week, counts, weekCounts.get(week - 1), trends, pairs);
+				}
+			}
+			dao.insertHeroTrends(trends);
+			dao.insertHeroPairs(pairs);
+			patchCounts = null;
+		}
+
+	}
+
+	static void collectRows(String bucketType, String bucketValue, Counts cur, Counts prev, List<Object[]> trends,
+			List<Object[]> pairs) {
+		double total = cur.lineups;
+		for (int h = 0; h < HERO_SLOTS; h++) {
+			long picks = cur.heroLineups[h];
+			if (picks == 0) {
+				continue;
+			}
+			double pickRate = picks / total;
+			double winRate = cur.heroWins[h] / (double) picks;
+			Double delta = prev != null && prev.heroLineups[h] > 0 ? pickRate - prev.pickRate(h) : null;
+			trends.add(new Object[] { bucketType, bucketValue, h, cur.lineups, picks, pickRate, winRate, delta });
+		}
+		for (int a = 0; a < HERO_SLOTS; a++) {
+			if (cur.heroLineups[a] == 0) {
+				continue;
+			}
+			for (int b = a + 1; b < HERO_SLOTS; b++) {
+				long together = cur.pairs[a * HERO_SLOTS + b];
+				if (together == 0) {
+					continue;
+				}
+				double support = cur.support(a, b);
+				double lift = cur.lift(a, b);
+				double confidence = together / (double) cur.heroLineups[a];
+				boolean hasPrev = prev != null && prev.pairs[a * HERO_SLOTS + b] > 0;
+				Double deltaSupport = hasPrev ? support - prev.support(a, b) : null;
+				Double deltaLift = hasPrev ? lift - prev.lift(a, b) : null;
+				pairs.add(new Object[] { bucketType, bucketValue, a, b, together, cur.pairWins[a * HERO_SLOTS + b],
+						support, confidence, lift, deltaSupport, deltaLift });
+			}
+		}
+	}
+
+	/**
+	 * Lineup, hero and pair counts of one bucket, alongside how many of them won.
+	 */
+	static final class Counts {
+
+		long lineups;
+
+		final long[] heroLineups = new long[HERO_SLOTS];
+
+		final long[] heroWins = new long[HERO_SLOTS];
+
+		final long[] pairs = new long[HERO_SLOTS * HERO_SLOTS];
+
+		final long[] pairWins = new long[HERO_SLOTS * HERO_SLOTS];
+
+		void add(int[] heroes, int size, boolean won) {
+			int win = won ? 1 : 0;
+			lineups++;
+			for (int i = 0; i < size; i++) {
+				heroLineups[heroes[i]]++;
+				heroWins[heroes[i]] += win;
+				for (int j = i + 1; j < size; j++) {
+					int a = Math.min(heroes[i], heroes[j]);
+					int b = Math.max(heroes[i], heroes[j]);
+					if (a != b) {
+						pairs[a * HERO_SLOTS + b]++;
+						pairWins[a * HERO_SLOTS + b] += win;
+					}
+				}
+			}
+		}
+
+		double pickRate(int hero) {
+			return heroLineups[hero] / (double) lineups;
+		}
+
+		double support(int a, int b) {
+			return pairs[a * HERO_SLOTS + b] / (double) lineups;
+		}
+
+		double lift(int a, int b) {
+			return support(a, b) / (pickRate(a) * pickRate(b));
+		}
+
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.abe.gg_stats.service.aggregation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Refresh tasks with declared dependencies, run as soon as everything they depend on has
+ * succeeded.
+ * <p>
+ * Independent tasks run concurrently on the given executor; with {@code JdbcTemplate}
+ * each one works on its own pooled connection. A failed task skips the tasks downstream
+ * of it but not the others. {@link #run()} waits for every task and then rethrows the
+ * first failure, the others attached as suppressed. Each task is timed as
+ * {@code aggregation.refresh.task}, tagged with the graph, the task and its outcome.
+ * {@link #maxConcurrency} bounds how many tasks run at once, and so how many pooled
+ * connections the graph takes.
+ * <p>
+ * A task may only depend on tasks added before it, so the graph cannot have cycles.
+ */
+@Slf4j
+public final class RefreshGraph {
+
+	private final String name;
+
+	private final Executor executor;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, List<String>> dependencies = new LinkedHashMap<>();
+
+	private final Map<String, Runnable> actions = new HashMap<>();
+
+	private Semaphore slots;
+
+	public RefreshGraph(String name, Executor executor, MeterRegistry meterRegistry) {
+		this.name = name;
+		this.executor = executor;
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Adds a task that runs once all of {@code dependsOn} have succeeded.
+	 */
+	public RefreshGraph task(String task, Runnable action, String... dependsOn) {
+		if (dependencies.containsKey(task)) {
+			throw new IllegalArgumentException("Duplicate refresh task: " + task);
+		}
+		for (String upstream : dependsOn) {
+			if (!dependencies.containsKey(upstream)) {
+				throw new IllegalArgumentException("Refresh task " + task + " depends on unknown task " + upstream);
+			}
+		}
+		dependencies.put(task, List.of(dependsOn));
+		actions.put(task, action);
+		return this;
+	}
+
+	/**
+	 * Runs at most {@code tasks} tasks at once; the others wait for a free slot once
+	 * their dependencies have succeeded.
+	 */
+	public RefreshGraph maxConcurrency(int tasks) {
+		if (tasks < 1) {
+			throw new IllegalArgumentException("Refresh graph concurrency must be positive: " + tasks);
+		}
+		slots = new Semaphore(tasks);
+		return this;
+	}
+
+	/**
+	 * Runs every task and waits for all of them.
+	 */
+	public void run() {
+		long start = System.nanoTime();
+		Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+		ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+			String task = entry.getKey();
+			CompletableFuture<?>[] upstream = entry.getValue()
+				.stream()
+				.map(futures::get)
+				.toArray(CompletableFuture[]::new);
+			futures.put(task, CompletableFuture.allOf(upstream)
+				.handleAsync((ignored, upstreamFailure) -> execute(task, upstreamFailure, failures), executor));
+		}
+		CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+			.handle((ignored, failure) -> null)
+			.join();
+		log.info("Refresh graph finished, graph={}, tasks={}, failed={}, durationMs={}", name, futures.size(),
+				failures.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		rethrow(new ArrayList<>(failures));
+	}
+
+	private Void execute(String task, Throwable upstreamFailure, ConcurrentLinkedQueue<Throwable> failures) {
+		if (upstreamFailure != null) {
+			record(task, "skipped", 0);
+			log.warn("Skipped refresh task after upstream failure, graph={}, task={}", name, task);
+			throw new UpstreamFailedException();
+		}
+		if (slots != null) {
+			slots.acquireUninterruptibly();
+		}
+		long start = System.nanoTime();
+		try {
+			actions.get(task).run();
+			record(task, "success", System.nanoTime() - start);
+			return null;
+		}
+		catch (RuntimeException | Error e) {
+			record(task, "failure", System.nanoTime() - start);
+			log.warn("Refresh task failed, graph={}, task={}, reason={}", name, task, e.toString());
+			failures.add(e);
+			throw e;
+		}
+		finally {
+			if (slots != null) {
+				slots.release();
+			}
+		}
+	}
+
+	private void record(String task, String outcome, long durationNs) {
+		Timer.builder("aggregation.refresh.task")
+			.description("Duration of one aggregation refresh task")
+			.tag("graph", name)
+			.tag("task", task)
+			.tag("outcome", outcome)
+			.register(meterRegistry)
+			.record(durationNs, TimeUnit.NANOSECONDS);
+	}
+
+	private static void rethrow(List<Throwable> failures) {
+		if (failures.isEmpty()) {
+			return;
+		}
+		Throwable first = failures.get(0);
+		for (Throwable other : failures.subList(1, failures.size())) {
+			first.addSuppressed(other);
+		}
+		if (first instanceof Error error) {
+			throw error;
+		}
+		throw (RuntimeException) first;
+	}
+
+	/**
+	 * Completes the future of a task skipped because a task it depends on failed.
+	 */
+	private static final class UpstreamFailedException extends RuntimeException {
+
+		UpstreamFailedException() {
+			super(null, null, false, false);
+		}
+
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.abe.gg_stats.service.circuit_breaker;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the calls in flight through one circuit breaker. Callers over the cap queue in
+ * arrival order for at most {@code maxWait} and are then rejected, so a slow endpoint
+ * holds at most {@code maxConcurrentCalls} threads instead of all of them. A cap of zero
+ * or less disables the bulkhead.
+ */
+final class Bulkhead {
+
+	private final Semaphore permits;
+
+	private final int maxConcurrentCalls;
+
+	private final long maxWaitNanos;
+
+	private final AtomicLong rejectedCalls = new AtomicLong();
+
+	Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.maxWaitNanos = maxWait.toNanos();
+		this.permits = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls, true) : null;
+	}
+
+	/**
+	 * Takes a slot, waiting up to {@code maxWait}. A {@code true} result must be paired
+	 * with {@link #release()}.
+	 */
+	boolean tryEnter() {
+		if (permits == null) {
+			return true;
+		}
+		try {
+			if (permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+				return true;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		rejectedCalls.incrementAndGet();
+		return false;
+	}
+
+	void release() {
+		if (permits != null) {
+			permits.release();
+		}
+	}
+
+	int availableCalls() {
+		return permits == null ? Integer.MAX_VALUE : permits.availablePermits();
+	}
+
+	int maxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	long rejectedCalls() {
+		return rejectedCalls.get();
+	}
+
+	void resetMetrics() {
+		rejectedCalls.set(0);
+	}
+
+}
@@ -36,6 +36,27 @@ public class CircuitBreakerService {
 	@Value("${circuit-breaker.sliding-window-size:100}")
 	private int defaultSlidingWindowSize;
 
+	@Value("${circuit-breaker.sliding-window-type:COUNT_BASED}")
+	private SlidingWindowType defaultSlidingWindowType = SlidingWindowType.COUNT_BASED;
+
+	@Value("${circuit-breaker.slow-call-duration-ms:10000}")
+	private long defaultSlowCallDurationMs = 10_000;
+
+	@Value("${circuit-breaker.slow-call-rate-threshold:100}")
+	private double defaultSlowCallRateThreshold = 100.0;
+
+	@Value("${circuit-breaker.bulkhead.max-concurrent-calls:10}")
+	private int defaultBulkheadMaxConcurrentCalls = 10;
+
+	@Value("${circuit-breaker.bulkhead.max-wait-ms:2000}")
+	private long defaultBulkheadMaxWaitMs = 2_000;
+
+	/**
+	 * Runs {@code supplier} through the breaker and bulkhead named {@code serviceName}.
+	 * The fallback is used when the breaker is open or the bulkhead stays full for
+	 * {@code bulkhead.max-wait-ms}; a rejection by the bulkhead is not recorded as a
+	 * failure, so an overloaded caller does not open the breaker by itself.
+	 */
 	public <T> T executeWithCircuitBreaker(@NonNull String serviceName, @NonNull Supplier<T> supplier,
 			@NonNull Supplier<T> fallback) {
 		CircuitBreaker circuitBreaker = getOrCreateCircuitBreaker(serviceName);
@@ -45,18 +66,39 @@ public class CircuitBreakerService {
 			return fallback.get();
 		}
 
+		if (!circuitBreaker.bulkhead.tryEnter()) {
+			log.warn("Bulkhead [{}] is full ({} concurrent calls). Executing fallback.", serviceName,
+					circuitBreaker.bulkhead.maxConcurrentCalls());
+			return fallback.get();
+		}
+
+		long startNanos = System.nanoTime();
 		try {
 			T result = supplier.get();
-			circuitBreaker.recordSuccess();
+			circuitBreaker.recordSuccess(System.nanoTime() - startNanos);
 			return result;
 		}
 		catch (Exception e) {
-			circuitBreaker.recordFailure();
+			circuitBreaker.recordFailure(System.nanoTime() - startNanos);
 			log.error("Operation failed for service [{}]. State: [{}]. Error: {}", serviceName,
 					circuitBreaker.getState(), e.toString());
 			throw new CircuitBreakerException(serviceName, circuitBreaker.getState().name(),
 					"Operation failed for service");
 		}
+		finally {
+			circuitBreaker.bulkhead.release();
+		}
+	}
+
+	/**
+	 * Whether the breaker named {@code serviceName} is open and would send a call
+	 * straight to the fallback. Unlike {@link #executeWithCircuitBreaker} this does not
+	 * move an expired breaker to half-open, so callers can check it before paying for a
+	 * call, such as with a rate-limit permit.
+	 */
+	public boolean isOpen(String serviceName) {
+		CircuitBreaker cb = circuitBreakers.get(serviceName);
+		return cb != null && cb.isOpen();
 	}
 
 	public void openCircuitBreaker(String serviceName, String reason) {
@@ -108,6 +150,11 @@ public class CircuitBreakerService {
 			.timeoutDuration(Duration.ofMillis(defaultTimeoutDurationMs))
 			.minimumCalls(defaultMinimumCalls)
 			.slidingWindowSize(defaultSlidingWindowSize)
+			.slidingWindowType(defaultSlidingWindowType)
+			.slowCallDuration(Duration.ofMillis(defaultSlowCallDurationMs))
+			.slowCallRateThreshold(defaultSlowCallRateThreshold)
+			.bulkheadMaxConcurrentCalls(defaultBulkheadMaxConcurrentCalls)
+			.bulkheadMaxWait(Duration.ofMillis(defaultBulkheadMaxWaitMs))
 			.build();
 	}
 
@@ -120,6 +167,8 @@ public class CircuitBreakerService {
 			.failureCalls(0)
 			.successRate(100.0)
 			.lastStateChangeTime(Instant.now())
+			.bulkheadAvailableCalls(
+					defaultBulkheadMaxConcurrentCalls > 0 ? defaultBulkheadMaxConcurrentCalls : Integer.MAX_VALUE)
 			.build();
 	}
 
@@ -131,6 +180,17 @@ public class CircuitBreakerService {
 
 	}
 
+	/**
+	 * How {@code sliding-window-size} is read: the last N calls, or the calls of the last
+	 * N seconds. The time based window suits callers whose rate swings widely, where the
+	 * last N calls may span hours.
+	 */
+	public enum SlidingWindowType {
+
+		COUNT_BASED, TIME_BASED
+
+	}
+
 	private static class CircuitBreaker {
 
 		private final String serviceName;
@@ -145,6 +205,8 @@ public class CircuitBreakerService {
 
 		private final SlidingWindow slidingWindow;
 
+		private final Bulkhead bulkhead;
+
 		private final AtomicLong totalCalls;
 
 		private final AtomicLong successCalls;
@@ -159,7 +221,11 @@ public class CircuitBreakerService {
 			this.state = new AtomicReference<>(CircuitBreakerState.CLOSED);
 			this.lastStateChangeTime = new AtomicLong(System.currentTimeMillis());
 			this.consecutiveSuccesses = new AtomicInteger(0);
-			this.slidingWindow = new SlidingWindow(config.slidingWindowSize());
+			this.slidingWindow = switch (config.slidingWindowType()) {
+				case COUNT_BASED -> new CountBasedSlidingWindow(config.slidingWindowSize());
+				case TIME_BASED -> new TimeBasedSlidingWindow(config.slidingWindowSize());
+			};
+			this.bulkhead = new Bulkhead(config.bulkheadMaxConcurrentCalls(), config.bulkheadMaxWait());
 			this.totalCalls = new AtomicLong(0);
 			this.successCalls = new AtomicLong(0);
 			this.failureCalls = new AtomicLong(0);
@@ -172,10 +238,16 @@ public class CircuitBreakerService {
 			};
 		}
 
-		void recordSuccess() {
+		boolean isOpen() {
+			return state.get() == CircuitBreakerState.OPEN
+					&& System.currentTimeMillis() - lastStateChangeTime.get() < config.timeoutDuration().toMillis();
+		}
+
+		void recordSuccess(long durationNanos) {
 			totalCalls.incrementAndGet();
 			successCalls.incrementAndGet();
-			slidingWindow.recordSuccess();
+			boolean slow = isSlow(durationNanos);
+			slidingWindow.record(false, slow);
 
 			if (state.get() == CircuitBreakerState.HALF_OPEN) {
 				if (consecutiveSuccesses.incrementAndGet() >= config.successThreshold()) {
@@ -184,12 +256,16 @@ public class CircuitBreakerService {
 					consecutiveSuccesses.set(0);
 				}
 			}
+			else if (slow && state.get() == CircuitBreakerState.CLOSED && shouldOpen()) {
+				transitionToState(CircuitBreakerState.OPEN);
+				log.warn("Circuit breaker [{}] transitioned to OPEN due to slow call threshold reached.", serviceName);
+			}
 		}
 
-		void recordFailure() {
+		void recordFailure(long durationNanos) {
 			totalCalls.incrementAndGet();
 			failureCalls.incrementAndGet();
-			slidingWindow.recordFailure();
+			slidingWindow.record(true, isSlow(durationNanos));
 			consecutiveSuccesses.set(0);
 
 			if (state.get() == CircuitBreakerState.HALF_OPEN) {
@@ -220,6 +296,7 @@ public class CircuitBreakerService {
 		CircuitBreakerStatus getStatus() {
 			long total = totalCalls.get();
 			double successRate = total > 0 ? (double) successCalls.get() / total * 100.0 : 100.0;
+			SlidingWindow.Snapshot window = slidingWindow.snapshot();
 
 			return CircuitBreakerStatus.builder()
 				.serviceName(serviceName)
@@ -230,8 +307,12 @@ public class CircuitBreakerService {
 				.successRate(successRate)
 				.consecutiveSuccesses(consecutiveSuccesses.get())
 				.lastStateChangeTime(Instant.ofEpochMilli(lastStateChangeTime.get()))
-				.slidingWindowFailureRate(slidingWindow.getFailureRate())
+				.slidingWindowFailureRate(window.failureRate())
 				.lastFailureReason(lastFailureReason)
+				.slidingWindowCalls(window.calls())
+				.slidingWindowSlowCallRate(window.slowCallRate())
+				.bulkheadAvailableCalls(bulkhead.availableCalls())
+				.bulkheadRejectedCalls(bulkhead.rejectedCalls())
 				.build();
 		}
 
@@ -241,6 +322,7 @@ public class CircuitBreakerService {
 			failureCalls.set(0);
 			consecutiveSuccesses.set(0);
 			slidingWindow.reset();
+			bulkhead.resetMetrics();
 			lastFailureReason = null;
 		}
 
@@ -255,15 +337,19 @@ public class CircuitBreakerService {
 		}
 
 		private boolean shouldOpen() {
-			if (totalCalls.get() < config.minimumCalls())
+			SlidingWindow.Snapshot window = slidingWindow.snapshot();
+			if (window.calls() < config.minimumCalls())
 				return false;
 
-			double failureRate = slidingWindow.getFailureRate();
 			int threshold = config.failureThreshold();
 			double thresholdPercent = threshold <= 100 ? threshold
 					: (double) threshold / config.slidingWindowSize() * 100;
 
-			return failureRate >= thresholdPercent;
+			return window.failureRate() >= thresholdPercent || window.slowCallRate() >= config.slowCallRateThreshold();
+		}
+
+		private boolean isSlow(long durationNanos) {
+			return durationNanos >= config.slowCallDuration().toNanos();
 		}
 
 		private void transitionToState(CircuitBreakerState newState) {
@@ -273,63 +359,18 @@ public class CircuitBreakerService {
 
 	}
 
-	// Sliding window unchanged
-	private static class SlidingWindow {
-
-		private final boolean[] results;
-
-		private final AtomicInteger index = new AtomicInteger(0);
-
-		private final AtomicInteger size = new AtomicInteger(0);
-
-		private final int capacity;
-
-		SlidingWindow(int capacity) {
-			this.capacity = capacity;
-			this.results = new boolean[capacity];
-		}
-
-		synchronized void recordSuccess() {
-			results[index.getAndIncrement() % capacity] = true;
-			if (size.get() < capacity)
-				size.incrementAndGet();
-		}
-
-		synchronized void recordFailure() {
-			results[index.getAndIncrement() % capacity] = false;
-			if (size.get() < capacity)
-				size.incrementAndGet();
-		}
-
-		synchronized double getFailureRate() {
-			int currentSize = size.get();
-			if (currentSize == 0)
-				return 0.0;
-
-			int failures = 0;
-			for (int i = 0; i < currentSize; i++) {
-				if (!results[i])
-					failures++;
-			}
-			return (double) failures / currentSize * 100.0;
-		}
-
-		synchronized void reset() {
-			index.set(0);
-			size.set(0);
-		}
-
-	}
-
 	@Builder
 	public record CircuitBreakerConfig(int failureThreshold, int successThreshold, Duration timeoutDuration,
-			int minimumCalls, int slidingWindowSize) {
+			int minimumCalls, int slidingWindowSize, SlidingWindowType slidingWindowType, Duration slowCallDuration,
+			double slowCallRateThreshold, int bulkheadMaxConcurrentCalls, Duration bulkheadMaxWait) {
 	}
 
 	@Builder
 	public record CircuitBreakerStatus(@NonNull String serviceName, @NonNull CircuitBreakerState state, long totalCalls,
 			long successCalls, long failureCalls, double successRate, int consecutiveSuccesses,
-			Instant lastStateChangeTime, double slidingWindowFailureRate, String lastFailureReason) {
+			Instant lastStateChangeTime, double slidingWindowFailureRate, String lastFailureReason,
+			long slidingWindowCalls, double slidingWindowSlowCallRate, int bulkheadAvailableCalls,
+			long bulkheadRejectedCalls) {
 	}
 
 }
@@ -0,0 +1,89 @@
+package com.abe.gg_stats.service.circuit_breaker;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The outcomes of the last {@code capacity} calls, in a ring buffer with running
+ * counters.
+ * <p>
+ * A call claims the next slot and swaps its outcome in atomically; the counters are then
+ * corrected by the difference between the new and the evicted outcome. Every outcome is
+ * added once by the call that wrote it and removed once by the call or reset that
+ * replaced it, so the counters always settle on the content of the buffer, and both
+ * recording and reading take constant time.
+ */
+final class CountBasedSlidingWindow implements SlidingWindow {
+
+	private static final int EMPTY = 0;
+
+	private static final int RECORDED = 1;
+
+	private static final int FAILURE = 1 << 1;
+
+	private static final int SLOW = 1 << 2;
+
+	private final AtomicIntegerArray outcomes;
+
+	private final AtomicLong cursor = new AtomicLong();
+
+	private final LongAdder calls = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private final LongAdder slowCalls = new LongAdder();
+
+	private final int capacity;
+
+	CountBasedSlidingWindow(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Sliding window size must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.outcomes = new AtomicIntegerArray(capacity);
+	}
+
+	@Override
+	public void record(boolean failure, boolean slow) {
+		int outcome = RECORDED | (failure ? FAILURE : 0) | (slow ? SLOW : 0);
+		int slot = (int) Math.floorMod(cursor.getAndIncrement(), capacity);
+		account(outcome, outcomes.getAndSet(slot, outcome));
+	}
+
+	@Override
+	public Snapshot snapshot() {
+		long total = Math.max(0, calls.sum());
+		if (total == 0) {
+			return Snapshot.EMPTY;
+		}
+		// Counters are updated one after the other, so clamp what a concurrent record
+		// may have left half applied
+		return new Snapshot(total, clamp(failures.sum(), total), clamp(slowCalls.sum(), total));
+	}
+
+	@Override
+	public void reset() {
+		for (int slot = 0; slot < capacity; slot++) {
+			account(EMPTY, outcomes.getAndSet(slot, EMPTY));
+		}
+	}
+
+	private void account(int added, int removed) {
+		adjust(calls, added, removed, RECORDED);
+		adjust(failures, added, removed, FAILURE);
+		adjust(slowCalls, added, removed, SLOW);
+	}
+
+	private static void adjust(LongAdder counter, int added, int removed, int flag) {
+		int delta = ((added & flag) != 0 ? 1 : 0) - ((removed & flag) != 0 ? 1 : 0);
+		if (delta != 0) {
+			counter.add(delta);
+		}
+	}
+
+	private static long clamp(long value, long max) {
+		return Math.min(Math.max(0, value), max);
+	}
+
+}
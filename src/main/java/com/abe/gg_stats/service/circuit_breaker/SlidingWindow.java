@@ -0,0 +1,33 @@
+package com.abe.gg_stats.service.circuit_breaker;
+
+/**
+ * Outcomes of the most recent calls a circuit breaker decides on. Implementations are
+ * lock-free: recording never blocks a caller and reads never block a recording.
+ */
+interface SlidingWindow {
+
+	void record(boolean failure, boolean slow);
+
+	/**
+	 * Counts of the calls currently in the window. Under concurrent recording the counts
+	 * may be off by the calls in flight, never by more.
+	 */
+	Snapshot snapshot();
+
+	void reset();
+
+	record Snapshot(long calls, long failures, long slowCalls) {
+
+		static final Snapshot EMPTY = new Snapshot(0, 0, 0);
+
+		double failureRate() {
+			return calls == 0 ? 0.0 : (double) failures / calls * 100.0;
+		}
+
+		double slowCallRate() {
+			return calls == 0 ? 0.0 : (double) slowCalls / calls * 100.0;
+		}
+
+	}
+
+}
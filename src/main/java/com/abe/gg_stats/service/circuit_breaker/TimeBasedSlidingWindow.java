@@ -0,0 +1,122 @@
+package com.abe.gg_stats.service.circuit_breaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * The outcomes of the calls made in the last {@code seconds} seconds, in one bucket per
+ * second.
+ * <p>
+ * Each bucket is a single {@code long} packing the low bits of its second with its call,
+ * failure and slow call counts, so a call is recorded with one CAS and a bucket left over
+ * from an earlier lap is recycled by the same CAS that records into it. Reads sum the
+ * buckets whose second is still in the window, which is bounded by the window length
+ * rather than by the traffic. Counts saturate at {@value #MAX_COUNT} calls per second,
+ * far above what the OpenDota limits allow.
+ */
+final class TimeBasedSlidingWindow implements SlidingWindow {
+
+	private static final int COUNT_BITS = 14;
+
+	private static final int EPOCH_BITS = Long.SIZE - 3 * COUNT_BITS;
+
+	static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+
+	private static final long EPOCH_MASK = (1L << EPOCH_BITS) - 1;
+
+	private static final int CALLS_SHIFT = 2 * COUNT_BITS;
+
+	private static final int FAILURES_SHIFT = COUNT_BITS;
+
+	private static final int EPOCH_SHIFT = 3 * COUNT_BITS;
+
+	// A record lagging this far behind the bucket's second is dropped rather than
+	// allowed to recycle a newer bucket
+	private static final long STALE_TOLERANCE_SECONDS = 1024;
+
+	private final AtomicLongArray buckets;
+
+	private final int seconds;
+
+	private final LongSupplier nanoClock;
+
+	TimeBasedSlidingWindow(int seconds) {
+		this(seconds, System::nanoTime);
+	}
+
+	TimeBasedSlidingWindow(int seconds, LongSupplier nanoClock) {
+		if (seconds <= 0) {
+			throw new IllegalArgumentException("Sliding window size must be positive: " + seconds);
+		}
+		this.seconds = seconds;
+		this.nanoClock = nanoClock;
+		this.buckets = new AtomicLongArray(seconds);
+	}
+
+	@Override
+	public void record(boolean failure, boolean slow) {
+		long second = currentSecond();
+		int slot = (int) Math.floorMod(second, seconds);
+		long epoch = second & EPOCH_MASK;
+		long increment = (1L << CALLS_SHIFT) | (failure ? 1L << FAILURES_SHIFT : 0) | (slow ? 1L : 0);
+		while (true) {
+			long current = buckets.get(slot);
+			long next;
+			if (epochOf(current) == epoch) {
+				if (count(current, CALLS_SHIFT) == MAX_COUNT) {
+					return;
+				}
+				next = current + increment;
+			}
+			else {
+				long ahead = (epochOf(current) - epoch) & EPOCH_MASK;
+				if (count(current, CALLS_SHIFT) > 0 && ahead <= STALE_TOLERANCE_SECONDS) {
+					return;
+				}
+				next = (epoch << EPOCH_SHIFT) | increment;
+			}
+			if (buckets.compareAndSet(slot, current, next)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public Snapshot snapshot() {
+		long second = currentSecond();
+		long calls = 0;
+		long failures = 0;
+		long slowCalls = 0;
+		for (int age = 0; age < seconds; age++) {
+			long bucketSecond = second - age;
+			long bucket = buckets.get((int) Math.floorMod(bucketSecond, seconds));
+			if (epochOf(bucket) == (bucketSecond & EPOCH_MASK)) {
+				calls += count(bucket, CALLS_SHIFT);
+				failures += count(bucket, FAILURES_SHIFT);
+				slowCalls += count(bucket, 0);
+			}
+		}
+		return calls == 0 ? Snapshot.EMPTY : new Snapshot(calls, failures, slowCalls);
+	}
+
+	@Override
+	public void reset() {
+		for (int slot = 0; slot < seconds; slot++) {
+			buckets.set(slot, 0);
+		}
+	}
+
+	private long currentSecond() {
+		return Math.floorDiv(nanoClock.getAsLong(), TimeUnit.SECONDS.toNanos(1));
+	}
+
+	private static long epochOf(long bucket) {
+		return bucket >>> EPOCH_SHIFT;
+	}
+
+	private static long count(long bucket, int shift) {
+		return (bucket >>> shift) & MAX_COUNT;
+	}
+
+}
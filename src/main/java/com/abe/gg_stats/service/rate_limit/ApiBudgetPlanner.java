@@ -0,0 +1,351 @@
+package com.abe.gg_stats.service.rate_limit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shares the daily OpenDota budget between batch jobs by {@link JobBudgetClass} priority.
+ * <p>
+ * Each job's cost per run is estimated from its history: an exponential moving average of
+ * the permits it took per run, seeded from past Spring Batch executions. The demand of a
+ * class for the rest of the UTC day is that cost times the runs its crons still have
+ * today. A job may use what is left of the daily budget after the demand of every higher
+ * class and of its own class is reserved, and at least its own cost per run if the higher
+ * classes leave that much. From {@code backfill-release-hour} UTC on, historical backfill
+ * gets everything the other classes do not need.
+ * <p>
+ * The planner is a {@link JobExecutionListener} on every job: it stores the allowance in
+ * the job's execution context when it starts, so readers and processors can check it with
+ * {@link #withinAllowance()}, and records the permits used when it ends. Usage is counted
+ * from this node's granted permits, so jobs running at the same time are each charged for
+ * the other's calls and estimates err on the high side.
+ */
+@Service
+@Slf4j
+public class ApiBudgetPlanner implements JobExecutionListener {
+
+	static final String TOKENS_BEFORE_KEY = "apiBudget.tokensBefore";
+
+	static final String ALLOWANCE_KEY = "apiBudget.allowance";
+
+	static final String TOKENS_USED_KEY = "apiBudget.tokensUsed";
+
+	// Weight of the latest run in the cost estimate
+	private static final double COST_SMOOTHING = 0.3;
+
+	private final OpenDotaRateLimitingService rateLimitingService;
+
+	private final JobExplorer jobExplorer;
+
+	private final JobRepository jobRepository;
+
+	private final Clock clock;
+
+	private final Map<String, JobPlan> plans = new ConcurrentHashMap<>();
+
+	private final Map<String, Double> runCosts = new ConcurrentHashMap<>();
+
+	// Permits used today per class, guarded by this
+	private final Map<JobBudgetClass, Long> usedToday = new EnumMap<>(JobBudgetClass.class);
+
+	private LocalDate usageDay;
+
+	@Value("${opendota.api.budget.min-allowance:5}")
+	private int minAllowance;
+
+	@Value("${opendota.api.budget.default-run-cost:10}")
+	private int defaultRunCost;
+
+	@Value("${opendota.api.budget.history-runs:10}")
+	private int historyRuns;
+
+	@Value("${opendota.api.budget.backfill-release-hour:20}")
+	private int backfillReleaseHour;
+
+	@Autowired
+	public ApiBudgetPlanner(OpenDotaRateLimitingService rateLimitingService, JobExplorer jobExplorer,
+			JobRepository jobRepository, MeterRegistry meterRegistry) {
+		this(rateLimitingService, jobExplorer, jobRepository, meterRegistry, Clock.systemDefaultZone());
+	}
+
+	ApiBudgetPlanner(OpenDotaRateLimitingService rateLimitingService, JobExplorer jobExplorer,
+			JobRepository jobRepository, MeterRegistry meterRegistry, Clock clock) {
+		this.rateLimitingService = rateLimitingService;
+		this.jobExplorer = jobExplorer;
+		this.jobRepository = jobRepository;
+		this.clock = clock;
+		for (JobBudgetClass budgetClass : JobBudgetClass.values()) {
+			Gauge.builder("opendota.api.budget.planned", this, planner -> planner.plannedToday().get(budgetClass))
+				.description("Daily API permits planned for the job class by priority")
+				.tag("job_class", budgetClass.tagValue())
+				.register(meterRegistry);
+			Gauge.builder("opendota.api.budget.actual", this, planner -> planner.usedToday(budgetClass))
+				.description("API permits used by the job class so far in the UTC day")
+				.tag("job_class", budgetClass.tagValue())
+				.register(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers a scheduled job so its runs are planned for.
+	 * @param cron the cron expression the job is scheduled with, in the server time zone
+	 */
+	public void register(String jobName, JobBudgetClass budgetClass, String cron) {
+		plans.put(jobName, new JobPlan(jobName, budgetClass, CronExpression.parse(cron)));
+	}
+
+	/**
+	 * Whether the job's allowance is large enough for a run to be worth starting.
+	 */
+	public boolean canStart(String jobName) {
+		long allowance = allowance(jobName);
+		if (allowance < minAllowance) {
+			log.warn("api_budget_insufficient job={} allowance={} minAllowance={} remainingDaily={}", jobName,
+					allowance, minAllowance, rateLimitingService.getStatus().remainingDailyRequests());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Permits the job may use if it starts now. Jobs that were never registered may use
+	 * the whole remaining budget.
+	 */
+	public long allowance(String jobName) {
+		long remaining = rateLimitingService.getStatus().remainingDailyRequests();
+		JobPlan plan = plans.get(jobName);
+		if (plan == null) {
+			return remaining;
+		}
+		ZonedDateTime now = ZonedDateTime.now(clock);
+		long higherDemand = 0;
+		long ownClassDemand = 0;
+		for (JobPlan other : plans.values()) {
+			int order = other.budgetClass().compareTo(plan.budgetClass());
+			if (order < 0) {
+				higherDemand += demandLeftToday(other, now);
+			}
+			else if (order == 0) {
+				ownClassDemand += demandLeftToday(other, now);
+			}
+		}
+		long headroom = Math.max(0, remaining - higherDemand);
+		if (plan.budgetClass() == JobBudgetClass.HISTORICAL_BACKFILL && isBackfillReleased(now)) {
+			return headroom;
+		}
+		return Math.max(headroom - ownClassDemand, Math.min(headroom, Math.round(runCost(plan))));
+	}
+
+	/**
+	 * What historical backfill may use now: everything the other classes are not expected
+	 * to need before the UTC day ends, from {@code backfill-release-hour} on, and 0
+	 * before.
+	 */
+	public long leftoverForBackfill() {
+		if (!isBackfillReleased(ZonedDateTime.now(clock))) {
+			return 0;
+		}
+		return plans.values()
+			.stream()
+			.filter(plan -> plan.budgetClass() == JobBudgetClass.HISTORICAL_BACKFILL)
+			.findFirst()
+			.map(plan -> allowance(plan.jobName()))
+			.orElse(0L);
+	}
+
+	/**
+	 * Permits the running job has left of its allowance, or {@link Long#MAX_VALUE} when
+	 * not called from a job step the planner has seen start.
+	 */
+	public long remainingAllowance() {
+		StepContext context = StepSynchronizationManager.getContext();
+		if (context == null) {
+			return Long.MAX_VALUE;
+		}
+		ExecutionContext jobContext = context.getStepExecution().getJobExecution().getExecutionContext();
+		if (!jobContext.containsKey(ALLOWANCE_KEY)) {
+			return Long.MAX_VALUE;
+		}
+		long used = rateLimitingService.getGrantedRequests() - jobContext.getLong(TOKENS_BEFORE_KEY);
+		return Math.max(0, jobContext.getLong(ALLOWANCE_KEY) - used);
+	}
+
+	/**
+	 * Whether the running job may still make API calls.
+	 */
+	public boolean withinAllowance() {
+		return remainingAllowance() > 0;
+	}
+
+	@Override
+	public void beforeJob(JobExecution jobExecution) {
+		String jobName = jobExecution.getJobInstance().getJobName();
+		long allowance = allowance(jobName);
+		ExecutionContext context = jobExecution.getExecutionContext();
+		context.putLong(TOKENS_BEFORE_KEY, rateLimitingService.getGrantedRequests());
+		context.putLong(ALLOWANCE_KEY, allowance);
+		log.info("api_budget_allowance job={} allowance={} estimatedRunCost={}", jobName, allowance,
+				plans.containsKey(jobName) ? Math.round(runCost(plans.get(jobName))) : -1);
+	}
+
+	@Override
+	public void afterJob(JobExecution jobExecution) {
+		String jobName = jobExecution.getJobInstance().getJobName();
+		ExecutionContext context = jobExecution.getExecutionContext();
+		if (!context.containsKey(TOKENS_BEFORE_KEY)) {
+			return;
+		}
+		long used = Math.max(0, rateLimitingService.getGrantedRequests() - context.getLong(TOKENS_BEFORE_KEY));
+		context.putLong(TOKENS_USED_KEY, used);
+		try {
+			jobRepository.updateExecutionContext(jobExecution);
+		}
+		catch (Exception e) {
+			log.warn("api_budget_history_save_failed job={} reason={}", jobName, e.toString());
+		}
+
+		JobPlan plan = plans.get(jobName);
+		if (plan == null) {
+			return;
+		}
+		if (jobExecution.getStatus() == BatchStatus.COMPLETED) {
+			runCosts.merge(jobName, (double) used,
+					(previous, latest) -> previous + COST_SMOOTHING * (latest - previous));
+		}
+		recordUsage(plan.budgetClass(), used);
+		log.info("api_budget_consumed job={} used={} allowance={} estimatedRunCost={}", jobName, used,
+				context.getLong(ALLOWANCE_KEY), Math.round(runCost(plan)));
+	}
+
+	/**
+	 * Daily quota per class: each class in priority order is planned its expected daily
+	 * demand, capped by what the higher classes leave of the daily limit, and historical
+	 * backfill is planned everything left over.
+	 */
+	Map<JobBudgetClass, Long> plannedToday() {
+		ZonedDateTime endOfDay = endOfUtcDay(ZonedDateTime.now(clock));
+		// Just before midnight UTC, so a run at midnight is counted
+		ZonedDateTime startOfDay = endOfDay.minusDays(1).minusNanos(1).withZoneSameInstant(clock.getZone());
+		Map<JobBudgetClass, Long> planned = new EnumMap<>(JobBudgetClass.class);
+		long left = rateLimitingService.getRequestsPerDay();
+		for (JobBudgetClass budgetClass : JobBudgetClass.values()) {
+			long demand = plans.values()
+				.stream()
+				.filter(plan -> plan.budgetClass() == budgetClass)
+				.mapToLong(plan -> Math.round(runCost(plan) * runsBetween(plan.cron(), startOfDay, endOfDay)))
+				.sum();
+			long quota = budgetClass == JobBudgetClass.HISTORICAL_BACKFILL ? left : Math.min(demand, left);
+			planned.put(budgetClass, quota);
+			left -= quota;
+		}
+		return planned;
+	}
+
+	synchronized long usedToday(JobBudgetClass budgetClass) {
+		rollUsageDay();
+		return usedToday.getOrDefault(budgetClass, 0L);
+	}
+
+	private synchronized void recordUsage(JobBudgetClass budgetClass, long used) {
+		rollUsageDay();
+		usedToday.merge(budgetClass, used, Long::sum);
+	}
+
+	// Guarded by this
+	private void rollUsageDay() {
+		LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+		if (!today.equals(usageDay)) {
+			usedToday.clear();
+			usageDay = today;
+		}
+	}
+
+	private boolean isBackfillReleased(ZonedDateTime now) {
+		return now.withZoneSameInstant(ZoneOffset.UTC).getHour() >= backfillReleaseHour;
+	}
+
+	private long demandLeftToday(JobPlan plan, ZonedDateTime now) {
+		return Math.round(runCost(plan) * runsBetween(plan.cron(), now, endOfUtcDay(now)));
+	}
+
+	/**
+	 * Runs the cron has after {@code from} and before {@code until}.
+	 */
+	private static int runsBetween(CronExpression cron, ZonedDateTime from, ZonedDateTime until) {
+		int runs = 0;
+		for (ZonedDateTime next = cron.next(from); next != null && next.isBefore(until); next = cron.next(next)) {
+			runs++;
+		}
+		return runs;
+	}
+
+	private static ZonedDateTime endOfUtcDay(ZonedDateTime now) {
+		return now.withZoneSameInstant(ZoneOffset.UTC).toLocalDate().plusDays(1).atStartOfDay(ZoneOffset.UTC);
+	}
+
+	private double runCost(JobPlan plan) {
+		return runCosts.computeIfAbsent(plan.jobName(), this::historicalRunCost);
+	}
+
+	/**
+	 * Averages the permits used by the job's last completed runs. Runs recorded before
+	 * the planner existed have no usage in their context and are counted by items read,
+	 * an upper bound for jobs that make at most one call per item.
+	 */
+	private double historicalRunCost(String jobName) {
+		Double cost = null;
+		try {
+			List<JobInstance> instances = jobExplorer.getJobInstances(jobName, 0, historyRuns);
+			// Newest first; replay oldest first so recent runs weigh the most
+			for (int i = instances.size() - 1; i >= 0; i--) {
+				for (JobExecution execution : jobExplorer.getJobExecutions(instances.get(i))) {
+					if (execution.getStatus() != BatchStatus.COMPLETED) {
+						continue;
+					}
+					double used = tokensUsed(execution);
+					cost = cost == null ? used : cost + COST_SMOOTHING * (used - cost);
+				}
+			}
+		}
+		catch (Exception e) {
+			log.warn("api_budget_history_unavailable job={} reason={}", jobName, e.toString());
+		}
+		return cost != null ? cost : defaultRunCost;
+	}
+
+	private static long tokensUsed(JobExecution execution) {
+		ExecutionContext context = execution.getExecutionContext();
+		if (context.containsKey(TOKENS_USED_KEY)) {
+			return context.getLong(TOKENS_USED_KEY);
+		}
+		return execution.getStepExecutions().stream().mapToLong(StepExecution::getReadCount).sum();
+	}
+
+	private record JobPlan(String jobName, JobBudgetClass budgetClass, CronExpression cron) {
+
+	}
+
+}
@@ -0,0 +1,217 @@
+package com.abe.gg_stats.service.rate_limit;
+
+import com.abe.gg_stats.repository.jdbc.RateLimitLeaseDao;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+
+/**
+ * This node's share of the cluster-wide daily request budget.
+ * <p>
+ * Permits are leased from the shared {@code api_rate_limit} row in blocks of
+ * {@code leaseSize} with one atomic update, then handed out locally with a CAS. Only the
+ * caller that finds the lease empty goes to the database, so the row is touched once per
+ * block per node. Unused permits are returned by {@link #releaseUnused()} on shutdown,
+ * and a lease is dropped when the UTC day changes since the row starts over.
+ * <p>
+ * If the database is unreachable the node falls back to leasing from its own copy of the
+ * daily limit, as the in-memory fallback did before.
+ */
+@Slf4j
+final class DailyBudgetLease {
+
+	private static final long EXHAUSTED_RECHECK_MS = 30_000L;
+
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+
+	private final RateLimitLeaseDao leaseDao;
+
+	private final String endpoint;
+
+	private final int dailyLimit;
+
+	private final int leaseSize;
+
+	private final ReentrantLock refillLock = new ReentrantLock();
+
+	private volatile Lease current;
+
+	// Cluster-wide usage as of the last lease, this node's unused permits included
+	private volatile int clusterDailyRequests;
+
+	private final AtomicLong lastLeaseMillis = new AtomicLong();
+
+	private final AtomicLong leaseErrors = new AtomicLong();
+
+	private volatile long exhaustedUntilMillis;
+
+	DailyBudgetLease(RateLimitLeaseDao leaseDao, String endpoint, int dailyLimit, int leaseSize, LocalDate persistedDay,
+			int persistedDailyRequests) {
+		this.leaseDao = leaseDao;
+		this.endpoint = endpoint;
+		this.dailyLimit = dailyLimit;
+		this.leaseSize = Math.max(1, leaseSize);
+		long today = currentEpochDay();
+		this.current = new Lease(today, 0);
+		this.clusterDailyRequests = persistedDay != null && persistedDay.toEpochDay() == today ? persistedDailyRequests
+				: 0;
+	}
+
+	/**
+	 * Takes one permit of today's budget, leasing a new block if this node has none left.
+	 * @return {@code false} once the cluster has spent the daily limit
+	 */
+	boolean tryTake() {
+		long today = currentEpochDay();
+		Lease lease = current;
+		if (lease.epochDay == today && lease.take()) {
+			return true;
+		}
+		if (System.currentTimeMillis() < exhaustedUntilMillis && lease.epochDay == today) {
+			return false;
+		}
+		refillLock.lock();
+		try {
+			// Another caller may have refilled while we waited
+			lease = current;
+			if (lease.epochDay == today && lease.take()) {
+				return true;
+			}
+			int granted = leaseFromDatabase(today);
+			current = new Lease(today, granted);
+			if (granted == 0) {
+				exhaustedUntilMillis = System.currentTimeMillis() + EXHAUSTED_RECHECK_MS;
+				return false;
+			}
+			exhaustedUntilMillis = 0;
+			return current.take();
+		}
+		finally {
+			refillLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a permit taken by {@link #tryTake()} that was not used.
+	 */
+	void giveBack() {
+		Lease lease = current;
+		if (lease.epochDay == currentEpochDay()) {
+			lease.remaining.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Cluster-wide permits left today as far as this node knows.
+	 */
+	int remaining() {
+		long today = currentEpochDay();
+		Lease lease = current;
+		if (lease.epochDay != today) {
+			return dailyLimit;
+		}
+		return Math.max(0, dailyLimit - clusterDailyRequests) + lease.remaining.get();
+	}
+
+	int leasedPermits() {
+		Lease lease = current;
+		return lease.epochDay == currentEpochDay() ? lease.remaining.get() : 0;
+	}
+
+	long lastLeaseAgeMs() {
+		long last = lastLeaseMillis.get();
+		return last == 0 ? -1 : System.currentTimeMillis() - last;
+	}
+
+	long leaseErrors() {
+		return leaseErrors.get();
+	}
+
+	/**
+	 * Returns this node's unused permits to the shared budget.
+	 */
+	void releaseUnused() {
+		refillLock.lock();
+		try {
+			Lease lease = current;
+			int unused = lease.remaining.getAndSet(0);
+			if (unused <= 0 || lease.epochDay != currentEpochDay()) {
+				return;
+			}
+			leaseDao.release(endpoint, LocalDate.ofEpochDay(lease.epochDay), unused);
+			log.info("rate_limit_lease_released endpoint={} unused={}", endpoint, unused);
+		}
+		catch (DataAccessException e) {
+			leaseErrors.incrementAndGet();
+			log.warn("rate_limit_lease_release_failed endpoint={}", endpoint, e);
+		}
+		finally {
+			refillLock.unlock();
+		}
+	}
+
+	// Guarded by refillLock
+	private int leaseFromDatabase(long today) {
+		if (current.epochDay != today) {
+			clusterDailyRequests = 0;
+		}
+		LocalDate day = LocalDate.ofEpochDay(today);
+		try {
+			Optional<RateLimitLeaseDao.LeaseGrant> grant = leaseDao.lease(endpoint, day, leaseSize, dailyLimit);
+			if (grant.isPresent()) {
+				clusterDailyRequests = grant.get().dailyRequests();
+				lastLeaseMillis.set(System.currentTimeMillis());
+				log.debug("rate_limit_lease_acquired endpoint={} granted={} clusterDailyRequests={}", endpoint,
+						grant.get().granted(), grant.get().dailyRequests());
+				return grant.get().granted();
+			}
+			log.warn("rate_limit_lease_row_missing endpoint={} using_local_budget=true", endpoint);
+		}
+		catch (DataAccessException e) {
+			leaseErrors.incrementAndGet();
+			log.warn("rate_limit_lease_failed endpoint={} using_local_budget=true reason={}", endpoint, e.toString());
+		}
+		return leaseLocally();
+	}
+
+	// Guarded by refillLock
+	private int leaseLocally() {
+		int granted = Math.max(0, Math.min(leaseSize, dailyLimit - clusterDailyRequests));
+		clusterDailyRequests += granted;
+		return granted;
+	}
+
+	private static long currentEpochDay() {
+		return Math.floorDiv(System.currentTimeMillis(), MILLIS_PER_DAY);
+	}
+
+	private static final class Lease {
+
+		private final long epochDay;
+
+		private final AtomicInteger remaining;
+
+		private Lease(long epochDay, int permits) {
+			this.epochDay = epochDay;
+			this.remaining = new AtomicInteger(permits);
+		}
+
+		boolean take() {
+			while (true) {
+				int left = remaining.get();
+				if (left <= 0) {
+					return false;
+				}
+				if (remaining.compareAndSet(left, left - 1)) {
+					return true;
+				}
+			}
+		}
+
+	}
+
+}
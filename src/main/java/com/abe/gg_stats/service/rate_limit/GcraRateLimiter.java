@@ -0,0 +1,88 @@
+package com.abe.gg_stats.service.rate_limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free Generic Cell Rate Algorithm (GCRA) limiter.
+ * <p>
+ * The whole state is one theoretical arrival time (TAT) on a nanosecond clock,
+ * {@link System#nanoTime()} unless another is given. A permit advances the TAT by one
+ * emission interval {@code T = period / rate}; it is conforming as long as
+ * {@code now >= TAT - tau}, where {@code tau = T * (burst - 1)} is the burst tolerance.
+ * With a burst of 1 permits are spaced exactly {@code T} apart instead of being released
+ * in period-sized batches.
+ * <p>
+ * Waiting is left to {@link PermitWaiterQueue}, which retries at
+ * {@link #nanosUntilNextPermit} on behalf of queued callers.
+ */
+final class GcraRateLimiter {
+
+	private final long emissionIntervalNanos;
+
+	private final long burstToleranceNanos;
+
+	private final int burst;
+
+	private final AtomicLong theoreticalArrivalNanos;
+
+	private final LongSupplier nanoClock;
+
+	GcraRateLimiter(int permitsPerPeriod, long periodNanos, int burst) {
+		this(permitsPerPeriod, periodNanos, burst, System::nanoTime);
+	}
+
+	GcraRateLimiter(int permitsPerPeriod, long periodNanos, int burst, LongSupplier nanoClock) {
+		if (permitsPerPeriod <= 0 || periodNanos <= 0 || burst <= 0) {
+			throw new IllegalArgumentException("permitsPerPeriod, periodNanos and burst must be positive");
+		}
+		this.emissionIntervalNanos = Math.max(1, periodNanos / permitsPerPeriod);
+		this.burst = burst;
+		this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+		this.nanoClock = nanoClock;
+		this.theoreticalArrivalNanos = new AtomicLong(nanoClock.getAsLong());
+	}
+
+	/**
+	 * The current time on this limiter's clock.
+	 */
+	long now() {
+		return nanoClock.getAsLong();
+	}
+
+	/**
+	 * Takes a permit if one is conforming right now.
+	 */
+	boolean tryAcquire(long nowNanos) {
+		while (true) {
+			long tat = theoreticalArrivalNanos.get();
+			long start = Math.max(tat, nowNanos);
+			if (start - burstToleranceNanos > nowNanos) {
+				return false;
+			}
+			if (theoreticalArrivalNanos.compareAndSet(tat, start + emissionIntervalNanos)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Permits that could be taken back to back right now, between 0 and the burst.
+	 */
+	int availablePermits(long nowNanos) {
+		long headroom = nowNanos + burstToleranceNanos - theoreticalArrivalNanos.get();
+		if (headroom < 0) {
+			return 0;
+		}
+		return (int) Math.min(burst, headroom / emissionIntervalNanos + 1);
+	}
+
+	long nanosUntilNextPermit(long nowNanos) {
+		return Math.max(0, theoreticalArrivalNanos.get() - burstToleranceNanos - nowNanos);
+	}
+
+	long emissionIntervalNanos() {
+		return emissionIntervalNanos;
+	}
+
+}
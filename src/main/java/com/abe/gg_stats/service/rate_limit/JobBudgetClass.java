@@ -0,0 +1,26 @@
+package com.abe.gg_stats.service.rate_limit;
+
+/**
+ * Class of a batch job for sharing the daily API budget, in priority order: the daily
+ * budget is reserved for the jobs of a class only after the expected demand of every
+ * higher class has been reserved.
+ */
+public enum JobBudgetClass {
+
+	/** New pro matches, fetched every few minutes. */
+	FRESH_MATCHES,
+
+	/** Hero rankings and the small reference data sets (heroes, teams, pro players). */
+	RANKINGS,
+
+	/** Bulk player profile refresh. */
+	PLAYERS,
+
+	/** Historical match backfill; also gets whatever is left late in the UTC day. */
+	HISTORICAL_BACKFILL;
+
+	String tagValue() {
+		return name().toLowerCase();
+	}
+
+}
@@ -1,33 +1,42 @@
 package com.abe.gg_stats.service.rate_limit;
 
 import com.abe.gg_stats.entity.ApiRateLimit;
-import com.abe.gg_stats.exception.RateLimitExceededException;
 import com.abe.gg_stats.repository.ApiRateLimitRepository;
+import com.abe.gg_stats.repository.jdbc.RateLimitLeaseDao;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
- * Rate limiting service using token bucket algorithm with database persistence for
- * distributed environments.
+ * Rate limiting service using a lock-free GCRA limiter ({@link GcraRateLimiter}) for the
+ * per-minute budget and a {@link DailyBudgetLease} for the daily budget.
+ * <p>
+ * Permits are spaced evenly ({@code refillInterval / requestsPerMinute} apart, 1/s by
+ * default) with a configurable burst, rather than released as a full bucket once per
+ * interval. The uncontended acquire path takes no locks: it CASes the limiter state and
+ * takes a permit from the node's daily lease. Callers that have to wait join a
+ * {@link PermitWaiterQueue}, which hands out permits in priority and arrival order.
+ * <p>
+ * The daily budget is shared by every node through the {@code GLOBAL} row of
+ * {@code api_rate_limit}: nodes lease blocks of {@code lease-size} permits from it
+ * atomically and return what they did not use on shutdown, so together they never exceed
+ * {@code per-day}. The per-minute spacing is enforced per node, so {@code per-minute}
+ * should be set to each node's share of the upstream limit.
  * <p>
  * Logging: structured key=value style. Hot-path success messages are TRACE to avoid
  * noise.
@@ -38,34 +47,29 @@ public class OpenDotaRateLimitingService {
 
 	private static final String GLOBAL_TRACKING_ENDPOINT = "GLOBAL";
 
-	private static final long DATABASE_SYNC_INTERVAL_MS = 30_000L; // 30 seconds
-
-	private static final long MIN_SYNC_INTERVAL_MS = 5_000L; // Minimum time between syncs
+	private static final long MILLIS_PER_DAY = 86_400_000L;
 
 	private final ApiRateLimitRepository rateLimitRepository;
 
-	private final AtomicLong lastDatabaseSync = new AtomicLong(0);
-
-	private final AtomicLong lastSuccessfulSync = new AtomicLong(0);
-
-	private final AtomicInteger pendingChanges = new AtomicInteger(0);
-
-	private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+	private final RateLimitLeaseDao leaseDao;
 
 	// Metrics with better tracking
 	private final AtomicLong totalRequests = new AtomicLong(0);
 
 	private final AtomicLong rejectedRequests = new AtomicLong(0);
 
-	private final AtomicLong databaseSyncErrors = new AtomicLong(0);
+	private final AtomicLong grantedRequests = new AtomicLong(0);
 
-	private final AtomicLong successfulSyncs = new AtomicLong(0);
+	// This node's lease on the shared daily budget
+	private volatile DailyBudgetLease dailyBudget;
 
-	// Single global token bucket for rate limiting
-	private volatile TokenBucket globalTokenBucket;
+	// Single global limiter for the per-minute budget
+	private volatile GcraRateLimiter globalLimiter;
 
-	// Database state management with improved synchronization
-	private volatile ApiRateLimit globalRateLimit;
+	// Callers waiting for a permit, served by the dispatcher thread
+	private volatile PermitWaiterQueue waiterQueue;
+
+	private ScheduledThreadPoolExecutor dispatcher;
 
 	// Background task executor
 	private ScheduledExecutorService scheduler;
@@ -79,44 +83,76 @@ public class OpenDotaRateLimitingService {
 	@Value("${opendota.api.refill-interval.milliseconds:60000}")
 	private long refillInterval;
 
+	@Value("${opendota.api.rate-limit.burst-capacity:1}")
+	private int burstCapacity;
+
+	@Value("${opendota.api.rate-limit.enable-waiting:true}")
+	private boolean enableWaiting;
+
+	@Value("${opendota.api.rate-limit.max-wait-ms:60000}")
+	private long maxWaitMs;
+
+	@Value("${opendota.api.rate-limit.async-max-wait-ms:600000}")
+	private long asyncMaxWaitMs;
+
+	@Value("${opendota.api.rate-limit.lease-size:20}")
+	private int leaseSize;
+
+	// Time source of the limiter and its waiters
+	private final LongSupplier nanoClock;
+
 	@Autowired
-	public OpenDotaRateLimitingService(ApiRateLimitRepository apiRateLimitRepository) {
+	public OpenDotaRateLimitingService(ApiRateLimitRepository apiRateLimitRepository, RateLimitLeaseDao leaseDao) {
+		this(apiRateLimitRepository, leaseDao, System::nanoTime);
+	}
+
+	OpenDotaRateLimitingService(ApiRateLimitRepository apiRateLimitRepository, RateLimitLeaseDao leaseDao,
+			LongSupplier nanoClock) {
 		this.rateLimitRepository = apiRateLimitRepository;
+		this.leaseDao = leaseDao;
+		this.nanoClock = nanoClock;
 	}
 
 	@PostConstruct
 	public void initialize() {
 		try {
 			log.info(
-					"service_starting component=OpenDotaRateLimitingService requestsPerMinute={} requestsPerDay={} refillIntervalMs={}",
-					requestsPerMinute, requestsPerDay, refillInterval);
+					"service_starting component=OpenDotaRateLimitingService requestsPerMinute={} requestsPerDay={} refillIntervalMs={} burstCapacity={}",
+					requestsPerMinute, requestsPerDay, refillInterval, burstCapacity);
 
 			// Initialize scheduler for background tasks
 			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-				Thread t = new Thread(r, "RateLimit-DatabaseSync");
+				Thread t = new Thread(r, "RateLimit-Metrics");
 				t.setDaemon(true);
 				t.setUncaughtExceptionHandler((thread, ex) -> log
 					.error("scheduler_uncaught_exception component=OpenDotaRateLimitingService", ex));
 				return t;
 			});
 
-			// Load or create global rate limit from database
-			initializeGlobalRateLimit();
+			// Make sure the shared budget row exists and start from today's usage
+			dailyBudget = initializeDailyBudget();
 
-			// Create global token bucket
-			globalTokenBucket = new TokenBucket(requestsPerMinute, refillInterval);
+			// Create global limiter
+			globalLimiter = new GcraRateLimiter(requestsPerMinute, TimeUnit.MILLISECONDS.toNanos(refillInterval),
+					burstCapacity, nanoClock);
 
-			// Schedule database sync with improved strategy
-			scheduler.scheduleWithFixedDelay(this::periodicDatabaseSync, DATABASE_SYNC_INTERVAL_MS,
-					DATABASE_SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+			// Single timer that hands permits to queued waiters
+			dispatcher = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread t = new Thread(r, "RateLimit-Dispatcher");
+				t.setDaemon(true);
+				return t;
+			});
+			dispatcher.setRemoveOnCancelPolicy(true);
+			waiterQueue = new PermitWaiterQueue(globalLimiter, dispatcher);
 
 			// Schedule metrics logging (configurable if desired)
 			scheduler.scheduleWithFixedDelay(this::logMetrics, 60_000L, 60_000L, TimeUnit.MILLISECONDS); // Every
 																											// minute
 
-			log.info("service_started component=OpenDotaRateLimitingService availableTokens={} remainingDaily={}",
-					globalTokenBucket != null ? globalTokenBucket.getAvailableTokens() : 0,
-					getRemainingDailyRequests());
+			log.info(
+					"service_started component=OpenDotaRateLimitingService permitIntervalMs={} availableTokens={} remainingDaily={}",
+					TimeUnit.NANOSECONDS.toMillis(globalLimiter.emissionIntervalNanos()),
+					globalLimiter.availablePermits(nanoClock.getAsLong()), getRemainingDailyRequests());
 
 		}
 		catch (Exception e) {
@@ -129,6 +165,13 @@ public class OpenDotaRateLimitingService {
 	public void cleanup() {
 		log.info("service_shutting_down component=OpenDotaRateLimitingService");
 
+		if (waiterQueue != null) {
+			waiterQueue.shutdown();
+		}
+		if (dispatcher != null) {
+			dispatcher.shutdownNow();
+		}
+
 		if (scheduler != null && !scheduler.isShutdown()) {
 			scheduler.shutdown();
 			try {
@@ -144,82 +187,49 @@ public class OpenDotaRateLimitingService {
 			}
 		}
 
-		// Final save to database
-		forceDatabaseSync();
+		// Hand unused permits back to the other nodes
+		if (dailyBudget != null) {
+			dailyBudget.releaseUnused();
+		}
 
-		log.info(
-				"service_shutdown_complete component=OpenDotaRateLimitingService totalRequests={} rejectedRequests={} successfulSyncs={}",
-				totalRequests.get(), rejectedRequests.get(), successfulSyncs.get());
+		log.info("service_shutdown_complete component=OpenDotaRateLimitingService totalRequests={} rejectedRequests={}",
+				totalRequests.get(), rejectedRequests.get());
 	}
 
 	/**
-	 * Attempts to acquire a permit for making an API request.
+	 * Attempts to acquire a permit for making an API request. When waiting is enabled and
+	 * no permit is free, the caller joins the waiter queue behind any queued
+	 * {@link #acquireAsync} callers and blocks until its turn, as long as that is within
+	 * {@code max-wait-ms}.
 	 */
 	public RateLimitResult tryAcquirePermit(String endpoint) {
-		long startTime = System.nanoTime();
+		long startTime = nanoClock.getAsLong();
 		totalRequests.incrementAndGet();
 
-		try {
-			// Fast path check
-			if (isDailyLimitExceeded()) {
-				rejectedRequests.incrementAndGet();
-				int remaining = getRemainingDailyRequests();
-				long resetTime = getTimeUntilDailyReset();
-
-				log.warn("daily_limit_exceeded endpoint={} remaining={} resetInMs={}", endpoint, remaining, resetTime);
-
-				return RateLimitResult.rejected("Daily limit exceeded", remaining, resetTime);
-			}
-
-			TokenBucket bucket = globalTokenBucket;
-			if (bucket == null) {
-				rejectedRequests.incrementAndGet();
-				log.error("service_not_initialized component=OpenDotaRateLimitingService");
-				return RateLimitResult.rejected("Service not initialized", 0, 0);
-			}
-
-			// Immediate acquisition attempt
-			if (bucket.tryAcquire()) {
-				recordSuccessfulRequest();
-				long durationMs = (System.nanoTime() - startTime) / 1_000_000;
-				// Hot path success - TRACE level to avoid log noise
-				log.trace("rate_limit_acquired endpoint={} durationMs={} availableTokens={}", endpoint, durationMs,
-						bucket.getAvailableTokens());
-				return RateLimitResult.success();
-			}
-
-			// No tokens - compute wait and try waiting
-			try {
-				long waitTime = bucket.getTimeUntilNextToken();
-				log.debug("rate_limit_waiting endpoint={} waitMs={} availableTokens={}", endpoint, waitTime,
-						bucket.getAvailableTokens());
-
-				boolean acquired = bucket.tryAcquireWithWait(waitTime);
-
-				if (acquired) {
-					recordSuccessfulRequest();
-					long totalDurationMs = (System.nanoTime() - startTime) / 1_000_000;
-					log.trace(
-							"rate_limit_acquired_after_wait endpoint={} waitedMs={} totalDurationMs={} availableTokens={}",
-							endpoint, waitTime, totalDurationMs, bucket.getAvailableTokens());
-					return RateLimitResult.success(waitTime);
-				}
-				else {
-					rejectedRequests.incrementAndGet();
-					long nextTokenIn = bucket.getTimeUntilNextToken();
-					log.warn("rate_limit_timeout endpoint={} availableTokens={} nextTokenInMs={}", endpoint,
-							bucket.getAvailableTokens(), nextTokenIn);
-					return RateLimitResult.rejected("Timeout waiting for rate limit", bucket.getAvailableTokens(),
-							bucket.getTimeUntilNextToken());
-				}
-			}
-			catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				rejectedRequests.incrementAndGet();
-				log.warn("rate_limit_interrupted endpoint={}", endpoint, e);
-				return RateLimitResult.rejected("Interrupted while waiting", bucket.getAvailableTokens(), 0);
-			}
+		PermitWaiterQueue queue = waiterQueue;
+		if (queue == null) {
+			return notInitialized();
+		}
+		if (!reserveDailyPermit()) {
+			return dailyLimitExceeded(endpoint);
+		}
+		if (queue.tryAcquire(startTime)) {
+			return granted(endpoint, 0);
+		}
+		if (!enableWaiting) {
+			return timedOut(endpoint, "Rate limit exceeded");
+		}
 
+		CompletableFuture<RateLimitResult> result = awaitPermit(endpoint, queue, RequestPriority.NORMAL,
+				TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+		try {
+			return result.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.cancel(false);
+			log.warn("rate_limit_interrupted endpoint={}", endpoint, e);
+			return RateLimitResult.rejected("Interrupted while waiting", getRemainingDailyRequests(), 0);
 		}
 		catch (Exception e) {
 			rejectedRequests.incrementAndGet();
@@ -229,174 +239,178 @@ public class OpenDotaRateLimitingService {
 	}
 
 	/**
-	 * Records a successful API request for metrics and persistence
+	 * Non-blocking variant of {@link #tryAcquirePermit}: the returned future completes
+	 * once a permit is granted, or with a rejection after {@code async-max-wait-ms}. No
+	 * thread is parked while waiting; waiters are served by a single timer in
+	 * {@link RequestPriority} order, FIFO among equals.
+	 * <p>
+	 * The future is completed on the rate limiter's dispatcher thread, so callers should
+	 * continue with the {@code *Async} stages on their own executor. Cancelling it gives
+	 * the queued slot and the daily permit back.
 	 */
-	private void recordSuccessfulRequest() {
-		try {
-			stateLock.readLock().lock();
-			try {
-				ApiRateLimit current = this.globalRateLimit;
-				if (current != null) {
-					updateDailyRequests();
-					pendingChanges.incrementAndGet();
-
-					// Trigger immediate sync if we have many pending changes
-					if (pendingChanges.get() >= 10) {
-						triggerImmediateSync();
-					}
-				}
-			}
-			finally {
-				stateLock.readLock().unlock();
-			}
-		}
-		catch (Exception e) {
-			log.error("record_success_error component=OpenDotaRateLimitingService", e);
-		}
-	}
-
-	private void updateDailyRequests() {
-		ApiRateLimit current = this.globalRateLimit;
-		if (current == null) {
-			return;
-		}
+	public CompletableFuture<RateLimitResult> acquireAsync(String endpoint, RequestPriority priority) {
+		totalRequests.incrementAndGet();
 
-		LocalDate today = LocalDate.ofInstant(Instant.now(), ZoneOffset.UTC);
-		if (!current.getDailyWindowStart().equals(today)) {
-			// New day - reset counter
-			log.info("daily_window_reset previousRequests={} newWindowStart={}", current.getDailyRequests(), today);
-			current.setDailyWindowStart(today);
-			current.setDailyRequests(1);
+		PermitWaiterQueue queue = waiterQueue;
+		if (queue == null) {
+			return CompletableFuture.completedFuture(notInitialized());
 		}
-		else {
-			current.setDailyRequests(current.getDailyRequests() + 1);
+		if (!reserveDailyPermit()) {
+			return CompletableFuture.completedFuture(dailyLimitExceeded(endpoint));
 		}
+		return awaitPermit(endpoint, queue, priority, TimeUnit.MILLISECONDS.toNanos(asyncMaxWaitMs));
 	}
 
 	/**
-	 * Gets current rate limiting status and metrics
+	 * Queues for a permit; the daily permit has already been taken and is given back if
+	 * none is granted. The outcome is settled on the queued slot itself, because a
+	 * dependent stage of a cancelled future never runs: a waiter cancelled before its
+	 * turn, or whose grant arrives after it was cancelled, still returns its daily
+	 * permit.
 	 */
-	public RateLimitStatus getStatus() {
-		stateLock.readLock().lock();
-		try {
-			TokenBucket bucket = globalTokenBucket;
-			return RateLimitStatus.builder()
-				.availableTokens(bucket != null ? bucket.getAvailableTokens() : 0)
-				.remainingDailyRequests(getRemainingDailyRequests())
-				.totalRequests(totalRequests.get())
-				.rejectedRequests(rejectedRequests.get())
-				.successRate(calculateSuccessRate())
-				.timeUntilDailyReset(getTimeUntilDailyReset())
-				.pendingChanges(pendingChanges.get())
-				.lastSyncAge(System.currentTimeMillis() - lastSuccessfulSync.get())
-				.build();
-		}
-		finally {
-			stateLock.readLock().unlock();
-		}
+	private CompletableFuture<RateLimitResult> awaitPermit(String endpoint, PermitWaiterQueue queue,
+			RequestPriority priority, long maxWaitNanos) {
+		CompletableFuture<Long> slot = queue.enqueue(priority, maxWaitNanos);
+		CompletableFuture<RateLimitResult> result = new CompletableFuture<>();
+		result.whenComplete((r, error) -> {
+			if (result.isCancelled()) {
+				slot.cancel(false);
+			}
+		});
+		slot.whenComplete((waitedNanos, error) -> {
+			RateLimitResult outcome;
+			if (error != null) {
+				releaseDailyPermit();
+				rejectedRequests.incrementAndGet();
+				outcome = RateLimitResult.rejected("Cancelled while waiting", getRemainingDailyRequests(), 0);
+			}
+			else if (waitedNanos < 0) {
+				outcome = timedOut(endpoint, "Timeout waiting for rate limit");
+			}
+			else {
+				outcome = granted(endpoint, waitedNanos);
+			}
+			if (!result.complete(outcome) && outcome.allowed()) {
+				returnUnusedPermit(endpoint);
+			}
+		});
+		return result;
 	}
 
-	private void initializeGlobalRateLimit() {
-		try {
-			log.debug("db_load_attempt component=OpenDotaRateLimitingService endpoint={}", GLOBAL_TRACKING_ENDPOINT);
+	private RateLimitResult granted(String endpoint, long waitedNanos) {
+		grantedRequests.incrementAndGet();
+		long waitedMs = TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+		// Hot path success - TRACE level to avoid log noise
+		log.trace("rate_limit_acquired endpoint={} waitedMs={}", endpoint, waitedMs);
+		return waitedMs > 0 ? RateLimitResult.success(waitedMs) : RateLimitResult.success();
+	}
 
-			this.globalRateLimit = rateLimitRepository.findByEndpoint(GLOBAL_TRACKING_ENDPOINT).orElseGet(() -> {
-				log.info("db_entry_missing creating_new_global_rate_limit endpoint={}", GLOBAL_TRACKING_ENDPOINT);
-				return createNewGlobalRateLimit();
-			});
+	private RateLimitResult timedOut(String endpoint, String reason) {
+		releaseDailyPermit();
+		rejectedRequests.incrementAndGet();
+		long nextPermitInMs = TimeUnit.NANOSECONDS.toMillis(globalLimiter.nanosUntilNextPermit(nanoClock.getAsLong()));
+		log.warn("rate_limit_rejected endpoint={} reason=\"{}\" queued={} nextPermitInMs={}", endpoint, reason,
+				waiterQueue.size(), nextPermitInMs);
+		return RateLimitResult.rejected(reason, getRemainingDailyRequests(), nextPermitInMs);
+	}
 
-			log.info("db_loaded component=OpenDotaRateLimitingService dailyRequests={} windowStart={}",
-					globalRateLimit.getDailyRequests(), globalRateLimit.getDailyWindowStart());
+	private RateLimitResult dailyLimitExceeded(String endpoint) {
+		rejectedRequests.incrementAndGet();
+		long resetTime = getTimeUntilDailyReset();
+		log.warn("daily_limit_exceeded endpoint={} remaining=0 resetInMs={}", endpoint, resetTime);
+		return RateLimitResult.rejected("Daily limit exceeded", 0, resetTime);
+	}
 
-		}
-		catch (DataAccessException e) {
-			databaseSyncErrors.incrementAndGet();
-			log.warn("db_error_fallback component=OpenDotaRateLimitingService using_in_memory fallback=true", e);
-			this.globalRateLimit = createNewGlobalRateLimit();
-		}
-		catch (Exception e) {
-			databaseSyncErrors.incrementAndGet();
-			log.error("db_unexpected_error component=OpenDotaRateLimitingService", e);
-			this.globalRateLimit = createNewGlobalRateLimit();
-		}
+	private RateLimitResult notInitialized() {
+		rejectedRequests.incrementAndGet();
+		log.error("service_not_initialized component=OpenDotaRateLimitingService");
+		return RateLimitResult.rejected("Service not initialized", 0, 0);
 	}
 
 	/**
-	 * Improved database synchronization strategy
+	 * Gives back the daily permit of a granted permit that was not used for a request,
+	 * for instance because the circuit breaker opened while the caller was queued.
 	 */
-	private void periodicDatabaseSync() {
-		if (shouldSync()) {
-			syncToDatabase();
-		}
+	public void returnUnusedPermit(String endpoint) {
+		releaseDailyPermit();
+		log.debug("rate_limit_permit_returned endpoint={}", endpoint);
 	}
 
-	private boolean shouldSync() {
-		long now = System.currentTimeMillis();
-		long timeSinceLastSync = now - lastDatabaseSync.get();
-
-		// Sync if we have pending changes and enough time has passed
-		return pendingChanges.get() > 0 && timeSinceLastSync >= MIN_SYNC_INTERVAL_MS;
+	/**
+	 * Takes a permit of the cluster-wide daily budget from this node's lease.
+	 * @return {@code false} if the daily budget is exhausted
+	 */
+	private boolean reserveDailyPermit() {
+		return dailyBudget.tryTake();
 	}
 
-	private void triggerImmediateSync() {
-		if (scheduler != null && !scheduler.isShutdown()) {
-			scheduler.submit(this::syncToDatabase);
-			log.debug("triggered_immediate_sync pendingChanges={}", pendingChanges.get());
-		}
-		else {
-			log.debug("triggered_immediate_sync_skipped scheduler_not_running");
-		}
+	private void releaseDailyPermit() {
+		dailyBudget.giveBack();
 	}
 
-	private void forceDatabaseSync() {
-		syncToDatabase();
+	/**
+	 * Gets current rate limiting status and metrics
+	 */
+	public RateLimitStatus getStatus() {
+		GcraRateLimiter limiter = globalLimiter;
+		return RateLimitStatus.builder()
+			.availableTokens(limiter != null ? limiter.availablePermits(nanoClock.getAsLong()) : 0)
+			.remainingDailyRequests(getRemainingDailyRequests())
+			.totalRequests(totalRequests.get())
+			.rejectedRequests(rejectedRequests.get())
+			.successRate(calculateSuccessRate())
+			.timeUntilDailyReset(getTimeUntilDailyReset())
+			.leasedPermits(dailyBudget != null ? dailyBudget.leasedPermits() : 0)
+			.lastLeaseAge(dailyBudget != null ? dailyBudget.lastLeaseAgeMs() : -1)
+			.queuedWaiters(waiterQueue != null ? waiterQueue.size() : 0)
+			.build();
 	}
 
-	@Transactional
-	private void syncToDatabase() {
-		if (globalRateLimit == null) {
-			log.debug("sync_noop_no_global_state");
-			return;
-		}
-
-		stateLock.writeLock().lock();
-		try {
-			long syncStart = System.currentTimeMillis();
-
-			// Find the managed entity and update it
-			ApiRateLimit managed = rateLimitRepository.findByEndpoint(GLOBAL_TRACKING_ENDPOINT).orElse(globalRateLimit);
-
-			int previousRequests = managed.getDailyRequests();
-			managed.setDailyRequests(globalRateLimit.getDailyRequests());
-			managed.setDailyWindowStart(globalRateLimit.getDailyWindowStart());
-			managed.setWindowStart(Instant.now());
-
-			rateLimitRepository.save(managed);
+	/**
+	 * Configured per-minute permit budget, used to size concurrent callers
+	 */
+	public int getRequestsPerMinute() {
+		return requestsPerMinute;
+	}
 
-			// Update tracking variables
-			lastDatabaseSync.set(syncStart);
-			lastSuccessfulSync.set(syncStart);
-			int changesSynced = pendingChanges.getAndSet(0);
-			successfulSyncs.incrementAndGet();
+	/**
+	 * Configured daily permit budget shared by all nodes
+	 */
+	public int getRequestsPerDay() {
+		return requestsPerDay;
+	}
 
-			long syncDuration = System.currentTimeMillis() - syncStart;
+	/**
+	 * Permits granted by this node since startup, used to attribute API usage to jobs
+	 */
+	public long getGrantedRequests() {
+		return grantedRequests.get();
+	}
 
-			log.debug(
-					"sync_success component=OpenDotaRateLimitingService changesSynced={} previousDailyRequests={} newDailyRequests={} durationMs={}",
-					changesSynced, previousRequests, managed.getDailyRequests(), syncDuration);
+	private DailyBudgetLease initializeDailyBudget() {
+		ApiRateLimit persisted = null;
+		try {
+			log.debug("db_load_attempt component=OpenDotaRateLimitingService endpoint={}", GLOBAL_TRACKING_ENDPOINT);
 
+			persisted = rateLimitRepository.findByEndpoint(GLOBAL_TRACKING_ENDPOINT).orElseGet(() -> {
+				log.info("db_entry_missing creating_new_global_rate_limit endpoint={}", GLOBAL_TRACKING_ENDPOINT);
+				return rateLimitRepository.save(createNewGlobalRateLimit());
+			});
+			log.info("db_loaded component=OpenDotaRateLimitingService dailyRequests={} windowStart={}",
+					persisted.getDailyRequests(), persisted.getDailyWindowStart());
 		}
 		catch (DataAccessException e) {
-			databaseSyncErrors.incrementAndGet();
-			log.warn("sync_db_failure will_retry component=OpenDotaRateLimitingService", e);
+			log.warn("db_error_fallback component=OpenDotaRateLimitingService using_in_memory fallback=true", e);
 		}
 		catch (Exception e) {
-			databaseSyncErrors.incrementAndGet();
-			log.error("sync_unexpected_error component=OpenDotaRateLimitingService", e);
+			log.error("db_unexpected_error component=OpenDotaRateLimitingService", e);
 		}
-		finally {
-			stateLock.writeLock().unlock();
+		if (persisted == null) {
+			persisted = createNewGlobalRateLimit();
 		}
+		return new DailyBudgetLease(leaseDao, GLOBAL_TRACKING_ENDPOINT, requestsPerDay, leaseSize,
+				persisted.getDailyWindowStart(),
+				persisted.getDailyRequests() != null ? persisted.getDailyRequests() : 0);
 	}
 
 	/**
@@ -406,55 +420,27 @@ public class OpenDotaRateLimitingService {
 		try {
 			RateLimitStatus status = getStatus();
 			log.info(
-					"rate_limit_metrics availableTokens={} remainingDaily={} totalRequests={} rejectedRequests={} successRate={} pendingChanges={} lastSyncAgeMs={} dbErrors={}",
+					"rate_limit_metrics availableTokens={} remainingDaily={} totalRequests={} rejectedRequests={} successRate={} leasedPermits={} lastLeaseAgeMs={} leaseErrors={}",
 					status.availableTokens(), status.remainingDailyRequests(), status.totalRequests(),
-					status.rejectedRequests(), String.format("%.2f", status.successRate()), status.pendingChanges(),
-					status.lastSyncAge(), databaseSyncErrors.get());
+					status.rejectedRequests(), String.format("%.2f", status.successRate()), status.leasedPermits(),
+					status.lastLeaseAge(), dailyBudget.leaseErrors());
 		}
 		catch (Exception e) {
 			log.warn("metrics_log_error component=OpenDotaRateLimitingService", e);
 		}
 	}
 
-	private boolean isDailyLimitExceeded() {
-		return getRemainingDailyRequests() <= 0;
-	}
-
 	private int getRemainingDailyRequests() {
-		try {
-			stateLock.readLock().lock();
-			try {
-				ApiRateLimit current = this.globalRateLimit;
-				if (current == null) {
-					return requestsPerDay;
-				}
-
-				int remaining = requestsPerDay - current.getDailyRequests();
-
-				if (remaining <= 0) {
-					throw new RateLimitExceededException("N/A", remaining, 0);
-				}
-
-				if (remaining <= 10) {
-					log.warn("daily_limit_nearing_exhaustion remaining={}", remaining);
-				}
-
-				return remaining;
-			}
-			finally {
-				stateLock.readLock().unlock();
-			}
-		}
-		catch (Exception e) {
-			log.error("remaining_calculation_error failing_open", e);
-			return requestsPerDay; // Fail open
+		DailyBudgetLease budget = dailyBudget;
+		int remaining = budget != null ? budget.remaining() : requestsPerDay;
+		if (remaining > 0 && remaining <= 10) {
+			log.warn("daily_limit_nearing_exhaustion remaining={}", remaining);
 		}
+		return remaining;
 	}
 
 	private long getTimeUntilDailyReset() {
-		Instant now = Instant.now();
-		Instant nextDay = now.plus(Duration.ofDays(1));
-		return Duration.between(now, nextDay).toMillis();
+		return MILLIS_PER_DAY - Math.floorMod(System.currentTimeMillis(), MILLIS_PER_DAY);
 	}
 
 	private double calculateSuccessRate() {
@@ -479,87 +465,6 @@ public class OpenDotaRateLimitingService {
 			.build();
 	}
 
-	/**
-	 * Thread-safe token bucket implementation for smooth rate limiting.
-	 */
-	private static class TokenBucket {
-
-		private static final Logger bucketLog = LoggerFactory.getLogger(TokenBucket.class);
-
-		private final AtomicInteger currentTokens;
-
-		private final AtomicLong lastTokenAcquisitionTime;
-
-		private final int maxTokens;
-
-		private final long refillIntervalMs;
-
-		public TokenBucket(int maxTokens, long refillIntervalMs) {
-			this.maxTokens = maxTokens;
-			this.refillIntervalMs = refillIntervalMs;
-			long now = System.currentTimeMillis();
-			this.lastTokenAcquisitionTime = new AtomicLong(now);
-			this.currentTokens = new AtomicInteger(maxTokens);
-
-			bucketLog.debug("token_bucket_created maxTokens={} refillIntervalMs={}", maxTokens, refillIntervalMs);
-		}
-
-		public boolean tryAcquire() {
-			return tryAcquireToken();
-		}
-
-		public boolean tryAcquireWithWait(long timeoutMs) throws InterruptedException {
-			Thread.sleep(timeoutMs);
-			return tryAcquireToken();
-		}
-
-		private boolean tryAcquireToken() {
-			while (true) {
-				refillTokens();
-				int current = currentTokens.get();
-
-				if (current <= 0) {
-					return false;
-				}
-
-				if (currentTokens.compareAndSet(current, current - 1)) {
-					lastTokenAcquisitionTime.set(System.currentTimeMillis());
-					return true;
-				}
-				// CAS failed, retry
-			}
-		}
-
-		public int getAvailableTokens() {
-			refillTokens();
-			return currentTokens.get();
-		}
-
-		public long getTimeUntilNextToken() {
-			if (getAvailableTokens() > 0) {
-				return 0;
-			}
-			long timeSinceLastAcquisition = System.currentTimeMillis() - lastTokenAcquisitionTime.get();
-			return Math.max(0, refillIntervalMs - timeSinceLastAcquisition);
-		}
-
-		private void refillTokens() {
-			long now = System.currentTimeMillis();
-			long lastRefill = lastTokenAcquisitionTime.get();
-			long timeSinceLastRefill = now - lastRefill;
-
-			if (timeSinceLastRefill >= refillIntervalMs) {
-				if (lastTokenAcquisitionTime.compareAndSet(lastRefill, now)) {
-					int oldTokens = currentTokens.getAndSet(maxTokens);
-					if (oldTokens == 0) {
-						bucketLog.debug("token_bucket_refilled tokensAvailable={}", maxTokens);
-					}
-				}
-			}
-		}
-
-	}
-
 	/**
 	 * Result of a rate limit check
 	 */
@@ -585,7 +490,8 @@ public class OpenDotaRateLimitingService {
 	 */
 	@Builder
 	public record RateLimitStatus(int availableTokens, int remainingDailyRequests, long totalRequests,
-			long rejectedRequests, double successRate, long timeUntilDailyReset, int pendingChanges, long lastSyncAge) {
+			long rejectedRequests, double successRate, long timeUntilDailyReset, int leasedPermits, long lastLeaseAge,
+			int queuedWaiters) {
 
 	}
 
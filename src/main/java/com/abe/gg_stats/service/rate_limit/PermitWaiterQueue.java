@@ -0,0 +1,167 @@
+package com.abe.gg_stats.service.rate_limit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queue of callers waiting for a {@link GcraRateLimiter} permit.
+ * <p>
+ * Waiters park no thread: each gets a {@link CompletableFuture} that a single timer task
+ * completes when the limiter next has a permit, in {@link RequestPriority} order with
+ * FIFO among equals. Permits are handed to the head of the queue only, so waiters never
+ * race each other; callers arriving while others are queued wait behind them.
+ * <p>
+ * A waiter's future completes with the nanos it waited, or {@code -1} if no permit came
+ * up within its max wait or the queue was shut down.
+ */
+final class PermitWaiterQueue {
+
+	private static final Comparator<Waiter> ORDER = Comparator.comparingLong(Waiter::rank)
+		.thenComparingLong(Waiter::sequence);
+
+	private final GcraRateLimiter limiter;
+
+	private final ScheduledExecutorService timer;
+
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(ORDER);
+
+	// Mirrors waiters.size() so the uncontended path can skip the lock
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private long nextSequence;
+
+	private ScheduledFuture<?> nextDispatch;
+
+	private boolean shutdown;
+
+	PermitWaiterQueue(GcraRateLimiter limiter, ScheduledExecutorService timer) {
+		this.limiter = limiter;
+		this.timer = timer;
+	}
+
+	/**
+	 * Takes a permit without waiting, only if nobody is queued for one.
+	 */
+	boolean tryAcquire(long nowNanos) {
+		return queued.get() == 0 && limiter.tryAcquire(nowNanos);
+	}
+
+	CompletableFuture<Long> enqueue(RequestPriority priority, long maxWaitNanos) {
+		long now = limiter.now();
+		if (tryAcquire(now)) {
+			return CompletableFuture.completedFuture(0L);
+		}
+		if (maxWaitNanos <= 0) {
+			return CompletableFuture.completedFuture(-1L);
+		}
+		synchronized (this) {
+			if (shutdown) {
+				return CompletableFuture.completedFuture(-1L);
+			}
+			Waiter waiter = new Waiter(now, now - priority.headStartNanos(), nextSequence++, new CompletableFuture<>());
+			waiters.add(waiter);
+			queued.incrementAndGet();
+			waiter.timeout = timer.schedule(() -> expire(waiter), maxWaitNanos, TimeUnit.NANOSECONDS);
+			scheduleDispatch(now);
+			return waiter.future;
+		}
+	}
+
+	int size() {
+		return queued.get();
+	}
+
+	/**
+	 * Fails every queued waiter and stops accepting new ones.
+	 */
+	void shutdown() {
+		List<Waiter> dropped;
+		synchronized (this) {
+			shutdown = true;
+			dropped = new ArrayList<>(waiters);
+			waiters.clear();
+			queued.set(0);
+		}
+		dropped.forEach(waiter -> waiter.future.complete(-1L));
+	}
+
+	private void dispatch() {
+		List<Waiter> granted = new ArrayList<>();
+		long now = limiter.now();
+		synchronized (this) {
+			nextDispatch = null;
+			Waiter head;
+			while ((head = waiters.peek()) != null) {
+				// Cancelled waiters are dropped without spending a permit
+				if (!head.future.isDone() && !limiter.tryAcquire(now)) {
+					break;
+				}
+				waiters.poll();
+				queued.decrementAndGet();
+				head.timeout.cancel(false);
+				granted.add(head);
+			}
+			if (!waiters.isEmpty()) {
+				scheduleDispatch(now);
+			}
+		}
+		// Complete outside the lock: dependent stages run on this thread
+		for (Waiter waiter : granted) {
+			waiter.future.complete(now - waiter.enqueuedNanos);
+		}
+	}
+
+	private void expire(Waiter waiter) {
+		synchronized (this) {
+			if (!waiters.remove(waiter)) {
+				return;
+			}
+			queued.decrementAndGet();
+		}
+		waiter.future.complete(-1L);
+	}
+
+	// Guarded by this
+	private void scheduleDispatch(long nowNanos) {
+		if (nextDispatch == null && !shutdown) {
+			nextDispatch = timer.schedule(this::dispatch, limiter.nanosUntilNextPermit(nowNanos), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private static final class Waiter {
+
+		private final long enqueuedNanos;
+
+		private final long rank;
+
+		private final long sequence;
+
+		private final CompletableFuture<Long> future;
+
+		private ScheduledFuture<?> timeout;
+
+		private Waiter(long enqueuedNanos, long rank, long sequence, CompletableFuture<Long> future) {
+			this.enqueuedNanos = enqueuedNanos;
+			this.rank = rank;
+			this.sequence = sequence;
+			this.future = future;
+		}
+
+		long rank() {
+			return rank;
+		}
+
+		long sequence() {
+			return sequence;
+		}
+
+	}
+
+}
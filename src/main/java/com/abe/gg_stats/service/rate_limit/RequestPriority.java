@@ -0,0 +1,34 @@
+package com.abe.gg_stats.service.rate_limit;
+
+import java.time.Duration;
+
+/**
+ * Priority of a caller waiting for a rate limit permit.
+ * <p>
+ * Waiters are served in order of {@code enqueuedAt - headStart}, so a higher priority
+ * moves a request ahead of lower priority requests queued up to {@code headStart}
+ * earlier, but never indefinitely: once a waiter has been queued longer than the
+ * difference in head start it is served before any newer request, whatever its priority.
+ */
+public enum RequestPriority {
+
+	/** Background work such as historical backfills. */
+	LOW(Duration.ZERO),
+
+	/** Regular batch ingestion. */
+	NORMAL(Duration.ofSeconds(10)),
+
+	/** Interactive or health related calls. */
+	HIGH(Duration.ofSeconds(30));
+
+	private final long headStartNanos;
+
+	RequestPriority(Duration headStart) {
+		this.headStartNanos = headStart.toNanos();
+	}
+
+	long headStartNanos() {
+		return headStartNanos;
+	}
+
+}
@@ -0,0 +1,12 @@
+-- Unlogged staging table for COPY-based bulk loads of purchase events.
+-- Rows are copied in, merged into item_purchase_event and deleted within the same
+-- transaction, so the table is always empty between chunks and needs no WAL.
+CREATE UNLOGGED TABLE IF NOT EXISTS item_purchase_event_stage (
+  match_id BIGINT NOT NULL,
+  account_id BIGINT NOT NULL,
+  hero_id INT NOT NULL,
+  time_s INT NOT NULL,
+  item_key TEXT NOT NULL,
+  is_radiant BOOLEAN NOT NULL,
+  patch INT
+);
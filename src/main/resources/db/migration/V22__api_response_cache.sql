@@ -0,0 +1,11 @@
+-- Persistent cache of slow-changing OpenDota responses, keyed by request endpoint
+-- (path + query). Validators are replayed as If-None-Match / If-Modified-Since once
+-- the entry is past expires_at.
+CREATE TABLE IF NOT EXISTS api_response_cache (
+  endpoint TEXT PRIMARY KEY,
+  body TEXT NOT NULL,
+  etag TEXT,
+  last_modified TEXT,
+  fetched_at TIMESTAMPTZ NOT NULL,
+  expires_at TIMESTAMPTZ NOT NULL
+);
@@ -0,0 +1,9 @@
+-- Two-tier match ingestion: /proMatches summaries are stored as soon as a page is read,
+-- marked PENDING, and the match details job later fills in the rest and marks them
+-- FETCHED. Rows stored before this migration already have their details.
+ALTER TABLE matches ADD COLUMN IF NOT EXISTS detail_status TEXT NOT NULL DEFAULT 'FETCHED';
+ALTER TABLE matches ADD COLUMN IF NOT EXISTS detail_attempts SMALLINT NOT NULL DEFAULT 0;
+ALTER TABLE matches ALTER COLUMN detail_status SET DEFAULT 'PENDING';
+
+-- The detail queue: pending matches, newest first
+CREATE INDEX IF NOT EXISTS idx_matches_detail_pending ON matches (match_id DESC) WHERE detail_status = 'PENDING';
@@ -0,0 +1,15 @@
+-- (patch, week) buckets whose matches were written since hero trend and pair
+-- aggregation last ran. Match ingestion marks them in its own transaction; aggregation
+-- deletes exactly the marks it read once the buckets are published.
+CREATE TABLE IF NOT EXISTS aggregation_dirty_bucket (
+  id BIGSERIAL PRIMARY KEY,
+  patch INT NOT NULL,
+  epoch_week BIGINT NOT NULL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- Recompute every bucket already stored on the first run
+INSERT INTO aggregation_dirty_bucket (patch, epoch_week)
+SELECT DISTINCT patch, floor(start_time/604800.0)::bigint
+FROM matches
+WHERE patch IS NOT NULL AND start_time IS NOT NULL;
@@ -0,0 +1,83 @@
+-- Hero trends and pairs are kept per generation. Aggregation inserts the buckets it
+-- recomputes under a new generation and then points those buckets at it, so readers of
+-- the pro_hero_trends and pro_hero_pair_stats views switch to the new rows at once and
+-- untouched buckets are never copied.
+
+CREATE SEQUENCE IF NOT EXISTS aggregate_generation_seq START 1;
+
+ALTER TABLE pro_hero_trends RENAME TO pro_hero_trends_generations;
+ALTER TABLE pro_hero_trends_generations ADD COLUMN generation BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE pro_hero_trends_generations ALTER COLUMN generation DROP DEFAULT;
+ALTER TABLE pro_hero_trends_generations DROP CONSTRAINT pro_hero_trends_pkey;
+ALTER TABLE pro_hero_trends_generations ADD CONSTRAINT pro_hero_trends_generations_pkey
+  PRIMARY KEY (bucket_type, bucket_value, generation, hero_id);
+DROP INDEX IF EXISTS idx_pro_hero_trends_bucket;
+
+ALTER TABLE pro_hero_pair_stats RENAME TO pro_hero_pair_stats_generations;
+ALTER TABLE pro_hero_pair_stats_generations ADD COLUMN generation BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE pro_hero_pair_stats_generations ALTER COLUMN generation DROP DEFAULT;
+ALTER TABLE pro_hero_pair_stats_generations DROP CONSTRAINT pro_hero_pair_stats_pkey;
+ALTER TABLE pro_hero_pair_stats_generations ADD CONSTRAINT pro_hero_pair_stats_generations_pkey
+  PRIMARY KEY (bucket_type, bucket_value, generation, hero_id_a, hero_id_b);
+DROP INDEX IF EXISTS idx_pro_hero_pair_bucket;
+
+-- The published generation of each bucket, shared by trends and pairs
+CREATE TABLE IF NOT EXISTS aggregate_bucket_generation (
+  bucket_type TEXT NOT NULL,
+  bucket_value TEXT NOT NULL,
+  generation BIGINT NOT NULL,
+  published_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  PRIMARY KEY (bucket_type, bucket_value)
+);
+
+INSERT INTO aggregate_bucket_generation (bucket_type, bucket_value, generation)
+SELECT bucket_type, bucket_value, 0 FROM pro_hero_trends_generations
+UNION
+SELECT bucket_type, bucket_value, 0 FROM pro_hero_pair_stats_generations;
+
+CREATE VIEW pro_hero_trends AS
+SELECT t.bucket_type, t.bucket_value, t.hero_id, t.matches, t.picks, t.pick_rate, t.win_rate, t.delta_vs_prev,
+       t.computed_at
+FROM pro_hero_trends_generations t
+JOIN aggregate_bucket_generation g
+  ON g.bucket_type = t.bucket_type AND g.bucket_value = t.bucket_value AND g.generation = t.generation;
+
+CREATE VIEW pro_hero_pair_stats AS
+SELECT p.bucket_type, p.bucket_value, p.hero_id_a, p.hero_id_b, p.games_together, p.wins_together, p.support,
+       p.confidence, p.lift, p.computed_at, p.delta_support, p.delta_lift
+FROM pro_hero_pair_stats_generations p
+JOIN aggregate_bucket_generation g
+  ON g.bucket_type = p.bucket_type AND g.bucket_value = p.bucket_value AND g.generation = p.generation;
+
+-- Staging for the run in progress: its buckets and their recomputed rows. Only one run
+-- at a time uses them, under an advisory lock; they are rebuilt from matches after a
+-- crash, so they are not WAL-logged.
+CREATE UNLOGGED TABLE IF NOT EXISTS aggregate_bucket_next (
+  bucket_type TEXT NOT NULL,
+  bucket_value TEXT NOT NULL
+);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS pro_hero_trends_next (
+  bucket_type TEXT NOT NULL,
+  bucket_value TEXT NOT NULL,
+  hero_id INT NOT NULL,
+  matches BIGINT NOT NULL,
+  picks BIGINT NOT NULL,
+  pick_rate DOUBLE PRECISION NOT NULL,
+  win_rate DOUBLE PRECISION,
+  delta_vs_prev DOUBLE PRECISION
+);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS pro_hero_pair_stats_next (
+  bucket_type TEXT NOT NULL,
+  bucket_value TEXT NOT NULL,
+  hero_id_a INT NOT NULL,
+  hero_id_b INT NOT NULL,
+  games_together BIGINT NOT NULL,
+  wins_together BIGINT,
+  support DOUBLE PRECISION,
+  confidence DOUBLE PRECISION,
+  lift DOUBLE PRECISION,
+  delta_support DOUBLE PRECISION,
+  delta_lift DOUBLE PRECISION
+);
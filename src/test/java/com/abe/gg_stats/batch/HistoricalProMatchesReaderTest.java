@@ -0,0 +1,141 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.abe.gg_stats.batch.match.HistoricalMatchRangePartitioner;
+import com.abe.gg_stats.batch.match.HistoricalProMatchesReader;
+import com.abe.gg_stats.batch.match.IngestedMatchIds;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.service.OpenDotaApiService;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.batch.item.ExecutionContext;
+
+@ExtendWith(MockitoExtension.class)
+class HistoricalProMatchesReaderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Mock
+	private OpenDotaApiService openDotaApiService;
+
+	@Mock
+	private MatchIngestionDao dao;
+
+	@Mock
+	private ApiBudgetPlanner apiBudgetPlanner;
+
+	@Mock
+	private IngestedMatchIds ingestedMatchIds;
+
+	private HistoricalProMatchesReader reader(long minMatchId, long maxMatchId) {
+		return new HistoricalProMatchesReader(openDotaApiService, dao, apiBudgetPlanner, ingestedMatchIds, minMatchId,
+				maxMatchId);
+	}
+
+	private Optional<JsonNode> page(long... matchIds) {
+		ArrayNode page = objectMapper.createArrayNode();
+		for (long matchId : matchIds) {
+			page.addObject().put("match_id", matchId);
+		}
+		return Optional.of(page);
+	}
+
+	private List<Long> readAll(HistoricalProMatchesReader reader) {
+		List<Long> ids = new ArrayList<>();
+		JsonNode item;
+		while ((item = reader.read()) != null) {
+			ids.add(item.get("match_id").asLong());
+		}
+		return ids;
+	}
+
+	@Test
+	void read_WalksWindowDownToItsLowerBound() {
+		when(apiBudgetPlanner.withinAllowance()).thenReturn(true);
+		when(dao.getMinMatchIdBetween(100L, 200L)).thenReturn(null);
+		when(openDotaApiService.getProMatchesPage(200L)).thenReturn(page(190, 150));
+		when(openDotaApiService.getProMatchesPage(150L)).thenReturn(page(120, 90, 80));
+		HistoricalProMatchesReader reader = reader(100L, 200L);
+		reader.open(new ExecutionContext());
+
+		assertEquals(List.of(190L, 150L, 120L), readAll(reader));
+
+		ExecutionContext context = new ExecutionContext();
+		reader.update(context);
+		assertEquals(80L, context.getLong("historical-matches.cursor"));
+		assertTrue(context.containsKey("historical-matches.exhausted"));
+		verify(openDotaApiService, never()).getProMatchesPage(80L);
+	}
+
+	@Test
+	void read_ResumesNewRunBelowLowestStoredMatchOfWindow() {
+		when(apiBudgetPlanner.withinAllowance()).thenReturn(true);
+		when(dao.getMinMatchIdBetween(100L, 200L)).thenReturn(170L);
+		when(openDotaApiService.getProMatchesPage(170L)).thenReturn(page(160, 99));
+		HistoricalProMatchesReader reader = reader(100L, 200L);
+		reader.open(new ExecutionContext());
+
+		assertEquals(List.of(160L), readAll(reader));
+	}
+
+	@Test
+	void read_RestartResumesFromSavedCursor() {
+		when(apiBudgetPlanner.withinAllowance()).thenReturn(true);
+		when(openDotaApiService.getProMatchesPage(140L)).thenReturn(page(130, 95));
+		HistoricalProMatchesReader reader = reader(100L, 200L);
+		reader.open(new ExecutionContext(Map.<String, Object>of("historical-matches.cursor", 140L)));
+
+		assertEquals(List.of(130L), readAll(reader));
+		verify(dao, never()).getMinMatchIdBetween(anyLong(), anyLong());
+	}
+
+	@Test
+	void read_StopsWhenBudgetAllowanceIsSpent() {
+		when(apiBudgetPlanner.withinAllowance()).thenReturn(false);
+		HistoricalProMatchesReader reader = reader(100L, 200L);
+		reader.open(new ExecutionContext());
+
+		assertNull(reader.read());
+		verify(openDotaApiService, never()).getProMatchesPage(anyLong());
+	}
+
+	@Test
+	void partitioner_SplitsRequestedRangeIntoEqualWindows() {
+		Map<String, ExecutionContext> partitions = new HistoricalMatchRangePartitioner(dao, 1000L, 2000L).partition(4);
+
+		assertEquals(4, partitions.size());
+		assertEquals(1000L, partitions.get("partition0").getLong("minMatchId"));
+		assertEquals(1250L, partitions.get("partition0").getLong("maxMatchId"));
+		assertEquals(1750L, partitions.get("partition3").getLong("minMatchId"));
+		assertEquals(2000L, partitions.get("partition3").getLong("maxMatchId"));
+	}
+
+	@Test
+	void partitioner_WithoutUpperBoundWalksBelowLowestStoredMatchAsOneWindow() {
+		when(dao.getMinMatchId()).thenReturn(5000L);
+
+		Map<String, ExecutionContext> partitions = new HistoricalMatchRangePartitioner(dao, 0L, 0L).partition(4);
+
+		assertEquals(1, partitions.size());
+		assertEquals(0L, partitions.get("partition0").getLong("minMatchId"));
+		assertEquals(5000L, partitions.get("partition0").getLong("maxMatchId"));
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.abe.gg_stats.batch.match.IngestedMatchIds;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class IngestedMatchIdsTest {
+
+	private MatchIngestionDao dao;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private IngestedMatchIds ids;
+
+	@BeforeEach
+	void setUp() {
+		dao = mock(MatchIngestionDao.class);
+		meterRegistry = new SimpleMeterRegistry();
+		when(dao.forEachMatchId(any())).thenAnswer(inv -> {
+			LongConsumer consumer = inv.getArgument(0);
+			consumer.accept(100L);
+			consumer.accept(200L);
+			return 2L;
+		});
+		ids = new IngestedMatchIds(dao, meterRegistry);
+	}
+
+	@Test
+	void skipsLoadedIdsAndCountsSavedTokens() {
+		ids.load();
+
+		assertTrue(ids.skip(100L));
+		assertTrue(ids.skip(200L));
+		assertFalse(ids.skip(150L));
+		assertEquals(2.0, meterRegistry.get("opendota.api.budget.saved").counter().count());
+	}
+
+	@Test
+	void keepsIdsWrittenBeforeTheLoad() {
+		ids.addAfterCommit(List.of(300L));
+		ids.load();
+
+		assertTrue(ids.contains(100L));
+		assertTrue(ids.contains(300L));
+		assertEquals(3, ids.size());
+	}
+
+	@Test
+	void compactsRecentIdsWithoutLosingAny() {
+		ids.load();
+		ids.addAfterCommit(LongStream.rangeClosed(1_000, 10_000).boxed().toList());
+
+		assertEquals(2 + 9_001, ids.size());
+		assertTrue(ids.contains(1_000L));
+		assertTrue(ids.contains(10_000L));
+		assertTrue(meterRegistry.get("match.ingestion.known_ids.memory").gauge().value() > 0);
+	}
+
+	@Test
+	void addsOnlyAfterTheTransactionCommits() {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			ids.addAfterCommit(List.of(500L));
+			assertFalse(ids.contains(500L));
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+			assertTrue(ids.contains(500L));
+		}
+		finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+}
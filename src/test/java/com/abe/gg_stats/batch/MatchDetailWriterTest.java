@@ -0,0 +1,119 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.abe.gg_stats.batch.match.IngestedMatchIds;
+import com.abe.gg_stats.batch.match.MatchDetailWriter;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.RawDocument;
+import com.abe.gg_stats.dto.request.opendota.parser.OpenDotaMatchDetailParser;
+import com.abe.gg_stats.repository.archive.MatchArchive;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.repository.jdbc.MatchRowBatch;
+import com.abe.gg_stats.service.AggregationService;
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.batch.item.Chunk;
+
+@ExtendWith(MockitoExtension.class)
+class MatchDetailWriterTest {
+
+	private final OpenDotaMatchDetailParser parser = new OpenDotaMatchDetailParser(new JsonFactory());
+
+	@Mock
+	private MatchIngestionDao dao;
+
+	@Mock
+	private IngestedMatchIds ingestedMatchIds;
+
+	@Mock
+	private MatchArchive matchArchive;
+
+	@Mock
+	private AggregationService aggregationService;
+
+	@InjectMocks
+	private MatchDetailWriter writer;
+
+	private OpenDotaMatchDetailDto match(long matchId) throws Exception {
+		return parser.parse(new ByteArrayInputStream("""
+				{"match_id": %d, "patch": 58, "radiant_team_id": 10, "dire_team_id": 20,
+				 "picks_bans": [{"order": 0, "is_pick": false, "hero_id": 1, "team": 0},
+				                {"order": 1, "is_pick": true, "hero_id": 2, "team": 1}],
+				 "draft_timings": [{"order": 0, "pick": false, "hero_id": 1, "active_team": 2}],
+				 "players": [{"account_id": 7, "player_slot": 0, "hero_id": 2, "win": 1,
+				              "purchase_log": [{"time": -30, "key": "tango"}, {"time": 60, "key": null}]},
+				             {"account_id": 8, "player_slot": 128, "hero_id": 3, "win": 0}]}
+				""".formatted(matchId).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void write_CollectsWholeChunkIntoSingleBatch() throws Exception {
+		writer.write(Chunk.of(match(1L), match(2L)));
+
+		ArgumentCaptor<MatchRowBatch> captor = ArgumentCaptor.forClass(MatchRowBatch.class);
+		verify(dao).writeBatch(captor.capture());
+		MatchRowBatch batch = captor.getValue();
+
+		assertEquals(2, batch.getMatches().size());
+		assertEquals(4, batch.getTeamMatches().size());
+		assertEquals(4, batch.getPickBans().size());
+		assertEquals(2, batch.getDraftTimings().size());
+		assertEquals(4, batch.getPlayerMatches().size());
+		// null item keys are dropped
+		assertEquals(2, batch.getItemPurchaseEvents().size());
+		assertEquals(true, batch.getItemPurchaseEvents().getFirst()[5]);
+		verify(ingestedMatchIds).addAfterCommit(List.of(1L, 2L));
+		verify(aggregationService).requestTrendAggregation();
+		verifyNoInteractions(matchArchive);
+	}
+
+	@Test
+	void write_WithRawDocuments_ArchivesThemAndSyncsOnce() throws Exception {
+		byte[] deflated = { 1, 2, 3 };
+		writer.write(Chunk.of(match(1L).withRawDocument(new RawDocument(deflated, 10)), match(2L)));
+
+		verify(matchArchive).append(1L, deflated, 10);
+		verify(matchArchive, never()).append(eq(2L), any(), anyInt());
+		verify(matchArchive).sync();
+	}
+
+	@Test
+	void write_WhenArchiveFails_StillMarksMatchesIngested() throws Exception {
+		doThrow(new UncheckedIOException(new IOException("disk full"))).when(matchArchive).sync();
+
+		writer.write(Chunk.of(match(1L).withRawDocument(new RawDocument(new byte[] { 1 }, 1))));
+
+		verify(dao).writeBatch(any());
+		verify(ingestedMatchIds).addAfterCommit(List.of(1L));
+	}
+
+	@Test
+	void write_WithEmptyChunk_PassesEmptyBatch() throws Exception {
+		writer.write(Chunk.of());
+
+		ArgumentCaptor<MatchRowBatch> captor = ArgumentCaptor.forClass(MatchRowBatch.class);
+		verify(dao).writeBatch(captor.capture());
+		assertTrue(captor.getValue().isEmpty());
+		verifyNoInteractions(aggregationService);
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.abe.gg_stats.batch.match.ArchivedMatchReader;
+import com.abe.gg_stats.batch.match.MatchIdRangePartitioner;
+import com.abe.gg_stats.config.MatchArchiveProperties;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.repository.archive.MatchArchive;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.util.unit.DataSize;
+
+class MatchIdRangePartitionerTest {
+
+	@TempDir
+	Path directory;
+
+	private MatchArchive archive;
+
+	@AfterEach
+	void tearDown() throws IOException {
+		archive.close();
+	}
+
+	private void openArchive(DataSize segmentSize) throws IOException {
+		archive = new MatchArchive(new MatchArchiveProperties(true, directory, segmentSize), new SimpleMeterRegistry());
+		archive.open();
+	}
+
+	private void append(long matchId) throws IOException {
+		byte[] raw = ("{\"match_id\":" + matchId + "}").getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+			out.write(raw);
+		}
+		archive.append(matchId, deflated.toByteArray(), raw.length);
+		archive.sync();
+	}
+
+	/**
+	 * Reads every partition with its own reader, as the partition steps do.
+	 */
+	private List<Long> readAllPartitions(int gridSize) throws IOException {
+		Map<String, ExecutionContext> partitions = new MatchIdRangePartitioner(archive).partition(gridSize);
+		List<Long> read = new ArrayList<>();
+		long expectedMin = 0;
+		for (ExecutionContext context : partitions.values()) {
+			long min = context.getLong("minMatchId");
+			long max = context.getLong("maxMatchId");
+			assertEquals(expectedMin, min, "ranges must be contiguous");
+			assertTrue(min <= max);
+			expectedMin = max;
+
+			ArchivedMatchReader reader = new ArchivedMatchReader(archive, new ObjectMapper(), min, max);
+			reader.open(new ExecutionContext());
+			OpenDotaMatchDetailDto detail;
+			while ((detail = reader.read()) != null) {
+				assertTrue(detail.matchId() >= min && detail.matchId() < max);
+				read.add(detail.matchId());
+			}
+			reader.close();
+		}
+		assertEquals(Long.MAX_VALUE, expectedMin, "ranges must reach the end of the ID space");
+		return read;
+	}
+
+	@Test
+	void partitionsCoverSealedAndActiveSegmentsWithoutOverlap() throws IOException {
+		openArchive(DataSize.ofBytes(1));
+		List<Long> archived = new ArrayList<>();
+		for (long id = 5; id <= 95; id += 10) {
+			append(id);
+			archived.add(id);
+		}
+		archive.close();
+		// A bigger segment keeps the next documents in the active segment
+		openArchive(DataSize.ofMegabytes(1));
+		for (long id = 1; id <= 101; id += 25) {
+			append(id);
+			archived.add(id);
+		}
+		archived.sort(null);
+
+		for (int gridSize = 1; gridSize <= 6; gridSize++) {
+			List<Long> read = readAllPartitions(gridSize);
+			read.sort(null);
+			assertEquals(archived, read, "gridSize=" + gridSize);
+		}
+	}
+
+	@Test
+	void archiveSmallerThanTheGridIsReadOnce() throws IOException {
+		openArchive(DataSize.ofMegabytes(1));
+		append(7L);
+
+		assertEquals(4, new MatchIdRangePartitioner(archive).partition(4).size());
+		assertEquals(List.of(7L), readAllPartitions(4));
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.abe.gg_stats.batch.match.MatchIdSet;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MatchIdSetTest {
+
+	@Test
+	void containsOnlyAddedIdsAcrossGroups() {
+		MatchIdSet.Builder builder = new MatchIdSet.Builder();
+		builder.add(7_000_000_001L);
+		builder.add(7_000_000_001L);
+		builder.add(7_000_065_536L);
+		builder.add(8_000_000_000L);
+		MatchIdSet set = builder.build();
+
+		assertEquals(3, set.size());
+		assertTrue(set.contains(7_000_000_001L));
+		assertTrue(set.contains(7_000_065_536L));
+		assertTrue(set.contains(8_000_000_000L));
+		assertFalse(set.contains(7_000_000_002L));
+		assertFalse(set.contains(7_000_000_001L + 65_536));
+		assertFalse(MatchIdSet.EMPTY.contains(0));
+	}
+
+	@Test
+	void rejectsIdsOutOfOrder() {
+		MatchIdSet.Builder builder = new MatchIdSet.Builder();
+		builder.add(10);
+
+		assertThrows(IllegalArgumentException.class, () -> builder.add(9));
+	}
+
+	@Test
+	void mergeKeepsBothSidesWithoutDuplicates() {
+		MatchIdSet.Builder builder = new MatchIdSet.Builder();
+		builder.add(5);
+		builder.add(70_000);
+		MatchIdSet merged = builder.build().merge(new long[] { 1, 5, 69_999, 200_000 });
+
+		assertArrayEquals(new long[] { 1, 5, 69_999, 70_000, 200_000 }, merged.toArray());
+	}
+
+	@Test
+	void millionSparseIdsFitInFewMegabytes() {
+		Random random = new Random(42);
+		long[] ids = new long[1_000_000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = 6_000_000_000L + (long) (random.nextDouble() * 2_500_000_000L);
+		}
+		Arrays.sort(ids);
+		MatchIdSet set = MatchIdSet.EMPTY.merge(ids);
+
+		assertTrue(set.sizeInBytes() < 4 * 1024 * 1024, "bytes=" + set.sizeInBytes());
+		for (int i = 0; i < ids.length; i += 997) {
+			assertTrue(set.contains(ids[i]));
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.abe.gg_stats.batch.match.PendingMatchDetailReader;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.batch.item.ExecutionContext;
+
+@ExtendWith(MockitoExtension.class)
+class PendingMatchDetailReaderTest {
+
+	@Mock
+	private MatchIngestionDao dao;
+
+	@Mock
+	private ApiBudgetPlanner apiBudgetPlanner;
+
+	private PendingMatchDetailReader reader() {
+		return new PendingMatchDetailReader(dao, apiBudgetPlanner, List.of(15000L), 500, 3);
+	}
+
+	@Test
+	void open_TakesAtMostTheRemainingAllowanceWithoutCountingAttempts() {
+		when(apiBudgetPlanner.remainingAllowance()).thenReturn(2L);
+		when(apiBudgetPlanner.withinAllowance()).thenReturn(true);
+		when(dao.findPendingMatchDetails(List.of(15000L), 3, 2)).thenReturn(List.of(300L, 200L));
+		PendingMatchDetailReader reader = reader();
+		reader.open(new ExecutionContext());
+
+		assertEquals(300L, reader.read());
+		assertEquals(200L, reader.read());
+		assertNull(reader.read());
+		verify(dao, never()).recordDetailAttempts(any());
+	}
+
+	@Test
+	void open_WithSpentAllowanceLeavesTheQueueUntouched() {
+		when(apiBudgetPlanner.remainingAllowance()).thenReturn(0L);
+		PendingMatchDetailReader reader = reader();
+		reader.open(new ExecutionContext());
+
+		assertNull(reader.read());
+		verify(dao, never()).findPendingMatchDetails(any(), anyInt(), anyInt());
+		verify(dao, never()).recordDetailAttempts(any());
+	}
+
+	@Test
+	void read_StopsOnceTheAllowanceIsSpent() {
+		when(apiBudgetPlanner.remainingAllowance()).thenReturn(10L);
+		when(apiBudgetPlanner.withinAllowance()).thenReturn(true, false);
+		when(dao.findPendingMatchDetails(List.of(15000L), 3, 10)).thenReturn(List.of(300L, 200L));
+		PendingMatchDetailReader reader = reader();
+		reader.open(new ExecutionContext());
+
+		assertEquals(300L, reader.read());
+		assertNull(reader.read());
+	}
+
+}
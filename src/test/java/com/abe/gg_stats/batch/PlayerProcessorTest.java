@@ -7,6 +7,9 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.abe.gg_stats.batch.player.PlayerProcessor;
@@ -16,6 +19,7 @@ import com.abe.gg_stats.dto.request.opendota.OpenDotaPlayerDto;
 import com.abe.gg_stats.dto.request.opendota.mapper.OpenDotaPlayerResponseMapper;
 import com.abe.gg_stats.repository.PlayerRepository;
 import com.abe.gg_stats.service.OpenDotaApiService;
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -41,6 +45,9 @@ class PlayerProcessorTest {
 	@Mock
 	private BatchExpirationConfig expirationConfig;
 
+	@Mock
+	private ApiBudgetPlanner apiBudgetPlanner;
+
 	private ObjectMapper objectMapper;
 
 	private PlayerProcessor playerProcessor;
@@ -51,7 +58,16 @@ class PlayerProcessorTest {
 		OpenDotaPlayerResponseMapper openDotaPlayerResponseMapper = Mappers
 			.getMapper(OpenDotaPlayerResponseMapper.class);
 		playerProcessor = new PlayerProcessor(apiService, objectMapper, openDotaPlayerResponseMapper, playerRepository,
-				expirationConfig);
+				expirationConfig, apiBudgetPlanner);
+		lenient().when(apiBudgetPlanner.withinAllowance()).thenReturn(true);
+	}
+
+	@Test
+	void testProcess_AllowanceSpent_ShouldSkipApiCall() throws Exception {
+		when(apiBudgetPlanner.withinAllowance()).thenReturn(false);
+
+		assertNull(playerProcessor.process(12345L));
+		verify(apiService, never()).getPlayer(anyLong());
 	}
 
 	@Test
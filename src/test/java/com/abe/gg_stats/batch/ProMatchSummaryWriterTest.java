@@ -0,0 +1,59 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+
+import com.abe.gg_stats.batch.match.IngestedMatchIds;
+import com.abe.gg_stats.batch.match.ProMatchSummaryWriter;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.repository.jdbc.MatchRowBatch;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.batch.item.Chunk;
+
+@ExtendWith(MockitoExtension.class)
+class ProMatchSummaryWriterTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Mock
+	private MatchIngestionDao dao;
+
+	@Mock
+	private IngestedMatchIds ingestedMatchIds;
+
+	@InjectMocks
+	private ProMatchSummaryWriter writer;
+
+	@Test
+	void write_StoresSummariesWithTheirTeams() throws Exception {
+		JsonNode full = objectMapper.readTree("""
+				{"match_id": 100, "start_time": 1700000000, "duration": 2400, "radiant_win": true,
+				 "leagueid": 15000, "series_id": 9, "series_type": 1, "radiant_score": 30, "dire_score": 12,
+				 "radiant_team_id": 10, "radiant_name": "Radiant", "dire_team_id": 20, "dire_name": "Dire"}""");
+		JsonNode noTeams = objectMapper.readTree("{\"match_id\": 99}");
+		JsonNode noId = objectMapper.readTree("{\"duration\": 1}");
+
+		writer.write(new Chunk<>(List.of(full, noTeams, noId)));
+
+		ArgumentCaptor<MatchRowBatch> captor = ArgumentCaptor.forClass(MatchRowBatch.class);
+		verify(dao).writeSummaries(captor.capture());
+		MatchRowBatch batch = captor.getValue();
+		assertEquals(2, batch.getMatches().size());
+		assertArrayEquals(
+				new Object[] { 100L, 1700000000, 2400, true, 15000L, 9L, 1, 30, 12, 10L, "Radiant", 20L, "Dire" },
+				batch.getMatches().get(0));
+		assertEquals(99L, batch.getMatches().get(1)[0]);
+		assertEquals(2, batch.getTeamMatches().size());
+		verify(ingestedMatchIds).addAfterCommit(List.of(100L, 99L));
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.abe.gg_stats.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.abe.gg_stats.batch.match.ProMatchesToDetailProcessor;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.parser.OpenDotaMatchDetailParser;
+import com.abe.gg_stats.exception.CircuitBreakerException;
+import com.abe.gg_stats.service.OpenDotaApiService;
+import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService;
+import com.abe.gg_stats.service.rate_limit.RequestPriority;
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+class ProMatchesToDetailProcessorTest {
+
+	private OpenDotaApiService api;
+
+	private OpenDotaRateLimitingService rateLimit;
+
+	@BeforeEach
+	void setUp() {
+		api = mock(OpenDotaApiService.class);
+		rateLimit = mock(OpenDotaRateLimitingService.class);
+		when(rateLimit.getRequestsPerMinute()).thenReturn(60);
+	}
+
+	private ProMatchesToDetailProcessor processor(int concurrency) {
+		return new ProMatchesToDetailProcessor(api, rateLimit, concurrency);
+	}
+
+	private static OpenDotaMatchDetailDto detail(long matchId) throws IOException {
+		byte[] json = ("{\"match_id\":" + matchId + "}").getBytes(StandardCharsets.UTF_8);
+		return new OpenDotaMatchDetailParser(new JsonFactory()).parse(new ByteArrayInputStream(json));
+	}
+
+	@Test
+	void queuesWholeChunkBeforeProcessingAndKeepsOrder() throws Exception {
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> first = new CompletableFuture<>();
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> second = new CompletableFuture<>();
+		when(api.getMatchDetailAsync(1L, RequestPriority.NORMAL)).thenReturn(first);
+		when(api.getMatchDetailAsync(2L, RequestPriority.NORMAL)).thenReturn(second);
+		ProMatchesToDetailProcessor processor = processor(8);
+
+		processor.afterRead(1L);
+		processor.afterRead(2L);
+		verify(api).getMatchDetailAsync(1L, RequestPriority.NORMAL);
+		verify(api).getMatchDetailAsync(2L, RequestPriority.NORMAL);
+
+		// Completion order does not matter
+		second.complete(Optional.of(detail(2L)));
+		first.complete(Optional.of(detail(1L)));
+		assertEquals(1L, processor.process(1L).matchId());
+		assertEquals(2L, processor.process(2L).matchId());
+		verify(api, never()).getMatchDetail(anyLong());
+		processor.afterStep(MetaDataInstanceFactory.createStepExecution());
+	}
+
+	@Test
+	void rethrowsOriginalExceptionAndRefetchesOnRetry() throws Exception {
+		when(api.getMatchDetailAsync(3L, RequestPriority.NORMAL))
+			.thenReturn(CompletableFuture.failedFuture(new CircuitBreakerException("opendota_api", "OPEN", "boom")));
+		when(api.getMatchDetail(3L)).thenReturn(Optional.of(detail(3L)));
+		ProMatchesToDetailProcessor processor = processor(8);
+
+		processor.afterRead(3L);
+		assertThrows(CircuitBreakerException.class, () -> processor.process(3L));
+
+		OpenDotaMatchDetailDto retried = processor.process(3L);
+		assertEquals(3L, retried.matchId());
+		verify(api, times(1)).getMatchDetail(3L);
+		processor.afterStep(MetaDataInstanceFactory.createStepExecution());
+	}
+
+	@Test
+	void concurrencyOfOneFetchesSynchronously() {
+		when(api.getMatchDetail(4L)).thenReturn(Optional.empty());
+		ProMatchesToDetailProcessor processor = processor(1);
+
+		processor.afterRead(4L);
+		assertNull(processor.process(4L));
+		verify(api, times(1)).getMatchDetail(4L);
+		verify(api, never()).getMatchDetailAsync(anyLong(), any());
+	}
+
+	@Test
+	void boundsInFlightFetchesAndStartsTheNextAsOneCompletes() throws Exception {
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> first = new CompletableFuture<>();
+		when(api.getMatchDetailAsync(1L, RequestPriority.NORMAL)).thenReturn(first);
+		when(api.getMatchDetailAsync(2L, RequestPriority.NORMAL)).thenReturn(new CompletableFuture<>());
+		when(api.getMatchDetailAsync(3L, RequestPriority.NORMAL))
+			.thenReturn(CompletableFuture.completedFuture(Optional.of(detail(3L))));
+		ProMatchesToDetailProcessor processor = processor(2);
+
+		processor.afterRead(1L);
+		processor.afterRead(2L);
+		processor.afterRead(3L);
+		verify(api, never()).getMatchDetailAsync(3L, RequestPriority.NORMAL);
+
+		first.complete(Optional.of(detail(1L)));
+		verify(api).getMatchDetailAsync(3L, RequestPriority.NORMAL);
+		assertEquals(1L, processor.process(1L).matchId());
+		processor.afterStep(MetaDataInstanceFactory.createStepExecution());
+	}
+
+	@Test
+	void concurrencyIsCappedByThePerMinuteBudget() {
+		when(rateLimit.getRequestsPerMinute()).thenReturn(1);
+		when(api.getMatchDetail(5L)).thenReturn(Optional.empty());
+		ProMatchesToDetailProcessor processor = processor(8);
+
+		processor.afterRead(5L);
+		assertNull(processor.process(5L));
+		verify(api, never()).getMatchDetailAsync(anyLong(), any());
+	}
+
+	@Test
+	void unconsumedFetchesAreCancelledAfterTheStep() {
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> pending = new CompletableFuture<>();
+		when(api.getMatchDetailAsync(6L, RequestPriority.NORMAL)).thenReturn(pending);
+		ProMatchesToDetailProcessor processor = processor(8);
+
+		processor.afterRead(6L);
+		processor.afterStep(MetaDataInstanceFactory.createStepExecution());
+
+		assertTrue(pending.isCancelled());
+	}
+
+}
@@ -52,18 +52,16 @@ public class HistoricalMatchesJobTest {
 			@Autowired @Qualifier("historicalMatchesIngestionJob") Job job) throws Exception {
 		utils.setJob(job);
 
-		when(dao.getMinMatchId()).thenReturn(123L);
-		when(api.getProMatchesPage(123L))
+		when(dao.getMinMatchId()).thenReturn(124L);
+		when(dao.getMinMatchIdBetween(0L, 124L)).thenReturn(null);
+		when(api.getProMatchesPage(124L))
 			.thenReturn(Optional.of(JsonNodeFactory.instance.arrayNode().add(makeMatch())));
 
-		when(api.getMatchDetail(123L)).thenReturn(Optional.of(objectMapper.readTree("{\"match_id\":123}")));
-
-		when(api.getMatchDetail(122L)).thenReturn(Optional.of(objectMapper.readTree("{\"match_id\":122}")));
-
 		JobExecution execution = utils.launchJob();
 
 		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
-		verify(dao, atLeastOnce()).upsertMatch(any());
+		verify(dao, atLeastOnce()).writeSummaries(any());
+		verify(api, never()).getMatchDetailAsync(anyLong(), any());
 	}
 
 }
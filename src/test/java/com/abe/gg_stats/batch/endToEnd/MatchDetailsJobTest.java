@@ -0,0 +1,76 @@
+package com.abe.gg_stats.batch.endToEnd;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.parser.OpenDotaMatchDetailParser;
+import com.abe.gg_stats.exception.CircuitBreakerException;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.service.OpenDotaApiService;
+import com.abe.gg_stats.service.rate_limit.RequestPriority;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@SpringBatchTest
+@SpringBootTest
+@ActiveProfiles("test")
+public class MatchDetailsJobTest {
+
+	@MockitoBean
+	private OpenDotaApiService api;
+
+	@MockitoBean
+	private MatchIngestionDao dao;
+
+	private OpenDotaMatchDetailDto makeDetail(long matchId) throws IOException {
+		byte[] json = ("{\"match_id\":" + matchId + "}").getBytes(StandardCharsets.UTF_8);
+		return new OpenDotaMatchDetailParser(new JsonFactory()).parse(new ByteArrayInputStream(json));
+	}
+
+	@Test
+	void launchJob(@Autowired JobLauncherTestUtils utils, @Autowired @Qualifier("matchDetailsJob") Job job)
+			throws Exception {
+		utils.setJob(job);
+
+		// IDs apart from the other job tests: written matches stay in the shared
+		// IngestedMatchIds of the cached context
+		when(dao.findPendingMatchDetails(anyList(), anyInt(), anyInt())).thenReturn(List.of(903L, 902L, 901L));
+		when(api.getMatchDetailAsync(903L, RequestPriority.NORMAL))
+			.thenReturn(CompletableFuture.completedFuture(Optional.of(makeDetail(903L))));
+		when(api.getMatchDetail(903L)).thenReturn(Optional.of(makeDetail(903L)));
+		CircuitBreakerException failure = new CircuitBreakerException("opendota_api.matches.{id}", "CLOSED",
+				"Operation failed for service");
+		when(api.getMatchDetailAsync(902L, RequestPriority.NORMAL)).thenReturn(CompletableFuture.failedFuture(failure));
+		when(api.getMatchDetail(902L)).thenThrow(failure);
+		// Turned away by the rate limiter: no result, but not a failure either
+		when(api.getMatchDetailAsync(901L, RequestPriority.NORMAL))
+			.thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+		JobExecution execution = utils.launchJob();
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		verify(dao).recordDetailAttempts(List.of(902L));
+		verify(dao, never()).recordDetailAttempts(List.of(901L));
+		verify(dao, never()).recordDetailAttempts(List.of(903L));
+		verify(dao, atLeastOnce()).writeBatch(any());
+	}
+
+}
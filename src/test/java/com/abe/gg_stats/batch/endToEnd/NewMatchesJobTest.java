@@ -47,12 +47,12 @@ public class NewMatchesJobTest {
 		when(dao.getMaxMatchId()).thenReturn(100L);
 		when(api.getProMatchesPage(null))
 			.thenReturn(Optional.of(JsonNodeFactory.instance.arrayNode().add(makeMatch(200L))));
-		when(api.getMatchDetail(200L)).thenReturn(Optional.of(makeMatch(200L)));
 
 		JobExecution execution = utils.launchJob();
 
 		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
-		verify(dao, atLeastOnce()).upsertMatch(any());
+		verify(dao, atLeastOnce()).writeSummaries(any());
+		verify(api, never()).getMatchDetailAsync(anyLong(), any());
 	}
 
 }
@@ -0,0 +1,85 @@
+package com.abe.gg_stats.batch.endToEnd;
+
+import com.abe.gg_stats.repository.archive.MatchArchive;
+import com.abe.gg_stats.repository.jdbc.MatchIngestionDao;
+import com.abe.gg_stats.repository.jdbc.MatchRowBatch;
+import com.abe.gg_stats.service.OpenDotaApiService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@SpringBatchTest
+@SpringBootTest
+@ActiveProfiles("test")
+public class RebuildMatchesJobTest {
+
+	@MockitoBean
+	private OpenDotaApiService api;
+
+	@MockitoBean
+	private MatchIngestionDao dao;
+
+	@DynamicPropertySource
+	static void archiveProperties(DynamicPropertyRegistry registry) throws IOException {
+		String directory = Files.createTempDirectory("match-archive").toString();
+		registry.add("app.match-archive.enabled", () -> "true");
+		registry.add("app.match-archive.directory", () -> directory);
+		registry.add("app.batch.rebuild.partitions", () -> "1");
+	}
+
+	private static void archive(MatchArchive archive, long matchId) throws IOException {
+		byte[] raw = ("{\"match_id\":" + matchId + ",\"players\":[]}").getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+			out.write(raw);
+		}
+		archive.append(matchId, deflated.toByteArray(), raw.length);
+	}
+
+	@Test
+	void launchJob(@Autowired JobLauncherTestUtils utils, @Autowired @Qualifier("rebuildMatchesFromArchiveJob") Job job,
+			@Autowired MatchArchive archive) throws Exception {
+		utils.setJob(job);
+		archive(archive, 3L);
+		archive(archive, 1L);
+		archive(archive, 2L);
+		archive.sync();
+
+		JobExecution execution = utils.launchJob();
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(execution.getStepExecutions()).extracting(step -> step.getStepName())
+			.containsExactlyInAnyOrder("rebuildMatchesStep", "rebuildMatchesPartitionStep:partition0");
+		ArgumentCaptor<MatchRowBatch> batches = ArgumentCaptor.forClass(MatchRowBatch.class);
+		verify(dao, atLeastOnce()).writeBatch(batches.capture());
+		List<Object> matchIds = batches.getAllValues()
+			.stream()
+			.flatMap(batch -> batch.getMatches().stream())
+			.map(row -> row[0])
+			.toList();
+		assertThat(matchIds).containsExactlyInAnyOrder(1L, 2L, 3L);
+		verifyNoInteractions(api);
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.abe.gg_stats.benchmark;
+
+import com.abe.gg_stats.service.circuit_breaker.CircuitBreakerService;
+import com.abe.gg_stats.service.circuit_breaker.CircuitBreakerService.SlidingWindowType;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Measures the bookkeeping of a successful call through {@link CircuitBreakerService}
+ * under contention, with the lock-free count and time based windows, against a copy of
+ * the previous path (success counters and a {@code synchronized} boolean ring).
+ * <p>
+ * The service path also pays for the breaker lookup and the call timing, so the gap to
+ * the baseline understates the window itself. {@link #main} runs all three at 1, 8 and 64
+ * threads: <pre>
+ * mvn test-compile
+ * java -cp "$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout):target/classes:target/test-classes" \
+ *   com.abe.gg_stats.benchmark.CircuitBreakerWindowBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CircuitBreakerWindowBenchmark {
+
+	private static final Supplier<String> CALL = () -> "ok";
+
+	private static final Supplier<String> FALLBACK = () -> "fallback";
+
+	private CircuitBreakerService countBased;
+
+	private CircuitBreakerService timeBased;
+
+	private LegacyBreakerPath legacy;
+
+	@Setup
+	public void setUp() {
+		countBased = service(SlidingWindowType.COUNT_BASED, 100);
+		timeBased = service(SlidingWindowType.TIME_BASED, 60);
+		legacy = new LegacyBreakerPath(100);
+	}
+
+	private static CircuitBreakerService service(SlidingWindowType type, int size) {
+		CircuitBreakerService service = new CircuitBreakerService();
+		ReflectionTestUtils.setField(service, "defaultFailureThreshold", 50);
+		ReflectionTestUtils.setField(service, "defaultSuccessThreshold", 3);
+		ReflectionTestUtils.setField(service, "defaultTimeoutDurationMs", 30_000L);
+		ReflectionTestUtils.setField(service, "defaultMinimumCalls", 10);
+		ReflectionTestUtils.setField(service, "defaultSlidingWindowSize", size);
+		ReflectionTestUtils.setField(service, "defaultSlidingWindowType", type);
+		return service;
+	}
+
+	@Benchmark
+	public String countBasedWindow() {
+		return countBased.executeWithCircuitBreaker("opendota_api", CALL, FALLBACK);
+	}
+
+	@Benchmark
+	public String timeBasedWindow() {
+		return timeBased.executeWithCircuitBreaker("opendota_api", CALL, FALLBACK);
+	}
+
+	@Benchmark
+	public String legacySynchronizedWindow() {
+		return legacy.execute(CALL);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int threads : new int[] { 1, 8, 64 }) {
+			new Runner(new OptionsBuilder().include(CircuitBreakerWindowBenchmark.class.getSimpleName())
+				.threads(threads)
+				.build()).run();
+		}
+	}
+
+	/**
+	 * The success path before the lock-free windows, kept here only as a baseline.
+	 */
+	static final class LegacyBreakerPath {
+
+		private final AtomicLong totalCalls = new AtomicLong();
+
+		private final AtomicLong successCalls = new AtomicLong();
+
+		private final boolean[] results;
+
+		private final AtomicInteger index = new AtomicInteger();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		private final int capacity;
+
+		LegacyBreakerPath(int capacity) {
+			this.capacity = capacity;
+			this.results = new boolean[capacity];
+		}
+
+		<T> T execute(Supplier<T> supplier) {
+			T result = supplier.get();
+			totalCalls.incrementAndGet();
+			successCalls.incrementAndGet();
+			recordSuccess();
+			return result;
+		}
+
+		private synchronized void recordSuccess() {
+			results[Math.floorMod(index.getAndIncrement(), capacity)] = true;
+			if (size.get() < capacity)
+				size.incrementAndGet();
+		}
+
+	}
+
+}
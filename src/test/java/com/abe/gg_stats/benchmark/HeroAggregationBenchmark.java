@@ -0,0 +1,187 @@
+package com.abe.gg_stats.benchmark;
+
+import com.abe.gg_stats.repository.jdbc.AggregationDao;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PatchWeek;
+import com.abe.gg_stats.service.aggregation.InMemoryHeroAggregator;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares the {@code SQL} and {@code JVM} aggregation engines on the same generated
+ * patch: {@code matches} matches spread over {@code weeks} weeks, two lineups of five
+ * distinct heroes each.
+ * <p>
+ * The engines need PostgreSQL. The dataset is written to a throwaway
+ * {@code aggregation_benchmark} schema of the database given by
+ * {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.user} and
+ * {@code -Dbenchmark.jdbc.password}: <pre>
+ * mvn test-compile
+ * java -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/dota_stats -Dbenchmark.jdbc.user=myuser \
+ *   -Dbenchmark.jdbc.password=secret \
+ *   -cp "$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout):target/classes:target/test-classes" \
+ *   com.abe.gg_stats.benchmark.HeroAggregationBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HeroAggregationBenchmark {
+
+	private static final String SCHEMA = "aggregation_benchmark";
+
+	private static final int PATCH = 58;
+
+	private static final long FIRST_WEEK = 2900;
+
+	@Param({ "20000" })
+	public int matches;
+
+	@Param({ "12" })
+	public int weeks;
+
+	private SingleConnectionDataSource dataSource;
+
+	private AggregationDao dao;
+
+	private InMemoryHeroAggregator inMemoryAggregator;
+
+	private Set<Integer> patches;
+
+	private Set<PatchWeek> patchWeeks;
+
+	@Setup
+	public void setUp() {
+		dataSource = new SingleConnectionDataSource(System.getProperty("benchmark.jdbc.url"),
+				System.getProperty("benchmark.jdbc.user"), System.getProperty("benchmark.jdbc.password"), true);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+		jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+		jdbcTemplate.execute("SET search_path TO " + SCHEMA);
+		createTables(jdbcTemplate);
+		generate(jdbcTemplate);
+
+		dao = new AggregationDao(jdbcTemplate, new TransactionTemplate(new JdbcTransactionManager(dataSource)));
+		inMemoryAggregator = new InMemoryHeroAggregator(dao);
+		patches = Set.of(PATCH);
+		patchWeeks = new LinkedHashSet<>();
+		for (long w = FIRST_WEEK; w < FIRST_WEEK + weeks; w++) {
+			patchWeeks.add(new PatchWeek(PATCH, w));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		new JdbcTemplate(dataSource).execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+		dataSource.destroy();
+	}
+
+	@Benchmark
+	public void sqlEngine() {
+		dao.beginAggregateBuild(patches, patchWeeks);
+		dao.aggregateHeroTrends(patches, patchWeeks);
+		dao.aggregateHeroPairs(patches, patchWeeks);
+		dao.publishAggregateBuild();
+	}
+
+	@Benchmark
+	public void jvmEngine() {
+		dao.beginAggregateBuild(patches, patchWeeks);
+		inMemoryAggregator.aggregate(patches, patchWeeks);
+		dao.publishAggregateBuild();
+	}
+
+	private static void createTables(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.execute(
+				"CREATE TABLE matches (match_id BIGINT PRIMARY KEY, start_time INT, patch INT, radiant_win BOOLEAN)");
+		jdbcTemplate.execute("""
+				CREATE TABLE picks_bans (match_id BIGINT NOT NULL, ord SMALLINT NOT NULL, is_pick BOOLEAN NOT NULL,
+				    hero_id INT, team SMALLINT, PRIMARY KEY (match_id, ord))
+				""");
+		jdbcTemplate.execute(
+				"""
+						CREATE TABLE pro_hero_trends (bucket_type TEXT NOT NULL, bucket_value TEXT NOT NULL, hero_id INT NOT NULL,
+						    matches BIGINT NOT NULL, picks BIGINT NOT NULL, pick_rate DOUBLE PRECISION NOT NULL,
+						    win_rate DOUBLE PRECISION, delta_vs_prev DOUBLE PRECISION,
+						    computed_at TIMESTAMPTZ NOT NULL DEFAULT now(), PRIMARY KEY (bucket_type, bucket_value, hero_id))
+						""");
+		jdbcTemplate.execute(
+				"""
+						CREATE TABLE pro_hero_pair_stats (bucket_type TEXT NOT NULL, bucket_value TEXT NOT NULL,
+						    hero_id_a INT NOT NULL, hero_id_b INT NOT NULL, games_together BIGINT NOT NULL, wins_together BIGINT,
+						    support DOUBLE PRECISION, confidence DOUBLE PRECISION, lift DOUBLE PRECISION,
+						    delta_support DOUBLE PRECISION, delta_lift DOUBLE PRECISION,
+						    computed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+						    PRIMARY KEY (bucket_type, bucket_value, hero_id_a, hero_id_b), CHECK (hero_id_a < hero_id_b))
+						""");
+		jdbcTemplate.execute("CREATE INDEX idx_pro_hero_trends_bucket ON pro_hero_trends(bucket_type, bucket_value)");
+		jdbcTemplate.execute("CREATE INDEX idx_pro_hero_pair_bucket ON pro_hero_pair_stats(bucket_type, bucket_value)");
+		// Same generation tables, views and staging tables as the application
+		new ResourceDatabasePopulator(new ClassPathResource("db/migration/V25__aggregate_generations.sql"))
+			.execute(jdbcTemplate.getDataSource());
+		jdbcTemplate.execute("CREATE INDEX ON matches(patch)");
+		jdbcTemplate.execute("CREATE INDEX ON matches(start_time)");
+	}
+
+	/**
+	 * Heroes are drawn with a skew towards low IDs, like a real meta where a few heroes
+	 * dominate, and five distinct ones make a lineup.
+	 */
+	private void generate(JdbcTemplate jdbcTemplate) {
+		Random random = new Random(42);
+		List<Object[]> matchRows = new ArrayList<>(matches);
+		List<Object[]> pickRows = new ArrayList<>(matches * 10);
+		long firstSecond = FIRST_WEEK * 604_800;
+		long span = weeks * 604_800L;
+		for (long matchId = 1; matchId <= matches; matchId++) {
+			int startTime = (int) (firstSecond + (long) (random.nextDouble() * span));
+			matchRows.add(new Object[] { matchId, startTime, PATCH, random.nextBoolean() });
+			Set<Integer> drafted = new LinkedHashSet<>();
+			while (drafted.size() < 10) {
+				drafted.add(1 + (int) (Math.pow(random.nextDouble(), 2) * 130));
+			}
+			int ord = 0;
+			for (int hero : drafted) {
+				pickRows.add(new Object[] { matchId, ord, true, hero, ord % 2 });
+				ord++;
+			}
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO matches (match_id, start_time, patch, radiant_win) VALUES (?, ?, ?, ?)",
+				matchRows);
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO picks_bans (match_id, ord, is_pick, hero_id, team) VALUES (?, ?, ?, ?, ?)", pickRows);
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HeroAggregationBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.abe.gg_stats.benchmark;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.dto.request.opendota.parser.OpenDotaMatchDetailParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the old {@code String + readTree} path for {@code /matches/{id}} with the
+ * streaming {@link OpenDotaMatchDetailParser}.
+ * <p>
+ * Run with the GC profiler and compare {@code gc.alloc.rate.norm} (bytes allocated per
+ * match): <pre>
+ * mvn test-compile
+ * java -cp "$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout):target/classes:target/test-classes" \
+ *   com.abe.gg_stats.benchmark.MatchDetailParsingBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchDetailParsingBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private OpenDotaMatchDetailParser parser;
+
+	private byte[] payload;
+
+	@Setup
+	public void setUp() throws IOException {
+		parser = new OpenDotaMatchDetailParser(objectMapper.getFactory());
+		payload = objectMapper.writeValueAsBytes(syntheticMatch(objectMapper));
+	}
+
+	/** Previous path: body buffered as a String, then a full tree. */
+	@Benchmark
+	public JsonNode stringAndReadTree() throws IOException {
+		String body = new String(payload, StandardCharsets.UTF_8);
+		return objectMapper.readTree(body);
+	}
+
+	@Benchmark
+	public OpenDotaMatchDetailDto streamingParser() throws IOException {
+		return parser.parse(new ByteArrayInputStream(payload));
+	}
+
+	/**
+	 * Roughly the shape and size of a parsed pro match: ten players with per-minute
+	 * series and purchase logs, plus objectives, teamfights and chat.
+	 */
+	static ObjectNode syntheticMatch(ObjectMapper mapper) {
+		int minutes = 45;
+		ObjectNode m = mapper.createObjectNode();
+		m.put("match_id", 8_000_000_001L);
+		m.put("start_time", 1_700_000_000);
+		m.put("duration", minutes * 60);
+		m.put("radiant_win", true);
+		m.put("leagueid", 15000);
+		m.put("patch", 58);
+		m.put("radiant_team_id", 10);
+		m.put("dire_team_id", 20);
+		m.put("radiant_name", "Radiant");
+		m.put("dire_name", "Dire");
+		m.put("replay_url", "http://replay.valve.net/570/8000000001_1.dem.bz2");
+		fillSeries(m.putArray("radiant_gold_adv"), minutes);
+		fillSeries(m.putArray("radiant_xp_adv"), minutes);
+
+		ArrayNode picksBans = m.putArray("picks_bans");
+		ArrayNode timings = m.putArray("draft_timings");
+		for (int i = 0; i < 24; i++) {
+			picksBans.addObject().put("order", i).put("is_pick", i % 3 == 0).put("hero_id", i + 1).put("team", i % 2);
+			timings.addObject()
+				.put("order", i)
+				.put("pick", i % 3 == 0)
+				.put("active_team", 2 + i % 2)
+				.put("hero_id", i + 1)
+				.put("extra_time", 130)
+				.put("total_time_taken", 20);
+		}
+
+		ArrayNode objectives = m.putArray("objectives");
+		for (int i = 0; i < 60; i++) {
+			objectives.addObject().put("time", i * 40).put("type", "building_kill").put("key", "npc_dota_tower");
+		}
+		ArrayNode teamfights = m.putArray("teamfights");
+		for (int i = 0; i < 15; i++) {
+			ObjectNode tf = teamfights.addObject().put("start", i * 150).put("end", i * 150 + 30);
+			for (int p = 0; p < 10; p++) {
+				ObjectNode tp = tf.withArray("players").addObject().put("deaths", p % 2).put("damage", 1200);
+				tp.putObject("ability_uses").put("ability_" + p, 3);
+				tp.putObject("deaths_pos").putObject("120").put("130", 1);
+			}
+		}
+		ArrayNode chat = m.putArray("chat");
+		for (int i = 0; i < 40; i++) {
+			chat.addObject().put("time", i * 30).put("type", "chat").put("key", "gg wp").put("player_slot", i % 10);
+		}
+
+		ArrayNode players = m.putArray("players");
+		for (int p = 0; p < 10; p++) {
+			ObjectNode pl = players.addObject();
+			pl.put("account_id", 100_000 + p);
+			pl.put("player_slot", p < 5 ? p : 123 + p);
+			pl.put("hero_id", p + 1);
+			pl.put("win", p < 5 ? 1 : 0);
+			pl.put("kills", 5).put("deaths", 3).put("assists", 10).put("level", 25);
+			pl.put("net_worth", 20000).put("gold_per_min", 600).put("xp_per_min", 700);
+			pl.put("lane", 1 + p % 3).put("lane_role", 1 + p % 4).put("is_roaming", false);
+			fillSeries(pl.putArray("gold_t"), minutes);
+			fillSeries(pl.putArray("xp_t"), minutes);
+			fillSeries(pl.putArray("lh_t"), minutes);
+			fillSeries(pl.putArray("dn_t"), minutes);
+			fillSeries(pl.putArray("times"), minutes);
+			ObjectNode damage = pl.putObject("damage");
+			ArrayNode log = pl.putArray("purchase_log");
+			for (int i = 0; i < 40; i++) {
+				log.addObject().put("time", i * 60 - 90).put("key", "item_" + i);
+				damage.put("npc_dota_hero_" + i, i * 100);
+			}
+			ArrayNode killsLog = pl.putArray("kills_log");
+			for (int i = 0; i < 5; i++) {
+				killsLog.addObject().put("time", i * 400).put("key", "npc_dota_hero_" + i);
+			}
+		}
+		return m;
+	}
+
+	private static void fillSeries(ArrayNode arr, int minutes) {
+		for (int i = 0; i <= minutes; i++) {
+			arr.add(i * 537);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MatchDetailParsingBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
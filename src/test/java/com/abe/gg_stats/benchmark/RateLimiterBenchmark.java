@@ -0,0 +1,199 @@
+package com.abe.gg_stats.benchmark;
+
+import com.abe.gg_stats.entity.ApiRateLimit;
+import com.abe.gg_stats.repository.ApiRateLimitRepository;
+import com.abe.gg_stats.repository.jdbc.RateLimitLeaseDao;
+import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Measures the cost of the permit decision itself under contention: the GCRA based
+ * {@link OpenDotaRateLimitingService} against a copy of the previous token bucket path
+ * (daily check, CAS bucket and read-locked counter update).
+ * <p>
+ * Limits are set high enough that the benchmark measures the admission bookkeeping, not
+ * sleeping. {@link #main} runs both at 1, 8 and 64 threads: <pre>
+ * mvn test-compile
+ * java -cp "$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout):target/classes:target/test-classes" \
+ *   com.abe.gg_stats.benchmark.RateLimiterBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+	private OpenDotaRateLimitingService service;
+
+	private LegacyPermitPath legacy;
+
+	@Setup
+	public void setUp() {
+		ApiRateLimitRepository repository = Mockito.mock(ApiRateLimitRepository.class,
+				Mockito.withSettings().stubOnly());
+		Mockito.when(repository.findByEndpoint(Mockito.anyString()))
+			.thenReturn(Optional.of(ApiRateLimit.builder()
+				.endpoint("GLOBAL")
+				.windowStart(Instant.now())
+				.dailyWindowStart(LocalDate.now(ZoneOffset.UTC))
+				.dailyRequests(0)
+				.build()));
+		Mockito.when(repository.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		RateLimitLeaseDao leaseDao = Mockito.mock(RateLimitLeaseDao.class, Mockito.withSettings().stubOnly());
+		Mockito.when(leaseDao.lease(Mockito.anyString(), Mockito.any(), Mockito.anyInt(), Mockito.anyInt()))
+			.thenAnswer(invocation -> Optional.of(new RateLimitLeaseDao.LeaseGrant(invocation.getArgument(2), 0)));
+
+		service = new OpenDotaRateLimitingService(repository, leaseDao);
+		ReflectionTestUtils.setField(service, "requestsPerMinute", Integer.MAX_VALUE);
+		ReflectionTestUtils.setField(service, "requestsPerDay", Integer.MAX_VALUE - 1);
+		// One permit per nanosecond, so every call is admitted like in the legacy bucket
+		ReflectionTestUtils.setField(service, "refillInterval", 1L);
+		ReflectionTestUtils.setField(service, "burstCapacity", 1_000_000);
+		ReflectionTestUtils.setField(service, "enableWaiting", false);
+		ReflectionTestUtils.setField(service, "leaseSize", 100_000);
+		service.initialize();
+
+		legacy = new LegacyPermitPath(Integer.MAX_VALUE, 60_000L, Integer.MAX_VALUE - 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		service.cleanup();
+	}
+
+	@Benchmark
+	public boolean gcra() {
+		return service.tryAcquirePermit("/heroes").allowed();
+	}
+
+	@Benchmark
+	public boolean legacyTokenBucket() {
+		return legacy.tryAcquirePermit();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int threads : new int[] { 1, 8, 64 }) {
+			new Runner(
+					new OptionsBuilder().include(RateLimiterBenchmark.class.getSimpleName()).threads(threads).build())
+				.run();
+		}
+	}
+
+	/**
+	 * The pre-GCRA admission path, kept here only as a baseline.
+	 */
+	static final class LegacyPermitPath {
+
+		private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+		private final AtomicInteger currentTokens;
+
+		private final AtomicLong lastTokenAcquisitionTime;
+
+		private final AtomicInteger pendingChanges = new AtomicInteger();
+
+		private final int maxTokens;
+
+		private final long refillIntervalMs;
+
+		private final int requestsPerDay;
+
+		private LocalDate dailyWindowStart = LocalDate.now(ZoneOffset.UTC);
+
+		private int dailyRequests;
+
+		LegacyPermitPath(int maxTokens, long refillIntervalMs, int requestsPerDay) {
+			this.maxTokens = maxTokens;
+			this.refillIntervalMs = refillIntervalMs;
+			this.requestsPerDay = requestsPerDay;
+			this.currentTokens = new AtomicInteger(maxTokens);
+			this.lastTokenAcquisitionTime = new AtomicLong(System.currentTimeMillis());
+		}
+
+		boolean tryAcquirePermit() {
+			if (isDailyLimitExceeded()) {
+				return false;
+			}
+			if (!tryAcquireToken()) {
+				return false;
+			}
+			stateLock.readLock().lock();
+			try {
+				LocalDate today = LocalDate.ofInstant(Instant.now(), ZoneOffset.UTC);
+				if (!dailyWindowStart.equals(today)) {
+					dailyWindowStart = today;
+					dailyRequests = 1;
+				}
+				else {
+					dailyRequests++;
+				}
+				pendingChanges.incrementAndGet();
+			}
+			finally {
+				stateLock.readLock().unlock();
+			}
+			return true;
+		}
+
+		private boolean isDailyLimitExceeded() {
+			stateLock.readLock().lock();
+			try {
+				return dailyRequests >= requestsPerDay;
+			}
+			finally {
+				stateLock.readLock().unlock();
+			}
+		}
+
+		private boolean tryAcquireToken() {
+			while (true) {
+				refillTokens();
+				int current = currentTokens.get();
+				if (current <= 0) {
+					return false;
+				}
+				if (currentTokens.compareAndSet(current, current - 1)) {
+					lastTokenAcquisitionTime.set(System.currentTimeMillis());
+					return true;
+				}
+			}
+		}
+
+		private void refillTokens() {
+			long now = System.currentTimeMillis();
+			long lastRefill = lastTokenAcquisitionTime.get();
+			if (now - lastRefill >= refillIntervalMs && lastTokenAcquisitionTime.compareAndSet(lastRefill, now)) {
+				currentTokens.set(maxTokens);
+			}
+		}
+
+	}
+
+}
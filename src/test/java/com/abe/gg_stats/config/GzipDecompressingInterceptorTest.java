@@ -0,0 +1,69 @@
+package com.abe.gg_stats.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+class GzipDecompressingInterceptorTest {
+
+	private final GzipDecompressingInterceptor interceptor = new GzipDecompressingInterceptor();
+
+	private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+			URI.create("https://api.opendota.com/api/heroes"));
+
+	private static byte[] gzip(String s) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+			gz.write(s.getBytes(StandardCharsets.UTF_8));
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	void requestsGzipAndInflatesCompressedBody() throws Exception {
+		byte[] compressed = gzip("[{\"id\":1}]");
+		MockClientHttpResponse raw = new MockClientHttpResponse(compressed, HttpStatus.OK);
+		raw.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+		raw.getHeaders().setContentLength(compressed.length);
+
+		ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> raw);
+
+		assertEquals("gzip", request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+		assertEquals("[{\"id\":1}]", new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+		assertFalse(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(-1, response.getHeaders().getContentLength());
+	}
+
+	@Test
+	void passesThroughUncompressedResponse() throws Exception {
+		MockClientHttpResponse raw = new MockClientHttpResponse("plain".getBytes(StandardCharsets.UTF_8),
+				HttpStatus.OK);
+
+		ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> raw);
+
+		assertSame(raw, response);
+	}
+
+	@Test
+	void emptyGzipBodyReadsAsEmpty() throws Exception {
+		MockClientHttpResponse raw = new MockClientHttpResponse(new byte[0], HttpStatus.NOT_MODIFIED);
+		raw.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+		ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> raw);
+
+		assertEquals(0, response.getBody().readAllBytes().length);
+	}
+
+}
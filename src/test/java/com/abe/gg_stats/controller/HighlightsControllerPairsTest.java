@@ -46,7 +46,7 @@ class HighlightsControllerPairsTest {
 	void testPairHighlights_ReturnsOkWhenServiceReturnsDto() throws Exception {
 		HighlightsHeroPairsDto pair = new HighlightsHeroPairsDto(1, 2, 40, 0.8, 0.9, 1.2, 0.1, 0.2, "Hero A", "Hero B",
 				"npc_dota_hero_hero_a", "npc_dota_hero_hero_b", "hero_a", "hero_b", "https://.../hero_a.png",
-				"https://.../hero_b.png");
+				"https://.../hero_b.png", 0.55, 1.1);
 		HighlightsDuoDto dto = new HighlightsDuoDto("2025-W37", "synergy", 10L, Collections.singletonList(pair));
 
 		when(highlightsService.getPairHighlights(eq("synergy"), anyInt(), anyInt())).thenReturn(dto);
@@ -0,0 +1,91 @@
+package com.abe.gg_stats.dto.request.opendota.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class OpenDotaMatchDetailParserTest {
+
+	private final OpenDotaMatchDetailParser parser = new OpenDotaMatchDetailParser(new JsonFactory());
+
+	private OpenDotaMatchDetailDto parse(String json) throws IOException {
+		return parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void bindsPersistedFieldsAndSkipsTheRest() throws Exception {
+		OpenDotaMatchDetailDto m = parse("""
+				{"match_id": 8000000001, "start_time": 1700000000, "duration": 2400, "radiant_win": true,
+				 "leagueid": 15000, "patch": 58, "radiant_team_id": 10, "radiant_name": "Radiant",
+				 "dire_team_id": "20", "replay_url": null,
+				 "gold_t": [0, 100, 200], "objectives": [{"type": "CHAT_MESSAGE_FIRSTBLOOD", "key": 1}],
+				 "teamfights": [{"players": [{"deaths_pos": {"1": {"2": 3}}}]}],
+				 "picks_bans": [{"order": 3, "is_pick": true, "hero_id": 5, "team": 1, "player_slot": null}],
+				 "draft_timings": [{"pick": true, "active_team": 2, "total_time_taken": 17}],
+				 "players": [{"account_id": 7, "player_slot": 130, "hero_id": 5, "win": 0, "kills": 3,
+				              "is_roaming": false, "gold_t": [0, 50], "lh_t": [0, 1],
+				              "purchase_log": [{"time": -30, "key": "tango", "charges": 3}]}],
+				 "chat": [{"time": 1, "key": "gg"}]}
+				""");
+
+		assertEquals(8000000001L, m.matchId());
+		assertEquals(1700000000, m.startTime());
+		assertTrue(m.radiantWin());
+		assertEquals(15000L, m.leagueId());
+		assertEquals(58, m.patch());
+		assertEquals("Radiant", m.radiantName());
+		assertEquals(20L, m.direTeamId());
+		assertNull(m.replayUrl());
+		assertNull(m.direName());
+
+		assertEquals(1, m.picksBans().size());
+		assertEquals(3, m.picksBans().getFirst().order());
+		assertNull(m.picksBans().getFirst().playerSlot());
+
+		OpenDotaMatchDetailDto.DraftTiming dt = m.draftTimings().getFirst();
+		assertNull(dt.order());
+		assertEquals(2, dt.activeTeam());
+		assertEquals(17, dt.totalTimeTaken());
+
+		OpenDotaMatchDetailDto.Player p = m.players().getFirst();
+		assertEquals(7L, p.accountId());
+		assertEquals(130, p.playerSlot());
+		assertFalse(p.win());
+		assertEquals(3, p.kills());
+		assertNull(p.deaths());
+		assertFalse(p.isRoaming());
+		assertEquals(1, p.purchaseLog().size());
+		assertEquals(-30, p.purchaseLog().getFirst().time());
+		assertEquals("tango", p.purchaseLog().getFirst().key());
+	}
+
+	@Test
+	void missingArraysDefaultToEmpty() throws Exception {
+		OpenDotaMatchDetailDto m = parse("{\"match_id\": 1, \"players\": null}");
+
+		assertEquals(1L, m.matchId());
+		assertTrue(m.picksBans().isEmpty());
+		assertTrue(m.draftTimings().isEmpty());
+		assertTrue(m.players().isEmpty());
+	}
+
+	@Test
+	void emptyBodyReturnsNull() throws Exception {
+		assertNull(parse(""));
+	}
+
+	@Test
+	void nonObjectBodyIsRejected() {
+		assertThrows(IOException.class, () -> parse("[1, 2]"));
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.abe.gg_stats.repository.archive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.abe.gg_stats.config.MatchArchiveProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class MatchArchiveTest {
+
+	@TempDir
+	Path directory;
+
+	private MatchArchive archive;
+
+	@AfterEach
+	void tearDown() throws IOException {
+		archive.close();
+	}
+
+	private MatchArchive open(DataSize segmentSize) throws IOException {
+		MatchArchive opened = new MatchArchive(new MatchArchiveProperties(true, directory, segmentSize),
+				new SimpleMeterRegistry());
+		opened.open();
+		return opened;
+	}
+
+	private static byte[] body(long matchId) {
+		return ("{\"match_id\": " + matchId + ", \"players\": []}").repeat(20).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void append(MatchArchive archive, long matchId) throws IOException {
+		byte[] raw = body(matchId);
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+			out.write(raw);
+		}
+		archive.append(matchId, deflated.toByteArray(), raw.length);
+	}
+
+	@Test
+	void read_ReturnsInflatedDocumentFromActiveSegment() throws IOException {
+		archive = open(DataSize.ofMegabytes(1));
+		append(archive, 42L);
+		archive.sync();
+
+		assertArrayEquals(body(42L), archive.read(42L).orElseThrow());
+		assertTrue(archive.read(43L).isEmpty());
+	}
+
+	@Test
+	void sync_SealsFullSegmentsIntoIndex() throws IOException {
+		archive = open(DataSize.ofBytes(1));
+		for (long id = 1; id <= 3; id++) {
+			append(archive, id);
+			archive.sync();
+		}
+		archive.close();
+
+		assertTrue(Files.exists(directory.resolve("segment-00000003.dat")));
+		assertEquals(3, MatchArchiveIndex.open(directory.resolve("index.idx")).size());
+
+		archive = open(DataSize.ofBytes(1));
+		for (long id = 1; id <= 3; id++) {
+			assertArrayEquals(body(id), archive.read(id).orElseThrow());
+		}
+	}
+
+	@Test
+	void open_TruncatesTornRecordAndKeepsCompleteOnes() throws IOException {
+		archive = open(DataSize.ofMegabytes(1));
+		append(archive, 1L);
+		append(archive, 2L);
+		archive.sync();
+		archive.close();
+
+		Path segment = directory.resolve("segment-00000001.dat");
+		long complete = Files.size(segment);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(complete - 5);
+		}
+
+		archive = open(DataSize.ofMegabytes(1));
+		assertArrayEquals(body(1L), archive.read(1L).orElseThrow());
+		assertTrue(archive.read(2L).isEmpty());
+
+		append(archive, 3L);
+		archive.sync();
+		assertArrayEquals(body(3L), archive.read(3L).orElseThrow());
+	}
+
+	@Test
+	void cursor_ReturnsLatestCopyOfEachMatchInRange() throws IOException {
+		archive = open(DataSize.ofBytes(1));
+		for (long id = 1; id <= 5; id++) {
+			append(archive, id);
+			archive.sync();
+		}
+		// Re-archived into the active segment, superseding the sealed copy
+		append(archive, 2L);
+
+		List<Long> ids = new ArrayList<>();
+		try (MatchArchiveCursor cursor = archive.cursor(2L, 5L)) {
+			MatchArchiveCursor.Document document;
+			while ((document = cursor.next()) != null) {
+				assertArrayEquals(body(document.matchId()), document.body());
+				ids.add(document.matchId());
+			}
+		}
+		assertEquals(List.of(3L, 4L, 2L), ids);
+	}
+
+	@Test
+	void partitionBounds_SplitsIndexedMatchesEvenly() throws IOException {
+		archive = open(DataSize.ofBytes(1));
+		for (long id = 10; id <= 80; id += 10) {
+			append(archive, id);
+			archive.sync();
+		}
+
+		assertArrayEquals(new long[] { 0L, 30L, 50L, 70L, Long.MAX_VALUE }, archive.partitionBounds(4));
+		assertArrayEquals(new long[] { 0L, Long.MAX_VALUE }, archive.partitionBounds(1));
+	}
+
+}
@@ -98,6 +98,43 @@ class HighlightsDaoTest {
 		assertEquals(1.2, p.lift());
 	}
 
+	@Test
+	void winRateSortRanksByLiftOverTheHeroesOwnWinRates() {
+		jdbcTemplate.update(
+				"INSERT INTO hero (id, created_at, updated_at, attack_type, localized_name, name, primary_attr, roles) VALUES (?,?,?,?,?,?,?,?)",
+				3, OffsetDateTime.now(), OffsetDateTime.now(), "Melee", "Hero C", "npc_dota_hero_hero_c", "str",
+				"carry");
+		jdbcTemplate.update("UPDATE pro_hero_trends SET win_rate = 0.5 WHERE bucket_value = '7.36' AND hero_id = 1");
+		jdbcTemplate.update(
+				"INSERT INTO pro_hero_trends (bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate) VALUES (?,?,?,?,?,?,?)",
+				"patch", "7.36", 2, 110, 60, 0.55, 0.9);
+		jdbcTemplate.update(
+				"INSERT INTO pro_hero_trends (bucket_type, bucket_value, hero_id, matches, picks, pick_rate, win_rate) VALUES (?,?,?,?,?,?,?)",
+				"patch", "7.36", 3, 110, 30, 0.27, 0.3);
+		// 1+2 wins 70%, as expected of its heroes; 1+3 wins 60% where its heroes win 40%
+		jdbcTemplate.update("UPDATE pro_hero_pair_stats SET wins_together = 28 WHERE hero_id_a = 1 AND hero_id_b = 2");
+		jdbcTemplate.update(
+				"INSERT INTO pro_hero_pair_stats (bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift) VALUES (?,?,?,?,?,?,?,?,?)",
+				"patch", "7.36", 1, 3, 20, 12, 0.2, 0.2, 0.9);
+		// Unbeaten, but in too few games to rank
+		jdbcTemplate.update(
+				"INSERT INTO pro_hero_pair_stats (bucket_type, bucket_value, hero_id_a, hero_id_b, games_together, wins_together, support, confidence, lift) VALUES (?,?,?,?,?,?,?,?,?)",
+				"patch", "7.36", 2, 3, 3, 3, 0.03, 0.05, 0.5);
+
+		List<HeroPairsDto> pairs = dao.topPairs("patch", "7.36", 5, "win_rate");
+		assertEquals(List.of(3, 2), pairs.stream().map(HeroPairsDto::heroIdB).toList());
+		assertEquals(0.6, pairs.getFirst().winRate(), 1e-9);
+		assertEquals(1.5, pairs.getFirst().winLift(), 1e-9);
+		assertEquals(1.0, pairs.get(1).winLift(), 1e-9);
+
+		List<HighlightsHeroPairsDto> withHeroes = dao.topPairsWithHeroes("patch", "7.36", 5, "win_rate");
+		assertEquals(2, withHeroes.size());
+		assertEquals("Hero C", withHeroes.getFirst().heroBLocalizedName());
+		assertEquals(1.5, withHeroes.getFirst().winLift(), 1e-9);
+
+		assertEquals(3, dao.topPairs("patch", "7.36", 5, "lift").size());
+	}
+
 	@Test
 	void topPairsWithHeroesJoinsHeroData() {
 		List<HighlightsHeroPairsDto> pairs = dao.topPairsWithHeroes("patch", "7.36", 5, "support");
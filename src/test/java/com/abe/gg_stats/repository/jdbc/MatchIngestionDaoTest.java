@@ -0,0 +1,90 @@
+package com.abe.gg_stats.repository.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class MatchIngestionDaoTest {
+
+	private JdbcTemplate jdbcTemplate;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private MatchIngestionDao dao;
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		meterRegistry = new SimpleMeterRegistry();
+		dao = new MatchIngestionDao(jdbcTemplate, meterRegistry);
+		ReflectionTestUtils.setField(dao, "purchaseEventCopyEnabled", true);
+	}
+
+	@Test
+	void appendCsvRowQuotesTextAndLeavesNullsEmpty() {
+		StringBuilder out = new StringBuilder();
+		MatchIngestionDao.appendCsvRow(out, new Object[] { 1L, 2L, 3, -30, "item \"x\", y", true, null });
+		assertEquals("1,2,3,-30,\"item \"\"x\"\", y\",true,\n", out.toString());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void bulkLoadFallsBackToBatchInsertWhenConnectionIsNotPostgres() throws Exception {
+		Connection h2Connection = mock(Connection.class);
+		when(h2Connection.isWrapperFor(PGConnection.class)).thenReturn(false);
+		when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+			.thenAnswer(inv -> ((ConnectionCallback<Boolean>) inv.getArgument(0)).doInConnection(h2Connection));
+
+		List<Object[]> rows = List.<Object[]>of(new Object[] { 1L, 2L, 3, 10, "tango", true, 58 });
+		dao.bulkLoadItemPurchaseEvents(rows);
+
+		verify(jdbcTemplate).batchUpdate(contains("INSERT INTO item_purchase_event "), anyList());
+		verify(jdbcTemplate, never()).update(anyString());
+		assertEquals(1.0,
+				meterRegistry.get("match.ingestion.rows").tag("table", "item_purchase_event").counter().count());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void writeBatchMarksEachTouchedBucketDirtyOnce() {
+		MatchRowBatch batch = new MatchRowBatch();
+		batch.addMatch(match(1L, 58, 2900 * 604800));
+		batch.addMatch(match(2L, 58, 2900 * 604800 + 604799));
+		batch.addMatch(match(3L, 58, 2901 * 604800));
+		batch.addMatch(match(4L, 57, 2900 * 604800));
+
+		dao.writeBatch(batch);
+
+		ArgumentCaptor<List<Object[]>> marks = ArgumentCaptor.forClass(List.class);
+		verify(jdbcTemplate).batchUpdate(contains("INSERT INTO aggregation_dirty_bucket"), marks.capture());
+		assertEquals(List.of(List.of(58, 2900L), List.of(58, 2901L), List.of(57, 2900L)),
+				marks.getValue().stream().map(List::of).toList());
+	}
+
+	private static OpenDotaMatchDetailDto match(long matchId, int patch, int startTime) {
+		OpenDotaMatchDetailDto match = mock(OpenDotaMatchDetailDto.class);
+		when(match.matchId()).thenReturn(matchId);
+		when(match.patch()).thenReturn(patch);
+		when(match.startTime()).thenReturn(startTime);
+		return match;
+	}
+
+}
@@ -1,13 +1,22 @@
 package com.abe.gg_stats.service;
 
 import com.abe.gg_stats.repository.jdbc.AggregationDao;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.DirtyBucket;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PatchWeek;
+import com.abe.gg_stats.service.aggregation.AggregationEngine;
+import com.abe.gg_stats.service.aggregation.InMemoryHeroAggregator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 class AggregationServiceTest {
@@ -16,13 +25,103 @@ class AggregationServiceTest {
 
 	private AggregationDao dao;
 
+	private InMemoryHeroAggregator inMemoryAggregator;
+
 	private AggregationService service;
 
 	@BeforeEach
 	void setUp() {
 		api = mock(OpenDotaApiService.class);
 		dao = mock(AggregationDao.class);
-		service = new AggregationService(api, dao);
+		inMemoryAggregator = mock(InMemoryHeroAggregator.class);
+		service = new AggregationService(api, dao, inMemoryAggregator, new SimpleMeterRegistry(), AggregationEngine.SQL,
+				true, 2, Runnable::run, Runnable::run);
+		doAnswer(invocation -> {
+			invocation.<Runnable>getArgument(0).run();
+			return null;
+		}).when(dao).withAggregateBuildLock(any());
+	}
+
+	@Test
+	void aggregateTouchedBucketsRecomputesTouchedWeeksTheirFollowingWeeksAndPatches() {
+		when(dao.findDirtyBuckets()).thenReturn(
+				List.of(new DirtyBucket(1, new PatchWeek(58, 2900)), new DirtyBucket(2, new PatchWeek(58, 2901)),
+						new DirtyBucket(3, new PatchWeek(57, 2890)), new DirtyBucket(4, new PatchWeek(58, 2900))));
+
+		service.aggregateTouchedBuckets();
+
+		Set<PatchWeek> weeks = Set.of(new PatchWeek(58, 2900), new PatchWeek(58, 2901), new PatchWeek(58, 2902),
+				new PatchWeek(57, 2890), new PatchWeek(57, 2891));
+		verify(dao).beginAggregateBuild(eq(Set.of(57, 58)), eq(weeks));
+		verify(dao).aggregateHeroTrends(Set.of(57, 58), Set.of());
+		verify(dao).aggregateHeroTrends(Set.of(), weeks);
+		verify(dao).aggregateHeroPairs(Set.of(57, 58), Set.of());
+		verify(dao).aggregateHeroPairs(Set.of(), weeks);
+		InOrder order = inOrder(dao);
+		order.verify(dao).withAggregateBuildLock(any());
+		order.verify(dao).findDirtyBuckets();
+		order.verify(dao).beginAggregateBuild(any(), any());
+		order.verify(dao, times(2)).aggregateHeroPairs(any(), any());
+		order.verify(dao).publishAggregateBuild();
+		order.verify(dao).deleteDirtyBuckets(List.of(1L, 2L, 3L, 4L));
+		verifyNoInteractions(inMemoryAggregator);
+	}
+
+	@Test
+	void aggregateTouchedBucketsDiscardsTheGenerationWhenAggregationFails() {
+		when(dao.findDirtyBuckets()).thenReturn(List.of(new DirtyBucket(1, new PatchWeek(58, 2900))));
+		doThrow(new IllegalStateException("boom")).when(dao).aggregateHeroPairs(eq(Set.of(58)), any());
+
+		assertThrows(IllegalStateException.class, () -> service.aggregateTouchedBuckets());
+
+		verify(dao).aggregateHeroPairs(eq(Set.of()), any());
+		verify(dao).discardAggregateBuild();
+		verify(dao, never()).publishAggregateBuild();
+		verify(dao, never()).deleteDirtyBuckets(any());
+	}
+
+	@Test
+	void aggregateTouchedBucketsUsesInMemoryEngineWhenSelected() {
+		service = new AggregationService(api, dao, inMemoryAggregator, new SimpleMeterRegistry(), AggregationEngine.JVM,
+				true, 2, Runnable::run, Runnable::run);
+		when(dao.findDirtyBuckets()).thenReturn(List.of(new DirtyBucket(1, new PatchWeek(58, 2900))));
+
+		service.aggregateTouchedBuckets();
+
+		verify(inMemoryAggregator).aggregate(Set.of(58), Set.of(new PatchWeek(58, 2900), new PatchWeek(58, 2901)));
+		verify(dao).publishAggregateBuild();
+		verify(dao, never()).aggregateHeroTrends(any(), any());
+		verify(dao, never()).aggregateHeroPairs(any(), any());
+		verify(dao).deleteDirtyBuckets(List.of(1L));
+	}
+
+	@Test
+	void aggregateTouchedBucketsSkipsWhenNoBucketIsDirty() {
+		service.aggregateTouchedBuckets();
+
+		verify(dao).withAggregateBuildLock(any());
+		verify(dao).findDirtyBuckets();
+		verifyNoMoreInteractions(dao);
+	}
+
+	@Test
+	void aggregateTouchedBucketsReadsTheDirtyBucketsOnlyUnderTheBuildLock() {
+		doNothing().when(dao).withAggregateBuildLock(any());
+
+		service.aggregateTouchedBuckets();
+
+		verify(dao).withAggregateBuildLock(any());
+		verifyNoMoreInteractions(dao);
+	}
+
+	@Test
+	void requestTrendAggregationDoesNothingWhenDisabled() {
+		service = new AggregationService(api, dao, inMemoryAggregator, new SimpleMeterRegistry(), AggregationEngine.SQL,
+				false, 2, Runnable::run, Runnable::run);
+
+		service.requestTrendAggregation();
+
+		verifyNoInteractions(dao);
 	}
 
 	@Test
@@ -36,12 +135,23 @@ class AggregationServiceTest {
 		verify(api).getPatches();
 		verify(dao).upsertPatches(node.toString());
 		verify(dao).refreshTeamPicksView();
-		verify(dao).aggregateWeeklyHeroTrends();
-		verify(dao).aggregateWeeklyHeroPairs();
+		verify(dao).withAggregateBuildLock(any());
+		verify(dao).findDirtyBuckets();
 		verify(dao).refreshHeroItemPopularityView();
 		verifyNoMoreInteractions(api, dao);
 	}
 
+	@Test
+	void refreshRunsTheOtherTasksWhenOneFails() {
+		when(api.getPatches()).thenReturn(Optional.empty());
+		doThrow(new IllegalStateException("view locked")).when(dao).refreshTeamPicksView();
+
+		assertThrows(IllegalStateException.class, () -> service.refreshPatchesAndAggregations());
+
+		verify(dao).findDirtyBuckets();
+		verify(dao).refreshHeroItemPopularityView();
+	}
+
 	@Test
 	void refreshSkipsUpsertWhenNoPatchesButStillRefreshesAggregations() {
 		when(api.getPatches()).thenReturn(Optional.empty());
@@ -51,8 +161,8 @@ class AggregationServiceTest {
 		verify(api).getPatches();
 		verify(dao, never()).upsertPatches(anyString());
 		verify(dao).refreshTeamPicksView();
-		verify(dao).aggregateWeeklyHeroTrends();
-		verify(dao).aggregateWeeklyHeroPairs();
+		verify(dao).withAggregateBuildLock(any());
+		verify(dao).findDirtyBuckets();
 		verify(dao).refreshHeroItemPopularityView();
 		verifyNoMoreInteractions(api, dao);
 	}
@@ -2,8 +2,11 @@ package com.abe.gg_stats.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.abe.gg_stats.service.rate_limit.ApiBudgetPlanner;
+import com.abe.gg_stats.service.rate_limit.JobBudgetClass;
 import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService;
 import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService.RateLimitStatus;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,10 +33,16 @@ class BatchSchedulerServiceTest {
 
 	private Job historicalMatchesJob;
 
+	private Job matchDetailsJob;
+
+	private Job rebuildMatchesJob;
+
 	private OpenDotaRateLimitingService rateLimit;
 
 	private AggregationService aggregationService;
 
+	private ApiBudgetPlanner budgetPlanner;
+
 	private BatchSchedulerService service;
 
 	@BeforeEach
@@ -46,11 +55,19 @@ class BatchSchedulerServiceTest {
 		playerJob = mock(Job.class);
 		newMatchesJob = mock(Job.class);
 		historicalMatchesJob = mock(Job.class);
+		matchDetailsJob = mock(Job.class);
+		rebuildMatchesJob = mock(Job.class);
 		rateLimit = mock(OpenDotaRateLimitingService.class);
 		aggregationService = mock(AggregationService.class);
+		budgetPlanner = mock(ApiBudgetPlanner.class);
+		when(heroesJob.getName()).thenReturn("heroesUpdateJob");
+		when(newMatchesJob.getName()).thenReturn("newMatchesIngestionJob");
+		when(historicalMatchesJob.getName()).thenReturn("historicalMatchesIngestionJob");
+		when(matchDetailsJob.getName()).thenReturn("matchDetailsJob");
 
 		service = new BatchSchedulerService(jobLauncher, heroesJob, proPlayersJob, teamsJob, heroRankingJob, playerJob,
-				newMatchesJob, historicalMatchesJob, rateLimit, aggregationService);
+				newMatchesJob, historicalMatchesJob, matchDetailsJob, rebuildMatchesJob, rateLimit, aggregationService,
+				budgetPlanner);
 	}
 
 	private RateLimitStatus statusWithRemaining(int remaining) {
@@ -61,14 +78,23 @@ class BatchSchedulerServiceTest {
 			.rejectedRequests(0)
 			.successRate(100.0)
 			.timeUntilDailyReset(0)
-			.pendingChanges(0)
-			.lastSyncAge(0)
+			.leasedPermits(0)
+			.lastLeaseAge(0)
 			.build();
 	}
 
+	@Test
+	void registersJobsWithTheBudgetPlannerByPriority() {
+		verify(budgetPlanner).register("newMatchesIngestionJob", JobBudgetClass.FRESH_MATCHES, "0 */15 * * * *");
+		verify(budgetPlanner).register("matchDetailsJob", JobBudgetClass.FRESH_MATCHES, "0 5/15 * * * *");
+		verify(budgetPlanner).register("heroesUpdateJob", JobBudgetClass.RANKINGS, "0 0 2 * * *");
+		verify(budgetPlanner).register("historicalMatchesIngestionJob", JobBudgetClass.HISTORICAL_BACKFILL,
+				"0 0 3 * * *");
+	}
+
 	@Test
 	void triggerHeroesUpdateReturnsFalseWhenBelowThreshold() {
-		when(rateLimit.getStatus()).thenReturn(statusWithRemaining(10));
+		when(budgetPlanner.canStart("heroesUpdateJob")).thenReturn(false);
 		boolean res = service.triggerHeroesUpdate();
 		assertFalse(res);
 		verifyNoInteractions(jobLauncher);
@@ -76,13 +102,20 @@ class BatchSchedulerServiceTest {
 
 	@Test
 	void triggerHeroesUpdateRunsWhenAboveThreshold() throws Exception {
-		when(rateLimit.getStatus()).thenReturn(statusWithRemaining(100));
+		when(budgetPlanner.canStart("heroesUpdateJob")).thenReturn(true);
 		// jobLauncher.run will be called; no exception -> true
 		boolean res = service.triggerHeroesUpdate();
 		assertTrue(res);
 		verify(jobLauncher).run(any(Job.class), any(JobParameters.class));
 	}
 
+	@Test
+	void matchRebuildRunsWithoutConsultingTheBudget() throws Exception {
+		assertTrue(service.triggerMatchRebuildFromArchive());
+		verify(jobLauncher).run(eq(rebuildMatchesJob), any(JobParameters.class));
+		verify(budgetPlanner, never()).canStart(any());
+	}
+
 	@Test
 	void runAggregationsInvokesServiceWhenAllowed() {
 		when(rateLimit.getStatus()).thenReturn(statusWithRemaining(100));
@@ -97,4 +130,16 @@ class BatchSchedulerServiceTest {
 		verifyNoInteractions(aggregationService);
 	}
 
+	@Test
+	void leftoverBackfillRunsOnlyWhenThePlannerReleasesBudget() throws Exception {
+		when(budgetPlanner.canStart("historicalMatchesIngestionJob")).thenReturn(true);
+		when(budgetPlanner.leftoverForBackfill()).thenReturn(0L);
+		service.runLeftoverBackfill();
+		verifyNoInteractions(jobLauncher);
+
+		when(budgetPlanner.leftoverForBackfill()).thenReturn(300L);
+		service.runLeftoverBackfill();
+		verify(jobLauncher).run(eq(historicalMatchesJob), any(JobParameters.class));
+	}
+
 }
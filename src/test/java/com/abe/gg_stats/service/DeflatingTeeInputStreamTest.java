@@ -0,0 +1,42 @@
+package com.abe.gg_stats.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto.RawDocument;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+
+class DeflatingTeeInputStreamTest {
+
+	private static final byte[] BODY = "{\"match_id\": 1, \"players\": [{\"hero_id\": 2}]}".repeat(200)
+		.getBytes(StandardCharsets.UTF_8);
+
+	private static byte[] inflate(RawDocument document) throws Exception {
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(document.deflated()))) {
+			return in.readAllBytes();
+		}
+	}
+
+	@Test
+	void close_CapturesBytesTheReaderSkippedOrLeftUnread() throws Exception {
+		DeflatingTeeInputStream tee = new DeflatingTeeInputStream(new ByteArrayInputStream(BODY));
+
+		byte[] head = new byte[10];
+		assertEquals(10, tee.read(head));
+		assertEquals(BODY[10], tee.read());
+		assertEquals(100, tee.skip(100));
+		tee.close();
+		tee.close();
+
+		RawDocument document = tee.document();
+		assertEquals(BODY.length, document.length());
+		assertTrue(document.deflated().length < BODY.length);
+		assertArrayEquals(BODY, inflate(document));
+	}
+
+}
@@ -48,9 +48,10 @@ class HighlightsServiceTest {
 		int weekOffset = 0;
 
 		when(dao.matchesForBucket(bucket, value)).thenReturn(100L);
-		when(dao.topHeroes(bucket, value, limit)).thenReturn(List.of(new HighlightsHeroDto(1, 100, 60, 0.6, 0.05)));
+		when(dao.topHeroes(bucket, value, limit))
+			.thenReturn(List.of(new HighlightsHeroDto(1, 100, 60, 0.6, 0.05, 0.52)));
 		when(dao.topPairs(bucket, value, limit, sort))
-			.thenReturn(List.of(new HeroPairsDto(1, 2, 40, 0.8, 0.9, 1.2, 0.1, 0.2)));
+			.thenReturn(List.of(new HeroPairsDto(1, 2, 40, 0.8, 0.9, 1.2, 0.1, 0.2, 0.55, 1.1)));
 
 		HighlightsDto dto = service.getHighlights(bucket, value, limit, sort, weekOffset);
 		assertNotNull(dto);
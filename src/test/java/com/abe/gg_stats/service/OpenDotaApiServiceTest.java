@@ -4,18 +4,43 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.abe.gg_stats.config.OpenDotaCacheProperties;
+import com.abe.gg_stats.config.OpenDotaHealthProperties;
+import com.abe.gg_stats.dto.request.opendota.OpenDotaMatchDetailDto;
+import com.abe.gg_stats.repository.jdbc.ApiResponseCacheDao;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 import com.abe.gg_stats.service.circuit_breaker.CircuitBreakerService;
 import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService;
+import com.abe.gg_stats.service.rate_limit.RequestPriority;
 
 import java.util.function.Supplier;
 
@@ -31,6 +56,8 @@ class OpenDotaApiServiceTest {
 
 	private SimpleMeterRegistry meterRegistry;
 
+	private ApiResponseCacheDao cacheDao;
+
 	private OpenDotaApiService service;
 
 	@BeforeEach
@@ -41,16 +68,34 @@ class OpenDotaApiServiceTest {
 		objectMapper = new ObjectMapper();
 		meterRegistry = new SimpleMeterRegistry();
 
-		service = new OpenDotaApiService(restTemplate, rateLimit, circuitBreaker, objectMapper, meterRegistry);
+		cacheDao = mock(ApiResponseCacheDao.class);
+		service = newService(new OpenDotaCacheProperties(false, null));
+	}
+
+	private OpenDotaApiService newService(OpenDotaCacheProperties cacheProperties) {
+		OpenDotaResponseCache cache = new OpenDotaResponseCache(cacheDao, cacheProperties, objectMapper, meterRegistry);
+		OpenDotaCallHealth callHealth = new OpenDotaCallHealth(new OpenDotaHealthProperties(null, 0, 0, null, null));
+		OpenDotaApiService s = new OpenDotaApiService(restTemplate, rateLimit, circuitBreaker, objectMapper,
+				meterRegistry, cache, callHealth);
 		// Avoid NPE from @Value defaults by reflecting in baseUrl
-		org.springframework.test.util.ReflectionTestUtils.setField(service, "baseUrl", "https://api.opendota.com/api");
-		org.springframework.test.util.ReflectionTestUtils.setField(service, "healthCheckEnabled", true);
+		org.springframework.test.util.ReflectionTestUtils.setField(s, "baseUrl", "https://api.opendota.com/api");
+		org.springframework.test.util.ReflectionTestUtils.setField(s, "healthCheckEnabled", true);
+		return s;
+	}
+
+	private void passThroughRateLimitAndBreaker() {
+		when(rateLimit.tryAcquirePermit(anyString())).thenReturn(OpenDotaRateLimitingService.RateLimitResult.success());
+		when(circuitBreaker.executeWithCircuitBreaker(anyString(), any(), any())).thenAnswer(inv -> {
+			@SuppressWarnings("unchecked")
+			Supplier<Optional<?>> supplier = (Supplier<Optional<?>>) inv.getArgument(1);
+			return supplier.get();
+		});
 	}
 
 	@Test
 	void getHeroesHappyPathReturnsData() {
 		when(rateLimit.tryAcquirePermit(anyString())).thenReturn(OpenDotaRateLimitingService.RateLimitResult.success());
-		when(circuitBreaker.executeWithCircuitBreaker(eq("opendota_api"), any(), any())).thenAnswer(inv -> {
+		when(circuitBreaker.executeWithCircuitBreaker(anyString(), any(), any())).thenAnswer(inv -> {
 			@SuppressWarnings("unchecked")
 			Supplier<Optional<?>> supplier = (Supplier<Optional<?>>) inv.getArgument(1);
 			return supplier.get();
@@ -65,7 +110,7 @@ class OpenDotaApiServiceTest {
 	@Test
 	void returnsEmptyOnTooManyRequests() {
 		when(rateLimit.tryAcquirePermit(anyString())).thenReturn(OpenDotaRateLimitingService.RateLimitResult.success());
-		when(circuitBreaker.executeWithCircuitBreaker(eq("opendota_api"), any(), any())).thenAnswer(inv -> {
+		when(circuitBreaker.executeWithCircuitBreaker(anyString(), any(), any())).thenAnswer(inv -> {
 			@SuppressWarnings("unchecked")
 			Supplier<Optional<?>> supplier = (Supplier<Optional<?>>) inv.getArgument(1);
 			return supplier.get();
@@ -77,10 +122,287 @@ class OpenDotaApiServiceTest {
 		assertTrue(res.isEmpty());
 	}
 
+	@Test
+	void concurrentIdenticalCallsShareOneRequest() throws Exception {
+		when(rateLimit.tryAcquirePermit(anyString())).thenReturn(OpenDotaRateLimitingService.RateLimitResult.success());
+		when(circuitBreaker.executeWithCircuitBreaker(anyString(), any(), any())).thenAnswer(inv -> {
+			@SuppressWarnings("unchecked")
+			Supplier<Optional<?>> supplier = (Supplier<Optional<?>>) inv.getArgument(1);
+			return supplier.get();
+		});
+		CountDownLatch release = new CountDownLatch(1);
+		when(restTemplate.getForEntity(contains("/heroes"), eq(String.class))).thenAnswer(inv -> {
+			release.await(5, TimeUnit.SECONDS);
+			return ResponseEntity.ok("[{\"id\":1}]");
+		});
+
+		try (ExecutorService pool = Executors.newFixedThreadPool(2)) {
+			Future<Optional<?>> first = pool.submit(() -> service.getHeroes());
+			// Wait until the leader is blocked upstream before the second caller arrives
+			verify(restTemplate, timeout(5000)).getForEntity(contains("/heroes"), eq(String.class));
+			Future<Optional<?>> second = pool.submit(() -> service.getHeroes());
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (meterRegistry.counter("opendota.api.coalesced").count() < 1 && System.nanoTime() < deadline) {
+				Thread.onSpinWait();
+			}
+			release.countDown();
+
+			assertSame(first.get(5, TimeUnit.SECONDS).orElseThrow(), second.get(5, TimeUnit.SECONDS).orElseThrow());
+		}
+		verify(restTemplate, times(1)).getForEntity(contains("/heroes"), eq(String.class));
+		verify(rateLimit, times(1)).tryAcquirePermit(anyString());
+	}
+
+	@Test
+	void concurrentAsyncFetchesOfOneMatchShareOnePermit() {
+		passThroughRateLimitAndBreaker();
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> permit = new CompletableFuture<>();
+		when(rateLimit.acquireAsync(eq("/matches/7"), any())).thenReturn(permit);
+
+		CompletableFuture<?> first = service.getMatchDetailAsync(7, RequestPriority.NORMAL);
+		CompletableFuture<?> second = service.getMatchDetailAsync(7, RequestPriority.NORMAL);
+		permit.complete(OpenDotaRateLimitingService.RateLimitResult.rejected("Rate limit exceeded", 0, 0));
+
+		assertEquals(Optional.empty(), first.orTimeout(5, TimeUnit.SECONDS).join());
+		assertEquals(Optional.empty(), second.orTimeout(5, TimeUnit.SECONDS).join());
+		verify(rateLimit, times(1)).acquireAsync(anyString(), any());
+		assertEquals(1.0, meterRegistry.counter("opendota.api.coalesced").count());
+	}
+
+	@Test
+	void openBreakerSkipsThePermitQueue() {
+		when(circuitBreaker.isOpen("opendota_api.matches.{id}")).thenReturn(true);
+
+		assertEquals(Optional.empty(),
+				service.getMatchDetailAsync(7, RequestPriority.NORMAL).orTimeout(5, TimeUnit.SECONDS).join());
+		verify(rateLimit, never()).acquireAsync(anyString(), any());
+	}
+
+	@Test
+	void permitEndingInTheFallbackIsGivenBack() {
+		when(rateLimit.acquireAsync(eq("/matches/7"), any()))
+			.thenReturn(CompletableFuture.completedFuture(OpenDotaRateLimitingService.RateLimitResult.success()));
+		// The bulkhead stayed full, or the breaker opened while the caller was queued
+		when(circuitBreaker.executeWithCircuitBreaker(anyString(), any(), any())).thenAnswer(inv -> {
+			@SuppressWarnings("unchecked")
+			Supplier<Optional<?>> fallback = (Supplier<Optional<?>>) inv.getArgument(2);
+			return fallback.get();
+		});
+
+		assertEquals(Optional.empty(),
+				service.getMatchDetailAsync(7, RequestPriority.NORMAL).orTimeout(5, TimeUnit.SECONDS).join());
+		verify(rateLimit).returnUnusedPermit("/matches/7");
+		verify(restTemplate, never()).execute(anyString(), any(), any(), any(ResponseExtractor.class));
+	}
+
+	@Test
+	void synchronousCallTakesItsPermitBeforeEnteringTheBreaker() {
+		passThroughRateLimitAndBreaker();
+		when(restTemplate.getForEntity(contains("/heroes"), eq(String.class))).thenReturn(ResponseEntity.ok("[]"));
+
+		service.getHeroes();
+
+		InOrder order = inOrder(rateLimit, circuitBreaker);
+		order.verify(rateLimit).tryAcquirePermit("/heroes");
+		order.verify(circuitBreaker).executeWithCircuitBreaker(anyString(), any(), any());
+	}
+
+	@Test
+	void synchronousCallSkipsThePermitWhileTheBreakerIsOpen() {
+		when(circuitBreaker.isOpen("opendota_api.heroes")).thenReturn(true);
+
+		assertEquals(Optional.empty(), service.getHeroes());
+		verify(rateLimit, never()).tryAcquirePermit(anyString());
+	}
+
+	@Test
+	void synchronousPermitEndingInTheFallbackIsGivenBack() {
+		when(rateLimit.tryAcquirePermit("/heroes")).thenReturn(OpenDotaRateLimitingService.RateLimitResult.success());
+		when(circuitBreaker.executeWithCircuitBreaker(anyString(), any(), any())).thenAnswer(inv -> {
+			@SuppressWarnings("unchecked")
+			Supplier<Optional<?>> fallback = (Supplier<Optional<?>>) inv.getArgument(2);
+			return fallback.get();
+		});
+
+		assertEquals(Optional.empty(), service.getHeroes());
+		verify(rateLimit).returnUnusedPermit("/heroes");
+	}
+
+	@Test
+	void cancellingAQueuedFetchCancelsItsPermitWait() {
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> acquire = new CompletableFuture<>();
+		when(rateLimit.acquireAsync(eq("/matches/7"), any())).thenReturn(acquire);
+
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> fetch = service.getMatchDetailAsync(7,
+				RequestPriority.NORMAL);
+		fetch.cancel(false);
+
+		assertTrue(acquire.isCancelled());
+	}
+
+	@Test
+	void fetchIsCancelledOnceEveryCoalescedCallerCancels() {
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> acquire = new CompletableFuture<>();
+		when(rateLimit.acquireAsync(eq("/matches/7"), any())).thenReturn(acquire);
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> fetch = service.getMatchDetailAsync(7,
+				RequestPriority.NORMAL);
+		CompletableFuture<Optional<OpenDotaMatchDetailDto>> coalesced = service.getMatchDetailAsync(7,
+				RequestPriority.NORMAL);
+
+		fetch.cancel(false);
+		assertFalse(acquire.isCancelled(), "another caller still waits for the call");
+		coalesced.cancel(false);
+
+		assertTrue(acquire.isCancelled());
+		verify(circuitBreaker, never()).executeWithCircuitBreaker(anyString(), any(), any());
+	}
+
+	@Test
+	void cachedEndpointIsServedWithoutNetworkWhileFresh() {
+		passThroughRateLimitAndBreaker();
+		service = newService(new OpenDotaCacheProperties(true, Map.of("/heroes", Duration.ofHours(1))));
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag("\"v1\"");
+		when(restTemplate.exchange(contains("/heroes"), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+			.thenReturn(new ResponseEntity<>("[{\"id\":1}]", headers, HttpStatus.OK));
+
+		Optional<JsonNode> first = service.getHeroes();
+		Optional<JsonNode> second = service.getHeroes();
+
+		assertSame(first.orElseThrow(), second.orElseThrow());
+		verify(restTemplate, times(1)).exchange(anyString(), any(), any(HttpEntity.class), eq(String.class));
+		verify(rateLimit, times(1)).tryAcquirePermit(anyString());
+		verify(cacheDao).upsert(any());
+		assertEquals(1.0,
+				meterRegistry.counter("opendota.api.cache.requests", "endpoint", "/heroes", "result", "hit").count());
+	}
+
+	@Test
+	void staleEntryIsRevalidatedAndReusedOnNotModified() {
+		passThroughRateLimitAndBreaker();
+		service = newService(new OpenDotaCacheProperties(true, Map.of("/heroes", Duration.ZERO)));
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag("\"v1\"");
+		when(restTemplate.exchange(contains("/heroes"), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+			.thenReturn(new ResponseEntity<>("[{\"id\":1}]", headers, HttpStatus.OK))
+			.thenReturn(new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
+
+		JsonNode first = service.getHeroes().orElseThrow();
+		JsonNode second = service.getHeroes().orElseThrow();
+
+		assertSame(first, second);
+		ArgumentCaptor<HttpEntity<?>> requests = ArgumentCaptor.forClass(HttpEntity.class);
+		verify(restTemplate, times(2)).exchange(anyString(), any(), requests.capture(), eq(String.class));
+		assertEquals("\"v1\"", requests.getAllValues().get(1).getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH));
+		verify(cacheDao).revalidate(eq("/heroes"), any(), any(), any(), any());
+		assertTrue(meterRegistry.counter("opendota.api.cache.bytes_saved").count() > 0);
+	}
+
 	@Test
 	void getPlayerInvalidIdReturnsEmpty() {
 		assertTrue(service.getPlayer(0L).isEmpty());
 		assertTrue(service.getHeroRanking(0).isEmpty());
 	}
 
+	private void closedBreaker() {
+		when(circuitBreaker.getAllStatuses()).thenReturn(Map.of("opendota_api.heroes",
+				new CircuitBreakerService.CircuitBreakerStatus("opendota_api.heroes",
+						CircuitBreakerService.CircuitBreakerState.CLOSED, 0, 0, 0, 100.0, 0, null, 0.0, null, 0, 0.0,
+						10, 0)));
+		when(rateLimit.getStatus()).thenReturn(OpenDotaRateLimitingService.RateLimitStatus.builder().build());
+	}
+
+	@Test
+	void healthIsDerivedFromRecentCallsWithoutNetwork() {
+		passThroughRateLimitAndBreaker();
+		closedBreaker();
+		when(restTemplate.getForEntity(contains("/heroes"), eq(String.class)))
+			.thenReturn(ResponseEntity.ok("[{\"id\":1}]"));
+		for (int i = 0; i < 5; i++) {
+			service.getHeroes();
+		}
+
+		Health first = service.health();
+		Health second = service.health();
+
+		assertEquals(Status.UP, first.getStatus());
+		assertEquals("traffic", second.getDetails().get("source"));
+		verify(restTemplate, times(5)).getForEntity(anyString(), eq(String.class));
+		verify(rateLimit, times(5)).tryAcquirePermit(anyString());
+	}
+
+	@Test
+	void idleServiceSendsOneBackgroundProbe() {
+		passThroughRateLimitAndBreaker();
+		closedBreaker();
+		when(restTemplate.getForEntity(contains("/constants/heroes"), eq(String.class)))
+			.thenReturn(ResponseEntity.ok("{}"));
+
+		service.health();
+		verify(restTemplate, timeout(1000)).getForEntity(contains("/constants/heroes"), eq(String.class));
+		service.health();
+
+		verify(restTemplate, times(1)).getForEntity(anyString(), eq(String.class));
+	}
+
+	@Test
+	void callMetricsAreTaggedByEndpointTemplate() {
+		passThroughRateLimitAndBreaker();
+		when(restTemplate.getForEntity(contains("/players/"), eq(String.class)))
+			.thenReturn(ResponseEntity.ok("{\"account_id\":1}"));
+
+		service.getPlayer(123L);
+		service.getPlayer(456L);
+
+		assertEquals(1, meterRegistry.find("opendota.api.call").timers().size());
+		assertEquals(2, meterRegistry.get("opendota.api.call").tag("endpoint", "/players/{id}").timer().count());
+		assertEquals(2,
+				meterRegistry.get("opendota.api.rate_limit.wait")
+					.tags("endpoint", "/players/{id}", "outcome", "granted")
+					.timer()
+					.count());
+		assertEquals(2, meterRegistry.get("opendota.api.response.size").summary().count());
+	}
+
+	@Test
+	void streamedMatchDetailRecordsTheBytesParsed() {
+		passThroughRateLimitAndBreaker();
+		byte[] body = "{\"match_id\":7,\"players\":[]}".getBytes(StandardCharsets.UTF_8);
+		when(restTemplate.execute(contains("/matches/7"), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class)))
+			.thenAnswer(inv -> {
+				// Decompressed upstream, so no Content-Length header
+				MockClientHttpResponse response = new MockClientHttpResponse(new ByteArrayInputStream(body),
+						HttpStatus.OK);
+				return ((ResponseExtractor<?>) inv.getArgument(3)).extractData(response);
+			});
+
+		assertTrue(service.getMatchDetail(7L).isPresent());
+
+		assertEquals(body.length,
+				meterRegistry.get("opendota.api.response.size")
+					.tag("endpoint", "/matches/{id}")
+					.summary()
+					.totalAmount());
+	}
+
+	@Test
+	void bufferedBodySizeCountsUtf8Bytes() {
+		assertEquals(3, OpenDotaApiService.utf8Length("abc"));
+		assertEquals("Δ€😀".getBytes(StandardCharsets.UTF_8).length, OpenDotaApiService.utf8Length("Δ€😀"));
+	}
+
+	@Test
+	void eachEndpointTemplateHasItsOwnCircuitBreaker() {
+		passThroughRateLimitAndBreaker();
+		when(restTemplate.getForEntity(anyString(), eq(String.class))).thenReturn(ResponseEntity.ok("{}"));
+
+		service.getPlayer(123L);
+		service.getPlayer(456L);
+		service.getHeroes();
+
+		verify(circuitBreaker, times(2)).executeWithCircuitBreaker(eq("opendota_api.players.{id}"), any(), any());
+		verify(circuitBreaker).executeWithCircuitBreaker(eq("opendota_api.heroes"), any(), any());
+		assertEquals("opendota_api.rankings", OpenDotaApiService.circuitBreakerName("/rankings?hero_id=5"));
+	}
+
 }
@@ -0,0 +1,114 @@
+package com.abe.gg_stats.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.abe.gg_stats.config.OpenDotaHealthProperties;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+class OpenDotaCallHealthTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+	private OpenDotaCallHealth health;
+
+	@BeforeEach
+	void setUp() {
+		OpenDotaHealthProperties properties = new OpenDotaHealthProperties(Duration.ofMinutes(5), 5, 0.5,
+				Duration.ofSeconds(2), Duration.ofMinutes(30));
+		health = new OpenDotaCallHealth(properties, now::get);
+	}
+
+	private void advance(Duration duration) {
+		now.addAndGet(duration.toNanos());
+	}
+
+	private Health current() {
+		return health.currentHealth().build();
+	}
+
+	@Test
+	void unknownWithoutCallsOrProbe() {
+		assertEquals(Status.UNKNOWN, current().getStatus());
+	}
+
+	@Test
+	void upWhenRecentCallsSucceed() {
+		for (int i = 0; i < 10; i++) {
+			health.record("200", 80 * MS);
+		}
+		health.record("404", 80 * MS);
+
+		Health result = current();
+		assertEquals(Status.UP, result.getStatus());
+		assertEquals(11L, result.getDetails().get("calls"));
+		assertEquals(100L, result.getDetails().get("p95LatencyMs"));
+	}
+
+	@Test
+	void downWhenMostCallsFail() {
+		health.record("200", 80 * MS);
+		for (int i = 0; i < 4; i++) {
+			health.record(i % 2 == 0 ? "503" : "network_error", 80 * MS);
+		}
+
+		assertEquals(Status.DOWN, current().getStatus());
+	}
+
+	@Test
+	void degradedWhenSlow() {
+		for (int i = 0; i < 10; i++) {
+			health.record("200", 4_000 * MS);
+		}
+
+		assertEquals(OpenDotaCallHealth.DEGRADED, current().getStatus());
+	}
+
+	@Test
+	void callsAgeOutOfTheWindow() {
+		for (int i = 0; i < 5; i++) {
+			health.record("503", 80 * MS);
+		}
+		advance(Duration.ofMinutes(6));
+
+		Health result = current();
+		assertEquals(Status.UNKNOWN, result.getStatus());
+		assertEquals(0L, result.getDetails().get("calls"));
+	}
+
+	@Test
+	void probesOnlyWhenIdleAndCachesTheResult() {
+		health.record("200", 80 * MS);
+		assertFalse(health.tryStartProbe());
+
+		advance(Duration.ofMinutes(31));
+		assertTrue(health.tryStartProbe());
+		assertFalse(health.tryStartProbe());
+		health.record("200", 120 * MS);
+		health.probeFinished();
+
+		advance(Duration.ofMinutes(10));
+		Health result = current();
+		assertEquals(Status.UP, result.getStatus());
+		assertEquals("probe", result.getDetails().get("source"));
+		assertFalse(health.tryStartProbe());
+	}
+
+	@Test
+	void probeStoppedBeforeTheNetworkKeepsPreviousResult() {
+		assertTrue(health.tryStartProbe());
+		health.probeFinished();
+
+		assertEquals(Status.UNKNOWN, current().getStatus());
+		// No new attempt until idle-probe-after has passed again
+		assertFalse(health.tryStartProbe());
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.abe.gg_stats.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class OpenDotaEndpointsTest {
+
+	@Test
+	void templateDropsQueryAndNumericSegments() {
+		assertEquals("/heroes", OpenDotaEndpoints.template("/heroes"));
+		assertEquals("/teams", OpenDotaEndpoints.template("/teams?page=3"));
+		assertEquals("/matches/{id}", OpenDotaEndpoints.template("/matches/8000000001"));
+		assertEquals("/players/{id}", OpenDotaEndpoints.template("/players/123?x=1"));
+		assertEquals("/constants/patch", OpenDotaEndpoints.template("/constants/patch"));
+		assertEquals("/", OpenDotaEndpoints.template(""));
+	}
+
+	@Test
+	void metricTemplateKeepsQueryParameterNames() {
+		assertEquals("/heroes", OpenDotaEndpoints.metricTemplate("/heroes"));
+		assertEquals("/rankings?hero_id={id}", OpenDotaEndpoints.metricTemplate("/rankings?hero_id=5"));
+		assertEquals("/proMatches?less_than_match_id={id}",
+				OpenDotaEndpoints.metricTemplate("/proMatches?less_than_match_id=8000000001"));
+		assertEquals("/matches/{id}", OpenDotaEndpoints.metricTemplate("/matches/8000000001"));
+		assertEquals("/search?q={value}&page={id}", OpenDotaEndpoints.metricTemplate("/search?q=abc&page=2"));
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.abe.gg_stats.service.aggregation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+import com.abe.gg_stats.repository.jdbc.AggregationDao;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PatchWeek;
+import com.abe.gg_stats.repository.jdbc.AggregationDao.PickConsumer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryHeroAggregatorTest {
+
+	private static final int WEEK_2900 = 2900 * 604_800 + 10;
+
+	private static final int WEEK_2901 = 2901 * 604_800 + 10;
+
+	@Mock
+	private AggregationDao dao;
+
+	@InjectMocks
+	private InMemoryHeroAggregator aggregator;
+
+	@SuppressWarnings("unchecked")
+	@Test
+	void aggregate_CountsPatchAndRequestedWeeksWithWinsAndDeltasAgainstWeekBefore() {
+		doAnswer(invocation -> {
+			PickConsumer consumer = invocation.getArgument(1);
+			picks(consumer, 58, WEEK_2900, 1L, 0, true, 1, 2, 3);
+			picks(consumer, 58, WEEK_2900, 1L, 1, false, 4, 5, 6);
+			picks(consumer, 58, WEEK_2901, 2L, 0, false, 1, 2, 7);
+			picks(consumer, 58, WEEK_2901, 2L, 1, true, 4, 5, 6);
+			return 12L;
+		}).when(dao).forEachPick(eq(Set.of(58)), any());
+
+		aggregator.aggregate(Set.of(58), Set.of(new PatchWeek(58, 2901)));
+
+		ArgumentCaptor<List<Object[]>> trends = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List<Object[]>> pairs = ArgumentCaptor.forClass(List.class);
+		verify(dao).insertHeroTrends(trends.capture());
+		verify(dao).insertHeroPairs(pairs.capture());
+
+		assertArrayEquals(new Object[] { "patch", "58", 1, 4L, 2L, 0.5, 0.5, null }, row(trends.getValue(), "58", 1));
+		assertArrayEquals(new Object[] { "patch_week", "58-2901", 1, 2L, 1L, 0.5, 0.0, 0.0 },
+				row(trends.getValue(), "58-2901", 1));
+		assertArrayEquals(new Object[] { "patch_week", "58-2901", 7, 2L, 1L, 0.5, 0.0, null },
+				row(trends.getValue(), "58-2901", 7));
+		assertTrue(trends.getValue().stream().noneMatch(r -> r[1].equals("58-2900")));
+
+		assertArrayEquals(new Object[] { "patch", "58", 1, 2, 2L, 1L, 0.5, 1.0, 2.0, null, null },
+				row(pairs.getValue(), "58", 1, 2));
+		assertArrayEquals(new Object[] { "patch_week", "58-2901", 1, 2, 1L, 0L, 0.5, 1.0, 2.0, 0.0, 0.0 },
+				row(pairs.getValue(), "58-2901", 1, 2));
+		assertArrayEquals(new Object[] { "patch_week", "58-2901", 1, 7, 1L, 0L, 0.5, 1.0, 2.0, null, null },
+				row(pairs.getValue(), "58-2901", 1, 7));
+	}
+
+	@Test
+	void counts_SkipsRepeatedHeroInPairs() {
+		InMemoryHeroAggregator.Counts counts = new InMemoryHeroAggregator.Counts();
+		counts.add(new int[] { 3, 3, 9 }, 3, true);
+
+		assertEquals(1, counts.lineups);
+		assertEquals(2, counts.heroLineups[3]);
+		assertEquals(2, counts.pairs[3 * InMemoryHeroAggregator.HERO_SLOTS + 9]);
+		assertEquals(2, counts.pairWins[3 * InMemoryHeroAggregator.HERO_SLOTS + 9]);
+		List<Object[]> pairs = new ArrayList<>();
+		InMemoryHeroAggregator.collectRows("patch", "58", counts, null, new ArrayList<>(), pairs);
+		assertEquals(1, pairs.size());
+	}
+
+	private static void picks(PickConsumer consumer, int patch, int startTime, long matchId, int team, boolean won,
+			int... heroes) {
+		for (int hero : heroes) {
+			consumer.accept(patch, startTime, matchId, team, hero, won);
+		}
+	}
+
+	private static Object[] row(List<Object[]> rows, String bucketValue, int... heroes) {
+		return rows.stream().filter(r -> r[1].equals(bucketValue)).filter(r -> {
+			for (int i = 0; i < heroes.length; i++) {
+				if (!r[2 + i].equals(heroes[i])) {
+					return false;
+				}
+			}
+			return true;
+		}).findFirst().orElseThrow();
+	}
+
+}
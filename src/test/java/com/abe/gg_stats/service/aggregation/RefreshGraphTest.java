@@ -0,0 +1,134 @@
+package com.abe.gg_stats.service.aggregation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class RefreshGraphTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final List<String> ran = new CopyOnWriteArrayList<>();
+
+	@Test
+	void runsTasksAfterTheirDependencies() {
+		new RefreshGraph("test", Runnable::run, meterRegistry).task("a", () -> ran.add("a"))
+			.task("b", () -> ran.add("b"), "a")
+			.task("c", () -> ran.add("c"), "a", "b")
+			.run();
+
+		assertEquals(List.of("a", "b", "c"), ran);
+		assertEquals(1,
+				meterRegistry.get("aggregation.refresh.task")
+					.tag("graph", "test")
+					.tag("task", "c")
+					.tag("outcome", "success")
+					.timer()
+					.count());
+	}
+
+	@Test
+	void failedTaskSkipsOnlyItsDownstreamTasks() {
+		IllegalStateException failure = new IllegalStateException("boom");
+		RefreshGraph graph = new RefreshGraph("test", Runnable::run, meterRegistry).task("a", () -> {
+			throw failure;
+		})
+			.task("b", () -> ran.add("b"), "a")
+			.task("c", () -> ran.add("c"), "b")
+			.task("independent", () -> ran.add("independent"));
+
+		IllegalStateException thrown = assertThrows(IllegalStateException.class, graph::run);
+
+		assertSame(failure, thrown);
+		assertEquals(List.of("independent"), ran);
+		assertEquals(1,
+				meterRegistry.get("aggregation.refresh.task")
+					.tag("task", "a")
+					.tag("outcome", "failure")
+					.timer()
+					.count());
+		assertEquals(1,
+				meterRegistry.get("aggregation.refresh.task")
+					.tag("task", "c")
+					.tag("outcome", "skipped")
+					.timer()
+					.count());
+	}
+
+	@Test
+	void rethrowsTheFirstFailureWithTheOthersSuppressed() {
+		RefreshGraph graph = new RefreshGraph("test", Runnable::run, meterRegistry).task("a", () -> {
+			throw new IllegalStateException("a");
+		}).task("b", () -> {
+			throw new IllegalArgumentException("b");
+		});
+
+		IllegalStateException thrown = assertThrows(IllegalStateException.class, graph::run);
+
+		assertEquals(1, thrown.getSuppressed().length);
+		assertEquals("b", thrown.getSuppressed()[0].getMessage());
+	}
+
+	@Test
+	void runsIndependentTasksConcurrently() throws Exception {
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		Runnable meet = () -> {
+			bothStarted.countDown();
+			try {
+				assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+			new RefreshGraph("test", executor, meterRegistry).task("a", meet).task("b", meet).run();
+		}
+		assertEquals(0, bothStarted.getCount());
+	}
+
+	@Test
+	void maxConcurrencyBoundsTheTasksRunningAtOnce() {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		Runnable work = () -> {
+			peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+		};
+		try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+			new RefreshGraph("test", executor, meterRegistry).maxConcurrency(2)
+				.task("a", work)
+				.task("b", work)
+				.task("c", work)
+				.task("d", work)
+				.run();
+		}
+		assertEquals(2, peak.get());
+	}
+
+	@Test
+	void rejectsUnknownAndDuplicateTasks() {
+		RefreshGraph graph = new RefreshGraph("test", Runnable::run, meterRegistry).task("a", () -> {
+		});
+
+		assertThrows(IllegalArgumentException.class, () -> graph.task("b", () -> {
+		}, "missing"));
+		assertThrows(IllegalArgumentException.class, () -> graph.task("a", () -> {
+		}));
+	}
+
+}
@@ -7,6 +7,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 class CircuitBreakerServiceTest {
@@ -85,4 +90,97 @@ class CircuitBreakerServiceTest {
 		assertEquals("fallback", result);
 	}
 
+	@Test
+	void opensWhenEveryCallInTheWindowIsSlow() {
+		String name = "slow";
+		ReflectionTestUtils.setField(service, "defaultMinimumCalls", 3);
+		ReflectionTestUtils.setField(service, "defaultSlowCallDurationMs", 0L);
+
+		service.executeWithCircuitBreaker(name, () -> "ok", () -> null);
+		service.executeWithCircuitBreaker(name, () -> "ok", () -> null);
+		assertEquals(CircuitBreakerService.CircuitBreakerState.CLOSED, service.getState(name));
+
+		service.executeWithCircuitBreaker(name, () -> "ok", () -> null);
+		assertEquals(CircuitBreakerService.CircuitBreakerState.OPEN, service.getState(name));
+		assertEquals(100.0, service.getStatus(name).slidingWindowSlowCallRate());
+	}
+
+	@Test
+	void timeBasedWindowReportsCallsOfTheLastSeconds() {
+		String name = "time-based";
+		ReflectionTestUtils.setField(service, "defaultSlidingWindowType",
+				CircuitBreakerService.SlidingWindowType.TIME_BASED);
+		ReflectionTestUtils.setField(service, "defaultSlidingWindowSize", 60);
+		ReflectionTestUtils.setField(service, "defaultFailureThreshold", 50);
+
+		service.executeWithCircuitBreaker(name, () -> "ok", () -> null);
+		assertThrows(CircuitBreakerException.class, () -> service.executeWithCircuitBreaker(name, () -> {
+			throw new RuntimeException("boom");
+		}, () -> null));
+
+		CircuitBreakerService.CircuitBreakerStatus status = service.getStatus(name);
+		assertEquals(2, status.slidingWindowCalls());
+		assertEquals(50.0, status.slidingWindowFailureRate());
+		assertEquals(CircuitBreakerService.CircuitBreakerState.OPEN, status.state());
+	}
+
+	@Test
+	void isOpenDoesNotMoveAnExpiredBreakerToHalfOpen() throws InterruptedException {
+		String name = "peek";
+		service.openCircuitBreaker(name, "test");
+
+		assertTrue(service.isOpen(name));
+		assertFalse(service.isOpen("never-called"));
+		Thread.sleep(60);
+		assertFalse(service.isOpen(name));
+		assertEquals(CircuitBreakerService.CircuitBreakerState.OPEN, service.getState(name));
+	}
+
+	@Test
+	void breakersAreIndependentPerName() {
+		service.openCircuitBreaker("opendota_api.players.{id}", "test");
+
+		assertEquals("fallback",
+				service.executeWithCircuitBreaker("opendota_api.players.{id}", () -> "primary", () -> "fallback"));
+		assertEquals("primary",
+				service.executeWithCircuitBreaker("opendota_api.matches.{id}", () -> "primary", () -> "fallback"));
+	}
+
+	@Test
+	void fullBulkheadRejectsWithFallbackWithoutRecordingFailure() throws Exception {
+		String name = "bulkhead";
+		ReflectionTestUtils.setField(service, "defaultBulkheadMaxConcurrentCalls", 1);
+		ReflectionTestUtils.setField(service, "defaultBulkheadMaxWaitMs", 10L);
+		CountDownLatch inCall = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> slow = executor.submit(() -> service.executeWithCircuitBreaker(name, () -> {
+				inCall.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "slow";
+			}, () -> "fallback"));
+			assertTrue(inCall.await(5, TimeUnit.SECONDS));
+
+			assertEquals("fallback", service.executeWithCircuitBreaker(name, () -> "primary", () -> "fallback"));
+			release.countDown();
+			assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		CircuitBreakerService.CircuitBreakerStatus status = service.getStatus(name);
+		assertEquals(1, status.bulkheadRejectedCalls());
+		assertEquals(1, status.bulkheadAvailableCalls());
+		assertEquals(0, status.failureCalls());
+		assertEquals(CircuitBreakerService.CircuitBreakerState.CLOSED, status.state());
+		assertEquals("primary", service.executeWithCircuitBreaker(name, () -> "primary", () -> "fallback"));
+	}
+
 }
@@ -0,0 +1,115 @@
+package com.abe.gg_stats.service.circuit_breaker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	void countBasedWindowEvictsOldestOutcomes() {
+		CountBasedSlidingWindow window = new CountBasedSlidingWindow(4);
+		window.record(true, false);
+		window.record(true, true);
+		window.record(false, false);
+
+		assertEquals(new SlidingWindow.Snapshot(3, 2, 1), window.snapshot());
+
+		window.record(false, false);
+		window.record(false, false);
+		window.record(false, false);
+
+		// Both failures were pushed out by the last three successes
+		assertEquals(new SlidingWindow.Snapshot(4, 0, 0), window.snapshot());
+		assertEquals(0.0, window.snapshot().failureRate());
+	}
+
+	@Test
+	void countBasedWindowReset() {
+		CountBasedSlidingWindow window = new CountBasedSlidingWindow(3);
+		window.record(true, true);
+		window.reset();
+
+		assertEquals(SlidingWindow.Snapshot.EMPTY, window.snapshot());
+		window.record(true, false);
+		assertEquals(100.0, window.snapshot().failureRate());
+	}
+
+	@Test
+	void countBasedCountersMatchBufferUnderContention() throws InterruptedException {
+		CountBasedSlidingWindow window = new CountBasedSlidingWindow(64);
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					window.record(true, true);
+				}
+				done.countDown();
+			});
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		assertEquals(new SlidingWindow.Snapshot(64, 64, 64), window.snapshot());
+	}
+
+	@Test
+	void timeBasedWindowForgetsCallsOlderThanTheWindow() {
+		AtomicLong now = new AtomicLong(1_000 * SECOND);
+		TimeBasedSlidingWindow window = new TimeBasedSlidingWindow(60, now::get);
+		window.record(true, false);
+		now.addAndGet(30 * SECOND);
+		window.record(false, true);
+		window.record(false, false);
+
+		assertEquals(new SlidingWindow.Snapshot(3, 1, 1), window.snapshot());
+
+		now.addAndGet(31 * SECOND);
+		assertEquals(new SlidingWindow.Snapshot(2, 0, 1), window.snapshot());
+
+		// A full lap later the bucket is recycled instead of added to
+		now.addAndGet(29 * SECOND);
+		window.record(true, false);
+		assertEquals(new SlidingWindow.Snapshot(1, 1, 0), window.snapshot());
+
+		now.addAndGet(3_600 * SECOND);
+		assertEquals(SlidingWindow.Snapshot.EMPTY, window.snapshot());
+	}
+
+	@Test
+	void timeBasedWindowDropsRecordsForAnEarlierLap() {
+		AtomicLong now = new AtomicLong(5 * SECOND);
+		TimeBasedSlidingWindow window = new TimeBasedSlidingWindow(10, now::get);
+		window.record(false, false);
+		// A caller that read the clock a lap earlier must not wipe the newer bucket
+		now.addAndGet(-10 * SECOND);
+		window.record(true, false);
+		now.addAndGet(10 * SECOND);
+
+		assertEquals(new SlidingWindow.Snapshot(1, 0, 0), window.snapshot());
+	}
+
+	@Test
+	void timeBasedWindowSaturatesInsteadOfOverflowing() {
+		AtomicLong now = new AtomicLong(-7 * SECOND);
+		TimeBasedSlidingWindow window = new TimeBasedSlidingWindow(5, now::get);
+		for (long i = 0; i <= TimeBasedSlidingWindow.MAX_COUNT + 10; i++) {
+			window.record(true, false);
+		}
+
+		SlidingWindow.Snapshot snapshot = window.snapshot();
+		assertEquals(TimeBasedSlidingWindow.MAX_COUNT, snapshot.calls());
+		assertEquals(TimeBasedSlidingWindow.MAX_COUNT, snapshot.failures());
+		assertEquals(0, snapshot.slowCalls());
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.abe.gg_stats.service.rate_limit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.abe.gg_stats.service.rate_limit.OpenDotaRateLimitingService.RateLimitStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ApiBudgetPlannerTest {
+
+	private static final Instant NOON = Instant.parse("2025-06-01T12:00:00Z");
+
+	private static final Instant NINE_PM = Instant.parse("2025-06-01T21:00:00Z");
+
+	private OpenDotaRateLimitingService rateLimit;
+
+	private JobExplorer jobExplorer;
+
+	private JobRepository jobRepository;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private final AtomicLong granted = new AtomicLong();
+
+	@BeforeEach
+	void setUp() {
+		rateLimit = Mockito.mock(OpenDotaRateLimitingService.class);
+		jobExplorer = Mockito.mock(JobExplorer.class);
+		jobRepository = Mockito.mock(JobRepository.class);
+		meterRegistry = new SimpleMeterRegistry();
+		Mockito.when(rateLimit.getRequestsPerDay()).thenReturn(2000);
+		Mockito.when(rateLimit.getGrantedRequests()).thenAnswer(inv -> granted.get());
+		remaining(2000);
+	}
+
+	private void remaining(int remaining) {
+		Mockito.when(rateLimit.getStatus())
+			.thenReturn(RateLimitStatus.builder().remainingDailyRequests(remaining).build());
+	}
+
+	private ApiBudgetPlanner plannerAt(Instant now) {
+		ApiBudgetPlanner planner = new ApiBudgetPlanner(rateLimit, jobExplorer, jobRepository, meterRegistry,
+				Clock.fixed(now, ZoneOffset.UTC));
+		ReflectionTestUtils.setField(planner, "minAllowance", 5);
+		ReflectionTestUtils.setField(planner, "defaultRunCost", 10);
+		ReflectionTestUtils.setField(planner, "historyRuns", 10);
+		ReflectionTestUtils.setField(planner, "backfillReleaseHour", 20);
+		planner.register("fresh", JobBudgetClass.FRESH_MATCHES, "0 */15 * * * *");
+		planner.register("players", JobBudgetClass.PLAYERS, "0 0 */6 * * *");
+		planner.register("backfill", JobBudgetClass.HISTORICAL_BACKFILL, "0 0 3 * * *");
+		return planner;
+	}
+
+	private JobExecution execution(String jobName) {
+		return new JobExecution(new JobInstance(1L, jobName), 1L, new JobParameters());
+	}
+
+	@Test
+	void freshMatchesAreReservedBeforePlayers() {
+		ApiBudgetPlanner planner = plannerAt(NOON);
+		// 47 fresh runs of 10 left today need more than what remains
+		remaining(400);
+
+		assertEquals(0, planner.allowance("players"));
+		assertFalse(planner.canStart("players"));
+		assertEquals(10, planner.allowance("fresh"));
+		assertTrue(planner.canStart("fresh"));
+	}
+
+	@Test
+	void jobGetsWhatIsLeftAfterHigherAndOwnClassDemand() {
+		ApiBudgetPlanner planner = plannerAt(NOON);
+		remaining(1000);
+
+		// 1000 - 470 for fresh matches - 10 for the 18:00 player run
+		assertEquals(520, planner.allowance("players"));
+		assertEquals(1000, planner.allowance("unregistered"));
+	}
+
+	@Test
+	void leftoverGoesToBackfillOnlyLateInTheDay() {
+		remaining(1000);
+
+		assertEquals(0, plannerAt(NOON).leftoverForBackfill());
+		// Only the 11 remaining fresh runs are still reserved
+		assertEquals(890, plannerAt(NINE_PM).leftoverForBackfill());
+	}
+
+	@Test
+	void recordsConsumptionAndUpdatesEstimate() {
+		ApiBudgetPlanner planner = plannerAt(NOON);
+		JobExecution execution = execution("players");
+
+		granted.set(100);
+		planner.beforeJob(execution);
+		assertEquals(1520, execution.getExecutionContext().getLong(ApiBudgetPlanner.ALLOWANCE_KEY));
+		granted.set(160);
+		execution.setStatus(BatchStatus.COMPLETED);
+		planner.afterJob(execution);
+
+		assertEquals(60, execution.getExecutionContext().getLong(ApiBudgetPlanner.TOKENS_USED_KEY));
+		Mockito.verify(jobRepository).updateExecutionContext(execution);
+		assertEquals(60, meterRegistry.get("opendota.api.budget.actual").tag("job_class", "players").gauge().value());
+		// 10 + 0.3 * (60 - 10) for the 18:00 run
+		assertEquals(2000 - 470 - 25, planner.allowance("players"));
+	}
+
+	@Test
+	void seedsRunCostFromBatchHistory() {
+		JobExecution past = execution("players");
+		past.setStatus(BatchStatus.COMPLETED);
+		past.getExecutionContext().putLong(ApiBudgetPlanner.TOKENS_USED_KEY, 200);
+		Mockito.when(jobExplorer.getJobInstances("players", 0, 10)).thenReturn(List.of(past.getJobInstance()));
+		Mockito.when(jobExplorer.getJobExecutions(past.getJobInstance())).thenReturn(List.of(past));
+		ApiBudgetPlanner planner = plannerAt(NOON);
+		remaining(1000);
+
+		assertEquals(1000 - 470 - 200, planner.allowance("players"));
+	}
+
+	@Test
+	void plansDailyQuotaByPriority() {
+		ApiBudgetPlanner planner = plannerAt(NOON);
+
+		// 96 fresh runs and 4 player runs of 10 a day; backfill is planned the rest
+		assertEquals(960, planned("fresh_matches"));
+		assertEquals(40, planned("players"));
+		assertEquals(1000, planned("historical_backfill"));
+		assertEquals(0L, (long) planner.plannedToday().get(JobBudgetClass.RANKINGS));
+	}
+
+	private double planned(String jobClass) {
+		return meterRegistry.get("opendota.api.budget.planned").tag("job_class", jobClass).gauge().value();
+	}
+
+}
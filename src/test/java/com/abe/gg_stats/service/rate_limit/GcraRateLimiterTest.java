@@ -0,0 +1,43 @@
+package com.abe.gg_stats.service.rate_limit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class GcraRateLimiterTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+	@Test
+	void burstOfOneSpacesPermitsByEmissionInterval() {
+		GcraRateLimiter limiter = new GcraRateLimiter(60, MINUTE, 1);
+		long t0 = System.nanoTime();
+
+		assertTrue(limiter.tryAcquire(t0));
+		assertFalse(limiter.tryAcquire(t0));
+		assertFalse(limiter.tryAcquire(t0 + SECOND - 1));
+		assertTrue(limiter.tryAcquire(t0 + SECOND));
+		assertEquals(SECOND, limiter.nanosUntilNextPermit(t0 + SECOND));
+	}
+
+	@Test
+	void burstToleranceAllowsConfiguredBackToBackPermits() {
+		GcraRateLimiter limiter = new GcraRateLimiter(60, MINUTE, 3);
+		long t0 = System.nanoTime() + MINUTE;
+
+		assertEquals(3, limiter.availablePermits(t0));
+		assertTrue(limiter.tryAcquire(t0));
+		assertTrue(limiter.tryAcquire(t0));
+		assertTrue(limiter.tryAcquire(t0));
+		assertFalse(limiter.tryAcquire(t0));
+		assertEquals(0, limiter.availablePermits(t0));
+		// One permit is earned back per interval, never a whole minute's worth
+		assertEquals(1, limiter.availablePermits(t0 + SECOND));
+	}
+
+}
@@ -4,90 +4,303 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import com.abe.gg_stats.entity.ApiRateLimit;
 import com.abe.gg_stats.repository.ApiRateLimitRepository;
-import java.lang.reflect.Constructor;
+import com.abe.gg_stats.repository.jdbc.RateLimitLeaseDao;
+import com.abe.gg_stats.repository.jdbc.RateLimitLeaseDao.LeaseGrant;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.test.util.ReflectionTestUtils;
 
 class OpenDotaRateLimitingServiceTest {
 
 	private ApiRateLimitRepository repo;
 
+	private RateLimitLeaseDao leaseDao;
+
+	// daily_requests of the shared GLOBAL row
+	private final AtomicInteger sharedDailyRequests = new AtomicInteger();
+
 	private OpenDotaRateLimitingService service;
 
 	@BeforeEach
 	void setUp() {
 		repo = Mockito.mock(ApiRateLimitRepository.class);
-		service = new OpenDotaRateLimitingService(repo);
+		leaseDao = Mockito.mock(RateLimitLeaseDao.class);
+		Mockito.when(leaseDao.lease(Mockito.eq("GLOBAL"), Mockito.any(), Mockito.anyInt(), Mockito.anyInt()))
+			.thenAnswer(inv -> {
+				int requested = inv.getArgument(2);
+				int limit = inv.getArgument(3);
+				synchronized (sharedDailyRequests) {
+					int granted = Math.max(0, Math.min(requested, limit - sharedDailyRequests.get()));
+					return Optional.of(new LeaseGrant(granted, sharedDailyRequests.addAndGet(granted)));
+				}
+			});
+		service = newService();
+	}
+
+	private OpenDotaRateLimitingService newService() {
+		OpenDotaRateLimitingService service = new OpenDotaRateLimitingService(repo, leaseDao);
+		configure(service);
+		return service;
+	}
+
+	private static void configure(OpenDotaRateLimitingService service) {
 		// Configure generous limits for tests unless overridden
 		ReflectionTestUtils.setField(service, "requestsPerMinute", 60);
 		ReflectionTestUtils.setField(service, "requestsPerDay", 2000);
 		ReflectionTestUtils.setField(service, "refillInterval", 60_000L);
+		ReflectionTestUtils.setField(service, "burstCapacity", 1);
+		ReflectionTestUtils.setField(service, "enableWaiting", false);
+		ReflectionTestUtils.setField(service, "maxWaitMs", 60_000L);
+		ReflectionTestUtils.setField(service, "asyncMaxWaitMs", 60_000L);
+		ReflectionTestUtils.setField(service, "leaseSize", 20);
 	}
 
-	@Test
-	void tryAcquirePermitSucceedsWhenBucketAndDailyAllow() throws Exception {
-		// Prepare in-memory global rate limit state
+	@AfterEach
+	void tearDown() {
+		service.cleanup();
+	}
+
+	private void start(int dailyRequests, LocalDate dailyWindowStart) {
 		ApiRateLimit state = ApiRateLimit.builder()
 			.endpoint("GLOBAL")
 			.windowStart(Instant.now())
-			.dailyWindowStart(LocalDate.now())
-			.dailyRequests(0)
+			.dailyWindowStart(dailyWindowStart)
+			.dailyRequests(dailyRequests)
 			.build();
-		ReflectionTestUtils.setField(service, "globalRateLimit", state);
-
-		// Instantiate TokenBucket via reflection and set it
-		Class<?>[] innerClasses = OpenDotaRateLimitingService.class.getDeclaredClasses();
-		Class<?> tokenBucketClass = null;
-		for (Class<?> c : innerClasses) {
-			if (c.getSimpleName().equals("TokenBucket")) {
-				tokenBucketClass = c;
-				break;
-			}
-		}
-		assertNotNull(tokenBucketClass);
-		Constructor<?> ctor = tokenBucketClass.getDeclaredConstructor(int.class, long.class);
-		ctor.setAccessible(true);
-		Object tokenBucket = ctor.newInstance(60, 60_000L);
-		ReflectionTestUtils.setField(service, "globalTokenBucket", tokenBucket);
+		Mockito.when(repo.findByEndpoint("GLOBAL")).thenReturn(Optional.of(state));
+		sharedDailyRequests.set(todayUtc().equals(dailyWindowStart) ? dailyRequests : 0);
+		service.initialize();
+	}
+
+	private static LocalDate todayUtc() {
+		return LocalDate.now(ZoneOffset.UTC);
+	}
+
+	@Test
+	void tryAcquirePermitSucceedsWhenLimiterAndDailyAllow() {
+		start(0, todayUtc());
 
 		OpenDotaRateLimitingService.RateLimitResult result = service.tryAcquirePermit("/heroes");
+
 		assertTrue(result.allowed());
+		assertEquals(1999, service.getStatus().remainingDailyRequests());
+	}
+
+	@Test
+	void unusedPermitIsGivenBackToTheDailyBudget() {
+		start(0, todayUtc());
+		assertTrue(service.tryAcquirePermit("/matches/1").allowed());
+
+		service.returnUnusedPermit("/matches/1");
+
+		assertEquals(2000, service.getStatus().remainingDailyRequests());
 	}
 
 	@Test
-	void tryAcquirePermitFailOpenWhenDailyLimitExceeded() throws Exception {
-		// dailyRequests == requestsPerDay to exceed
+	void tryAcquirePermitRejectsWhenDailyLimitExceeded() {
 		ReflectionTestUtils.setField(service, "requestsPerDay", 1);
-		ApiRateLimit state = ApiRateLimit.builder()
-			.endpoint("GLOBAL")
-			.windowStart(Instant.now())
-			.dailyWindowStart(LocalDate.now())
-			.dailyRequests(1)
-			.build();
-		ReflectionTestUtils.setField(service, "globalRateLimit", state);
-
-		// Token bucket present (but should not be used due to daily limit)
-		Class<?>[] inner = OpenDotaRateLimitingService.class.getDeclaredClasses();
-		Class<?> tokenBucketClass = null;
-		for (Class<?> c : inner) {
-			if (c.getSimpleName().equals("TokenBucket")) {
-				tokenBucketClass = c;
-				break;
-			}
-		}
-		Constructor<?> ctor = tokenBucketClass.getDeclaredConstructor(int.class, long.class);
-		ctor.setAccessible(true);
-		Object tokenBucket = ctor.newInstance(60, 60_000L);
-		ReflectionTestUtils.setField(service, "globalTokenBucket", tokenBucket);
+		start(1, todayUtc());
 
 		OpenDotaRateLimitingService.RateLimitResult result = service.tryAcquirePermit("/teams");
-		// Service is implemented to fail-open on exception during remaining calculation
+
+		assertFalse(result.allowed());
+		assertEquals("Daily limit exceeded", result.reason());
+	}
+
+	@Test
+	void dailyCounterFromPreviousDayIsNotRestored() {
+		start(1999, todayUtc().minusDays(1));
+
+		assertEquals(2000, service.getStatus().remainingDailyRequests());
+	}
+
+	@Test
+	void permitsAreSpacedInsteadOfBursted() {
+		start(0, todayUtc());
+
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+		OpenDotaRateLimitingService.RateLimitResult second = service.tryAcquirePermit("/heroes");
+
+		assertFalse(second.allowed());
+		assertTrue(second.resetTimeMs() > 900, "next permit should be about one interval away");
+		// The rejected call must not consume daily budget
+		assertEquals(1999, service.getStatus().remainingDailyRequests());
+	}
+
+	@Test
+	void waitingCallerReservesTheNextSlot() {
+		// 600/min -> one permit every 100ms, on a clock that only moves when told to
+		AtomicLong clock = new AtomicLong();
+		service.cleanup();
+		service = new OpenDotaRateLimitingService(repo, leaseDao, clock::get);
+		configure(service);
+		ReflectionTestUtils.setField(service, "requestsPerMinute", 600);
+		ReflectionTestUtils.setField(service, "enableWaiting", true);
+		start(0, todayUtc());
+
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> second = CompletableFuture
+			.supplyAsync(() -> service.tryAcquirePermit("/heroes"));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (service.getStatus().queuedWaiters() == 0 && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		clock.set(TimeUnit.MILLISECONDS.toNanos(99));
+		assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS),
+				"no permit before the slot is due");
+		clock.set(TimeUnit.MILLISECONDS.toNanos(100));
+
+		OpenDotaRateLimitingService.RateLimitResult result = second.orTimeout(5, TimeUnit.SECONDS).join();
 		assertTrue(result.allowed());
+		assertEquals(100, result.waitTimeMs());
+	}
+
+	@Test
+	void acquireAsyncQueuesWaitersWithoutBlockingAndServesThemInOrder() {
+		ReflectionTestUtils.setField(service, "requestsPerMinute", 600);
+		start(0, todayUtc());
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+
+		List<Integer> completionOrder = new CopyOnWriteArrayList<>();
+		List<CompletableFuture<OpenDotaRateLimitingService.RateLimitResult>> waiters = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			int index = i;
+			waiters.add(service.acquireAsync("/matches/" + i, RequestPriority.NORMAL).thenApply(result -> {
+				completionOrder.add(index);
+				return result;
+			}));
+		}
+
+		assertFalse(waiters.get(0).isDone(), "acquireAsync must not block the caller");
+		assertEquals(3, service.getStatus().queuedWaiters());
+		waiters.forEach(w -> assertTrue(w.orTimeout(5, TimeUnit.SECONDS).join().allowed()));
+		assertEquals(List.of(0, 1, 2), completionOrder);
+		assertEquals(0, service.getStatus().queuedWaiters());
+	}
+
+	@Test
+	void higherPriorityWaiterIsServedFirst() {
+		ReflectionTestUtils.setField(service, "requestsPerMinute", 600);
+		start(0, todayUtc());
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> low = service.acquireAsync("/matches/1",
+				RequestPriority.LOW);
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> high = service.acquireAsync("/heroes",
+				RequestPriority.HIGH);
+
+		assertTrue(high.orTimeout(5, TimeUnit.SECONDS).join().allowed());
+		assertFalse(low.isDone());
+		assertTrue(low.orTimeout(5, TimeUnit.SECONDS).join().allowed());
+	}
+
+	@Test
+	void asyncWaiterTimesOutAndGivesBackDailyPermit() {
+		ReflectionTestUtils.setField(service, "asyncMaxWaitMs", 50L);
+		start(0, todayUtc());
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+
+		OpenDotaRateLimitingService.RateLimitResult result = service.acquireAsync("/matches/1", RequestPriority.NORMAL)
+			.orTimeout(5, TimeUnit.SECONDS)
+			.join();
+
+		assertFalse(result.allowed());
+		assertEquals("Timeout waiting for rate limit", result.reason());
+		assertEquals(1999, service.getStatus().remainingDailyRequests());
+	}
+
+	@Test
+	void cancelledAsyncWaiterGivesBackItsDailyPermit() {
+		start(0, todayUtc());
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> waiter = service.acquireAsync("/matches/1",
+				RequestPriority.NORMAL);
+		assertEquals(1998, service.getStatus().remainingDailyRequests());
+
+		assertTrue(waiter.cancel(false));
+
+		assertEquals(1999, service.getStatus().remainingDailyRequests());
+	}
+
+	@Test
+	void interruptedWaiterGivesBackItsDailyPermit() throws Exception {
+		ReflectionTestUtils.setField(service, "enableWaiting", true);
+		start(0, todayUtc());
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+		CompletableFuture<OpenDotaRateLimitingService.RateLimitResult> outcome = new CompletableFuture<>();
+		Thread waiter = new Thread(() -> outcome.complete(service.tryAcquirePermit("/heroes")));
+		waiter.start();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (service.getStatus().queuedWaiters() == 0 && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+
+		waiter.interrupt();
+
+		assertFalse(outcome.get(5, TimeUnit.SECONDS).allowed());
+		assertEquals(1999, service.getStatus().remainingDailyRequests());
+		assertEquals(1, service.getStatus().rejectedRequests());
+	}
+
+	@Test
+	void nodesSharingTheBudgetRowNeverExceedTheDailyLimit() {
+		OpenDotaRateLimitingService other = newService();
+		for (OpenDotaRateLimitingService node : List.of(service, other)) {
+			// Only the daily budget should limit this test
+			ReflectionTestUtils.setField(node, "requestsPerDay", 50);
+			ReflectionTestUtils.setField(node, "burstCapacity", 1_000);
+		}
+		start(0, todayUtc());
+		other.initialize();
+
+		int allowed = 0;
+		for (int i = 0; i < 100; i++) {
+			OpenDotaRateLimitingService node = i % 2 == 0 ? service : other;
+			if (node.tryAcquirePermit("/heroes").allowed()) {
+				allowed++;
+			}
+		}
+		other.cleanup();
+
+		assertEquals(50, allowed);
+		assertEquals(50, sharedDailyRequests.get());
+	}
+
+	@Test
+	void unusedLeaseIsReturnedOnShutdown() {
+		start(0, todayUtc());
+
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+		assertEquals(19, service.getStatus().leasedPermits());
+		service.cleanup();
+
+		Mockito.verify(leaseDao).release("GLOBAL", todayUtc(), 19);
+		assertEquals(0, service.getStatus().leasedPermits());
+	}
+
+	@Test
+	void fallsBackToLocalBudgetWhenLeasingFails() {
+		Mockito.when(leaseDao.lease(Mockito.any(), Mockito.any(), Mockito.anyInt(), Mockito.anyInt()))
+			.thenThrow(new DataAccessResourceFailureException("down"));
+		start(0, todayUtc());
+
+		assertTrue(service.tryAcquirePermit("/heroes").allowed());
+		assertEquals(1999, service.getStatus().remainingDailyRequests());
 	}
 
 }
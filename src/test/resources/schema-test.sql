@@ -50,6 +50,8 @@ CREATE TABLE IF NOT EXISTS matches (
   patch INT,
   region INT,
   replay_url TEXT,
+  detail_status TEXT NOT NULL DEFAULT 'PENDING',
+  detail_attempts SMALLINT NOT NULL DEFAULT 0,
   created_at TIMESTAMP WITH TIME ZONE DEFAULT now(),
   updated_at TIMESTAMP WITH TIME ZONE DEFAULT now()
 );
@@ -119,6 +121,7 @@ CREATE TABLE IF NOT EXISTS pro_hero_trends (
     matches BIGINT,
     picks BIGINT,
     pick_rate DOUBLE PRECISION,
+    win_rate DOUBLE PRECISION,
     delta_vs_prev DOUBLE PRECISION
 );
 
@@ -128,9 +131,27 @@ CREATE TABLE IF NOT EXISTS pro_hero_pair_stats (
     hero_id_a INT NOT NULL,
     hero_id_b INT NOT NULL,
     games_together BIGINT,
+    wins_together BIGINT,
     support DOUBLE PRECISION,
     confidence DOUBLE PRECISION,
     lift DOUBLE PRECISION,
     delta_support DOUBLE PRECISION,
     delta_lift DOUBLE PRECISION
 );
+
+CREATE TABLE IF NOT EXISTS aggregation_dirty_bucket (
+    id BIGSERIAL PRIMARY KEY,
+    patch INT NOT NULL,
+    epoch_week BIGINT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- OpenDota response cache
+CREATE TABLE IF NOT EXISTS api_response_cache (
+    endpoint VARCHAR(255) PRIMARY KEY,
+    body CLOB NOT NULL,
+    etag VARCHAR(255),
+    last_modified VARCHAR(255),
+    fetched_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);